@@ -0,0 +1,117 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.UpsertReport;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Full-area restore onto an empty device: 3,000 patients and three visits
+ * each, then the same records again as a refresh. Throughput is logged under
+ * "BulkUpsertBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class BulkUpsertBenchmarkTest {
+    private static final String TAG = "BulkUpsertBenchmark";
+    private static final int PATIENTS = 3_000;
+    private static final int VISITS_PER_PATIENT = 3;
+
+    @Test
+    public void fullAreaRestore() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String dbName = "bulk_upsert.db";
+        context.deleteDatabase(dbName);
+        DatabaseHelper dbHelper = new DatabaseHelper(context, dbName);
+
+        List<Patient> patients = serverPatients();
+        UpsertReport restored = dbHelper.upsertServerPatients(patients);
+        List<PregnancyVisit> visits = serverVisits(patients);
+        UpsertReport restoredVisits = dbHelper.upsertServerPregnancyVisits(visits);
+        Log.i(TAG, "restore " + restored);
+        Log.i(TAG, "restore " + restoredVisits);
+
+        assertEquals(PATIENTS, restored.getInserted());
+        assertEquals(PATIENTS * VISITS_PER_PATIENT, restoredVisits.getInserted());
+        assertEquals(0, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE));
+        assertEquals(PATIENTS, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENT_LATEST_VITALS));
+
+        // A local edit waiting to upload survives the refresh
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET "
+                + DatabaseHelper.COL_NAME + " = 'Edited', " + DatabaseHelper.COL_SYNC_STATUS + " = '"
+                + DatabaseHelper.SYNC_PENDING + "' WHERE " + DatabaseHelper.COL_SERVER_ID + " = 1");
+
+        UpsertReport refreshed = dbHelper.upsertServerPatients(serverPatients());
+        UpsertReport refreshedVisits = dbHelper.upsertServerPregnancyVisits(serverVisits(patients));
+        Log.i(TAG, "refresh " + refreshed);
+        Log.i(TAG, "refresh " + refreshedVisits);
+
+        assertEquals(PATIENTS - 1, refreshed.getUpdated());
+        assertEquals(1, refreshed.getSkipped());
+        assertEquals(PATIENTS * VISITS_PER_PATIENT, refreshedVisits.getUpdated());
+        assertEquals(PATIENTS, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS));
+        assertEquals(PATIENTS * VISITS_PER_PATIENT, count(dbHelper, "SELECT COUNT(*) FROM "
+                + DatabaseHelper.TABLE_PREGNANCY_VISITS));
+        assertEquals(1, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + DatabaseHelper.COL_NAME + " = 'Edited'"));
+
+        dbHelper.close();
+        context.deleteDatabase(dbName);
+    }
+
+    private static List<Patient> serverPatients() {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 1; i <= PATIENTS; i++) {
+            Patient patient = new Patient();
+            patient.setServerId(i);
+            patient.setName("Patient " + i);
+            patient.setAge(20 + i % 25);
+            patient.setGender("Female");
+            patient.setPhone("98400" + i);
+            patient.setAddress("Ward " + i % 50);
+            patient.setCategory("Pregnant Woman");
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    private static List<PregnancyVisit> serverVisits(List<Patient> patients) {
+        List<PregnancyVisit> visits = new ArrayList<>();
+        int serverId = 1;
+        for (Patient patient : patients) {
+            for (int v = 1; v <= VISITS_PER_PATIENT; v++) {
+                PregnancyVisit visit = new PregnancyVisit();
+                visit.setServerId(serverId++);
+                visit.setPatientId(patient.getLocalId());
+                visit.setVisitDate("2024-0" + v + "-15");
+                visit.setWeight(50 + v);
+                visit.setBloodPressure("120/80");
+                visit.setHemoglobin(11);
+                visit.setNotes("Medicines: Iron Tablets,");
+                visits.add(visit);
+            }
+        }
+        return visits;
+    }
+
+    private static long count(DatabaseHelper dbHelper, String sql) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, null);
+        cursor.moveToFirst();
+        long count = cursor.getLong(0);
+        cursor.close();
+        return count;
+    }
+}
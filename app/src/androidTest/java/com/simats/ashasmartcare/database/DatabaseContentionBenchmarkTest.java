@@ -0,0 +1,121 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Read latency of a paged patient query while a simulated sync writes on
+ * another thread, with and without WAL. p50/p99 are logged under
+ * "DbContentionBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseContentionBenchmarkTest {
+    private static final String TAG = "DbContentionBenchmark";
+    private static final int SEED_PATIENTS = 5_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int READS = 500;
+
+    @Test
+    public void pagedReadsDuringSync() throws Exception {
+        long[] rollback = run("contention_rollback.db", false);
+        long[] wal = run("contention_wal.db", true);
+
+        Log.i(TAG, String.format("rollback journal: p50 %.2f ms, p99 %.2f ms", rollback[0] / 1e6,
+                rollback[1] / 1e6));
+        Log.i(TAG, String.format("WAL:              p50 %.2f ms, p99 %.2f ms", wal[0] / 1e6, wal[1] / 1e6));
+    }
+
+    /**
+     * Returns {p50, p99} read latency in nanoseconds
+     */
+    private long[] run(String dbName, boolean wal) throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(dbName);
+        DatabaseHelper dbHelper = new DatabaseHelper(context, dbName);
+        dbHelper.setWriteAheadLoggingEnabled(wal);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        seedPatients(db);
+
+        AtomicBoolean reading = new AtomicBoolean(true);
+        AtomicInteger syncedBatches = new AtomicInteger();
+        Thread sync = new Thread(() -> {
+            int next = 0;
+            while (reading.get()) {
+                // One "sync batch": mark 20 patients synced and log them, in one transaction
+                db.beginTransaction();
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        long localId = 1 + (next++ % SEED_PATIENTS);
+                        ContentValues values = new ContentValues();
+                        values.put(DatabaseHelper.COL_SYNC_STATUS, DatabaseHelper.SYNC_SYNCED);
+                        values.put(DatabaseHelper.COL_SERVER_ID, localId);
+                        db.update(DatabaseHelper.TABLE_PATIENTS, values, DatabaseHelper.COL_LOCAL_ID + " = ?",
+                                new String[] { String.valueOf(localId) });
+                        dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PATIENTS, localId, "UPDATE");
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                syncedBatches.incrementAndGet();
+            }
+        });
+        sync.start();
+
+        long[] latencies = new long[READS];
+        for (int i = 0; i < READS; i++) {
+            int offset = (i * PAGE_SIZE) % SEED_PATIENTS;
+            long start = System.nanoTime();
+            Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT * FROM " + DatabaseHelper.TABLE_PATIENTS
+                    + " ORDER BY " + DatabaseHelper.COL_LOCAL_ID + " LIMIT " + PAGE_SIZE + " OFFSET " + offset,
+                    null);
+            int rows = new RowMappers.PatientMapper(cursor).mapAll().size();
+            cursor.close();
+            latencies[i] = System.nanoTime() - start;
+            assertEquals(PAGE_SIZE, rows);
+        }
+        reading.set(false);
+        sync.join();
+
+        dbHelper.close();
+        context.deleteDatabase(dbName);
+
+        assertTrue("Sync thread made no progress", syncedBatches.get() > 0);
+        Arrays.sort(latencies);
+        return new long[] { latencies[READS / 2], latencies[READS * 99 / 100] };
+    }
+
+    private void seedPatients(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= SEED_PATIENTS; i++) {
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COL_NAME, "Patient " + i);
+                values.put(DatabaseHelper.COL_AGE, 20 + i % 40);
+                values.put(DatabaseHelper.COL_PHONE, "98400" + i);
+                values.put(DatabaseHelper.COL_ADDRESS, "Ward " + i % 50);
+                values.put(DatabaseHelper.COL_CATEGORY, "General");
+                values.put(DatabaseHelper.COL_SYNC_STATUS, DatabaseHelper.SYNC_PENDING);
+                db.insert(DatabaseHelper.TABLE_PATIENTS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Chunked migrations over a synthetic 50k-row database: each run is cut
+ * short part way, as by process death, and resumed by a fresh helper.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationRunnerTest {
+    private static final int ROWS = 50_000;
+    private static final int STOP_AFTER_ROWS = 20_000;
+
+    @Test
+    public void observationsBackfillResumesAfterInterruption() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String dbName = "migration_observations.db";
+        context.deleteDatabase(dbName);
+
+        // A version 22 database: records with notes but no observations
+        DatabaseHelper dbHelper = new DatabaseHelper(context, dbName);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= ROWS; i++) {
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COL_PATIENT_ID, 1 + i % 1000);
+                values.put(DatabaseHelper.COL_VISIT_DATE, "2024-01-01 10:00:00");
+                values.put(DatabaseHelper.COL_WEIGHT, 50 + i % 20);
+                values.put(DatabaseHelper.COL_NOTES, "Blood Pressure: 120/80\nHemoglobin: 11\nMedicines: "
+                        + "Iron Tablets," + (i % 10 == 0 ? "Tetanus Injection," : "") + "\nNext Visit Date: 02/01/2024");
+                db.insert(DatabaseHelper.TABLE_PREGNANCY_VISITS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.setVersion(22);
+        dbHelper.close();
+
+        // Upgrade, then stop the runner part way
+        dbHelper = new DatabaseHelper(context, dbName);
+        assertTrue(dbHelper.getMigrationRunner().hasPending());
+        runUntilStopped(dbHelper);
+        long partial = count(dbHelper, "SELECT COUNT(DISTINCT " + DatabaseHelper.COL_SOURCE_ID + ") FROM "
+                + DatabaseHelper.TABLE_OBSERVATIONS);
+        assertTrue("No chunk committed", partial >= STOP_AFTER_ROWS);
+        assertTrue("Finished before the stop", partial < ROWS);
+        dbHelper.close();
+
+        // Resume in a new helper
+        dbHelper = new DatabaseHelper(context, dbName);
+        long[] last = new long[2];
+        dbHelper.getMigrationRunner().run((rowsDone, rowsTotal) -> {
+            last[0] = rowsDone;
+            last[1] = rowsTotal;
+        });
+        assertFalse(dbHelper.getMigrationRunner().hasPending());
+        assertEquals(last[1], last[0]);
+
+        assertEquals(ROWS, count(dbHelper, "SELECT COUNT(DISTINCT " + DatabaseHelper.COL_SOURCE_ID + ") FROM "
+                + DatabaseHelper.TABLE_OBSERVATIONS));
+        assertEquals(ROWS / 10, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_OBSERVATIONS
+                + " WHERE " + DatabaseHelper.COL_OBS_CODE + " = " + Constants.OBS_MEDICINE + " AND "
+                + DatabaseHelper.COL_VALUE_TEXT + " = 'Tetanus Injection'"));
+        // No record was parsed twice across the interruption
+        assertEquals(0, count(dbHelper, "SELECT COUNT(*) FROM (SELECT 1 FROM " + DatabaseHelper.TABLE_OBSERVATIONS
+                + " GROUP BY " + DatabaseHelper.COL_SOURCE_ID + ", " + DatabaseHelper.COL_OBS_CODE + ", "
+                + DatabaseHelper.COL_VALUE_TEXT + " HAVING COUNT(*) > 1)"));
+
+        dbHelper.close();
+        context.deleteDatabase(dbName);
+    }
+
+    @Test
+    public void patientsRebuildKeepsWritesMadeDuringCopy() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        String dbName = "migration_patients.db";
+        context.deleteDatabase(dbName);
+
+        // Patients still carrying the pre-version-9 location columns
+        DatabaseHelper dbHelper = new DatabaseHelper(context, dbName);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_PATIENTS + " ADD COLUMN area TEXT");
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_PATIENTS + " ADD COLUMN district TEXT");
+        db.execSQL("ALTER TABLE " + DatabaseHelper.TABLE_PATIENTS + " ADD COLUMN state TEXT");
+        db.beginTransaction();
+        try {
+            for (int i = 1; i <= ROWS; i++) {
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COL_NAME, "Patient " + i);
+                values.put("area", "Ward " + i % 50);
+                values.put("district", "District");
+                values.put("state", "State");
+                db.insert(DatabaseHelper.TABLE_PATIENTS, null, values);
+            }
+            MigrationRunner.schedule(db, "patients_rebuild");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        runUntilStopped(dbHelper);
+        // Edit and delete rows that were already copied
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET " + DatabaseHelper.COL_NAME
+                + " = 'Edited' WHERE " + DatabaseHelper.COL_LOCAL_ID + " = 1");
+        db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE " + DatabaseHelper.COL_LOCAL_ID + " = 2");
+        dbHelper.close();
+
+        dbHelper = new DatabaseHelper(context, dbName);
+        dbHelper.getMigrationRunner().run(null);
+        assertFalse(dbHelper.getMigrationRunner().hasPending());
+
+        assertEquals(ROWS - 1, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS));
+        assertEquals(1, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 1 AND " + DatabaseHelper.COL_NAME + " = 'Edited'"));
+        assertEquals(ROWS - 1, count(dbHelper, "SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + DatabaseHelper.COL_ADDRESS + " LIKE 'Ward %, District, State'"));
+        Cursor columns = dbHelper.getReadableDatabase().rawQuery("PRAGMA table_info("
+                + DatabaseHelper.TABLE_PATIENTS + ")", null);
+        while (columns.moveToNext()) {
+            assertNotEquals("area", columns.getString(columns.getColumnIndexOrThrow("name")));
+        }
+        columns.close();
+        assertEquals(1, count(dbHelper, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'idx_patients_name'"));
+        assertEquals(1, count(dbHelper, "SELECT COUNT(*) FROM sqlite_master WHERE name = 'patients_cascade_delete'"));
+
+        dbHelper.close();
+        context.deleteDatabase(dbName);
+    }
+
+    /**
+     * Run the pending steps until STOP_AFTER_ROWS rows are done, then abandon
+     * the run the way a killed process would
+     */
+    private static void runUntilStopped(DatabaseHelper dbHelper) {
+        try {
+            dbHelper.getMigrationRunner().run((rowsDone, rowsTotal) -> {
+                if (rowsDone >= STOP_AFTER_ROWS) {
+                    throw new IllegalStateException("stopped");
+                }
+            });
+            fail("Runner finished before the stop");
+        } catch (IllegalStateException e) {
+            assertEquals("stopped", e.getMessage());
+        }
+    }
+
+    private static long count(DatabaseHelper dbHelper, String sql) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, null);
+        cursor.moveToFirst();
+        long count = cursor.getLong(0);
+        cursor.close();
+        return count;
+    }
+}
@@ -0,0 +1,156 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.Vaccination;
+import com.simats.ashasmartcare.models.Visit;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Patient records and cached vitals when one patient's server id equals
+ * another's local id: each stays with its own patient, and a delete takes
+ * only the deleted patient's.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PatientCascadeDeleteTest {
+    private static final String DB_NAME = "patient_cascade.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private long asha;
+    private long bina;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+
+        // Asha is local 1 / server 7, Bina local 2 / server 1
+        asha = insertPatient("Asha", 7);
+        bina = insertPatient("Bina", (int) asha);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void deleteLeavesThePatientWhoseServerIdMatches() {
+        insertVisit(asha);
+        insertVisit(bina);
+
+        assertEquals(1, dbHelper.deletePatient(asha));
+
+        assertEquals(0, countRecords(DatabaseHelper.TABLE_PREGNANCY_VISITS, asha));
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_PREGNANCY_VISITS, bina));
+    }
+
+    @Test
+    public void offlineVisitSavedByServerIdStaysWithItsPatient() {
+        // A general visit saved offline from a screen that only knows Bina's
+        // server id, which is Asha's local id
+        Visit visit = new Visit();
+        visit.setPatientServerId(1);
+        visit.setVisitDate("2024-01-20");
+        visit.setVisitType("Home Visit");
+        visit.setDescription("Weight: 58");
+        assertTrue(dbHelper.insertVisit(visit) > 0);
+        assertEquals(bina, visit.getPatientId());
+
+        dbHelper.deletePatient(asha);
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_VISITS, bina));
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_OBSERVATIONS, bina));
+    }
+
+    @Test
+    public void cachedVitalsFollowTheLocalPatient() throws Exception {
+        // Read from the server for Bina, whose server id is Asha's local id
+        dbHelper.saveLatestVitals(1, DatabaseHelper.TABLE_PREGNANCY_VISITS, "2024-02-01",
+                new JSONObject().put("weight", 54));
+        insertVisit(asha);
+
+        assertEquals(bina, dbHelper.getLatestVitals(1).getPatientId());
+        assertEquals(asha, dbHelper.getLatestVitals(7).getPatientId());
+
+        dbHelper.deletePatient(asha);
+        assertNull(dbHelper.getLatestVitals(7));
+        assertEquals("2024-02-01", dbHelper.getLatestVitals(1).getRecordDate());
+    }
+
+    @Test
+    public void upgradeRekeysRecordsSavedUnderServerIds() {
+        // Saved by older versions: an offline vaccination under Bina's server
+        // id and a visit under Asha's
+        insertVaccination(1);
+        insertVisit(7);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.setVersion(25);
+        dbHelper.close();
+
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_VACCINATIONS, bina));
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_PREGNANCY_VISITS, asha));
+
+        dbHelper.deletePatient(asha);
+        assertEquals(1, countRecords(DatabaseHelper.TABLE_VACCINATIONS, bina));
+        assertEquals(0, countRecords(DatabaseHelper.TABLE_PREGNANCY_VISITS, asha));
+    }
+
+    private long insertPatient(String name, int serverId) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setAge(25);
+        patient.setCategory(Constants.CATEGORY_PREGNANT);
+        long localId = dbHelper.insertPatient(patient);
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET "
+                + DatabaseHelper.COL_SERVER_ID + " = " + serverId + " WHERE " + DatabaseHelper.COL_LOCAL_ID + " = "
+                + localId);
+        return localId;
+    }
+
+    private void insertVisit(long patientId) {
+        PregnancyVisit visit = new PregnancyVisit();
+        visit.setPatientId(patientId);
+        visit.setVisitDate("2024-01-15");
+        visit.setWeight(52);
+        dbHelper.insertPregnancyVisit(visit);
+    }
+
+    private void insertVaccination(long patientId) {
+        Vaccination vaccination = new Vaccination();
+        vaccination.setPatientId(patientId);
+        vaccination.setVaccineName("TT-1");
+        vaccination.setScheduledDate("2024-01-15");
+        vaccination.setStatus("Scheduled");
+        dbHelper.insertVaccination(vaccination);
+    }
+
+    private long countRecords(String table, long patientId) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM " + table + " WHERE "
+                + DatabaseHelper.COL_PATIENT_ID + " = ?", new String[] { String.valueOf(patientId) });
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * searchPatients() against the FTS index: query tokens split like the indexed
+ * text, Indic combining marks included, and the name-prefix rank matches
+ * wildcard characters literally.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PatientSearchTest {
+    private static final String DB_NAME = "patient_search.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void findsNamesWithCombiningMarks() {
+        insertPatient("प्रिया शर्मा");
+        insertPatient("Priya Sharma");
+
+        List<Patient> results = dbHelper.searchPatients("शर्मा");
+        assertEquals(1, results.size());
+        assertEquals("प्रिया शर्मा", results.get(0).getName());
+    }
+
+    @Test
+    public void namePrefixRankIgnoresWildcards() {
+        // Unescaped, "Ann_%" would also rank ANNA DEVI, which sorts first, as
+        // a name-prefix hit
+        insertPatient("ANNA DEVI");
+        insertPatient("Ann_Devi");
+
+        List<Patient> results = dbHelper.searchPatients("Ann_");
+        assertEquals(2, results.size());
+        assertEquals("Ann_Devi", results.get(0).getName());
+    }
+
+    private void insertPatient(String name) {
+        Patient patient = new Patient();
+        patient.setName(name);
+        patient.setAge(25);
+        patient.setCategory(Constants.CATEGORY_PREGNANT);
+        dbHelper.insertPatient(patient);
+    }
+}
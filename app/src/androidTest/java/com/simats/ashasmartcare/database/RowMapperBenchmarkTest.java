@@ -0,0 +1,125 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import com.simats.ashasmartcare.models.Patient;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-row mapping cost for a 10k-row patient list: column lookups on every
+ * row (the old cursorToPatient) against a PatientMapper that resolves them
+ * once per cursor. Timings are logged under "RowMapperBenchmark" rather than
+ * asserted, since wall-clock comparisons vary between devices and runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowMapperBenchmarkTest {
+    private static final String TAG = "RowMapperBenchmark";
+    private static final int ROWS = 10_000;
+    private static final int ROUNDS = 5;
+
+    private static final String[] PATIENT_COLUMNS = {
+            DatabaseHelper.COL_LOCAL_ID, DatabaseHelper.COL_SERVER_ID, DatabaseHelper.COL_NAME,
+            DatabaseHelper.COL_AGE, DatabaseHelper.COL_DOB, DatabaseHelper.COL_GENDER, DatabaseHelper.COL_PHONE,
+            DatabaseHelper.COL_ADDRESS, DatabaseHelper.COL_BLOOD_GROUP, DatabaseHelper.COL_CATEGORY,
+            DatabaseHelper.COL_MEDICAL_NOTES, DatabaseHelper.COL_PHOTO_PATH, DatabaseHelper.COL_IS_HIGH_RISK,
+            DatabaseHelper.COL_HIGH_RISK_REASON, DatabaseHelper.COL_ABHA_ID, DatabaseHelper.COL_SYNC_STATUS,
+            DatabaseHelper.COL_CREATED_AT, DatabaseHelper.COL_LAST_UPDATED
+    };
+
+    @Test
+    public void patientMapperMatchesPerRowLookups() {
+        MatrixCursor cursor = buildPatientCursor();
+
+        long perRowBest = Long.MAX_VALUE;
+        long mapperBest = Long.MAX_VALUE;
+        List<Patient> perRow = null;
+        List<Patient> mapped = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            cursor.moveToPosition(-1);
+            long start = System.nanoTime();
+            perRow = mapWithPerRowLookups(cursor);
+            perRowBest = Math.min(perRowBest, System.nanoTime() - start);
+
+            cursor.moveToPosition(-1);
+            start = System.nanoTime();
+            mapped = new RowMappers.PatientMapper(cursor).mapAll();
+            mapperBest = Math.min(mapperBest, System.nanoTime() - start);
+        }
+        cursor.close();
+
+        Log.i(TAG, String.format("%d rows: per-row lookups %d ns/row, cached indices %d ns/row",
+                ROWS, perRowBest / ROWS, mapperBest / ROWS));
+
+        assertEquals(ROWS, mapped.size());
+        assertEquals(perRow.get(ROWS - 1).getName(), mapped.get(ROWS - 1).getName());
+        assertEquals(perRow.get(ROWS - 1).getAbhaId(), mapped.get(ROWS - 1).getAbhaId());
+    }
+
+    private MatrixCursor buildPatientCursor() {
+        MatrixCursor cursor = new MatrixCursor(PATIENT_COLUMNS, ROWS);
+        for (int i = 1; i <= ROWS; i++) {
+            cursor.addRow(new Object[] { i, 1000 + i, "Patient " + i, 20 + i % 40, "1990-01-01", "Female",
+                    "98400" + i, "Ward " + i % 50, "O+", "Pregnant Woman", "", null, i % 7 == 0 ? 1 : 0, null,
+                    "ABHA" + i, "SYNCED", "2024-01-01 10:00:00", "2024-01-01 10:00:00" });
+        }
+        return cursor;
+    }
+
+    // Baseline: the lookups the old cursorToPatient did for every row
+    private List<Patient> mapWithPerRowLookups(Cursor cursor) {
+        List<Patient> patients = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            Patient patient = new Patient();
+            patient.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_LOCAL_ID)));
+            patient.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_SERVER_ID)));
+            patient.setName(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_NAME)));
+            patient.setAge(cursor.getInt(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_AGE)));
+            patient.setDob(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_DOB)));
+            patient.setGender(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GENDER)));
+            patient.setPhone(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PHONE)));
+            int addressIndex = cursor.getColumnIndex(DatabaseHelper.COL_ADDRESS);
+            if (addressIndex != -1) {
+                patient.setAddress(cursor.getString(addressIndex));
+            }
+            int bloodGroupIndex = cursor.getColumnIndex(DatabaseHelper.COL_BLOOD_GROUP);
+            if (bloodGroupIndex != -1) {
+                patient.setBloodGroup(cursor.getString(bloodGroupIndex));
+            }
+            patient.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_CATEGORY)));
+            patient.setMedicalNotes(
+                    cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_MEDICAL_NOTES)));
+            patient.setPhotoPath(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PHOTO_PATH)));
+            int highRiskIndex = cursor.getColumnIndex(DatabaseHelper.COL_IS_HIGH_RISK);
+            if (highRiskIndex != -1) {
+                patient.setHighRisk(cursor.getInt(highRiskIndex) == 1);
+            }
+            int reasonIndex = cursor.getColumnIndex(DatabaseHelper.COL_HIGH_RISK_REASON);
+            if (reasonIndex != -1) {
+                patient.setHighRiskReason(cursor.getString(reasonIndex));
+            }
+            int abhaIdIndex = cursor.getColumnIndex(DatabaseHelper.COL_ABHA_ID);
+            if (abhaIdIndex != -1) {
+                patient.setAbhaId(cursor.getString(abhaIdIndex));
+            }
+            patient.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_SYNC_STATUS)));
+            patient.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(DatabaseHelper.COL_CREATED_AT)));
+            int lastUpdatedIndex = cursor.getColumnIndex(DatabaseHelper.COL_LAST_UPDATED);
+            if (lastUpdatedIndex != -1) {
+                patient.setLastUpdated(cursor.getString(lastUpdatedIndex));
+            }
+            patients.add(patient);
+        }
+        return patients;
+    }
+}
@@ -0,0 +1,67 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Server patient records stored over local rows: fields a response leaves out
+ * keep their local values.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ServerPatientUpsertTest {
+    private static final String DB_NAME = "server_patient_upsert.db";
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void sparseRecordKeepsLocalFields() throws Exception {
+        upsert(new JSONObject().put("id", 42).put("name", "Asha").put("age", 26).put("phone", "9876543210")
+                .put("category", Constants.CATEGORY_PREGNANT).put("is_high_risk", 1)
+                .put("high_risk_reason", "Anaemia"));
+
+        // A list that sends only a few fields, one of them null
+        upsert(new JSONObject().put("id", 42).put("name", "Asha Devi").put("phone", JSONObject.NULL));
+
+        Patient patient = dbHelper.getPatientByServerId(42);
+        assertEquals("Asha Devi", patient.getName());
+        assertEquals(26, patient.getAge());
+        assertEquals("9876543210", patient.getPhone());
+        assertEquals(Constants.CATEGORY_PREGNANT, patient.getCategory());
+        assertTrue(patient.isHighRisk());
+        assertEquals("Anaemia", patient.getHighRiskReason());
+        assertEquals(1, dbHelper.searchPatients("", true, Constants.CATEGORY_CODE_PREGNANT).size());
+    }
+
+    private void upsert(JSONObject record) throws Exception {
+        dbHelper.upsertServerPatients(Collections.singletonList(Patient.fromServerJson(record)));
+    }
+}
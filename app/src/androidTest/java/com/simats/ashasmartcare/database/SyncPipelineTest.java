@@ -0,0 +1,310 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.SyncReport;
+import com.simats.ashasmartcare.network.LocalSyncEndpoint;
+import com.simats.ashasmartcare.services.SyncBatchTransport;
+import com.simats.ashasmartcare.services.SyncPayloadBuilder;
+import com.simats.ashasmartcare.services.SyncPipeline;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sync runs over a 300-record backlog (150 new patients, each with a
+ * pregnancy visit) against the in-process sync.php stand-in. Throughput is
+ * logged under "SyncPipeline".
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncPipelineTest {
+    private static final String TAG = "SyncPipeline";
+    private static final String DB_NAME = "sync_pipeline.db";
+    private static final int PATIENTS = 150;
+    private static final long ROUND_TRIP_MS = 300;
+
+    private Context context;
+    private DatabaseHelper dbHelper;
+    private LocalSyncEndpoint endpoint;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        dbHelper = new DatabaseHelper(context, DB_NAME);
+        endpoint = new LocalSyncEndpoint();
+
+        for (int i = 1; i <= PATIENTS; i++) {
+            Patient patient = new Patient();
+            patient.setName("Patient " + i);
+            patient.setAge(25);
+            patient.setCategory(Constants.CATEGORY_PREGNANT);
+            long patientId = dbHelper.insertPatient(patient);
+
+            PregnancyVisit visit = new PregnancyVisit();
+            visit.setPatientId(patientId);
+            visit.setVisitDate("2024-01-15");
+            visit.setWeight(52);
+            long visitId = dbHelper.insertPregnancyVisit(visit);
+            dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PREGNANCY_VISITS, visitId, Constants.ACTION_INSERT);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void backlogGoesUpInFullBatches() throws Exception {
+        SyncReport report = run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+
+        assertEquals(PATIENTS * 2, report.getSynced());
+        assertEquals(0, report.getFailed());
+        assertEquals(0, report.getDeferred());
+        assertEquals(PATIENTS * 2 / Constants.SYNC_BATCH_SIZE, endpoint.getRequests());
+
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE));
+        assertEquals(PATIENTS * 2, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_HISTORY));
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + "IFNULL(" + DatabaseHelper.COL_SERVER_ID + ", 0) = 0 OR " + DatabaseHelper.COL_SYNC_STATUS
+                + " <> 'SYNCED'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PREGNANCY_VISITS + " WHERE "
+                + "IFNULL(" + DatabaseHelper.COL_SERVER_ID + ", 0) = 0 OR " + DatabaseHelper.COL_SYNC_STATUS
+                + " <> 'SYNCED'"));
+
+        // Every visit went up after its patient, with the patient's server id
+        for (JSONObject item : endpoint.getReceived()) {
+            if (DatabaseHelper.TABLE_PREGNANCY_VISITS.equals(item.getString("table"))) {
+                assertTrue(item.getJSONObject("data").getInt("patient_id") > 0);
+            }
+        }
+    }
+
+    @Test
+    public void rejectedRecordIsDeadLettered() throws Exception {
+        endpoint.reject(DatabaseHelper.TABLE_PATIENTS, 3);
+
+        SyncReport report = run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+
+        // The rejected patient stops retrying; its visit, which cannot go
+        // without it, backs off
+        assertEquals(PATIENTS * 2 - 2, report.getSynced());
+        assertEquals(2, report.getFailed());
+        assertEquals(1, report.getDeadLettered());
+        assertEquals(1, dbHelper.getDeadLetterRecords().size());
+        assertEquals(1, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE + " WHERE "
+                + DatabaseHelper.COL_SYNC_STATUS + " = 'FAILED' AND " + DatabaseHelper.COL_RETRY_COUNT + " = 1 AND "
+                + DatabaseHelper.COL_NEXT_ATTEMPT_AT + " > " + System.currentTimeMillis()));
+        assertEquals(1, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + DatabaseHelper.COL_SYNC_STATUS + " <> 'SYNCED'"));
+
+        // Neither goes up again on the next run
+        assertTrue(dbHelper.getPendingSyncRecords().isEmpty());
+    }
+
+    @Test
+    public void retryableFailuresBackOffUntilDeadLettered() throws Exception {
+        endpoint.reject(DatabaseHelper.TABLE_PATIENTS, 3);
+        endpoint.setRejectionsRetryable(true);
+        run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+
+        for (int attempt = 2; attempt <= Constants.SYNC_MAX_RETRIES; attempt++) {
+            assertEquals(0, run(Constants.SYNC_MAX_CONCURRENT_UPLOADS).getFailed());
+
+            // Backoff over
+            dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_SYNC_QUEUE + " SET "
+                    + DatabaseHelper.COL_NEXT_ATTEMPT_AT + " = 0");
+            SyncReport report = run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+            assertEquals(2, report.getFailed());
+            // The visit fails along with its patient, so both run out together
+            assertEquals(attempt == Constants.SYNC_MAX_RETRIES ? 2 : 0, report.getDeadLettered());
+        }
+        assertEquals(2, dbHelper.getDeadLetterRecords().size());
+        assertEquals(Constants.SYNC_MAX_RETRIES, count("SELECT MIN(" + DatabaseHelper.COL_RETRY_COUNT + ") FROM "
+                + DatabaseHelper.TABLE_SYNC_QUEUE + " WHERE " + DatabaseHelper.COL_SYNC_STATUS + " = 'DEAD_LETTER'"));
+
+        // A manual retry once the server takes the patient again
+        endpoint.accept(DatabaseHelper.TABLE_PATIENTS, 3);
+        assertEquals(2, dbHelper.retryDeadLetterRecords());
+        assertEquals(2, run(Constants.SYNC_MAX_CONCURRENT_UPLOADS).getSynced());
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE));
+    }
+
+    @Test
+    public void retryDelayDoublesUpToTheCap() {
+        for (int failures = 1; failures <= 20; failures++) {
+            long full = Math.min(Constants.SYNC_RETRY_BASE_DELAY_MS << (failures - 1),
+                    Constants.SYNC_RETRY_MAX_DELAY_MS);
+            long delay = DatabaseHelper.retryDelayMillis(failures);
+            assertTrue(delay >= full / 2 && delay <= full);
+        }
+    }
+
+    @Test
+    public void editDuringUploadIsKept() throws Exception {
+        // The worker edits patient 1 while the first batch is in flight
+        endpoint.setBeforeAnswer(() -> {
+            if (endpoint.getRequests() == 1) {
+                dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PATIENTS, 1, Constants.ACTION_UPDATE,
+                        "{\"name\":\"Edited\"}");
+            }
+        });
+
+        run(1);
+
+        assertEquals(1, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE + " WHERE "
+                + DatabaseHelper.COL_RECORD_ID + " = 1 AND " + DatabaseHelper.COL_TABLE_NAME + " = 'patients' AND "
+                + DatabaseHelper.COL_SYNC_STATUS + " = 'PENDING'"));
+        // The first upload's server id is still recorded
+        assertEquals(1, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_PATIENTS + " WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 1 AND " + DatabaseHelper.COL_SERVER_ID + " > 0"));
+    }
+
+    @Test
+    public void serverWithoutBatchEndpointLeavesEverythingQueued() throws Exception {
+        endpoint.setAvailable(false);
+
+        SyncReport report = run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+
+        assertEquals(PATIENTS * 2, report.getDeferred());
+        assertEquals(PATIENTS * 2, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE + " WHERE "
+                + DatabaseHelper.COL_SYNC_STATUS + " = 'PENDING'"));
+        // Nothing was sent, so nothing stays leased
+        assertEquals(PATIENTS * 2, dbHelper.getPendingSyncRecords().size());
+    }
+
+    @Test
+    public void uploadInFlightIsNotDueAgain() throws Exception {
+        int[] dueDuringFirstUpload = { -1 };
+        endpoint.setBeforeAnswer(() -> {
+            if (endpoint.getRequests() == 1) {
+                dueDuringFirstUpload[0] = dbHelper.getPendingSyncRecords().size();
+            }
+        });
+
+        run(1);
+
+        // The first batch of patients was leased while it was in flight
+        assertEquals(PATIENTS * 2 - Constants.SYNC_BATCH_SIZE, dueDuringFirstUpload[0]);
+        assertEquals(0, count("SELECT COUNT(*) FROM " + DatabaseHelper.TABLE_SYNC_QUEUE));
+
+        // A lease that runs out makes the entry due again
+        dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PREGNANCY_VISITS, 1, Constants.ACTION_UPDATE);
+        dbHelper.leaseSyncRecords(dbHelper.getPendingSyncRecords());
+        assertTrue(dbHelper.getPendingSyncRecords().isEmpty());
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_SYNC_QUEUE + " SET "
+                + DatabaseHelper.COL_LEASED_UNTIL + " = " + (System.currentTimeMillis() - 1));
+        assertEquals(1, dbHelper.getPendingSyncRecords().size());
+    }
+
+    @Test
+    public void concurrentUploadsOverlapRoundTrips() throws Exception {
+        endpoint.setLatencyMillis(ROUND_TRIP_MS);
+
+        SyncReport concurrent = run(Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+        Log.i(TAG, "concurrent " + concurrent);
+        assertEquals(PATIENTS * 2, concurrent.getSynced());
+
+        // Same backlog again, one upload at a time
+        dbHelper.getWritableDatabase().execSQL("DELETE FROM " + DatabaseHelper.TABLE_SYNC_HISTORY);
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET "
+                + DatabaseHelper.COL_SERVER_ID + " = 0, " + DatabaseHelper.COL_SYNC_STATUS + " = 'PENDING'");
+        dbHelper.getWritableDatabase().execSQL("UPDATE " + DatabaseHelper.TABLE_PREGNANCY_VISITS + " SET "
+                + DatabaseHelper.COL_SYNC_STATUS + " = 'PENDING'");
+        for (long id = 1; id <= PATIENTS; id++) {
+            dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PATIENTS, id, Constants.ACTION_INSERT);
+            dbHelper.addToSyncQueue(DatabaseHelper.TABLE_PREGNANCY_VISITS, id, Constants.ACTION_INSERT);
+        }
+        SyncReport sequential = run(1);
+        Log.i(TAG, "sequential " + sequential);
+        assertEquals(PATIENTS * 2, sequential.getSynced());
+
+        // Patients in parallel, then their visits in parallel: two round
+        // trips deep instead of six
+        assertTrue(concurrent.getElapsedMillis() < sequential.getElapsedMillis());
+    }
+
+    @Test
+    public void historicalBacklogIsLeftForABulkWindow() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_SYNC_QUEUE + " SET " + DatabaseHelper.COL_CREATED_AT_MS + " = 0");
+        // A new visit for patient 5, and patient 7 turns out to be high risk
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_SYNC_QUEUE + " SET " + DatabaseHelper.COL_CREATED_AT_MS + " = "
+                + now + " WHERE " + DatabaseHelper.COL_TABLE_NAME + " = '" + DatabaseHelper.TABLE_PREGNANCY_VISITS
+                + "' AND " + DatabaseHelper.COL_RECORD_ID + " = 5");
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET " + DatabaseHelper.COL_IS_HIGH_RISK + " = 1 WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 7");
+
+        assertEquals(2, dbHelper.getPendingSyncRecords(Long.MAX_VALUE).size());
+        List<SyncRecord> recent = dbHelper.getPendingSyncRecords(now - Constants.SYNC_RECENT_WINDOW_MS);
+        assertEquals(4, recent.size());
+
+        // Each visit goes with its patient, so nothing fails for want of one
+        SyncPipeline pipeline = new SyncPipeline(dbHelper, new SyncPayloadBuilder(context, dbHelper),
+                new SyncBatchTransport(endpoint, 1), null, Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+        SyncReport report = pipeline.run(recent, null);
+        assertEquals(4, report.getSynced());
+        assertEquals(0, report.getFailed());
+        assertEquals(PATIENTS * 2 - 4, dbHelper.getPendingSyncRecords().size());
+    }
+
+    @Test
+    public void highRiskPatientIsResolvedByLocalId() throws Exception {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_SYNC_QUEUE + " SET " + DatabaseHelper.COL_CREATED_AT_MS + " = 0");
+        // Patients 7 and 90 are on the server already, as 90 and 7; only
+        // patient 7 is high risk
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET " + DatabaseHelper.COL_SERVER_ID + " = 90 WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 7");
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET " + DatabaseHelper.COL_SERVER_ID + " = 7 WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 90");
+        db.execSQL("UPDATE " + DatabaseHelper.TABLE_PATIENTS + " SET " + DatabaseHelper.COL_IS_HIGH_RISK + " = 1 WHERE "
+                + DatabaseHelper.COL_LOCAL_ID + " = 7");
+        db.execSQL("DELETE FROM " + DatabaseHelper.TABLE_SYNC_QUEUE + " WHERE " + DatabaseHelper.COL_TABLE_NAME
+                + " = '" + DatabaseHelper.TABLE_PATIENTS + "' AND " + DatabaseHelper.COL_RECORD_ID + " IN (7, 90)");
+
+        List<SyncRecord> highRisk = dbHelper.getPendingSyncRecords(Long.MAX_VALUE);
+        assertEquals(1, highRisk.size());
+        assertEquals(DatabaseHelper.TABLE_PREGNANCY_VISITS, highRisk.get(0).getTableName());
+        assertEquals(7, highRisk.get(0).getRecordId());
+
+        SyncPipeline pipeline = new SyncPipeline(dbHelper, new SyncPayloadBuilder(context, dbHelper),
+                new SyncBatchTransport(endpoint, 1), null, Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+        assertEquals(1, pipeline.run(highRisk, null).getSynced());
+        assertEquals(90, endpoint.getReceived().get(0).getJSONObject("data").getInt("patient_id"));
+    }
+
+    private SyncReport run(int maxConcurrent) throws Exception {
+        SyncPipeline pipeline = new SyncPipeline(dbHelper, new SyncPayloadBuilder(context, dbHelper),
+                new SyncBatchTransport(endpoint, 1), null, maxConcurrent);
+        return pipeline.run(dbHelper.getPendingSyncRecords(), null);
+    }
+
+    private long count(String sql) {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql, null);
+        cursor.moveToFirst();
+        long count = cursor.getLong(0);
+        cursor.close();
+        return count;
+    }
+}
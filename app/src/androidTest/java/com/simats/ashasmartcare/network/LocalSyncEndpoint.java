@@ -0,0 +1,129 @@
+package com.simats.ashasmartcare.network;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * In-process stand-in for sync.php: stores every record it is sent under a new
+ * server id and answers per record, as the server does. Single records can be
+ * rejected, the endpoint can be switched off to look like a server without
+ * sync.php, and answers can be delayed by a simulated round trip, in which
+ * case they arrive on another thread as they would from Volley.
+ */
+public class LocalSyncEndpoint implements SyncEndpoint {
+    private final List<JSONObject> received = new ArrayList<>();
+    private final Set<String> rejected = new HashSet<>();
+    private int nextServerId = 1000;
+    private int requests;
+    private boolean available = true;
+    private boolean rejectionsRetryable;
+    private long latencyMillis;
+    private Runnable beforeAnswer;
+
+    /**
+     * Answer the record of this table with this local id with a failure
+     */
+    public void reject(String table, long localId) {
+        rejected.add(table + ":" + localId);
+    }
+
+    public synchronized void accept(String table, long localId) {
+        rejected.remove(table + ":" + localId);
+    }
+
+    /**
+     * Mark failures retryable, as for a transient server-side error
+     */
+    public void setRejectionsRetryable(boolean rejectionsRetryable) {
+        this.rejectionsRetryable = rejectionsRetryable;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Run after a batch is stored but before it is answered, as if the app
+     * kept working while the request was in flight
+     */
+    public void setBeforeAnswer(Runnable beforeAnswer) {
+        this.beforeAnswer = beforeAnswer;
+    }
+
+    /**
+     * Every record item received, in order
+     */
+    public synchronized List<JSONObject> getReceived() {
+        return new ArrayList<>(received);
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    @Override
+    public void upload(JSONObject batch, ApiHelper.ApiCallback callback) {
+        synchronized (this) {
+            requests++;
+        }
+        if (latencyMillis > 0) {
+            new Thread(() -> {
+                SystemClock.sleep(latencyMillis);
+                answer(batch, callback);
+            }).start();
+        } else {
+            answer(batch, callback);
+        }
+    }
+
+    private synchronized void answer(JSONObject batch, ApiHelper.ApiCallback callback) {
+        if (!available) {
+            callback.onError("Not Found - Server endpoint not available");
+            return;
+        }
+
+        try {
+            JSONArray records = batch.getJSONArray("records");
+            JSONArray results = new JSONArray();
+            for (int i = 0; i < records.length(); i++) {
+                JSONObject item = records.getJSONObject(i);
+                received.add(item);
+
+                JSONObject result = new JSONObject();
+                result.put("queue_id", item.getLong("queue_id"));
+                String key = item.getString("table") + ":" + item.getJSONObject("data").optLong("local_id");
+                if (rejected.contains(key)) {
+                    result.put("success", false);
+                    result.put("message", "Rejected by stand-in");
+                    result.put("retryable", rejectionsRetryable);
+                } else {
+                    result.put("success", true);
+                    result.put("id", nextServerId++);
+                }
+                results.put(result);
+            }
+
+            if (beforeAnswer != null) {
+                beforeAnswer.run();
+            }
+            JSONObject response = new JSONObject();
+            response.put("success", true);
+            response.put("results", results);
+            callback.onSuccess(response);
+        } catch (JSONException e) {
+            callback.onError("Bad Request - " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.simats.ashasmartcare.services;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.simats.ashasmartcare.models.SyncReport;
+import com.simats.ashasmartcare.models.SyncState;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sync requests against a coordinator whose passes block until released, so
+ * requests can be made while one is running
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncCoordinatorTest {
+    private static final long TIMEOUT_S = 5;
+
+    private final AtomicInteger passes = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private final Semaphore started = new Semaphore(0);
+    private final Semaphore release = new Semaphore(0);
+
+    private final List<SyncPolicy> policies = new ArrayList<>();
+
+    private final SyncCoordinator coordinator = new SyncCoordinator((policy, listener) -> {
+        synchronized (policies) {
+            policies.add(policy);
+        }
+        maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        passes.incrementAndGet();
+        started.release();
+        release.acquire();
+        concurrent.decrementAndGet();
+        return new SyncReport(0, 0, 0, 0, 0, 0, 1, 0);
+    });
+
+    @Test
+    public void requestsDuringAPassMergeIntoOneFollowUp() throws Exception {
+        assertTrue(coordinator.requestSync());
+        assertTrue(started.tryAcquire(TIMEOUT_S, TimeUnit.SECONDS));
+
+        // Network flaps, the worker taps Sync Now, the app comes back
+        for (int i = 0; i < 5; i++) {
+            assertFalse(coordinator.requestSync());
+        }
+        release.release();
+
+        assertTrue(started.tryAcquire(TIMEOUT_S, TimeUnit.SECONDS));
+        release.release();
+        awaitIdle();
+
+        assertEquals(2, passes.get());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    public void requestAfterIdleStartsANewPass() throws Exception {
+        release.release(2);
+        assertTrue(coordinator.requestSync());
+        awaitIdle();
+        assertTrue(coordinator.requestSync());
+        awaitIdle();
+
+        assertEquals(2, passes.get());
+    }
+
+    @Test
+    public void followUpUploadsAsMuchAsTheWidestMergedRequest() throws Exception {
+        assertTrue(coordinator.requestSync(SyncPolicy.HIGH_RISK));
+        assertTrue(started.tryAcquire(TIMEOUT_S, TimeUnit.SECONDS));
+
+        // A background job on mobile data, then the worker taps Sync Now,
+        // then another high-risk save
+        assertFalse(coordinator.requestSync(SyncPolicy.RECENT));
+        assertFalse(coordinator.requestSync(SyncPolicy.ALL));
+        assertFalse(coordinator.requestSync(SyncPolicy.HIGH_RISK));
+        release.release(2);
+        awaitIdle();
+
+        synchronized (policies) {
+            assertEquals(Arrays.asList(SyncPolicy.HIGH_RISK, SyncPolicy.ALL), policies);
+        }
+    }
+
+    @Test
+    public void stateIsPublishedInOrder() throws Exception {
+        List<SyncState> states = new ArrayList<>();
+        CountDownLatch idle = new CountDownLatch(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> coordinator.getState().observeForever(
+                state -> {
+                    states.add(state);
+                    if (states.size() > 1 && !state.isRunning()) {
+                        idle.countDown();
+                    }
+                }));
+
+        coordinator.requestSync();
+        assertTrue(started.tryAcquire(TIMEOUT_S, TimeUnit.SECONDS));
+        coordinator.requestSync();
+        release.release(2);
+        assertTrue(idle.await(TIMEOUT_S, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+
+        // Initial idle, running, follow-up queued, ..., idle with a report
+        assertFalse(states.get(0).isRunning());
+        assertTrue(states.get(1).isRunning());
+        assertTrue(states.get(2).isFollowUpQueued());
+        SyncState last = states.get(states.size() - 1);
+        assertFalse(last.isRunning());
+        assertNotNull(last.getLastReport());
+        assertTrue(last.getLastFinishedMillis() > 0);
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_S);
+        while (coordinator.isRunning()) {
+            assertTrue("Sync did not finish", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -16,6 +16,7 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.simats.ashasmartcare.adapters.HighRiskAlertAdapter;
 import com.simats.ashasmartcare.database.DatabaseHelper;
 import com.simats.ashasmartcare.models.HighRiskAlert;
+import com.simats.ashasmartcare.models.LatestVitals;
 import com.simats.ashasmartcare.models.Patient;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.utils.NetworkUtils;
@@ -28,6 +29,8 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AIInsightsActivity extends AppCompatActivity {
 
@@ -82,14 +85,87 @@ public class AIInsightsActivity extends AppCompatActivity {
             // ONLINE: Fetch insights from backend
             fetchInsightsFromBackend();
         } else {
-            // OFFLINE: No data available
-            progressBar.setVisibility(View.GONE);
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load insights.", Toast.LENGTH_LONG).show();
-            tvAnalysisText.setText("Analyzing 0 patient records. Found 0 priority alerts.");
-            alertAdapter.notifyDataSetChanged();
+            // OFFLINE: Analyze local patients and their cached latest vitals
+            analyzeLocalRecords();
         }
     }
 
+    /**
+     * Offline insights: locally stored patients that are flagged high risk or
+     * whose latest cached vitals are out of range
+     */
+    private void analyzeLocalRecords() {
+        new Thread(() -> {
+            List<Patient> patients = dbHelper.getAllPatients();
+            Map<Long, LatestVitals> vitalsByPatient = dbHelper.getLatestVitalsByPatient();
+            Map<Long, Set<String>> reviewedKeys = dbHelper.getReviewedAlertKeys();
+            List<HighRiskAlert> alerts = new ArrayList<>();
+
+            for (Patient patient : patients) {
+                LatestVitals vitals = vitalsByPatient.get(patient.getLocalId());
+                String reason = vitals != null ? vitalsConcern(vitals.getRecord()) : null;
+                if (reason == null && patient.isHighRisk()) {
+                    reason = patient.getHighRiskReason();
+                    if (reason == null || reason.isEmpty()) {
+                        reason = "High Risk Patient Flagged";
+                    } else if (reason.length() > 30 && reason.contains(",")) {
+                        reason = reason.split(",")[0] + "...";
+                    }
+                }
+                if (reason == null) {
+                    continue;
+                }
+
+                long patientId = patient.getServerId() > 0 ? patient.getServerId() : patient.getLocalId();
+                HighRiskAlert alert = new HighRiskAlert(patientId, patient.getName(), patient.getAddress(), reason);
+                Set<String> patientReviewed = reviewedKeys.get(alert.getPatientId());
+                alert.setReviewed(patientReviewed != null && patientReviewed.contains(alert.getReviewKey()));
+                alerts.add(alert);
+            }
+
+            runOnUiThread(() -> {
+                progressBar.setVisibility(View.GONE);
+                alertList.clear();
+                alertList.addAll(alerts);
+                tvAnalysisText.setText("Analyzing " + patients.size() + " patient records (offline). Found "
+                        + alertList.size() + " priority alerts.");
+                alertAdapter.notifyDataSetChanged();
+            });
+        }).start();
+    }
+
+    /**
+     * The first out-of-range reading in a vitals record, or null
+     */
+    private static String vitalsConcern(JSONObject record) {
+        String bp = record.optString("blood_pressure", "");
+        String[] bpParts = bp.split("/");
+        if (bpParts.length == 2) {
+            try {
+                int systolic = Integer.parseInt(bpParts[0].trim());
+                int diastolic = Integer.parseInt(bpParts[1].trim());
+                if (systolic >= 140 || diastolic >= 90) {
+                    return "High BP: " + bp;
+                }
+            } catch (NumberFormatException e) {
+                // Not a reading
+            }
+        }
+        double hb = record.optDouble("hemoglobin", 0);
+        if (hb > 0 && hb < 11.0) {
+            return "Low Hemoglobin: " + hb + " g/dL";
+        }
+        double muac = record.optDouble("muac", 0);
+        if (muac > 0 && muac < 12.5) {
+            return "Severe Malnutrition (MUAC " + muac + " cm)";
+        }
+        double sugar = record.optDouble("sugar_level", 0);
+        if (sugar >= 200) {
+            return "High Blood Sugar: " + (int) sugar + " mg/dL";
+        }
+        return null;
+    }
+
     private void fetchInsightsFromBackend() {
         String ashaId = String.valueOf(sessionManager.getUserId());
 
@@ -108,6 +184,7 @@ public class AIInsightsActivity extends AppCompatActivity {
                                 : response.getJSONArray("data");
                         alertList.clear();
                         int totalPatients = patientsArray.length();
+                        java.util.Map<Long, java.util.Set<String>> reviewedKeys = dbHelper.getReviewedAlertKeys();
 
                         // Analyze high-risk patients
                         for (int i = 0; i < patientsArray.length(); i++) {
@@ -125,7 +202,9 @@ public class AIInsightsActivity extends AppCompatActivity {
                                         reason);
 
                                 // Check if this alert was already reviewed locally
-                                alert.setReviewed(dbHelper.isAlertReviewed(alert.getPatientId(), alert.getAlertType()));
+                                java.util.Set<String> patientReviewed = reviewedKeys.get(alert.getPatientId());
+                                alert.setReviewed(patientReviewed != null
+                                        && patientReviewed.contains(alert.getReviewKey()));
 
                                 alertList.add(alert);
                             }
@@ -19,6 +19,7 @@ import com.simats.ashasmartcare.database.DatabaseHelper;
 import com.simats.ashasmartcare.models.ChildGrowth;
 import com.simats.ashasmartcare.models.Patient;
 import com.simats.ashasmartcare.services.NetworkMonitorService;
+import com.simats.ashasmartcare.services.SyncScheduler;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 
 import java.text.SimpleDateFormat;
@@ -310,6 +311,10 @@ public class AddChildGrowthActivity extends AppCompatActivity {
         showLoading(false);
 
         if (result != -1) {
+            if (isHighRisk) {
+                // Saved offline; upload it as soon as there is a network
+                SyncScheduler.requestHighRiskSync(this);
+            }
             String message = isEditMode ? "Record updated" : "Record saved";
             if ("PENDING".equals(growth.getSyncStatus())) {
                 message += " (will sync when online)";
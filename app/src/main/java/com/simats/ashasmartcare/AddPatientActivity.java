@@ -23,7 +23,12 @@ import androidx.cardview.widget.CardView;
 
 import com.google.android.material.chip.Chip;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.DbWriteExecutor;
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PatientRegistration;
 import com.simats.ashasmartcare.services.NetworkMonitorService;
+import com.simats.ashasmartcare.services.SyncScheduler;
+import com.simats.ashasmartcare.utils.DateTimeUtils;
 import com.simats.ashasmartcare.utils.SessionManager;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.utils.NetworkUtils;
@@ -468,12 +473,8 @@ public class AddPatientActivity extends AppCompatActivity {
                     ? spinnerBloodGroup.getSelectedItem().toString()
                     : null;
 
-            // Get current user's phone
-            String ashaPhone = sessionManager.getUserPhone();
-
             // Get current date
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            String currentDate = sdf.format(Calendar.getInstance().getTime());
+            String currentDate = DateTimeUtils.formatTimestamp(System.currentTimeMillis());
 
             // Calculate High Risk Status
             boolean isHighRisk = false;
@@ -563,26 +564,50 @@ public class AddPatientActivity extends AppCompatActivity {
             } else {
                 // OFFLINE: Save to local database + sync queue
                 Log.d(TAG, "OFFLINE MODE: Saving to local database with sync queue");
-                long patientId = dbHelper.addPatient(name, age, gender, selectedCategory, address,
-                        phone, abhaId, bloodGroup, ashaPhone, currentDate, isHighRisk, highRiskReason.toString(),
-                        true, patientData.toString());
-
-                if (patientId > 0) {
-                    // Save category data locally with sync queue
-                    if ("Pregnant Woman".equals(selectedCategory)) {
-                        savePregnancyData(patientId, true, getPregnancyDataJson(-1).toString());
-                    } else if ("Child (0-5 years)".equals(selectedCategory)) {
-                        saveChildData(patientId, true, getChildDataJson(-1).toString());
-                    } else if ("General Adult".equals(selectedCategory)) {
-                        saveGeneralVisitData(patientId, true, getGeneralVisitDataJson(-1).toString());
-                    }
-
-                    Toast.makeText(this, "⚠️ Offline Mode\nPatient saved locally. Will sync when online.",
-                            Toast.LENGTH_LONG).show();
-                    finish();
-                } else {
-                    Toast.makeText(this, "Failed to save patient locally", Toast.LENGTH_SHORT).show();
+                Patient patient = new Patient();
+                patient.setName(name);
+                patient.setAge(age);
+                patient.setGender(gender);
+                patient.setCategory(selectedCategory);
+                patient.setAddress(address);
+                patient.setPhone(phone);
+                patient.setAbhaId(abhaId);
+                patient.setBloodGroup(bloodGroup);
+                patient.setHighRisk(isHighRisk);
+                patient.setHighRiskReason(highRiskReason.toString());
+                patient.setCreatedAt(currentDate);
+
+                // Collect the category visit on the UI thread, then write the whole
+                // registration in one transaction on the DB writer thread
+                PatientRegistration registration = new PatientRegistration(patient, patientData.toString());
+                if ("Pregnant Woman".equals(selectedCategory)) {
+                    addPregnancyData(registration, getPregnancyDataJson(-1).toString());
+                } else if ("Child (0-5 years)".equals(selectedCategory)) {
+                    addChildData(registration, getChildDataJson(-1).toString());
+                } else if ("General Adult".equals(selectedCategory)) {
+                    addGeneralVisitData(registration, getGeneralVisitDataJson(-1).toString());
                 }
+
+                dbHelper.getWriteExecutor().submit(db -> db.registerPatient(registration),
+                        new DbWriteExecutor.WriteCallback<Long>() {
+                            @Override
+                            public void onSuccess(Long patientId) {
+                                if (patient.isHighRisk()) {
+                                    SyncScheduler.requestHighRiskSync(AddPatientActivity.this);
+                                }
+                                Toast.makeText(AddPatientActivity.this,
+                                        "⚠️ Offline Mode\nPatient saved locally. Will sync when online.",
+                                        Toast.LENGTH_LONG).show();
+                                finish();
+                            }
+
+                            @Override
+                            public void onError(Exception e) {
+                                Log.e(TAG, "Offline registration failed", e);
+                                Toast.makeText(AddPatientActivity.this, "Failed to save patient locally",
+                                        Toast.LENGTH_SHORT).show();
+                            }
+                        });
             }
 
         } catch (Exception e) {
@@ -659,7 +684,7 @@ public class AddPatientActivity extends AppCompatActivity {
         }
     }
 
-    private void savePregnancyData(long patientId, boolean shouldAddToSyncQueue, String dataJson) {
+    private void addPregnancyData(PatientRegistration registration, String dataJson) {
         try {
             String lmpDate = etLmpDate.getText().toString().trim();
             String edd = tvEdd.getText().toString().trim();
@@ -692,17 +717,17 @@ public class AddPatientActivity extends AppCompatActivity {
 
             String nextVisitDate = etNextVisitDate.getText().toString().trim();
 
-            // Insert into pregnancy_visits table
-            dbHelper.addPregnancyVisit(patientId, lmpDate, edd, bpSys + "/" + bpDia,
+            // Saved to pregnancy_visits with the patient
+            registration.setPregnancyVisit(lmpDate, edd, bpSys + "/" + bpDia,
                     weight, hemoglobin, dangerSigns.toString(),
-                    medicines.toString(), nextVisitDate, shouldAddToSyncQueue, dataJson);
+                    medicines.toString(), nextVisitDate, dataJson);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void saveChildData(long patientId, boolean shouldAddToSyncQueue, String dataJson) {
+    private void addChildData(PatientRegistration registration, String dataJson) {
         try {
             String weight = etChildWeight.getText().toString().trim();
             String height = etChildHeight.getText().toString().trim();
@@ -734,17 +759,17 @@ public class AddPatientActivity extends AppCompatActivity {
             String lastVaccine = spinnerLastVaccine.getSelectedItem().toString();
             String nextVaccineDate = etNextVaccineDate.getText().toString().trim();
 
-            // Insert into child_growth table
-            dbHelper.addChildGrowth(patientId, weight, height, muac, temperature,
+            // Saved to child_growth with the patient
+            registration.setChildGrowth(weight, height, muac, temperature,
                     breastfeeding, complementaryFeeding, appetite,
-                    symptoms.toString(), lastVaccine, nextVaccineDate, shouldAddToSyncQueue, dataJson);
+                    symptoms.toString(), lastVaccine, nextVaccineDate, dataJson);
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private void saveGeneralVisitData(long patientId, boolean shouldAddToSyncQueue, String dataJson) {
+    private void addGeneralVisitData(PatientRegistration registration, String dataJson) {
         try {
             String bpSys = etGeneralBpSystolic.getText().toString().trim();
             String bpDia = etGeneralBpDiastolic.getText().toString().trim();
@@ -778,10 +803,10 @@ public class AddPatientActivity extends AppCompatActivity {
             String referral = switchReferral.isChecked() ? "Yes" : "No";
             String followUpDate = etFollowUpDate.getText().toString().trim();
 
-            // Insert into visits table - online-first: skip queue when online
-            dbHelper.addGeneralVisit(patientId, bpSys + "/" + bpDia, weight, sugar,
+            // Saved to visits with the patient
+            registration.setGeneralVisit(bpSys + "/" + bpDia, weight, sugar,
                     symptoms.toString(), tobacco, alcohol, physicalActivity,
-                    referral, followUpDate, shouldAddToSyncQueue, dataJson);
+                    referral, followUpDate, dataJson);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -1038,8 +1063,7 @@ public class AddPatientActivity extends AppCompatActivity {
     }
 
     private String getCurrentTimestamp() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date());
+        return DateTimeUtils.formatTimestamp(System.currentTimeMillis());
     }
 
     /**
@@ -19,6 +19,7 @@ import com.simats.ashasmartcare.database.DatabaseHelper;
 import com.simats.ashasmartcare.models.Patient;
 import com.simats.ashasmartcare.models.PregnancyVisit;
 import com.simats.ashasmartcare.services.NetworkMonitorService;
+import com.simats.ashasmartcare.services.SyncScheduler;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 import com.simats.ashasmartcare.utils.SessionManager;
@@ -338,6 +339,10 @@ public class AddPregnancyVisitActivity extends AppCompatActivity {
             if (changed) {
                 dbHelper.updatePatient(patient);
             }
+            if ("PENDING".equals(visit.getSyncStatus())) {
+                // Saved offline; upload it as soon as there is a network
+                SyncScheduler.requestHighRiskSync(this);
+            }
         }
     }
 
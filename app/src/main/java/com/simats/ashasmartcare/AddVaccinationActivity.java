@@ -357,9 +357,18 @@ public class AddVaccinationActivity extends AppCompatActivity {
     }
 
     private void saveToLocalOffline() {
-        // Save to local database with sync_pending status for later sync
+        // Save to local database with sync_pending status for later sync. The
+        // screen works with the server id; records carry the local one.
+        patient = dbHelper.getPatientByServerId((int) patientId);
+        if (patient == null) {
+            showLoading(false);
+            Toast.makeText(this, "Patient is not on this device yet. Connect to the internet to save.",
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+
         Vaccination vaccination = new Vaccination();
-        vaccination.setPatientId(patientId);
+        vaccination.setPatientId(patient.getLocalId());
         vaccination.setVaccineName(spinnerVaccine.getSelectedItem().toString());
         vaccination.setScheduledDate(dbDateFormat.format(scheduledCalendar.getTime()));
         
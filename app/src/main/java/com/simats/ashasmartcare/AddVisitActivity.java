@@ -96,7 +96,8 @@ public class AddVisitActivity extends AppCompatActivity {
         sessionManager = SessionManager.getInstance(this);
         apiHelper = ApiHelper.getInstance(this);
 
-        patient = dbHelper.getPatientById(patientId);
+        // patient_id is the server id; null until the patient is on this device
+        patient = dbHelper.getPatientByServerId((int) patientId);
 
         // Set next visit to 1 week later by default
         nextVisitCalendar.add(Calendar.DAY_OF_MONTH, 7);
@@ -331,6 +332,15 @@ public class AddVisitActivity extends AppCompatActivity {
     }
 
     private void saveLocally(Visit visit, String syncStatus) {
+        // The screen works with the server id; records carry the local one.
+        if (patient == null) {
+            showLoading(false);
+            Toast.makeText(this, "Patient is not on this device yet. Connect to the internet to save.",
+                    Toast.LENGTH_LONG).show();
+            return;
+        }
+        visit.setPatientId(patient.getLocalId());
+        visit.setPatientServerId(patient.getServerId());
         visit.setSyncStatus(syncStatus);
 
         long id;
@@ -6,10 +6,12 @@ import android.content.Context;
 import com.android.volley.RequestQueue;
 import com.android.volley.toolbox.Volley;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.services.SyncScheduler;
 
 /**
  * Application class for ASHA Healthcare App
- * Initializes global resources like Volley RequestQueue and Database
+ * Initializes global resources like Volley RequestQueue and Database, and
+ * schedules background sync
  */
 public class AshaApplication extends Application {
 
@@ -21,6 +23,7 @@ public class AshaApplication extends Application {
     public void onCreate() {
         super.onCreate();
         instance = this;
+        SyncScheduler.schedulePeriodic(this);
     }
 
     public static synchronized AshaApplication getInstance() {
@@ -83,12 +83,21 @@ public class PatientAlertsActivity extends BaseActivity implements PatientAdapte
             // ONLINE: Fetch from backend API
             fetchHighRiskPatientsFromBackend();
         } else {
-            // OFFLINE: No data available
+            // OFFLINE: Show patients with locally recorded alerts (single indexed query)
             progressBar.setVisibility(View.GONE);
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load alerts.", Toast.LENGTH_LONG).show();
-            tvAlertCount.setText("0 high-risk patients");
-            recyclerView.setVisibility(View.GONE);
-            layoutEmpty.setVisibility(View.VISIBLE);
+            highRiskPatients.addAll(dbHelper.getPatientsWithActiveAlerts());
+            tvAlertCount.setText(highRiskPatients.size() + " high-risk patients");
+            adapter.notifyDataSetChanged();
+
+            if (highRiskPatients.isEmpty()) {
+                Toast.makeText(this, "⚠️ No internet connection. Showing offline alerts only.", Toast.LENGTH_LONG)
+                        .show();
+                recyclerView.setVisibility(View.GONE);
+                layoutEmpty.setVisibility(View.VISIBLE);
+            } else {
+                recyclerView.setVisibility(View.VISIBLE);
+                layoutEmpty.setVisibility(View.GONE);
+            }
         }
     }
 
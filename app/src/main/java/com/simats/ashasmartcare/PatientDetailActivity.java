@@ -11,6 +11,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.utils.Constants;
 
 public class PatientDetailActivity extends AppCompatActivity {
 
@@ -109,12 +110,10 @@ public class PatientDetailActivity extends AppCompatActivity {
             setDetailValue(itemCategory, patient.getCategory() != null ? patient.getCategory() : "General");
 
             // Hide/Show actions based on category
-            if (!"Pregnant Woman".equalsIgnoreCase(patient.getCategory())
-                    && !"Pregnant".equalsIgnoreCase(patient.getCategory())) {
+            if (patient.getCategoryCode() != Constants.CATEGORY_CODE_PREGNANT) {
                 actionPregnancyVisits.setVisibility(View.GONE);
             }
-            if (!"Child".equalsIgnoreCase(patient.getCategory())
-                    && !"Child (0-5 years)".equalsIgnoreCase(patient.getCategory())) {
+            if (patient.getCategoryCode() != Constants.CATEGORY_CODE_CHILD) {
                 actionChildGrowth.setVisibility(View.GONE);
                 actionVaccinations.setVisibility(View.GONE);
             }
@@ -12,6 +12,7 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -21,7 +22,10 @@ import com.android.volley.VolleyError;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.simats.ashasmartcare.adapters.PatientAdapter;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.DbWriteExecutor;
+import com.simats.ashasmartcare.database.PatientPager;
 import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.UpsertReport;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 import com.simats.ashasmartcare.utils.SessionManager;
@@ -37,7 +41,6 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
 
     private RecyclerView recyclerView;
     private PatientAdapter adapter;
-    private List<Patient> patientList;
     private List<Patient> filteredList;
     private EditText etSearch;
     private ImageView ivBack;
@@ -51,6 +54,12 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
     private ApiHelper apiHelper;
     private SessionManager sessionManager;
 
+    // Patients saved on this device, refreshed from the server when online
+    // and bound page by page
+    private static final int PAGE_SIZE = 50;
+    private PatientPager localPager;
+    private boolean loadingPage;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -76,14 +85,24 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
         apiHelper = ApiHelper.getInstance(this);
         sessionManager = SessionManager.getInstance(this);
 
-        patientList = new ArrayList<>();
         filteredList = new ArrayList<>();
     }
 
     private void setupRecyclerView() {
         adapter = new PatientAdapter(this, filteredList, this);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
+
+        // Fetch the next local page as the list nears its end
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_SIZE / 2) {
+                    loadNextLocalPage();
+                }
+            }
+        });
     }
 
     private void setupListeners() {
@@ -114,18 +133,59 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
         showLoading(true);
 
         if (NetworkUtils.isNetworkAvailable(this)) {
-            // ONLINE: Fetch from backend API only
+            // ONLINE: Store the server's list, then show it from the device
             fetchPatientsFromServer();
         } else {
-            // OFFLINE: Show no internet message
+            // OFFLINE: Show the patients saved on this device
             showLoading(false);
             swipeRefresh.setRefreshing(false);
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load patients.", Toast.LENGTH_LONG).show();
-            patientList.clear();
-            updateUI();
+            Toast.makeText(this, "⚠️ No internet connection. Showing patients saved on this device.",
+                    Toast.LENGTH_LONG).show();
+            filterPatients(etSearch.getText().toString());
         }
     }
 
+    /**
+     * Restart the local list from its first page
+     */
+    private void startLocalPaging() {
+        localPager = dbHelper.newPatientPager(PatientPager.Sort.NAME, PAGE_SIZE);
+        loadingPage = false;
+        filteredList.clear();
+        adapter.notifyDataSetChanged();
+        new Thread(() -> {
+            int total = dbHelper.getDashboardStats().getTotalPatients();
+            runOnUiThread(() -> tvTotalPatients.setText(String.format("Total: %d patients", total)));
+        }).start();
+        loadNextLocalPage();
+    }
+
+    private void loadNextLocalPage() {
+        PatientPager pager = localPager;
+        if (pager == null || loadingPage || !pager.hasMore()) {
+            return;
+        }
+        loadingPage = true;
+        new Thread(() -> {
+            List<Patient> page = pager.nextPage();
+            runOnUiThread(() -> {
+                if (pager != localPager) {
+                    return; // Search changed while this page was loading
+                }
+                loadingPage = false;
+                int start = filteredList.size();
+                filteredList.addAll(page);
+                adapter.notifyItemRangeInserted(start, page.size());
+                showLocalEmptyState();
+            });
+        }).start();
+    }
+
+    private void showLocalEmptyState() {
+        recyclerView.setVisibility(filteredList.isEmpty() ? View.GONE : View.VISIBLE);
+        layoutEmpty.setVisibility(filteredList.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
     private void fetchPatientsFromServer() {
         String ashaId = String.valueOf(sessionManager.getUserId());
         
@@ -139,83 +199,77 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
                     
                     if (isSuccess) {
                         JSONArray patientsArray = response.getJSONArray("patients");
-                        patientList.clear();
+                        List<Patient> fetched = new ArrayList<>();
                         
                         for (int i = 0; i < patientsArray.length(); i++) {
                             JSONObject patientObj = patientsArray.getJSONObject(i);
-                            Patient patient = parsePatientFromJson(patientObj);
-                            patientList.add(patient);
-                            // ONLINE MODE: NO local database storage
+                            fetched.add(Patient.fromServerJson(patientObj));
                         }
-                        
-                        updateUI();
-                    } else {
-                        // Backend error
-                        runOnUiThread(() -> {
-                            Toast.makeText(PatientListActivity.this, "Failed to load patients", Toast.LENGTH_SHORT).show();
-                            patientList.clear();
-                            updateUI();
-                        });
+                        // Keep the list on the device, then list it from there
+                        storeFetchedPatients(fetched);
+                        return;
                     }
+                    // Backend error
+                    runOnUiThread(() -> showLocalAfterError("Failed to load patients"));
                 } catch (JSONException e) {
                     e.printStackTrace();
-                    runOnUiThread(() -> {
-                        Toast.makeText(PatientListActivity.this, "Error parsing data", Toast.LENGTH_SHORT).show();
-                        patientList.clear();
-                        updateUI();
-                    });
+                    runOnUiThread(() -> showLocalAfterError("Error parsing data"));
                 }
-                showLoading(false);
-                swipeRefresh.setRefreshing(false);
             }
 
             @Override
             public void onError(String error) {
-                showLoading(false);
-                swipeRefresh.setRefreshing(false);
-                runOnUiThread(() -> {
-                    Toast.makeText(PatientListActivity.this, "Network error: " + error, Toast.LENGTH_LONG).show();
-                    patientList.clear();
-                    updateUI();
-                });
+                runOnUiThread(() -> showLocalAfterError("Network error: " + error));
             }
         });
     }
 
-    private void updateUI() {
-        filteredList.clear();
-        filteredList.addAll(patientList);
-        adapter.notifyDataSetChanged();
+    private void storeFetchedPatients(List<Patient> fetched) {
+        dbHelper.getWriteExecutor().submitUngrouped(db -> db.upsertServerPatients(fetched),
+                new DbWriteExecutor.WriteCallback<UpsertReport>() {
+                    @Override
+                    public void onSuccess(UpsertReport report) {
+                        showLoading(false);
+                        swipeRefresh.setRefreshing(false);
+                        filterPatients(etSearch.getText().toString());
+                    }
 
-        tvTotalPatients.setText(String.format("Total: %d patients", patientList.size()));
+                    @Override
+                    public void onError(Exception e) {
+                        showLocalAfterError("Could not save patients: " + e.getMessage());
+                    }
+                });
+    }
 
-        if (patientList.isEmpty()) {
-            recyclerView.setVisibility(View.GONE);
-            layoutEmpty.setVisibility(View.VISIBLE);
-        } else {
-            recyclerView.setVisibility(View.VISIBLE);
-            layoutEmpty.setVisibility(View.GONE);
-        }
+    /**
+     * Report a failed refresh and fall back to the patients already saved
+     */
+    private void showLocalAfterError(String message) {
+        showLoading(false);
+        swipeRefresh.setRefreshing(false);
+        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+        filterPatients(etSearch.getText().toString());
     }
 
     private void filterPatients(String query) {
-        filteredList.clear();
-        
-        if (query.isEmpty()) {
-            filteredList.addAll(patientList);
-        } else {
-            String lowerQuery = query.toLowerCase();
-            for (Patient patient : patientList) {
-                if (patient.getName().toLowerCase().contains(lowerQuery) ||
-                    patient.getPhone().contains(query) ||
-                    (patient.getAddress() != null && patient.getAddress().toLowerCase().contains(lowerQuery))) {
-                    filteredList.add(patient);
-                }
-            }
+        if (query.trim().isEmpty()) {
+            startLocalPaging();
+            return;
         }
-        
-        adapter.notifyDataSetChanged();
-        tvTotalPatients.setText(String.format("Showing: %d patients", filteredList.size()));
+        localPager = null;
+        new Thread(() -> {
+            List<Patient> results = dbHelper.searchPatients(query);
+            runOnUiThread(() -> {
+                if (!query.equals(etSearch.getText().toString())) {
+                    return; // A newer keystroke owns the list
+                }
+                filteredList.clear();
+                filteredList.addAll(results);
+                adapter.notifyDataSetChanged();
+                tvTotalPatients.setText(String.format("Showing: %d patients", filteredList.size()));
+                showLocalEmptyState();
+            });
+        }).start();
     }
 
     private void refreshPatients() {
@@ -235,23 +289,6 @@ public class PatientListActivity extends AppCompatActivity implements PatientAda
         }
     }
 
-    private Patient parsePatientFromJson(JSONObject obj) throws JSONException {
-        Patient patient = new Patient();
-        patient.setServerId(obj.optInt("id", 0));
-        patient.setName(obj.optString("name", ""));
-        patient.setAge(obj.optInt("age", 0));
-        patient.setGender(obj.optString("gender", ""));
-        patient.setPhone(obj.optString("phone", ""));
-        patient.setAddress(obj.optString("address", ""));
-        patient.setCategory(obj.optString("category", ""));
-        patient.setBloodGroup(obj.optString("blood_group", ""));
-        patient.setMedicalHistory(obj.optString("medical_history", ""));
-        patient.setAshaId(obj.optString("asha_id", ""));
-        patient.setRegistrationDate(obj.optString("registration_date", ""));
-        patient.setSyncStatus("SYNCED");
-        return patient;
-    }
-
     @Override
     public void onPatientClick(Patient patient) {
         Intent intent = new Intent(this, PatientProfileActivity.class);
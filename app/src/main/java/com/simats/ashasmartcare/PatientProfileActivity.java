@@ -18,8 +18,10 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.android.volley.VolleyError;
 import com.google.android.material.tabs.TabLayout;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.models.LatestVitals;
 import com.simats.ashasmartcare.models.Patient;
 import com.simats.ashasmartcare.network.ApiHelper;
+import com.simats.ashasmartcare.utils.Constants;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 
 import org.json.JSONObject;
@@ -64,7 +66,7 @@ public class PatientProfileActivity extends AppCompatActivity {
     private com.simats.ashasmartcare.utils.SessionManager sessionManager;
     private Patient patient;
     private int patientId;
-    private String patientCategory = "";
+    private int patientCategoryCode = Constants.CATEGORY_CODE_UNKNOWN;
     private int currentTab = 0;
     private JSONObject categoryData = null; // Store pregnancy/child/general data for next_visit_date
 
@@ -219,8 +221,8 @@ public class PatientProfileActivity extends AppCompatActivity {
                 }
 
                 // Check category to determine what to show
-                String category = patientCategory != null ? patientCategory : "";
-                if ("General".equalsIgnoreCase(category) || category.isEmpty()) {
+                if (patientCategoryCode == Constants.CATEGORY_CODE_GENERAL
+                        || patientCategoryCode == Constants.CATEGORY_CODE_UNKNOWN) {
                     loadHealthHistory(); // Show health history for general adults
                 } else {
                     loadGrowthView(); // Show growth for pregnant/child
@@ -232,7 +234,7 @@ public class PatientProfileActivity extends AppCompatActivity {
     private void loadPatientData() {
         // Check internet connection first
         if (!NetworkUtils.isNetworkAvailable(this)) {
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load patient data.", Toast.LENGTH_LONG).show();
+            loadPatientFromLocal();
             return;
         }
 
@@ -319,27 +321,29 @@ public class PatientProfileActivity extends AppCompatActivity {
                                 // Store category BEFORE runOnUiThread
                                 // Handle empty category - infer from age if needed
                                 String rawCategory = patientObj.optString("category", "");
+                                int categoryCode = Constants.categoryCode(rawCategory);
                                 if (rawCategory == null || rawCategory.trim().isEmpty()) {
                                     int age = patientObj.optInt("age", 0);
                                     String gender = patientObj.optString("gender", "");
 
                                     // Auto-detect category based on age
                                     if (age <= 5) {
-                                        rawCategory = "Child (0-5 years)";
+                                        categoryCode = Constants.CATEGORY_CODE_CHILD;
                                         android.util.Log.w("PatientProfile",
                                                 "Empty category, auto-detected as Child based on age=" + age);
                                     } else if (age >= 15 && age <= 50 && gender.equalsIgnoreCase("Female")) {
-                                        rawCategory = "Pregnant Woman";
+                                        categoryCode = Constants.CATEGORY_CODE_PREGNANT;
                                         android.util.Log.w("PatientProfile",
                                                 "Empty category, auto-detected as Pregnant Woman based on age=" + age
                                                         + ", gender=" + gender);
                                     } else {
-                                        rawCategory = "General";
+                                        categoryCode = Constants.CATEGORY_CODE_GENERAL;
                                         android.util.Log.w("PatientProfile", "Empty category, defaulting to General");
                                     }
                                 }
-                                patientCategory = rawCategory;
-                                android.util.Log.d("PatientProfile", "Category set to: " + patientCategory);
+                                patientCategoryCode = categoryCode;
+                                android.util.Log.d("PatientProfile", "Category set to: "
+                                        + Constants.categoryName(patientCategoryCode));
 
                                 runOnUiThread(() -> {
                                     displayPatientData();
@@ -384,7 +388,7 @@ public class PatientProfileActivity extends AppCompatActivity {
                 patient.getAddress() != null && !patient.getAddress().isEmpty() ? patient.getAddress() : "No address");
 
         // Show/hide tags based on category and high risk status
-        String category = patient.getCategory();
+        int categoryCode = patient.getCategoryCode();
         boolean isHighRisk = patient.isHighRisk();
 
         // High Risk Tag
@@ -395,13 +399,13 @@ public class PatientProfileActivity extends AppCompatActivity {
         }
 
         // Category Tag (Pregnant, Child, etc.)
-        if ("Pregnant Woman".equalsIgnoreCase(category)) {
+        if (categoryCode == Constants.CATEGORY_CODE_PREGNANT) {
             tagPregnant.setVisibility(View.VISIBLE);
             tagPregnant.setText("Pregnant");
-        } else if ("Lactating Mother".equalsIgnoreCase(category)) {
+        } else if (categoryCode == Constants.CATEGORY_CODE_LACTATING) {
             tagPregnant.setVisibility(View.VISIBLE);
             tagPregnant.setText("Lactating");
-        } else if ("Child (0-5 yrs)".equalsIgnoreCase(category)) {
+        } else if (categoryCode == Constants.CATEGORY_CODE_CHILD) {
             tagPregnant.setVisibility(View.VISIBLE);
             tagPregnant.setText("Child");
         } else {
@@ -427,7 +431,7 @@ public class PatientProfileActivity extends AppCompatActivity {
         }
 
         // Update 4th tab label based on category
-        if ("General".equalsIgnoreCase(category) || category == null || category.isEmpty()) {
+        if (categoryCode == Constants.CATEGORY_CODE_GENERAL || categoryCode == Constants.CATEGORY_CODE_UNKNOWN) {
             // For general adults, show "Health History" instead of "Growth"
             tabLayout.getTabAt(3).setText("Health History");
         } else {
@@ -448,186 +452,120 @@ public class PatientProfileActivity extends AppCompatActivity {
     }
 
     private void loadCategorySpecificData() {
-        String category = patientCategory != null ? patientCategory : "";
-
-        // Handle empty category
-        if (category.trim().isEmpty()) {
-            category = "General";
-            android.util.Log.w("PatientProfile", "Category is empty, defaulting to General");
-        }
-
-        android.util.Log.d("PatientProfile", "Loading data for category: " + category);
-
-        if (category.equalsIgnoreCase("Pregnant Woman")) {
-            loadPregnancyData();
-        } else if (category.contains("Child") || category.equalsIgnoreCase("Child (0-5 yrs)")
-                || category.equalsIgnoreCase("Child (0-5 years)")) {
-            loadChildGrowthData();
+        android.util.Log.d("PatientProfile", "Loading data for category: "
+                + Constants.categoryName(patientCategoryCode));
+
+        // Unknown categories get the general adult view
+        if (patientCategoryCode == Constants.CATEGORY_CODE_PREGNANT) {
+            loadLatestVitals("pregnancy.php", DatabaseHelper.TABLE_PREGNANCY_VISITS, "pregnancy data");
+        } else if (patientCategoryCode == Constants.CATEGORY_CODE_CHILD) {
+            loadLatestVitals("child_growth.php", DatabaseHelper.TABLE_CHILD_GROWTH, "child growth data");
         } else {
-            loadGeneralAdultData();
+            loadLatestVitals("general_adult.php", DatabaseHelper.TABLE_VISITS, "health data");
         }
     }
 
-    private void loadPregnancyData() {
-        String endpoint = "pregnancy.php?patient_id=" + patientId;
-
-        android.util.Log.d("PatientProfile", "Loading pregnancy data from: " + endpoint);
-
-        apiHelper.makeGetRequest(endpoint, new ApiHelper.ApiCallback() {
-            @Override
-            public void onSuccess(JSONObject response) {
-                try {
-                    android.util.Log.d("PatientProfile", "Pregnancy response: " + response.toString());
-
-                    if (response.has("success") && response.getBoolean("success") &&
-                            response.has("data") && response.getJSONArray("data").length() > 0) {
-
-                        JSONArray dataArray = response.getJSONArray("data");
-                        JSONObject pregnancyData = dataArray.getJSONObject(0); // Latest record
-
-                        android.util.Log.d("PatientProfile", "Pregnancy data found: " + pregnancyData.toString());
-
-                        // Store category data for upcoming schedule
-                        categoryData = pregnancyData;
-
-                        runOnUiThread(() -> {
-                            displayPregnancyVitals(pregnancyData);
-                            // Load upcoming schedule after category data is set
-                            loadUpcomingSchedule();
-                        });
-                    } else {
-                        android.util.Log.w("PatientProfile", "No pregnancy data in response");
-                        runOnUiThread(() -> {
-                            displayNoVitals("No pregnancy data available");
-                            // Still try to load visits schedule
-                            loadUpcomingSchedule();
-                        });
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    android.util.Log.e("PatientProfile", "Error parsing pregnancy data: " + e.getMessage());
-                    runOnUiThread(() -> displayNoVitals("Error loading pregnancy data"));
+    /**
+     * Show the cached latest vitals straight away, then, when online, refresh
+     * them from the newest server record (data[0]) and cache that
+     */
+    private void loadLatestVitals(String endpoint, String sourceTable, String label) {
+        new Thread(() -> {
+            LatestVitals cached = dbHelper.getLatestVitals(patientId);
+            runOnUiThread(() -> {
+                if (cached != null) {
+                    categoryData = cached.getRecord();
+                    displayVitals(categoryData);
+                } else {
+                    displayNoVitals("No " + label + " available");
                 }
-            }
 
-            @Override
-            public void onError(String error) {
-                android.util.Log.e("PatientProfile", "API Error loading pregnancy data: " + error);
-                runOnUiThread(() -> {
-                    displayNoVitals("No pregnancy data found");
-                    // Still try to load visits schedule
+                if (NetworkUtils.isNetworkAvailable(this)) {
+                    fetchLatestVitals(endpoint, sourceTable);
+                } else {
                     loadUpcomingSchedule();
-                });
-            }
-        });
+                }
+            });
+        }).start();
     }
 
-    private void loadChildGrowthData() {
-        String endpoint = "child_growth.php?patient_id=" + patientId;
-
-        android.util.Log.d("PatientProfile", "Loading child growth data from: " + endpoint);
+    private void fetchLatestVitals(String endpoint, String sourceTable) {
+        android.util.Log.d("PatientProfile", "Loading latest vitals from: " + endpoint);
 
-        apiHelper.makeGetRequest(endpoint, new ApiHelper.ApiCallback() {
+        apiHelper.makeGetRequest(endpoint + "?patient_id=" + patientId, new ApiHelper.ApiCallback() {
             @Override
             public void onSuccess(JSONObject response) {
                 try {
-                    android.util.Log.d("PatientProfile", "Child growth response: " + response.toString());
-
                     if (response.has("success") && response.getBoolean("success") &&
                             response.has("data") && response.getJSONArray("data").length() > 0) {
 
-                        JSONArray dataArray = response.getJSONArray("data");
-                        JSONObject childData = dataArray.getJSONObject(0); // Latest record
-
-                        android.util.Log.d("PatientProfile", "Child growth data found: " + childData.toString());
-
-                        // Store category data for upcoming schedule
-                        categoryData = childData;
+                        JSONObject latest = response.getJSONArray("data").getJSONObject(0); // Latest record
+                        dbHelper.getWriteExecutor().submit(db -> {
+                            db.saveLatestVitals(patientId, sourceTable, recordDate(latest), latest);
+                            return null;
+                        }, null);
 
                         runOnUiThread(() -> {
-                            displayChildGrowthVitals(childData);
-                            // Load upcoming schedule after category data is set
+                            // Store category data for upcoming schedule
+                            categoryData = latest;
+                            displayVitals(latest);
                             loadUpcomingSchedule();
                         });
                     } else {
-                        android.util.Log.w("PatientProfile", "No child growth data in response");
-                        runOnUiThread(() -> {
-                            displayNoVitals("No child growth data available");
-                            // Still try to load visits schedule
-                            loadUpcomingSchedule();
-                        });
+                        android.util.Log.w("PatientProfile", "No vitals in response from " + endpoint);
+                        runOnUiThread(() -> loadUpcomingSchedule());
                     }
                 } catch (Exception e) {
                     e.printStackTrace();
-                    android.util.Log.e("PatientProfile", "Error parsing child data: " + e.getMessage());
-                    runOnUiThread(() -> displayNoVitals("Error loading child data"));
+                    android.util.Log.e("PatientProfile", "Error parsing vitals: " + e.getMessage());
+                    runOnUiThread(() -> loadUpcomingSchedule());
                 }
             }
 
             @Override
             public void onError(String error) {
-                android.util.Log.e("PatientProfile", "API Error loading child data: " + error);
-                runOnUiThread(() -> {
-                    displayNoVitals("No child growth data found");
-                    // Still try to load visits schedule
-                    loadUpcomingSchedule();
-                });
+                // Keep showing the cached vitals
+                android.util.Log.e("PatientProfile", "API Error loading vitals: " + error);
+                runOnUiThread(() -> loadUpcomingSchedule());
             }
         });
     }
 
-    private void loadGeneralAdultData() {
-        String endpoint = "general_adult.php?patient_id=" + patientId;
-
-        android.util.Log.d("PatientProfile", "Loading general adult data from: " + endpoint);
-
-        apiHelper.makeGetRequest(endpoint, new ApiHelper.ApiCallback() {
-            @Override
-            public void onSuccess(JSONObject response) {
-                try {
-                    android.util.Log.d("PatientProfile", "General adult response: " + response.toString());
-
-                    if (response.has("success") && response.getBoolean("success") &&
-                            response.has("data") && response.getJSONArray("data").length() > 0) {
-
-                        JSONArray dataArray = response.getJSONArray("data");
-                        JSONObject generalData = dataArray.getJSONObject(0); // Latest record
-
-                        android.util.Log.d("PatientProfile", "General adult data found: " + generalData.toString());
+    private static String recordDate(JSONObject record) {
+        String date = record.optString("visit_date", record.optString("checkup_date",
+                record.optString("created_at", "")));
+        return date.isEmpty() ? null : date;
+    }
 
-                        // Store category data for upcoming schedule
-                        categoryData = generalData;
+    private void displayVitals(JSONObject data) {
+        if (patientCategoryCode == Constants.CATEGORY_CODE_PREGNANT) {
+            displayPregnancyVitals(data);
+        } else if (patientCategoryCode == Constants.CATEGORY_CODE_CHILD) {
+            displayChildGrowthVitals(data);
+        } else {
+            displayGeneralAdultVitals(data);
+        }
+    }
 
-                        runOnUiThread(() -> {
-                            displayGeneralAdultVitals(generalData);
-                            // Load upcoming schedule after category data is set
-                            loadUpcomingSchedule();
-                        });
-                    } else {
-                        android.util.Log.w("PatientProfile", "No general adult data in response");
-                        runOnUiThread(() -> {
-                            displayNoVitals("No health data available");
-                            // Still try to load visits schedule
-                            loadUpcomingSchedule();
-                        });
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    android.util.Log.e("PatientProfile", "Error parsing general data: " + e.getMessage());
-                    runOnUiThread(() -> displayNoVitals("Error loading health data"));
+    /**
+     * Offline: show the locally stored copy of the patient and its cached
+     * vitals
+     */
+    private void loadPatientFromLocal() {
+        new Thread(() -> {
+            Patient local = dbHelper.getPatientByServerId(patientId);
+            runOnUiThread(() -> {
+                if (local == null) {
+                    Toast.makeText(this, "⚠️ No internet connection. Cannot load patient data.", Toast.LENGTH_LONG)
+                            .show();
+                    return;
                 }
-            }
-
-            @Override
-            public void onError(String error) {
-                android.util.Log.e("PatientProfile", "API Error loading general data: " + error);
-                runOnUiThread(() -> {
-                    displayNoVitals("No health data found");
-                    // Still try to load visits schedule
-                    loadUpcomingSchedule();
-                });
-            }
-        });
+                patient = local;
+                patientCategoryCode = local.getCategoryCode();
+                displayPatientData();
+                loadCategorySpecificData();
+            });
+        }).start();
     }
 
     private void displayPregnancyVitals(JSONObject data) {
@@ -1000,48 +938,17 @@ public class PatientProfileActivity extends AppCompatActivity {
     }
 
     private void loadAlertsView() {
-        // Load and display real-time alerts based on patient vitals
-        try {
-            // Fetch latest vitals to check for alerts
-            String category = patientCategory != null ? patientCategory : "";
-            String endpoint = "";
-
-            if (category.equalsIgnoreCase("Pregnant Woman")) {
-                endpoint = "pregnancy.php?patient_id=" + patientId;
-            } else if (category.contains("Child")) {
-                endpoint = "child_growth.php?patient_id=" + patientId;
-            } else {
-                endpoint = "general_adult.php?patient_id=" + patientId;
-            }
-
-            apiHelper.makeGetRequest(endpoint, new ApiHelper.ApiCallback() {
-                @Override
-                public void onSuccess(JSONObject response) {
-                    try {
-                        if (response.has("data") && response.getJSONArray("data").length() > 0) {
-                            JSONArray dataArray = response.getJSONArray("data");
-                            JSONObject latestData = dataArray.getJSONObject(0);
-
-                            runOnUiThread(() -> displayRealTimeAlerts(latestData));
-                        } else {
-                            runOnUiThread(() -> displayNoAlerts());
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        runOnUiThread(() -> displayNoAlerts());
-                    }
-                }
-
-                @Override
-                public void onError(String error) {
-                    runOnUiThread(() -> displayNoAlerts());
+        // Alerts come from the cached latest vitals, refreshed when the profile loads
+        new Thread(() -> {
+            LatestVitals cached = dbHelper.getLatestVitals(patientId);
+            runOnUiThread(() -> {
+                if (cached != null) {
+                    displayRealTimeAlerts(cached.getRecord());
+                } else {
+                    displayNoAlerts();
                 }
             });
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            displayNoAlerts();
-        }
+        }).start();
     }
 
     private void displayRealTimeAlerts(JSONObject data) {
@@ -1049,10 +956,8 @@ public class PatientProfileActivity extends AppCompatActivity {
             java.util.List<String> activeAlerts = new java.util.ArrayList<>();
             java.util.List<String> resolvedAlerts = new java.util.ArrayList<>();
 
-            String category = patientCategory != null ? patientCategory : "";
-
             // Check for category-specific alerts
-            if (category.equalsIgnoreCase("Pregnant Woman")) {
+            if (patientCategoryCode == Constants.CATEGORY_CODE_PREGNANT) {
                 // Check BP with proper pregnancy limits
                 String bp = data.optString("blood_pressure", "");
                 if (!bp.isEmpty() && !bp.equals("-")) {
@@ -1106,7 +1011,7 @@ public class PatientProfileActivity extends AppCompatActivity {
                     activeAlerts.add("🚨 Danger Signs: " + dangerSigns + "\nImmediate medical attention required");
                 }
 
-            } else if (category.contains("Child")) {
+            } else if (patientCategoryCode == Constants.CATEGORY_CODE_CHILD) {
                 // Check temperature with proper limits for children
                 double temp = data.optDouble("temperature", -1);
                 if (temp > 0) {
@@ -1277,11 +1182,9 @@ public class PatientProfileActivity extends AppCompatActivity {
     }
 
     private void loadGrowthView() {
-        String category = patientCategory != null ? patientCategory : "";
-
-        if (category.equalsIgnoreCase("Pregnant Woman")) {
+        if (patientCategoryCode == Constants.CATEGORY_CODE_PREGNANT) {
             loadPregnancyGrowthTrends();
-        } else if (category.contains("Child")) {
+        } else if (patientCategoryCode == Constants.CATEGORY_CODE_CHILD) {
             loadChildGrowthTrends();
         } else {
             Toast.makeText(this, "Growth tracking not available for this patient category",
@@ -1291,7 +1194,7 @@ public class PatientProfileActivity extends AppCompatActivity {
 
     private void loadUpcomingSchedule() {
         android.util.Log.d("UpcomingSchedule", "=== Loading Upcoming Schedule ===");
-        android.util.Log.d("UpcomingSchedule", "Category: " + patientCategory);
+        android.util.Log.d("UpcomingSchedule", "Category: " + Constants.categoryName(patientCategoryCode));
         android.util.Log.d("UpcomingSchedule", "CategoryData exists: " + (categoryData != null));
 
         // First priority: Show next_visit_date from category data
@@ -1308,9 +1211,9 @@ public class PatientProfileActivity extends AppCompatActivity {
                     // Create visit object from category data
                     JSONObject categoryVisit = new JSONObject();
                     String visitType = "";
-                    if (patientCategory.contains("Pregnant")) {
+                    if (patientCategoryCode == Constants.CATEGORY_CODE_PREGNANT) {
                         visitType = "ANC Check-up";
-                    } else if (patientCategory.contains("Child")) {
+                    } else if (patientCategoryCode == Constants.CATEGORY_CODE_CHILD) {
                         visitType = "Growth Monitoring";
                     } else {
                         visitType = "Follow-up Visit";
@@ -2030,32 +1933,33 @@ public class PatientProfileActivity extends AppCompatActivity {
             apiHelper.deletePatient(patient.getServerId(), new ApiHelper.ApiCallback() {
                 @Override
                 public void onSuccess(JSONObject response) {
-                    deletePatientLocally();
+                    deletePatientLocally(false);
                 }
 
                 @Override
                 public void onError(String error) {
-                    // Mark as deleted locally, will sync later
-                    deletePatientLocally();
+                    // Delete locally; the queued tombstone retries the server delete
+                    deletePatientLocally(true);
                 }
             });
         } else {
-            deletePatientLocally();
+            deletePatientLocally(true);
         }
     }
 
-    private void deletePatientLocally() {
+    private void deletePatientLocally(boolean queueServerDelete) {
         int result = 0;
 
         // Try deleting by server ID first (since patientId from intent is usually
         // server ID)
         if (patientId > 0) {
-            result = dbHelper.deletePatientByServerId(patientId);
+            result = dbHelper.deletePatientByServerId(patientId, queueServerDelete);
         }
 
         // If that failed, try deleting by it as a local ID (just in case)
         if (result <= 0) {
-            result = dbHelper.deletePatient(patientId);
+            result = dbHelper.deletePatients(java.util.Collections.singletonList((long) patientId),
+                    queueServerDelete);
         }
 
         if (result > 0) {
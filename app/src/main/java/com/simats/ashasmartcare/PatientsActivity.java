@@ -14,6 +14,7 @@ import android.widget.Toast;
 
 import com.simats.ashasmartcare.activities.SyncStatusActivity;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -23,9 +24,13 @@ import com.google.android.material.chip.Chip;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.simats.ashasmartcare.adapters.PatientsAdapter;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.DbWriteExecutor;
+import com.simats.ashasmartcare.database.PatientPager;
 import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.UpsertReport;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.services.NetworkMonitorService;
+import com.simats.ashasmartcare.utils.Constants;
 import com.simats.ashasmartcare.utils.SessionManager;
 
 import org.json.JSONArray;
@@ -50,10 +55,15 @@ public class PatientsActivity extends AppCompatActivity {
     private SessionManager sessionManager;
     private ApiHelper apiHelper;
     private PatientsAdapter adapter;
-    private List<Patient> allPatients;
     private List<Patient> filteredPatients;
     private String currentFilter = "all";
 
+    // Patients saved on this device, refreshed from the server when online
+    // and bound page by page
+    private static final int PAGE_SIZE = 50;
+    private PatientPager localPager;
+    private boolean loadingPage;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -100,7 +110,6 @@ public class PatientsActivity extends AppCompatActivity {
         dbHelper = DatabaseHelper.getInstance(this);
         sessionManager = SessionManager.getInstance(this);
         apiHelper = ApiHelper.getInstance(this);
-        allPatients = new ArrayList<>();
         filteredPatients = new ArrayList<>();
     }
 
@@ -111,8 +120,19 @@ public class PatientsActivity extends AppCompatActivity {
             intent.putExtra("patient_id", patient.getServerId());
             startActivity(intent);
         });
-        rvPatients.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        rvPatients.setLayoutManager(layoutManager);
         rvPatients.setAdapter(adapter);
+
+        // Fetch the next local page as the list nears its end
+        rvPatients.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PAGE_SIZE / 2) {
+                    loadNextLocalPage();
+                }
+            }
+        });
     }
 
     private void setupListeners() {
@@ -164,19 +184,88 @@ public class PatientsActivity extends AppCompatActivity {
 
         // Check internet connection
         if (NetworkMonitorService.isNetworkConnected(this)) {
-            // ONLINE: Fetch from backend API only (NO local DB)
+            // ONLINE: Store the server's list, then show it from the device
             fetchPatientsFromBackend();
         } else {
-            // OFFLINE: Show no internet message
+            // OFFLINE: Show the patients saved on this device
             progressBar.setVisibility(View.GONE);
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load patients.", Toast.LENGTH_LONG).show();
-            allPatients.clear();
-            filteredPatients.clear();
-            adapter.notifyDataSetChanged();
-            layoutEmpty.setVisibility(View.VISIBLE);
+            Toast.makeText(this, "⚠️ No internet connection. Showing patients saved on this device.",
+                    Toast.LENGTH_LONG).show();
+            filterPatients();
+        }
+    }
+
+    /**
+     * Restart the local list from its first page for the current filter
+     */
+    private void startLocalPaging() {
+        localPager = dbHelper.newPatientPager(PatientPager.Sort.NAME, PAGE_SIZE, isHighRiskFilter(currentFilter),
+                categoryCodesFor(currentFilter));
+        loadingPage = false;
+        filteredPatients.clear();
+        adapter.notifyDataSetChanged();
+        loadNextLocalPage();
+    }
+
+    private void loadNextLocalPage() {
+        PatientPager pager = localPager;
+        if (pager == null || loadingPage || !pager.hasMore()) {
+            return;
+        }
+        loadingPage = true;
+        new Thread(() -> {
+            List<Patient> page = pager.nextPage();
+            runOnUiThread(() -> {
+                if (pager != localPager) {
+                    return; // Filter changed while this page was loading
+                }
+                loadingPage = false;
+                int start = filteredPatients.size();
+                filteredPatients.addAll(page);
+                adapter.notifyItemRangeInserted(start, page.size());
+                layoutEmpty.setVisibility(filteredPatients.isEmpty() ? View.VISIBLE : View.GONE);
+            });
+        }).start();
+    }
+
+    private void searchLocalPatients(String searchText) {
+        localPager = null;
+        new Thread(() -> {
+            List<Patient> results = dbHelper.searchPatients(searchText, isHighRiskFilter(currentFilter),
+                    categoryCodesFor(currentFilter));
+            runOnUiThread(() -> {
+                if (!searchText.equals(etSearch.getText().toString())) {
+                    return; // A newer keystroke owns the list
+                }
+                filteredPatients.clear();
+                filteredPatients.addAll(results);
+                adapter.notifyDataSetChanged();
+                layoutEmpty.setVisibility(filteredPatients.isEmpty() ? View.VISIBLE : View.GONE);
+            });
+        }).start();
+    }
+
+    /**
+     * Category codes the filter chips select; empty for every category
+     */
+    private static int[] categoryCodesFor(String filter) {
+        switch (filter) {
+            case "pregnant":
+                return new int[] { Constants.CATEGORY_CODE_PREGNANT };
+            case "children":
+                return new int[] { Constants.CATEGORY_CODE_CHILD };
+            default:
+                return new int[0];
         }
     }
 
+    /**
+     * High risk is a flag on any category, not a category of its own
+     */
+    private static boolean isHighRiskFilter(String filter) {
+        return "high_risk".equals(filter);
+    }
+
     private void fetchPatientsFromBackend() {
         String ashaId = String.valueOf(sessionManager.getUserId());
         String apiBaseUrl = sessionManager.getApiBaseUrl();
@@ -196,34 +285,18 @@ public class PatientsActivity extends AppCompatActivity {
                         // Backend returns either "data" or "patients" array
                         JSONArray patientsArray = response.has("patients") ? response.getJSONArray("patients")
                                 : response.getJSONArray("data");
-                        allPatients.clear();
+                        List<Patient> fetched = new ArrayList<>();
 
                         for (int i = 0; i < patientsArray.length(); i++) {
                             JSONObject patientObj = patientsArray.getJSONObject(i);
-                            Patient patient = new Patient();
-                            patient.setServerId(patientObj.getInt("id"));
-                            patient.setName(patientObj.getString("name"));
-                            patient.setAge(patientObj.getInt("age"));
-                            patient.setGender(patientObj.getString("gender"));
-                            patient.setCategory(patientObj.optString("category", "General"));
-                            patient.setAddress(patientObj.optString("address", ""));
-                            patient.setPhone(patientObj.optString("phone", ""));
-                            patient.setHighRisk(patientObj.optInt("is_high_risk", 0) == 1);
-                            patient.setHighRiskReason(patientObj.optString("high_risk_reason", ""));
-                            patient.setSyncStatus("SYNCED"); // Loaded from API
-                            allPatients.add(patient);
-                            // ONLINE MODE: NO local database storage
+                            fetched.add(Patient.fromServerJson(patientObj));
                         }
-
-                        runOnUiThread(() -> {
-                            progressBar.setVisibility(View.GONE);
-                            filterPatients();
-                        });
+                        // Keep the list on the device, then list it from there
+                        storeFetchedPatients(fetched);
                     } else {
                         runOnUiThread(() -> {
                             progressBar.setVisibility(View.GONE);
                             Toast.makeText(PatientsActivity.this, "Failed to load patients", Toast.LENGTH_SHORT).show();
-                            allPatients.clear();
                             filterPatients();
                         });
                     }
@@ -232,7 +305,6 @@ public class PatientsActivity extends AppCompatActivity {
                     runOnUiThread(() -> {
                         progressBar.setVisibility(View.GONE);
                         Toast.makeText(PatientsActivity.this, "Error parsing data", Toast.LENGTH_SHORT).show();
-                        allPatients.clear();
                         filterPatients();
                     });
                 }
@@ -255,62 +327,40 @@ public class PatientsActivity extends AppCompatActivity {
                     }
 
                     Toast.makeText(PatientsActivity.this, detailedMessage, Toast.LENGTH_LONG).show();
-                    allPatients.clear();
                     filterPatients();
-                    layoutEmpty.setVisibility(View.VISIBLE);
                 });
             }
         });
     }
 
-    private void filterPatients() {
-        String searchText = etSearch.getText().toString().toLowerCase().trim();
-        filteredPatients.clear();
-
-        for (Patient patient : allPatients) {
-            // Apply category filter
-            boolean matchesCategory = false;
-            switch (currentFilter) {
-                case "all":
-                    matchesCategory = true;
-                    break;
-                case "pregnant":
-                    matchesCategory = "Pregnant Woman".equalsIgnoreCase(patient.getCategory()) ||
-                            "Pregnant".equalsIgnoreCase(patient.getCategory());
-                    break;
-                case "children":
-                    matchesCategory = "Child (0-5 years)".equalsIgnoreCase(patient.getCategory()) ||
-                            "Child".equalsIgnoreCase(patient.getCategory());
-                    break;
-                case "high_risk":
-                    // Check if patient has high risk indicators
-                    matchesCategory = isHighRisk(patient);
-                    break;
-            }
-
-            // Apply search filter
-            boolean matchesSearch = searchText.isEmpty() ||
-                    patient.getName().toLowerCase().contains(searchText) ||
-                    (patient.getPhone() != null && patient.getPhone().contains(searchText));
-
-            if (matchesCategory && matchesSearch) {
-                filteredPatients.add(patient);
-            }
-        }
+    private void storeFetchedPatients(List<Patient> fetched) {
+        dbHelper.getWriteExecutor().submitUngrouped(db -> db.upsertServerPatients(fetched),
+                new DbWriteExecutor.WriteCallback<UpsertReport>() {
+                    @Override
+                    public void onSuccess(UpsertReport report) {
+                        progressBar.setVisibility(View.GONE);
+                        filterPatients();
+                    }
 
-        // Update UI
-        adapter.notifyDataSetChanged();
-        layoutEmpty.setVisibility(filteredPatients.isEmpty() ? View.VISIBLE : View.GONE);
+                    @Override
+                    public void onError(Exception e) {
+                        progressBar.setVisibility(View.GONE);
+                        Toast.makeText(PatientsActivity.this, "Could not save patients: " + e.getMessage(),
+                                Toast.LENGTH_SHORT).show();
+                        filterPatients();
+                    }
+                });
     }
 
-    private boolean isHighRisk(Patient patient) {
-        // Check if patient is pregnant category (basic high risk indicator)
-        if ("Pregnant Woman".equalsIgnoreCase(patient.getCategory()) ||
-                "Pregnant".equalsIgnoreCase(patient.getCategory())) {
-            return true;
+    private void filterPatients() {
+        String searchText = etSearch.getText().toString();
+
+        // Page through the filter, or run the FTS search within it
+        if (searchText.trim().isEmpty()) {
+            startLocalPaging();
+        } else {
+            searchLocalPatients(searchText);
         }
-        // Additional high risk checks can be added here
-        return false;
     }
 
     @Override
@@ -128,8 +128,12 @@ public class PregnancyListActivity extends AppCompatActivity implements Pregnanc
                             JSONObject obj = visitsArray.getJSONObject(i);
                             PregnancyVisit visit = parseVisitFromJson(obj);
                             pregnancyList.add(visit);
-                            dbHelper.insertOrUpdatePregnancyVisit(visit);
                         }
+                        // Matched on server id, so a refresh updates instead of duplicating;
+                        // stored off the main thread from a copy the screen cannot change
+                        List<PregnancyVisit> fetched = new ArrayList<>(pregnancyList);
+                        dbHelper.getWriteExecutor().submitUngrouped(
+                                db -> db.upsertServerPregnancyVisits(fetched), null);
 
                         updateUI();
                     } else {
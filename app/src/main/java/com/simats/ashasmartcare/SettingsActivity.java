@@ -18,7 +18,7 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.simats.ashasmartcare.activities.HomeActivity;
 import com.simats.ashasmartcare.activities.SyncStatusActivity;
 import com.simats.ashasmartcare.database.DatabaseHelper;
-import com.simats.ashasmartcare.services.SyncService;
+import com.simats.ashasmartcare.services.SyncCoordinator;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 import com.simats.ashasmartcare.utils.SessionManager;
 
@@ -159,9 +159,7 @@ public class SettingsActivity extends AppCompatActivity {
         // Show sync status activity
         startActivity(new Intent(this, SyncStatusActivity.class));
 
-        // Start sync service
-        Intent syncIntent = new Intent(this, SyncService.class);
-        startService(syncIntent);
+        SyncCoordinator.getInstance(this).requestSync();
 
         Toast.makeText(this, "Syncing data...", Toast.LENGTH_SHORT).show();
     }
@@ -16,7 +16,9 @@ import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 import com.google.android.material.chip.Chip;
 import com.simats.ashasmartcare.adapters.VaccinationAdapter;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.DbWriteExecutor;
 import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.UpsertReport;
 import com.simats.ashasmartcare.models.Vaccination;
 import com.simats.ashasmartcare.network.ApiHelper;
 import com.simats.ashasmartcare.utils.NetworkUtils;
@@ -32,6 +34,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class VaccinationListActivity extends AppCompatActivity
         implements VaccinationAdapter.OnVaccinationClickListener {
@@ -130,7 +133,6 @@ public class VaccinationListActivity extends AppCompatActivity
         ProgressBar progressBar = dialogView.findViewById(R.id.progressBarDialog);
         android.widget.TextView tvEmpty = dialogView.findViewById(R.id.tvEmptyDialog);
 
-        List<Patient> allPatients = new ArrayList<>();
         List<Patient> displayPatients = new ArrayList<>();
 
         com.simats.ashasmartcare.adapters.PatientsAdapter patientAdapter = new com.simats.ashasmartcare.adapters.PatientsAdapter(
@@ -160,27 +162,30 @@ public class VaccinationListActivity extends AppCompatActivity
 
                     if (isSuccess) {
                         JSONArray patientsArray = response.getJSONArray("patients");
-                        allPatients.clear();
-                        displayPatients.clear();
+                        List<Patient> fetched = new ArrayList<>();
 
                         for (int i = 0; i < patientsArray.length(); i++) {
                             JSONObject patientObj = patientsArray.getJSONObject(i);
-                            Patient patient = parsePatientFromJson(patientObj);
-                            allPatients.add(patient);
-                            displayPatients.add(patient);
+                            fetched.add(Patient.fromServerJson(patientObj));
                         }
 
-                        runOnUiThread(() -> {
-                            progressBar.setVisibility(View.GONE);
-                            if (displayPatients.isEmpty()) {
-                                tvEmpty.setVisibility(View.VISIBLE);
-                                rvPatients.setVisibility(View.GONE);
-                            } else {
-                                tvEmpty.setVisibility(View.GONE);
-                                rvPatients.setVisibility(View.VISIBLE);
-                                patientAdapter.notifyDataSetChanged();
-                            }
-                        });
+                        // Store the list, then search it on the device
+                        dbHelper.getWriteExecutor().submitUngrouped(db -> db.upsertServerPatients(fetched),
+                                new DbWriteExecutor.WriteCallback<UpsertReport>() {
+                                    @Override
+                                    public void onSuccess(UpsertReport report) {
+                                        progressBar.setVisibility(View.GONE);
+                                        searchPickerPatients(etSearch, displayPatients, patientAdapter, rvPatients,
+                                                tvEmpty);
+                                    }
+
+                                    @Override
+                                    public void onError(Exception e) {
+                                        progressBar.setVisibility(View.GONE);
+                                        tvEmpty.setVisibility(View.VISIBLE);
+                                        tvEmpty.setText("Error: " + e.getMessage());
+                                    }
+                                });
                     } else {
                         runOnUiThread(() -> {
                             progressBar.setVisibility(View.GONE);
@@ -214,23 +219,10 @@ public class VaccinationListActivity extends AppCompatActivity
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                String query = s.toString().toLowerCase();
-                displayPatients.clear();
-                for (Patient p : allPatients) {
-                    if (p.getName().toLowerCase().contains(query)) {
-                        displayPatients.add(p);
-                    }
-                }
-                patientAdapter.notifyDataSetChanged();
-
-                if (displayPatients.isEmpty() && !allPatients.isEmpty()) {
-                    tvEmpty.setVisibility(View.VISIBLE);
-                    tvEmpty.setText("No patients found");
-                    rvPatients.setVisibility(View.GONE);
-                } else if (!displayPatients.isEmpty()) {
-                    tvEmpty.setVisibility(View.GONE);
-                    rvPatients.setVisibility(View.VISIBLE);
+                if (progressBar.getVisibility() == View.VISIBLE) {
+                    return; // Searched once the list is stored
                 }
+                searchPickerPatients(etSearch, displayPatients, patientAdapter, rvPatients, tvEmpty);
             }
 
             @Override
@@ -241,21 +233,39 @@ public class VaccinationListActivity extends AppCompatActivity
         dialog.show();
     }
 
-    private Patient parsePatientFromJson(JSONObject obj) throws JSONException {
-        Patient patient = new Patient();
-        patient.setServerId(obj.optInt("id", 0));
-        patient.setName(obj.optString("name", ""));
-        patient.setAge(obj.optInt("age", 0));
-        patient.setGender(obj.optString("gender", ""));
-        patient.setPhone(obj.optString("phone", ""));
-        patient.setAddress(obj.optString("address", ""));
-        patient.setCategory(obj.optString("category", ""));
-        patient.setBloodGroup(obj.optString("blood_group", ""));
-        patient.setMedicalHistory(obj.optString("medical_history", ""));
-        patient.setAshaId(obj.optString("asha_id", ""));
-        patient.setRegistrationDate(obj.optString("registration_date", ""));
-        patient.setSyncStatus("SYNCED");
-        return patient;
+    /**
+     * Search the stored patients with the FTS index and show the ones the
+     * server knows; a vaccination is saved against the server id
+     */
+    private void searchPickerPatients(android.widget.EditText etSearch, List<Patient> displayPatients,
+            com.simats.ashasmartcare.adapters.PatientsAdapter patientAdapter, RecyclerView rvPatients,
+            android.widget.TextView tvEmpty) {
+        String query = etSearch.getText().toString();
+        new Thread(() -> {
+            List<Patient> results = new ArrayList<>();
+            for (Patient patient : dbHelper.searchPatients(query)) {
+                if (patient.getServerId() > 0) {
+                    results.add(patient);
+                }
+            }
+            runOnUiThread(() -> {
+                if (!query.equals(etSearch.getText().toString())) {
+                    return; // A newer keystroke owns the list
+                }
+                displayPatients.clear();
+                displayPatients.addAll(results);
+                patientAdapter.notifyDataSetChanged();
+
+                if (displayPatients.isEmpty()) {
+                    tvEmpty.setVisibility(View.VISIBLE);
+                    tvEmpty.setText("No patients found");
+                    rvPatients.setVisibility(View.GONE);
+                } else {
+                    tvEmpty.setVisibility(View.GONE);
+                    rvPatients.setVisibility(View.VISIBLE);
+                }
+            });
+        }).start();
     }
 
     private void loadData() {
@@ -265,15 +275,40 @@ public class VaccinationListActivity extends AppCompatActivity
             // ONLINE: Fetch from backend API
             fetchVaccinationsFromBackend();
         } else {
-            // OFFLINE: Show no internet message
-            showLoading(false);
-            swipeRefresh.setRefreshing(false);
-            Toast.makeText(this, "⚠️ No internet connection. Cannot load vaccinations.", Toast.LENGTH_LONG).show();
-            allVaccinations.clear();
-            updateUI();
+            // OFFLINE: Show locally recorded vaccinations
+            Toast.makeText(this, "⚠️ No internet connection. Showing offline data.", Toast.LENGTH_LONG).show();
+            loadLocalVaccinations();
         }
     }
 
+    /**
+     * Load vaccinations from the local DB on a background thread. The notes
+     * backfill is incremental, so it only costs anything when visits were
+     * recorded since the last run.
+     */
+    private void loadLocalVaccinations() {
+        new Thread(() -> {
+            dbHelper.syncMissingVaccinations();
+
+            Map<Long, String> patientNames = dbHelper.getPatientNames();
+            List<Vaccination> localVaccinations = dbHelper.getAllVaccinations();
+            for (Vaccination vacc : localVaccinations) {
+                vacc.setPatientName(patientNames.get(vacc.getPatientId()));
+            }
+
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                allVaccinations.clear();
+                allVaccinations.addAll(localVaccinations);
+                filterVaccinations();
+                showLoading(false);
+                swipeRefresh.setRefreshing(false);
+            });
+        }).start();
+    }
+
     private void fetchVaccinationsFromBackend() {
         String ashaId = String.valueOf(sessionManager.getUserId());
 
@@ -334,30 +369,6 @@ public class VaccinationListActivity extends AppCompatActivity
         });
     }
 
-    private void loadDataOLD_REMOVE() {
-        showLoading(true);
-
-        // Sync any missing vaccinations from notes first
-        dbHelper.syncMissingVaccinations();
-
-        allVaccinations.clear();
-
-        // Load all vaccinations for all patients
-        List<Vaccination> allVaccs = dbHelper.getAllVaccinations();
-        for (Vaccination vacc : allVaccs) {
-            // Get patient name for each vaccination
-            Patient patient = dbHelper.getPatientById(vacc.getPatientId());
-            if (patient != null) {
-                vacc.setPatientName(patient.getName());
-            }
-            allVaccinations.add(vacc);
-        }
-
-        filterVaccinations();
-        showLoading(false);
-        swipeRefresh.setRefreshing(false);
-    }
-
     private void filterVaccinations() {
         vaccinationList.clear();
 
@@ -6,6 +6,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
@@ -18,7 +20,10 @@ import androidx.cardview.widget.CardView;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.database.DatabaseHelper;
-import com.simats.ashasmartcare.services.SyncService;
+import com.simats.ashasmartcare.models.DashboardStats;
+import com.simats.ashasmartcare.models.SyncState;
+import com.simats.ashasmartcare.services.SyncCoordinator;
+import com.simats.ashasmartcare.services.SyncPolicy;
 import com.simats.ashasmartcare.services.NetworkMonitorService;
 import com.simats.ashasmartcare.utils.ConnectionStatusManager;
 import com.simats.ashasmartcare.utils.NetworkUtils;
@@ -55,7 +60,16 @@ public class HomeActivity extends BaseActivity {
     private SessionManager sessionManager;
     private ConnectionStatusManager connectionStatusManager;
     private BroadcastReceiver networkReceiver;
-    private BroadcastReceiver syncUpdateReceiver;
+    private SyncState lastSyncState;
+
+    // Sync progress arrives once per applied upload; refresh at most once per window
+    private static final long DASHBOARD_REFRESH_DELAY_MS = 500;
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private boolean dashboardRefreshScheduled;
+    private final Runnable dashboardRefreshRunnable = () -> {
+        dashboardRefreshScheduled = false;
+        updateDashboard();
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -68,7 +82,7 @@ public class HomeActivity extends BaseActivity {
         setupListeners();
         loadUserData();
         checkOnlineMode();
-        initSyncReceiver();
+        observeSync();
     }
 
     @Override
@@ -76,27 +90,17 @@ public class HomeActivity extends BaseActivity {
         super.onResume();
         
         // Clean up old synced records to prevent stale warnings
-        dbHelper.cleanupOldSyncedRecords();
-        
+        cleanupOldSyncedRecords();
+        runStorageMaintenance();
+
         updateDashboard();
         checkOnlineMode();
-
-        // Register sync receiver
-        IntentFilter syncFilter = new IntentFilter();
-        syncFilter.addAction("com.simats.ashasmartcare.SYNC_UPDATE");
-        syncFilter.addAction("com.simats.ashasmartcare.SYNC_FINISHED");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            registerReceiver(syncUpdateReceiver, syncFilter, Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            registerReceiver(syncUpdateReceiver, syncFilter);
-        }
     }
 
     protected void onPause() {
         super.onPause();
-        if (syncUpdateReceiver != null) {
-            unregisterReceiver(syncUpdateReceiver);
-        }
+        uiHandler.removeCallbacks(dashboardRefreshRunnable);
+        dashboardRefreshScheduled = false;
     }
 
     @Override
@@ -168,23 +172,25 @@ public class HomeActivity extends BaseActivity {
         }
     }
 
-    private void initSyncReceiver() {
-        syncUpdateReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                String action = intent.getAction();
-                if ("com.simats.ashasmartcare.SYNC_FINISHED".equals(action)) {
-                    // Full refresh after sync completes
-                    runOnUiThread(() -> {
-                        updateDashboard();
-                        android.util.Log.d("HomeActivity", "Dashboard refreshed after sync completion");
-                    });
-                } else if ("com.simats.ashasmartcare.SYNC_UPDATE".equals(action)) {
-                    // Incremental update during sync
-                    runOnUiThread(() -> updateDashboard());
-                }
+    private void observeSync() {
+        // Delivered while the screen is started; onResume refreshes on return
+        SyncCoordinator.getInstance(this).getState().observe(this, state -> {
+            SyncState previous = lastSyncState;
+            lastSyncState = state;
+            if (previous == null) {
+                return;
             }
-        };
+            if (previous.isRunning() && !state.isRunning()) {
+                // Full refresh after sync completes
+                uiHandler.removeCallbacks(dashboardRefreshRunnable);
+                dashboardRefreshScheduled = false;
+                updateDashboard();
+                android.util.Log.d("HomeActivity", "Dashboard refreshed after sync completion");
+            } else if (state.getApplied() != previous.getApplied()) {
+                // Incremental update during sync
+                throttledUpdateDashboard();
+            }
+        });
     }
 
     private void setupListeners() {
@@ -262,8 +268,8 @@ public class HomeActivity extends BaseActivity {
             tvConnectionStatus.setTextColor(getResources().getColor(R.color.status_synced));
 
             // Clean up old synced records first
-            dbHelper.cleanupOldSyncedRecords();
-            
+            cleanupOldSyncedRecords();
+
             // Auto-sync if there are pending records
             int pendingCount = dbHelper.getTotalPendingRecords();
             if (pendingCount > 0) {
@@ -276,13 +282,34 @@ public class HomeActivity extends BaseActivity {
     }
 
     private void updateDashboard() {
-        // Update visits today (mock data - replace with actual logic)
-        int visitsToday = dbHelper.getVisitsCountToday();
-        tvVisitsToday.setText(String.valueOf(visitsToday));
+        // All tiles come from the dashboard_stats counters in one lookup
+        new Thread(() -> {
+            DashboardStats stats = dbHelper.getDashboardStats();
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                tvVisitsToday.setText(String.valueOf(stats.getVisitsToday()));
+                tvHighRisk.setText(String.valueOf(stats.getHighRiskPatients()));
+            });
+        }).start();
+    }
 
-        // Update high risk count
-        int highRiskCount = dbHelper.getHighRiskPatientsCount();
-        tvHighRisk.setText(String.valueOf(highRiskCount));
+    private void throttledUpdateDashboard() {
+        if (!dashboardRefreshScheduled) {
+            dashboardRefreshScheduled = true;
+            uiHandler.postDelayed(dashboardRefreshRunnable, DASHBOARD_REFRESH_DELAY_MS);
+        }
+    }
+
+    private void cleanupOldSyncedRecords() {
+        dbHelper.getWriteExecutor().submit(db -> db.cleanupOldSyncedRecords(), null);
+    }
+
+    private void runStorageMaintenance() {
+        // Not on the write executor: VACUUM cannot run inside its transaction.
+        // Skips itself unless a day has passed since the last pass.
+        new Thread(() -> dbHelper.runStorageMaintenance()).start();
     }
 
     private void performSync() {
@@ -292,10 +319,7 @@ public class HomeActivity extends BaseActivity {
         }
 
         Toast.makeText(this, "Syncing...", Toast.LENGTH_SHORT).show();
-
-        // Start sync service
-        Intent syncIntent = new Intent(this, SyncService.class);
-        startService(syncIntent);
+        SyncCoordinator.getInstance(this).requestSync();
 
         // Navigate to sync status
         startActivity(new Intent(this, SyncStatusActivity.class));
@@ -303,8 +327,7 @@ public class HomeActivity extends BaseActivity {
 
     private void performSyncInBackground() {
         if (NetworkUtils.isNetworkAvailable(this)) {
-            Intent syncIntent = new Intent(this, SyncService.class);
-            startService(syncIntent);
+            SyncCoordinator.getInstance(this).requestSync(SyncPolicy.forBackground(this));
         }
     }
 
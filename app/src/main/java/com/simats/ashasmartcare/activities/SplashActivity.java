@@ -4,6 +4,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 import android.view.View;
 import android.view.WindowManager;
 import android.view.animation.Animation;
@@ -20,14 +21,17 @@ import androidx.core.view.WindowCompat;
 import androidx.core.view.WindowInsetsControllerCompat;
 
 import com.simats.ashasmartcare.R;
+import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.MigrationRunner;
 import com.simats.ashasmartcare.utils.SessionManager;
 
 /**
  * Splash Screen Activity
- * Shows app logo and checks login status
+ * Shows app logo, finishes pending database migrations and checks login status
  */
 public class SplashActivity extends AppCompatActivity {
 
+    private static final String TAG = "SplashActivity";
     private static final int SPLASH_DURATION = 2500; // 2.5 seconds
 
     private ImageView ivLogo;
@@ -41,6 +45,11 @@ public class SplashActivity extends AppCompatActivity {
     private View progressSegment1;
     private View progressSegment2;
 
+    // Navigation waits for both the splash delay and the migrations
+    private boolean splashElapsed;
+    private boolean migrationsDone;
+    private int shownPercent = -1;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -55,6 +64,7 @@ public class SplashActivity extends AppCompatActivity {
 
         initViews();
         startAnimations();
+        runMigrations();
         navigateAfterDelay();
     }
 
@@ -131,34 +141,71 @@ public class SplashActivity extends AppCompatActivity {
         }, 1200);
     }
 
-    private void navigateAfterDelay() {
-        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                // Check if user is logged in
-                SessionManager sessionManager = SessionManager.getInstance(SplashActivity.this);
-
-                Intent intent;
-                if (sessionManager.isLoggedIn()) {
-                    // Check role and navigate to appropriate dashboard
-                    if (sessionManager.isAdmin()) {
-                        // Admin user - go to Admin Dashboard
-                        intent = new Intent(SplashActivity.this, AdminDashboardActivity.class);
-                    } else {
-                        // Worker user - go to Worker Home
-                        intent = new Intent(SplashActivity.this, HomeActivity.class);
-                    }
-                } else {
-                    // Go to Welcome Screen
-                    intent = new Intent(SplashActivity.this, WelcomeActivity.class);
+    /**
+     * Open the database (running onUpgrade) and any chunked migrations off the
+     * main thread, showing progress in the tagline
+     */
+    private void runMigrations() {
+        new Thread(() -> {
+            try {
+                MigrationRunner runner = DatabaseHelper.getInstance(this).getMigrationRunner();
+                if (runner.hasPending()) {
+                    runner.run((rowsDone, rowsTotal) -> {
+                        int percent = (int) (rowsDone * 100 / Math.max(1, rowsTotal));
+                        runOnUiThread(() -> showMigrationProgress(percent));
+                    });
                 }
+            } catch (Exception e) {
+                // Committed chunks are kept; the rest is retried on the next launch
+                Log.e(TAG, "Database migration stopped", e);
+            }
+            runOnUiThread(() -> {
+                migrationsDone = true;
+                navigateWhenReady();
+            });
+        }).start();
+    }
 
-                startActivity(intent);
-                finish();
+    private void showMigrationProgress(int percent) {
+        if (percent != shownPercent) {
+            shownPercent = percent;
+            tvTagline.setText(getString(R.string.splash_migrating, percent));
+        }
+    }
 
-                // Transition animation
-                overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-            }
+    private void navigateAfterDelay() {
+        new Handler(Looper.getMainLooper()).postDelayed(() -> {
+            splashElapsed = true;
+            navigateWhenReady();
         }, SPLASH_DURATION);
     }
+
+    private void navigateWhenReady() {
+        if (!splashElapsed || !migrationsDone || isFinishing()) {
+            return;
+        }
+        // Check if user is logged in
+        SessionManager sessionManager = SessionManager.getInstance(SplashActivity.this);
+
+        Intent intent;
+        if (sessionManager.isLoggedIn()) {
+            // Check role and navigate to appropriate dashboard
+            if (sessionManager.isAdmin()) {
+                // Admin user - go to Admin Dashboard
+                intent = new Intent(SplashActivity.this, AdminDashboardActivity.class);
+            } else {
+                // Worker user - go to Worker Home
+                intent = new Intent(SplashActivity.this, HomeActivity.class);
+            }
+        } else {
+            // Go to Welcome Screen
+            intent = new Intent(SplashActivity.this, WelcomeActivity.class);
+        }
+
+        startActivity(intent);
+        finish();
+
+        // Transition animation
+        overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
+    }
 }
@@ -17,6 +17,9 @@ import java.util.List;
 
 public class SyncHistoryActivity extends AppCompatActivity {
 
+    // Most recent uploads shown
+    private static final int HISTORY_LIMIT = 200;
+
     private ImageView ivBack;
     private RecyclerView rvHistory;
     private SyncRecordAdapter historyAdapter;
@@ -59,43 +62,18 @@ public class SyncHistoryActivity extends AppCompatActivity {
     private void loadData() {
         try {
             historyList.clear();
-            List<SyncRecord> allRecords = dbHelper.getAllSyncRecords();
-
-            // Critical Diagnostic Info
-            String debugInfo = "DB Records: " + allRecords.size();
-            android.util.Log.d("SyncHistory", debugInfo);
-
-            for (SyncRecord record : allRecords) {
-                String status = record.getSyncStatus();
-                if (status != null)
-                    status = status.trim();
-
-                // Show synced records
-                if ("SYNCED".equalsIgnoreCase(status)) {
-                    record.setTitle(formatRecordTitle(record));
-                    String syncTime = record.getLastUpdated();
-                    record.setTimestamp(syncTime != null ? syncTime : record.getCreatedAt());
-                    historyList.add(record);
-                }
-            }
-
-            android.util.Log.d("SyncHistory", "Filtered to " + historyList.size() + " synced records");
+            List<SyncRecord> history = dbHelper.getSyncHistory(HISTORY_LIMIT);
+            android.util.Log.d("SyncHistory", "History records: " + history.size());
 
-            // Show diagnostic toast that persists longer
-            android.widget.Toast.makeText(this, "Total: " + allRecords.size() + " | Synced: " + historyList.size(),
-                    android.widget.Toast.LENGTH_LONG).show();
+            for (SyncRecord record : history) {
+                record.setTitle(formatRecordTitle(record));
+                record.setTimestamp(record.getLastUpdated());
+                historyList.add(record);
+            }
 
             if (historyList.isEmpty()) {
                 rvHistory.setVisibility(android.view.View.GONE);
                 layoutEmpty.setVisibility(android.view.View.VISIBLE);
-
-                // SUPER DEBUG: If DB has records but history is empty, show them briefly to see
-                // what's wrong
-                if (!allRecords.isEmpty()) {
-                    SyncRecord first = allRecords.get(0);
-                    android.widget.Toast.makeText(this, "First record status: [" + first.getSyncStatus() + "]",
-                            android.widget.Toast.LENGTH_LONG).show();
-                }
             } else {
                 rvHistory.setVisibility(android.view.View.VISIBLE);
                 layoutEmpty.setVisibility(android.view.View.GONE);
@@ -1,6 +1,5 @@
 package com.simats.ashasmartcare.activities;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
@@ -19,29 +18,36 @@ import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.adapters.SyncRecordAdapter;
 import com.simats.ashasmartcare.database.DatabaseHelper;
 import com.simats.ashasmartcare.models.SyncRecord;
-import com.simats.ashasmartcare.services.SyncService;
+import com.simats.ashasmartcare.models.SyncState;
+import com.simats.ashasmartcare.services.SyncCoordinator;
+import com.simats.ashasmartcare.utils.Constants;
 import com.simats.ashasmartcare.utils.NetworkUtils;
 import com.simats.ashasmartcare.utils.SessionManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SyncStatusActivity extends AppCompatActivity implements SyncRecordAdapter.OnDeleteClickListener {
 
     private ImageView ivBack;
     private TextView tvLastSynced, tvPendingCount, btnClearAll;
-    private LinearLayout btnSyncNow;
-    private RecyclerView rvPending;
+    private TextView tvDeadLetterTitle, btnRetryAll;
+    private LinearLayout btnSyncNow, layoutDeadLetter;
+    private RecyclerView rvPending, rvDeadLetter;
     private ProgressBar pbSyncing;
     private ImageView ivSyncIcon;
     private TextView tvSyncButtonText;
 
     private SyncRecordAdapter pendingAdapter;
     private List<SyncRecord> pendingList;
+    private SyncRecordAdapter deadLetterAdapter;
+    private List<SyncRecord> deadLetterList;
     private SessionManager sessionManager;
     private DatabaseHelper dbHelper;
 
-    private java.util.Set<Long> recentlySyncedIds = new java.util.HashSet<>();
+    private SyncCoordinator syncCoordinator;
+    private SyncState lastSyncState;
     private Handler uiHandler = new Handler(Looper.getMainLooper());
     private Runnable loadDataRunnable = this::loadData;
 
@@ -54,7 +60,7 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
         setupRecyclerViews();
         loadData();
         setupListeners();
-        setupSyncReceiver();
+        observeSync();
     }
 
     private void initViews() {
@@ -63,6 +69,10 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
         tvPendingCount = findViewById(R.id.tvPendingCount);
         btnSyncNow = findViewById(R.id.btnSyncNow);
         rvPending = findViewById(R.id.rvPending);
+        layoutDeadLetter = findViewById(R.id.layoutDeadLetter);
+        tvDeadLetterTitle = findViewById(R.id.tvDeadLetterTitle);
+        btnRetryAll = findViewById(R.id.btnRetryAll);
+        rvDeadLetter = findViewById(R.id.rvDeadLetter);
 
         btnClearAll = findViewById(R.id.btnClearAll);
         pbSyncing = findViewById(R.id.pbSyncing);
@@ -71,6 +81,7 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
 
         sessionManager = SessionManager.getInstance(this);
         dbHelper = DatabaseHelper.getInstance(this);
+        syncCoordinator = SyncCoordinator.getInstance(this);
     }
 
     private void setupRecyclerViews() {
@@ -83,50 +94,37 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
 
         // Disable nested scrolling to allow ScrollView to handle it
         rvPending.setNestedScrollingEnabled(false);
-    }
 
-    private void setupSyncReceiver() {
-        syncReceiver = new android.content.BroadcastReceiver() {
-            @Override
-            public void onReceive(android.content.Context context, android.content.Intent intent) {
-                String action = intent.getAction();
-                if ("com.simats.ashasmartcare.SYNC_FINISHED".equals(action) || 
-                    "com.simats.ashasmartcare.SYNC_UPDATE".equals(action)) {
-                    // Refresh the list when sync completes or updates
-                    runOnUiThread(() -> {
-                        throttledLoadData();
-                        android.util.Log.d("SyncStatusActivity", "Refreshed sync status after broadcast: " + action);
-                    });
-                }
-            }
-        };
-
-        android.content.IntentFilter filter = new android.content.IntentFilter();
-        filter.addAction("com.simats.ashasmartcare.SYNC_FINISHED");
-        filter.addAction("com.simats.ashasmartcare.SYNC_UPDATE");
-        
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.TIRAMISU) {
-            registerReceiver(syncReceiver, filter, RECEIVER_NOT_EXPORTED);
-        } else {
-            registerReceiver(syncReceiver, filter);
-        }
+        deadLetterList = new ArrayList<>();
+        deadLetterAdapter = new SyncRecordAdapter(this, deadLetterList, this);
+        rvDeadLetter.setLayoutManager(new LinearLayoutManager(this));
+        rvDeadLetter.setAdapter(deadLetterAdapter);
+        rvDeadLetter.setNestedScrollingEnabled(false);
     }
 
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (syncReceiver != null) {
-            try {
-                unregisterReceiver(syncReceiver);
-            } catch (Exception e) {
-                // Receiver might not be registered
+    private void observeSync() {
+        // Delivered while the screen is started; onResume reloads on return
+        syncCoordinator.getState().observe(this, state -> {
+            SyncState previous = lastSyncState;
+            lastSyncState = state;
+            setSyncingState(state.isRunning());
+            if (previous == null) {
+                return;
             }
-        }
+            if (previous.isRunning() && !state.isRunning()) {
+                uiHandler.removeCallbacks(loadDataRunnable);
+                loadData();
+            } else if (state.getApplied() != previous.getApplied()) {
+                // Refresh the list as results are applied
+                throttledLoadData();
+            }
+        });
     }
 
     private void loadData() {
-        // Clear existing list
+        // Clear existing lists
         pendingList.clear();
+        deadLetterList.clear();
 
         // Get ALL sync records from database
         List<SyncRecord> allRecords = dbHelper.getAllSyncRecords();
@@ -137,24 +135,18 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
         long fiveMinutesAgo = currentTime - (5 * 60 * 1000);
 
         for (SyncRecord record : allRecords) {
+            // Records that stopped retrying are listed on their own
+            if (Constants.SYNC_DEAD_LETTER.equalsIgnoreCase(record.getSyncStatus())) {
+                record.setTitle(formatRecordTitle(record));
+                record.setTimestamp(formatTimestamp(record.getCreatedAt()));
+                deadLetterList.add(record);
+                continue;
+            }
+
             boolean isSynced = "SYNCED".equalsIgnoreCase(record.getSyncStatus());
 
             // Check if synced recently (within last 5 minutes) via timestamp
-            boolean isRecentlySyncedTime = false;
-            try {
-                if (isSynced && record.getLastUpdated() != null) {
-                    java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss",
-                            java.util.Locale.getDefault());
-                    java.util.Date date = sdf.parse(record.getLastUpdated());
-                    if (date != null && date.getTime() > fiveMinutesAgo) {
-                        isRecentlySyncedTime = true;
-                    }
-                }
-            } catch (Exception e) {
-                // Ignore parse errors
-            }
-
-            boolean isRecentlySynced = recentlySyncedIds.contains(record.getLocalId()) || isRecentlySyncedTime;
+            boolean isRecentlySynced = isSynced && record.getLastUpdatedMillis() > fiveMinutesAgo;
 
             if (!isSynced || isRecentlySynced) {
                 // Populate UI-specific fields on the original record object
@@ -175,6 +167,7 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
         }
 
         pendingAdapter.notifyDataSetChanged();
+        deadLetterAdapter.notifyDataSetChanged();
 
         updateSummaryInternal();
     }
@@ -197,6 +190,9 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
 
         // Show/Hide Clear All button
         btnClearAll.setVisibility(pendingList.isEmpty() ? View.GONE : View.VISIBLE);
+
+        layoutDeadLetter.setVisibility(deadLetterList.isEmpty() ? View.GONE : View.VISIBLE);
+        tvDeadLetterTitle.setText("Needs Attention (" + deadLetterList.size() + ")");
     }
 
     @Override
@@ -262,7 +258,8 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
 
         switch (tableName) {
             case "patients":
-                dbHelper.deletePatient(recordId);
+                // Discards the local record only; the server copy is left alone
+                dbHelper.deletePatients(Collections.singletonList(recordId), false);
                 return true;
             case "pregnancy_visits":
                 dbHelper.deletePregnancyVisit(recordId);
@@ -380,31 +377,6 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
         return createdAt;
     }
 
-    private android.content.BroadcastReceiver syncReceiver = new android.content.BroadcastReceiver() {
-        @Override
-        public void onReceive(android.content.Context context, Intent intent) {
-            String action = intent.getAction();
-            if ("com.simats.ashasmartcare.SYNC_UPDATE".equals(action)) {
-                long recordId = intent.getLongExtra("record_id", -1);
-                String status = intent.getStringExtra("status");
-
-                if (recordId != -1 && "SYNCED".equalsIgnoreCase(status)) {
-                    recentlySyncedIds.add(recordId);
-                    runOnUiThread(() -> throttledLoadData());
-                } else {
-                    runOnUiThread(() -> throttledLoadData());
-                }
-            } else if ("com.simats.ashasmartcare.SYNC_STARTED".equals(action)) {
-                runOnUiThread(() -> setSyncingState(true));
-            } else if ("com.simats.ashasmartcare.SYNC_FINISHED".equals(action)) {
-                runOnUiThread(() -> {
-                    setSyncingState(false);
-                    loadData();
-                });
-            }
-        }
-    };
-
     private void setSyncingState(boolean isSyncing) {
         if (isSyncing) {
             pbSyncing.setVisibility(View.VISIBLE);
@@ -430,11 +402,12 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
                 return;
             }
 
-            // Start sync service
-            Intent syncIntent = new Intent(this, SyncService.class);
-            startService(syncIntent);
-
-            Toast.makeText(this, "Syncing data...", Toast.LENGTH_SHORT).show();
+            if (syncCoordinator.requestSync()) {
+                Toast.makeText(this, "Syncing data...", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Sync in progress - will sync again when it finishes", Toast.LENGTH_SHORT)
+                        .show();
+            }
             loadData();
         });
 
@@ -451,36 +424,28 @@ public class SyncStatusActivity extends AppCompatActivity implements SyncRecordA
                     .setNegativeButton("Cancel", null)
                     .show();
         });
+
+        btnRetryAll.setOnClickListener(v -> {
+            int requeued = dbHelper.retryDeadLetterRecords();
+            Toast.makeText(this, requeued + " records queued for upload", Toast.LENGTH_SHORT).show();
+
+            if (NetworkUtils.isNetworkAvailable(this)) {
+                syncCoordinator.requestSync();
+            }
+            loadData();
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // Register receiver
-        android.content.IntentFilter filter = new android.content.IntentFilter();
-        filter.addAction("com.simats.ashasmartcare.SYNC_UPDATE");
-        filter.addAction("com.simats.ashasmartcare.SYNC_STARTED");
-        filter.addAction("com.simats.ashasmartcare.SYNC_FINISHED");
-
-        // For Android 14 (API 34) and above, specify RECEIVER_NOT_EXPORTED for internal
-        // broadcasts
-        if (android.os.Build.VERSION.SDK_INT >= 34) { // 34 is UPSIDE_DOWN_CAKE
-            registerReceiver(syncReceiver, filter, android.content.Context.RECEIVER_NOT_EXPORTED);
-        } else {
-            registerReceiver(syncReceiver, filter);
-        }
-
         loadData();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        try {
-            unregisterReceiver(syncReceiver);
-        } catch (IllegalArgumentException e) {
-            // Receiver not registered
-        }
+        uiHandler.removeCallbacks(loadDataRunnable);
     }
 
 }
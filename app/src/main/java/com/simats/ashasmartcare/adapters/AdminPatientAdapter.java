@@ -13,19 +13,16 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.models.Patient;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class AdminPatientAdapter extends RecyclerView.Adapter<AdminPatientAdapter.PatientViewHolder> {
 
     private Context context;
     private List<Patient> patientList;
-    private List<Patient> patientListFull;
 
     public AdminPatientAdapter(Context context, List<Patient> patientList) {
         this.context = context;
         this.patientList = patientList;
-        this.patientListFull = new ArrayList<>(patientList);
     }
 
     @NonNull
@@ -100,21 +97,6 @@ public class AdminPatientAdapter extends RecyclerView.Adapter<AdminPatientAdapte
         return patientList.size();
     }
 
-    public void filter(String query) {
-        patientList.clear();
-        if (query.isEmpty()) {
-            patientList.addAll(patientListFull);
-        } else {
-            String lowerCaseQuery = query.toLowerCase();
-            for (Patient patient : patientListFull) {
-                if (patient.getName().toLowerCase().contains(lowerCaseQuery)) {
-                    patientList.add(patient);
-                }
-            }
-        }
-        notifyDataSetChanged();
-    }
-
     static class PatientViewHolder extends RecyclerView.ViewHolder {
         ImageView ivPatientAvatar;
         TextView tvPatientName;
@@ -76,8 +76,11 @@ public class HighRiskAlertAdapter extends RecyclerView.Adapter<HighRiskAlertAdap
 
         // Handle mark reviewed button
         holder.btnMarkReviewed.setOnClickListener(v -> {
-            com.simats.ashasmartcare.database.DatabaseHelper.getInstance(context)
-                    .markAlertReviewed(alert.getPatientId(), alert.getAlertType(), true);
+            com.simats.ashasmartcare.database.DatabaseHelper.getInstance(context).getWriteExecutor()
+                    .submit(db -> {
+                        db.markAlertReviewed(alert.getPatientId(), alert.getReviewKey(), true);
+                        return null;
+                    }, null);
 
             // Update local model and refresh view instead of removing
             alert.setReviewed(true);
@@ -11,11 +11,9 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.utils.DateTimeUtils;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 public class SyncPendingAdapter extends RecyclerView.Adapter<SyncPendingAdapter.ViewHolder> {
 
@@ -63,11 +61,10 @@ public class SyncPendingAdapter extends RecyclerView.Adapter<SyncPendingAdapter.
 
     private String getTimeAgo(String timestamp) {
         try {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-            Date date = sdf.parse(timestamp);
-            if (date == null) return "Unknown";
+            long time = DateTimeUtils.parse(timestamp);
+            if (time == -1) return "Unknown";
 
-            long diff = System.currentTimeMillis() - date.getTime();
+            long diff = System.currentTimeMillis() - time;
             long seconds = diff / 1000;
             long minutes = seconds / 60;
             long hours = minutes / 60;
@@ -13,6 +13,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.utils.Constants;
 
 import java.util.List;
 
@@ -61,8 +62,10 @@ public class SyncRecordAdapter extends RecyclerView.Adapter<SyncRecordAdapter.Vi
                     .setBackground(ContextCompat.getDrawable(context, R.drawable.bg_icon_circle_light_green));
 
             holder.ivDelete.setVisibility(View.GONE);
-        } else if ("FAILED".equalsIgnoreCase(record.getSyncStatus())) {
-            holder.tvStatusBadge.setText("Failed");
+        } else if ("FAILED".equalsIgnoreCase(record.getSyncStatus())
+                || Constants.SYNC_DEAD_LETTER.equalsIgnoreCase(record.getSyncStatus())) {
+            // Dead-lettered records no longer retry on their own
+            holder.tvStatusBadge.setText("FAILED".equalsIgnoreCase(record.getSyncStatus()) ? "Failed" : "Stopped");
             holder.tvStatusBadge.setBackground(ContextCompat.getDrawable(context, R.drawable.bg_badge_pending));
             holder.tvStatusBadge.setTextColor(android.graphics.Color.RED);
 
@@ -3,21 +3,41 @@ package com.simats.ashasmartcare.database;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.VisibleForTesting;
+
+import com.simats.ashasmartcare.BuildConfig;
 import com.simats.ashasmartcare.models.ChildGrowth;
+import com.simats.ashasmartcare.models.DashboardStats;
+import com.simats.ashasmartcare.models.LatestVitals;
 import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PatientRegistration;
 import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.StorageStats;
+import com.simats.ashasmartcare.models.SyncItemResult;
 import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.TimelineEntry;
+import com.simats.ashasmartcare.models.UpsertReport;
 import com.simats.ashasmartcare.models.Vaccination;
 import com.simats.ashasmartcare.models.Visit;
 import com.simats.ashasmartcare.utils.Constants;
+import com.simats.ashasmartcare.utils.DateTimeUtils;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * SQLite Database Helper for ASHA Healthcare App
@@ -27,12 +47,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
     // Database Info
     private static final String DATABASE_NAME = "asha_healthcare.db";
-    private static final int DATABASE_VERSION = 11;
+    private static final int DATABASE_VERSION = 26;
 
     // Sync Status Constants
     public static final String SYNC_PENDING = "PENDING";
     public static final String SYNC_SYNCED = "SYNCED";
     public static final String SYNC_FAILED = "FAILED";
+    public static final String SYNC_DEAD_LETTER = "DEAD_LETTER";
 
     // Table Names
     public static final String TABLE_PATIENTS = "patients";
@@ -43,6 +64,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String TABLE_SYNC_QUEUE = "sync_queue";
     public static final String TABLE_USERS = "users";
     public static final String TABLE_ALERTS_REVIEWED = "alerts_reviewed";
+    public static final String TABLE_PATIENTS_FTS = "patients_fts";
+    public static final String TABLE_ALERTS = "alerts";
+    public static final String TABLE_DB_META = "db_meta";
+    public static final String TABLE_DASHBOARD_STATS = "dashboard_stats";
+    public static final String TABLE_PATIENT_LATEST_VITALS = "patient_latest_vitals";
+    public static final String TABLE_OBSERVATIONS = "observations";
+    public static final String TABLE_SYNC_HISTORY = "sync_history";
 
     // Common Column Names
     public static final String COL_LOCAL_ID = "local_id";
@@ -60,6 +88,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COL_ADDRESS = "address";
     public static final String COL_BLOOD_GROUP = "blood_group";
     public static final String COL_CATEGORY = "category";
+    public static final String COL_CATEGORY_CODE = "category_code";
     public static final String COL_MEDICAL_NOTES = "medical_notes";
     public static final String COL_PHOTO_PATH = "photo_path";
     public static final String COL_IS_HIGH_RISK = "is_high_risk";
@@ -101,6 +130,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COL_DATA_JSON = "data_json";
     public static final String COL_ERROR_MESSAGE = "error_message";
     public static final String COL_RETRY_COUNT = "retry_count";
+    public static final String COL_NEXT_ATTEMPT_AT = "next_attempt_at";
+    public static final String COL_LEASED_UNTIL = "leased_until";
+
+    // Epoch-millis twins of the text timestamps, used for comparisons and range
+    // queries (the text columns stay for display and the server payloads)
+    public static final String COL_VISIT_DATE_MS = "visit_date_ms";
+    public static final String COL_CREATED_AT_MS = "created_at_ms";
+    public static final String COL_LAST_UPDATED_MS = "last_updated_ms";
 
     // Users Table Columns
     public static final String COL_USER_ID = "user_id";
@@ -114,6 +151,94 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public static final String COL_AREA = "area";
     public static final String COL_IS_LOGGED_IN = "is_logged_in";
 
+    // Alerts Table Columns
+    public static final String COL_ALERT_KEY = "alert_key";
+    public static final String COL_ALERT_TYPE = "alert_type";
+    public static final String COL_TITLE = "title";
+
+    // DB Meta Table Columns
+    public static final String COL_META_KEY = "meta_key";
+    public static final String COL_META_VALUE = "meta_value";
+
+    // Dashboard Stats Table Columns
+    public static final String COL_STAT_KEY = "stat_key";
+    public static final String COL_STAT_VALUE = "stat_value";
+
+    // Latest Vitals Table Columns
+    public static final String COL_SOURCE_TABLE = "source_table";
+    public static final String COL_SOURCE_ID = "source_id";
+
+    // Observations Table Columns
+    public static final String COL_OBS_CODE = "obs_code";
+    public static final String COL_VALUE_NUM = "value_num";
+    public static final String COL_VALUE_TEXT = "value_text";
+    public static final String COL_OBSERVED_AT = "observed_at";
+    public static final String COL_OBSERVED_AT_MS = "observed_at_ms";
+
+    // Sync History Table Columns
+    public static final String COL_UPLOAD_COUNT = "upload_count";
+    public static final String COL_ATTEMPT_COUNT = "attempt_count";
+    public static final String COL_FIRST_SYNCED_AT_MS = "first_synced_at_ms";
+    public static final String COL_LAST_SYNCED_AT = "last_synced_at";
+    public static final String COL_LAST_SYNCED_AT_MS = "last_synced_at_ms";
+
+    // Dashboard counters; pending counts are kept per table and visit counts per
+    // local calendar day ("visits_on:yyyy-MM-dd")
+    private static final String STAT_TOTAL_PATIENTS = "total_patients";
+    private static final String STAT_HIGH_RISK_PATIENTS = "high_risk_patients";
+    private static final String STAT_PENDING_PREFIX = "pending:";
+    private static final String STAT_VISITS_ON_PREFIX = "visits_on:";
+    private static final String[] PENDING_COUNTED_TABLES = {
+            TABLE_PATIENTS, TABLE_PREGNANCY_VISITS, TABLE_CHILD_GROWTH, TABLE_VACCINATIONS, TABLE_VISITS
+    };
+
+    // Tables whose rows belong to a patient through patient_id
+    private static final String[] PATIENT_RECORD_TABLES = {
+            TABLE_PREGNANCY_VISITS, TABLE_CHILD_GROWTH, TABLE_VACCINATIONS, TABLE_VISITS
+    };
+
+    // Patients deleted per statement in deletePatients()
+    private static final int DELETE_CHUNK_SIZE = 500;
+
+    // Server records committed per transaction by the bulk upserts
+    private static final int UPSERT_CHUNK_SIZE = 500;
+
+    // Chunked data migrations run by MigrationRunner after an upgrade
+    private static final String STEP_PATIENTS_REBUILD = "patients_rebuild";
+    private static final String STEP_EPOCH_MILLIS_PREFIX = "epoch_millis:";
+    private static final String STEP_OBSERVATIONS_PREFIX = "observations:";
+    private static final String[] EPOCH_MILLIS_TABLES = { TABLE_VISITS, TABLE_PREGNANCY_VISITS, TABLE_SYNC_QUEUE };
+
+    // Version 9 patients rebuild: the table copied into, its columns and the
+    // values copied (the address falls back to the dropped area / district /
+    // state columns)
+    private static final String TABLE_PATIENTS_NEW = "patients_new";
+    private static final String PATIENTS_REBUILD_COLUMNS = COL_LOCAL_ID + ", " + COL_SERVER_ID + ", " + COL_NAME
+            + ", " + COL_AGE + ", " + COL_DOB + ", " + COL_GENDER + ", " + COL_PHONE + ", " + COL_ADDRESS + ", "
+            + COL_BLOOD_GROUP + ", " + COL_CATEGORY + ", " + COL_CATEGORY_CODE + ", " + COL_MEDICAL_NOTES + ", "
+            + COL_PHOTO_PATH + ", " + COL_IS_HIGH_RISK + ", " + COL_HIGH_RISK_REASON + ", " + COL_ABHA_ID + ", "
+            + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ", " + COL_LAST_UPDATED;
+    private static final String PATIENTS_REBUILD_VALUES = PATIENTS_REBUILD_COLUMNS.replace(COL_PHONE + ", "
+            + COL_ADDRESS, COL_PHONE + ", COALESCE(" + COL_ADDRESS + ", area || ', ' || district || ', ' || state, "
+            + "area, '')");
+
+    // Watermark (last processed observations.local_id) for the vaccination backfill
+    private static final String META_BACKFILL_OBSERVATIONS = "vaccine_backfill:" + TABLE_OBSERVATIONS;
+
+    // Storage maintenance: when it last ran, how often, and the free pages
+    // returned to the file system per incremental_vacuum step
+    private static final String META_LAST_MAINTENANCE = "maintenance:last_run";
+    private static final long MAINTENANCE_INTERVAL_MS = 24 * 60 * 60 * 1000L;
+    private static final int VACUUM_STEP_PAGES = 256;
+
+    // SYNCED queue entries stay this long for the "recently synced" list, then
+    // move to sync_history
+    private static final long SYNCED_QUEUE_RETENTION_MS = 5 * 60 * 1000L;
+
+    // Alert Types
+    public static final String ALERT_OVERDUE_VACCINE = "OVERDUE_VACCINE";
+    public static final String ALERT_LOW_WEIGHT = "LOW_WEIGHT";
+
     // Create Table Statements
     private static final String CREATE_TABLE_PATIENTS = "CREATE TABLE " + TABLE_PATIENTS + "("
             + COL_LOCAL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
@@ -126,6 +251,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COL_ADDRESS + " TEXT,"
             + COL_BLOOD_GROUP + " TEXT,"
             + COL_CATEGORY + " TEXT,"
+            + COL_CATEGORY_CODE + " INTEGER NOT NULL DEFAULT 0,"
             + COL_MEDICAL_NOTES + " TEXT,"
             + COL_PHOTO_PATH + " TEXT,"
             + COL_IS_HIGH_RISK + " INTEGER DEFAULT 0,"
@@ -148,6 +274,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COL_COMPLAINTS + " TEXT,"
             + COL_NOTES + " TEXT,"
             + COL_TRIMESTER + " INTEGER,"
+            + COL_VISIT_DATE_MS + " INTEGER,"
             + COL_SYNC_STATUS + " TEXT DEFAULT '" + SYNC_PENDING + "',"
             + COL_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
             + COL_LAST_UPDATED + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
@@ -194,6 +321,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COL_VISIT_TYPE + " TEXT,"
             + COL_DESCRIPTION + " TEXT,"
             + COL_NOTES + " TEXT,"
+            + COL_VISIT_DATE_MS + " INTEGER,"
             + COL_SYNC_STATUS + " TEXT DEFAULT '" + SYNC_PENDING + "',"
             + COL_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
             + COL_LAST_UPDATED + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
@@ -210,7 +338,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + COL_ERROR_MESSAGE + " TEXT,"
             + COL_RETRY_COUNT + " INTEGER DEFAULT 0,"
             + COL_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
-            + COL_LAST_UPDATED + " DATETIME DEFAULT CURRENT_TIMESTAMP"
+            + COL_LAST_UPDATED + " DATETIME DEFAULT CURRENT_TIMESTAMP,"
+            + COL_CREATED_AT_MS + " INTEGER,"
+            + COL_LAST_UPDATED_MS + " INTEGER,"
+            + COL_NEXT_ATTEMPT_AT + " INTEGER,"
+            + COL_LEASED_UNTIL + " INTEGER"
             + ")";
 
     private static final String CREATE_TABLE_USERS = "CREATE TABLE " + TABLE_USERS + "("
@@ -242,6 +374,280 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             + "PRIMARY KEY (" + COL_PATIENT_ID + ", " + COL_VISIT_TYPE + ")"
             + ")";
 
+    // Materialized alerts. alert_key is a stable id ("vaccination:<local_id>",
+    // "growth:<local_id>") and is also the key used in alerts_reviewed.
+    // Vaccination alerts hold every open dose; "overdue" is decided at read time
+    // from due_date so alerts do not go stale as days pass.
+    private static final String CREATE_TABLE_ALERTS = "CREATE TABLE IF NOT EXISTS " + TABLE_ALERTS + "("
+            + COL_ALERT_KEY + " TEXT PRIMARY KEY,"
+            + COL_PATIENT_ID + " INTEGER NOT NULL,"
+            + COL_ALERT_TYPE + " TEXT NOT NULL,"
+            + COL_TITLE + " TEXT,"
+            + COL_DUE_DATE + " TEXT,"
+            + COL_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP"
+            + ")";
+
+    private static final String ALERT_COLUMNS = COL_ALERT_KEY + ", " + COL_PATIENT_ID + ", " + COL_ALERT_TYPE + ", "
+            + COL_TITLE + ", " + COL_DUE_DATE;
+
+    // Full-text patient search (FTS4, external content on patients). FTS4 rather
+    // than FTS5 because the framework SQLite on our minSdk does not ship FTS5.
+    private static final String CREATE_TABLE_PATIENTS_FTS = "CREATE VIRTUAL TABLE IF NOT EXISTS "
+            + TABLE_PATIENTS_FTS + " USING fts4(content=\"" + TABLE_PATIENTS + "\", "
+            + COL_NAME + ", " + COL_PHONE + ", " + COL_ABHA_ID + ", " + COL_ADDRESS + ")";
+
+    private static final String FTS_COLUMNS = COL_NAME + ", " + COL_PHONE + ", " + COL_ABHA_ID + ", " + COL_ADDRESS;
+    private static final String FTS_NEW_VALUES = "new." + COL_NAME + ", new." + COL_PHONE + ", new." + COL_ABHA_ID
+            + ", new." + COL_ADDRESS;
+
+    // Keep patients_fts in step with patients; updates only touch the index when a
+    // searchable column changes
+    private static final String[] CREATE_PATIENTS_FTS_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_before_update BEFORE UPDATE OF " + FTS_COLUMNS
+                    + " ON " + TABLE_PATIENTS + " BEGIN DELETE FROM " + TABLE_PATIENTS_FTS
+                    + " WHERE docid = old." + COL_LOCAL_ID + "; END",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_before_delete BEFORE DELETE ON " + TABLE_PATIENTS
+                    + " BEGIN DELETE FROM " + TABLE_PATIENTS_FTS + " WHERE docid = old." + COL_LOCAL_ID + "; END",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_after_update AFTER UPDATE OF " + FTS_COLUMNS
+                    + " ON " + TABLE_PATIENTS + " BEGIN INSERT INTO " + TABLE_PATIENTS_FTS + "(docid, " + FTS_COLUMNS
+                    + ") VALUES (new." + COL_LOCAL_ID + ", " + FTS_NEW_VALUES + "); END",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_after_insert AFTER INSERT ON " + TABLE_PATIENTS
+                    + " BEGIN INSERT INTO " + TABLE_PATIENTS_FTS + "(docid, " + FTS_COLUMNS
+                    + ") VALUES (new." + COL_LOCAL_ID + ", " + FTS_NEW_VALUES + "); END"
+    };
+
+    // Secondary indexes for the hot lookups (per-patient lists, sync status scans,
+    // server id matching, keyset-paged patient lists and overdue vaccination alerts)
+    private static final String[] CREATE_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_patients_sync_status ON " + TABLE_PATIENTS
+                    + "(" + COL_SYNC_STATUS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_server_id ON " + TABLE_PATIENTS
+                    + "(" + COL_SERVER_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_name ON " + TABLE_PATIENTS + "(" + COL_NAME + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_last_updated ON " + TABLE_PATIENTS
+                    + "(" + COL_LAST_UPDATED + ")",
+            "CREATE INDEX IF NOT EXISTS idx_pregnancy_visits_patient ON " + TABLE_PREGNANCY_VISITS
+                    + "(" + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_pregnancy_visits_sync_status ON " + TABLE_PREGNANCY_VISITS
+                    + "(" + COL_SYNC_STATUS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_pregnancy_visits_server_id ON " + TABLE_PREGNANCY_VISITS
+                    + "(" + COL_SERVER_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_child_growth_patient ON " + TABLE_CHILD_GROWTH
+                    + "(" + COL_PATIENT_ID + ", " + COL_RECORD_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_child_growth_sync_status ON " + TABLE_CHILD_GROWTH
+                    + "(" + COL_SYNC_STATUS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_child_growth_server_id ON " + TABLE_CHILD_GROWTH
+                    + "(" + COL_SERVER_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_vaccinations_patient ON " + TABLE_VACCINATIONS
+                    + "(" + COL_PATIENT_ID + ", " + COL_DUE_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_vaccinations_sync_status ON " + TABLE_VACCINATIONS
+                    + "(" + COL_SYNC_STATUS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_vaccinations_server_id ON " + TABLE_VACCINATIONS
+                    + "(" + COL_SERVER_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_vaccinations_status_due ON " + TABLE_VACCINATIONS
+                    + "(" + COL_STATUS + ", " + COL_DUE_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_visits_patient ON " + TABLE_VISITS
+                    + "(" + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_visits_sync_status ON " + TABLE_VISITS
+                    + "(" + COL_SYNC_STATUS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_visits_server_id ON " + TABLE_VISITS
+                    + "(" + COL_SERVER_ID + ")",
+            "CREATE INDEX IF NOT EXISTS idx_sync_queue_status ON " + TABLE_SYNC_QUEUE
+                    + "(" + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ")"
+    };
+
+    // Category and high-risk filters on the patient lists, by the filtered
+    // column then each list sort key
+    private static final String[] CREATE_LIST_FILTER_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_patients_category_code_name ON " + TABLE_PATIENTS
+                    + "(" + COL_CATEGORY_CODE + ", " + COL_NAME + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_category_code_updated ON " + TABLE_PATIENTS
+                    + "(" + COL_CATEGORY_CODE + ", " + COL_LAST_UPDATED + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_high_risk_name ON " + TABLE_PATIENTS
+                    + "(" + COL_IS_HIGH_RISK + ", " + COL_NAME + ")",
+            "CREATE INDEX IF NOT EXISTS idx_patients_high_risk_updated ON " + TABLE_PATIENTS
+                    + "(" + COL_IS_HIGH_RISK + ", " + COL_LAST_UPDATED + ")"
+    };
+
+    // One queue entry per entity; (table_name, record_id) lookups use this index
+    private static final String CREATE_SYNC_QUEUE_KEY = "CREATE UNIQUE INDEX IF NOT EXISTS idx_sync_queue_entity ON "
+            + TABLE_SYNC_QUEUE + "(" + COL_TABLE_NAME + ", " + COL_RECORD_ID + ")";
+
+    // Visit date as epoch millis, derived from the text date whatever path wrote
+    // it (local form, server pull, migration). Text is local time; unparseable
+    // text leaves NULL.
+    private static final String[] CREATE_VISIT_DATE_MS_TRIGGERS = {
+            visitDateMsTrigger(TABLE_VISITS, "insert", "INSERT"),
+            visitDateMsTrigger(TABLE_VISITS, "update", "UPDATE OF " + COL_VISIT_DATE),
+            visitDateMsTrigger(TABLE_PREGNANCY_VISITS, "insert", "INSERT"),
+            visitDateMsTrigger(TABLE_PREGNANCY_VISITS, "update", "UPDATE OF " + COL_VISIT_DATE)
+    };
+
+    // Day and week counts and the stale-synced cleanup are range scans on these
+    private static final String[] CREATE_TIMESTAMP_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_visits_date_ms ON " + TABLE_VISITS + "(" + COL_VISIT_DATE_MS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_pregnancy_visits_date_ms ON " + TABLE_PREGNANCY_VISITS
+                    + "(" + COL_VISIT_DATE_MS + ")",
+            "CREATE INDEX IF NOT EXISTS idx_sync_queue_status_updated ON " + TABLE_SYNC_QUEUE
+                    + "(" + COL_SYNC_STATUS + ", " + COL_LAST_UPDATED_MS + ")"
+    };
+
+    // Queue upsert as two cached statements: the framework SQLite on our minSdk
+    // predates INSERT ... ON CONFLICT DO UPDATE (3.24). COALESCE keeps the stored
+    // payload when a change is queued without one. A new change starts with a
+    // fresh retry budget, dead-lettered or not.
+    private static final String UPDATE_SYNC_QUEUE_ENTRY = "UPDATE " + TABLE_SYNC_QUEUE + " SET "
+            + COL_ACTION + " = ?1, " + COL_DATA_JSON + " = COALESCE(?2, " + COL_DATA_JSON + "), "
+            + COL_SYNC_STATUS + " = '" + SYNC_PENDING + "', " + COL_ERROR_MESSAGE + " = NULL, "
+            + COL_RETRY_COUNT + " = 0, " + COL_NEXT_ATTEMPT_AT + " = NULL, "
+            + COL_LAST_UPDATED + " = ?3, " + COL_LAST_UPDATED_MS + " = ?6 WHERE " + COL_TABLE_NAME + " = ?4 AND "
+            + COL_RECORD_ID + " = ?5";
+
+    private static final String INSERT_SYNC_QUEUE_ENTRY = "INSERT INTO " + TABLE_SYNC_QUEUE + "("
+            + COL_ACTION + ", " + COL_DATA_JSON + ", " + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ", "
+            + COL_LAST_UPDATED + ", " + COL_TABLE_NAME + ", " + COL_RECORD_ID + ", " + COL_CREATED_AT_MS + ", "
+            + COL_LAST_UPDATED_MS + ") VALUES (?1, ?2, '" + SYNC_PENDING + "', ?3, ?3, ?4, ?5, ?6, ?6)";
+
+    // One row per uploaded entity: how often it was uploaded and when, without
+    // the payload. Kept after the queue entry is gone, for the sync history screen.
+    private static final String CREATE_TABLE_SYNC_HISTORY = "CREATE TABLE IF NOT EXISTS " + TABLE_SYNC_HISTORY + "("
+            + COL_LOCAL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_TABLE_NAME + " TEXT NOT NULL,"
+            + COL_RECORD_ID + " INTEGER NOT NULL,"
+            + COL_ACTION + " TEXT,"
+            + COL_UPLOAD_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COL_ATTEMPT_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + COL_FIRST_SYNCED_AT_MS + " INTEGER,"
+            + COL_LAST_SYNCED_AT + " TEXT,"
+            + COL_LAST_SYNCED_AT_MS + " INTEGER,"
+            + "UNIQUE(" + COL_TABLE_NAME + ", " + COL_RECORD_ID + ")"
+            + ")";
+
+    private static final String CREATE_SYNC_HISTORY_INDEX = "CREATE INDEX IF NOT EXISTS idx_sync_history_synced ON "
+            + TABLE_SYNC_HISTORY + "(" + COL_LAST_SYNCED_AT_MS + ")";
+
+    // Fold a queue entry (?1 its local_id) into its entity's history row as an
+    // upload at ?2 (text) / ?3 (millis); attempts count the failed tries too
+    private static final String INSERT_SYNC_HISTORY = "INSERT OR IGNORE INTO " + TABLE_SYNC_HISTORY + "("
+            + COL_TABLE_NAME + ", " + COL_RECORD_ID + ", " + COL_FIRST_SYNCED_AT_MS + ") SELECT " + COL_TABLE_NAME
+            + ", " + COL_RECORD_ID + ", ?3 FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " = ?1";
+
+    private static final String UPDATE_SYNC_HISTORY = "UPDATE " + TABLE_SYNC_HISTORY + " SET "
+            + COL_UPLOAD_COUNT + " = " + COL_UPLOAD_COUNT + " + 1, "
+            + COL_ATTEMPT_COUNT + " = " + COL_ATTEMPT_COUNT + " + 1 + " + queuedValue("COALESCE(" + COL_RETRY_COUNT
+                    + ", 0)") + ", "
+            + COL_ACTION + " = " + queuedValue(COL_ACTION) + ", "
+            + COL_LAST_SYNCED_AT + " = ?2, " + COL_LAST_SYNCED_AT_MS + " = ?3"
+            + " WHERE " + COL_TABLE_NAME + " = " + queuedValue(COL_TABLE_NAME)
+            + " AND " + COL_RECORD_ID + " = " + queuedValue(COL_RECORD_ID);
+
+    private static String queuedValue(String expression) {
+        return "(SELECT " + expression + " FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " = ?1)";
+    }
+
+    private static String visitDateMsTrigger(String table, String name, String event) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_date_ms_" + name + " AFTER " + event + " ON " + table
+                + " BEGIN UPDATE " + table + " SET " + COL_VISIT_DATE_MS + " = " + epochMillis("new." + COL_VISIT_DATE)
+                + " WHERE " + COL_LOCAL_ID + " = new." + COL_LOCAL_ID + "; END";
+    }
+
+    /**
+     * SQL for the epoch millis of a local-time text timestamp column
+     */
+    private static String epochMillis(String column) {
+        return "CAST(strftime('%s', " + column + ", 'utc') AS INTEGER) * 1000";
+    }
+
+    private static final String[] CREATE_ALERT_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_alerts_type_due ON " + TABLE_ALERTS
+                    + "(" + COL_ALERT_TYPE + ", " + COL_DUE_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS idx_alerts_patient ON " + TABLE_ALERTS + "(" + COL_PATIENT_ID + ")"
+    };
+
+    // Small key/value store for bookkeeping that must commit with the data it
+    // describes (backfill watermarks)
+    private static final String CREATE_TABLE_DB_META = "CREATE TABLE IF NOT EXISTS " + TABLE_DB_META + "("
+            + COL_META_KEY + " TEXT PRIMARY KEY,"
+            + COL_META_VALUE + " TEXT"
+            + ")";
+
+    private static final String CREATE_TABLE_DASHBOARD_STATS = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_DASHBOARD_STATS + "("
+            + COL_STAT_KEY + " TEXT PRIMARY KEY,"
+            + COL_STAT_VALUE + " INTEGER NOT NULL DEFAULT 0"
+            + ")";
+
+    // Newest vitals record per patient, kept as JSON in the server's field names
+    // so the profile can show it offline. patient_id is the local patient id;
+    // source_id is the local row the record came from, or NULL when it was
+    // read from the server.
+    private static final String CREATE_TABLE_PATIENT_LATEST_VITALS = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_PATIENT_LATEST_VITALS + "("
+            + COL_PATIENT_ID + " INTEGER PRIMARY KEY,"
+            + COL_SOURCE_TABLE + " TEXT NOT NULL,"
+            + COL_SOURCE_ID + " INTEGER,"
+            + COL_RECORD_DATE + " TEXT,"
+            + COL_DATA_JSON + " TEXT NOT NULL,"
+            + COL_LAST_UPDATED_MS + " INTEGER"
+            + ")";
+
+    // Replaces the cached record unless it is newer than this one; a new version
+    // of the cached record itself always replaces it
+    private static final String PUT_LATEST_VITALS = "INSERT OR REPLACE INTO " + TABLE_PATIENT_LATEST_VITALS + "("
+            + COL_PATIENT_ID + ", " + COL_SOURCE_TABLE + ", " + COL_SOURCE_ID + ", " + COL_RECORD_DATE + ", "
+            + COL_DATA_JSON + ", " + COL_LAST_UPDATED_MS + ") SELECT ?1, ?2, ?3, ?4, ?5, ?6 WHERE NOT EXISTS (SELECT 1"
+            + " FROM " + TABLE_PATIENT_LATEST_VITALS + " WHERE " + COL_PATIENT_ID + " = ?1 AND " + COL_RECORD_DATE
+            + " > ?4 AND NOT (" + COL_SOURCE_TABLE + " = ?2 AND " + COL_SOURCE_ID + " IS ?3))";
+
+    // Tables whose rows carry vitals
+    private static final String[] LATEST_VITALS_SOURCE_TABLES = {
+            TABLE_PREGNANCY_VISITS, TABLE_CHILD_GROWTH, TABLE_VISITS
+    };
+
+    // Backfill inserts one vaccination per (patient, vaccine) that is not already
+    // recorded; the NOT EXISTS also sees rows inserted earlier in the same batch
+    private static final String INSERT_MISSING_VACCINATION = "INSERT INTO " + TABLE_VACCINATIONS + "("
+            + COL_PATIENT_ID + ", " + COL_VACCINE_NAME + ", " + COL_DUE_DATE + ", " + COL_GIVEN_DATE + ", "
+            + COL_STATUS + ", " + COL_SYNC_STATUS + ") SELECT ?1, ?2, ?3, ?4, ?5, '" + SYNC_PENDING + "'"
+            + " WHERE NOT EXISTS (SELECT 1 FROM " + TABLE_VACCINATIONS + " WHERE " + COL_PATIENT_ID + " = ?1 AND "
+            + COL_VACCINE_NAME + " = ?2)";
+
+    // One row per clinical value recorded by a visit or growth record (codes in
+    // Constants.OBS_*); replaces searching the notes text of those records.
+    // patient_id is the record's, which the insert methods resolve to the local
+    // patient id.
+    private static final String CREATE_TABLE_OBSERVATIONS = "CREATE TABLE IF NOT EXISTS " + TABLE_OBSERVATIONS + "("
+            + COL_LOCAL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_PATIENT_ID + " INTEGER NOT NULL,"
+            + COL_SOURCE_TABLE + " TEXT NOT NULL,"
+            + COL_SOURCE_ID + " INTEGER NOT NULL,"
+            + COL_OBS_CODE + " INTEGER NOT NULL,"
+            + COL_VALUE_NUM + " REAL,"
+            + COL_VALUE_TEXT + " TEXT,"
+            + COL_OBSERVED_AT + " TEXT,"
+            + COL_OBSERVED_AT_MS + " INTEGER"
+            + ")";
+
+    private static final String[] CREATE_OBSERVATION_INDEXES = {
+            // "who received X": covering lookup of text observations
+            "CREATE INDEX IF NOT EXISTS idx_observations_code_text ON " + TABLE_OBSERVATIONS
+                    + "(" + COL_OBS_CODE + ", " + COL_VALUE_TEXT + ", " + COL_PATIENT_ID + ")",
+            // "whose latest X is below n": covering per-patient scan in time order
+            "CREATE INDEX IF NOT EXISTS idx_observations_code_patient_time ON " + TABLE_OBSERVATIONS
+                    + "(" + COL_OBS_CODE + ", " + COL_PATIENT_ID + ", " + COL_OBSERVED_AT_MS + ", " + COL_VALUE_NUM
+                    + ")",
+            "CREATE INDEX IF NOT EXISTS idx_observations_source ON " + TABLE_OBSERVATIONS
+                    + "(" + COL_SOURCE_TABLE + ", " + COL_SOURCE_ID + ")"
+    };
+
+    private static final String INSERT_OBSERVATION = "INSERT INTO " + TABLE_OBSERVATIONS + "(" + COL_PATIENT_ID
+            + ", " + COL_SOURCE_TABLE + ", " + COL_SOURCE_ID + ", " + COL_OBS_CODE + ", " + COL_VALUE_NUM + ", "
+            + COL_VALUE_TEXT + ", " + COL_OBSERVED_AT + ", " + COL_OBSERVED_AT_MS + ") VALUES (?1, ?2, ?3, ?4, ?5, ?6, ?7, "
+            + epochMillis("?7") + ")";
+
+    private static final String DELETE_OBSERVATIONS = "DELETE FROM " + TABLE_OBSERVATIONS + " WHERE "
+            + COL_SOURCE_TABLE + " = ?1 AND " + COL_SOURCE_ID + " = ?2";
+
     // Singleton Instance
     private static DatabaseHelper instance;
 
@@ -252,8 +658,84 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return instance;
     }
 
+    private DbWriteExecutor writeExecutor;
+
+    // Cached queue upsert statements, compiled on first use. syncQueueLock only
+    // guards compiling and closing them; their bindings are used inside a write
+    // transaction, which already keeps other threads out.
+    private final Object syncQueueLock = new Object();
+    private SQLiteStatement updateSyncQueueStatement;
+    private SQLiteStatement insertSyncQueueStatement;
+
+    @Override
+    public synchronized void close() {
+        synchronized (syncQueueLock) {
+            if (updateSyncQueueStatement != null) {
+                updateSyncQueueStatement.close();
+                insertSyncQueueStatement.close();
+                updateSyncQueueStatement = null;
+                insertSyncQueueStatement = null;
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * Shared single-writer executor; small writes submitted here are grouped
+     * into one transaction (see DbWriteExecutor)
+     */
+    public synchronized DbWriteExecutor getWriteExecutor() {
+        if (writeExecutor == null) {
+            writeExecutor = new DbWriteExecutor(this);
+        }
+        return writeExecutor;
+    }
+
+    private MigrationRunner migrationRunner;
+
+    /**
+     * Runner for the chunked data migrations scheduled by onUpgrade
+     */
+    public synchronized MigrationRunner getMigrationRunner() {
+        if (migrationRunner == null) {
+            migrationRunner = new MigrationRunner(this, migrationSteps(), MigrationRunner.CHUNK_SIZE);
+        }
+        return migrationRunner;
+    }
+
+    // Idle pooled reader connections are closed after this long
+    private static final long IDLE_CONNECTION_TIMEOUT_MS = 30_000;
+
     private DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Separate database file (tests and benchmarks), same schema and connection
+     * setup as the app database
+     */
+    @VisibleForTesting
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        // WAL lets list queries run on pooled reader connections while
+        // a sync pass holds the write connection, instead of waiting on its lock
+        setWriteAheadLoggingEnabled(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            setIdleConnectionTimeout(IDLE_CONNECTION_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Incremental auto-vacuum is fixed when the file is first written, and
+        // the framework has already added android_metadata and switched on WAL
+        // by now. A new file holds nothing else yet, so rebuilding it with the
+        // mode costs nothing; older files switch in runStorageMaintenance.
+        if (db.getVersion() == 0 && pragmaLong(db, "auto_vacuum") != 2) {
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
+        }
     }
 
     @Override
@@ -266,6 +748,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.execSQL(CREATE_TABLE_SYNC_QUEUE);
         db.execSQL(CREATE_TABLE_USERS);
         db.execSQL(CREATE_TABLE_ALERTS_REVIEWED);
+        createIndexes(db);
+        createPatientSearchIndex(db);
+        createAlertsTable(db);
+        createMetaTable(db);
+        db.execSQL(CREATE_SYNC_QUEUE_KEY);
+        createTimestampIndexes(db);
+        createDashboardStats(db);
+        rebuildDashboardStats(db);
+        createListFilterIndexes(db);
+        createCascadeTriggers(db);
+        createLatestVitals(db);
+        createObservations(db);
+        createSyncHistory(db);
     }
 
     @Override
@@ -333,37 +828,644 @@ public class DatabaseHelper extends SQLiteOpenHelper {
             addColumnIfNotExists(db, TABLE_PATIENTS, COL_BLOOD_GROUP, "TEXT");
 
             // Drop old columns (SQLite doesn't support DROP COLUMN before 3.35.0)
-            // Instead, we'll migrate data to new table
-            db.execSQL("CREATE TABLE patients_new ("
-                    + "local_id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "server_id INTEGER,"
-                    + "name TEXT NOT NULL,"
-                    + "age INTEGER,"
-                    + "dob TEXT,"
-                    + "gender TEXT,"
-                    + "phone TEXT,"
-                    + "address TEXT,"
-                    + "blood_group TEXT,"
-                    + "category TEXT,"
-                    + "medical_notes TEXT,"
-                    + "photo_path TEXT,"
-                    + "is_high_risk INTEGER DEFAULT 0,"
-                    + "high_risk_reason TEXT,"
-                    + "sync_status TEXT DEFAULT 'PENDING',"
-                    + "created_at DATETIME DEFAULT CURRENT_TIMESTAMP,"
-                    + "last_updated DATETIME DEFAULT CURRENT_TIMESTAMP)");
-
-            // Copy data (map state+district+area to address if address is null)
-            db.execSQL("INSERT INTO patients_new SELECT "
-                    + "local_id, server_id, name, age, dob, gender, phone, "
-                    + "COALESCE(address, area || ', ' || district || ', ' || state, area, ''), "
-                    + "NULL as blood_group, "
-                    + "category, medical_notes, photo_path, is_high_risk, high_risk_reason, "
-                    + "sync_status, created_at, last_updated FROM patients");
-
-            // Replace old table
-            db.execSQL("DROP TABLE patients");
-            db.execSQL("ALTER TABLE patients_new RENAME TO patients");
+            // by copying into a new table. The copy runs in chunks after open
+            // (MigrationRunner); until it finishes the old table stays in use.
+            createMetaTable(db);
+            MigrationRunner.schedule(db, STEP_PATIENTS_REBUILD);
+        }
+
+        if (oldVersion < 12) {
+            // Version 11 -> 12 Migration: Secondary indexes for hot queries (the
+            // patients rebuild creates them again on its new table)
+            createIndexes(db);
+        }
+
+        if (oldVersion < 13) {
+            // Version 12 -> 13 Migration: FTS patient search, populated from existing rows
+            createPatientSearchIndex(db);
+            db.execSQL("INSERT INTO " + TABLE_PATIENTS_FTS + "(" + TABLE_PATIENTS_FTS + ") VALUES('rebuild')");
+        }
+
+        if (oldVersion < 14) {
+            // Version 13 -> 14 Migration: Materialized alerts with stable ids
+            createAlertsTable(db);
+            db.execSQL("INSERT OR REPLACE INTO " + TABLE_ALERTS + "(" + ALERT_COLUMNS + ") "
+                    + vaccinationAlertSelect("") + " FROM " + TABLE_VACCINATIONS
+                    + " WHERE " + vaccinationAlertCondition(""));
+            db.execSQL("INSERT OR REPLACE INTO " + TABLE_ALERTS + "(" + ALERT_COLUMNS + ") "
+                    + growthAlertSelect("") + " FROM " + TABLE_CHILD_GROWTH
+                    + " WHERE " + growthAlertCondition(""));
+
+            // Carry review flags over from the old display-string keys (the titles
+            // are built exactly as those strings were)
+            db.execSQL("INSERT OR REPLACE INTO " + TABLE_ALERTS_REVIEWED + "(" + COL_PATIENT_ID + ", "
+                    + COL_VISIT_TYPE + ", is_reviewed) SELECT a." + COL_PATIENT_ID + ", a." + COL_ALERT_KEY
+                    + ", r.is_reviewed FROM " + TABLE_ALERTS + " a JOIN " + TABLE_ALERTS_REVIEWED + " r ON r."
+                    + COL_PATIENT_ID + " = a." + COL_PATIENT_ID + " AND r." + COL_VISIT_TYPE + " = a." + COL_TITLE);
+        }
+
+        if (oldVersion < 15) {
+            // Version 14 -> 15 Migration: Meta table for backfill watermarks (the
+            // first backfill after upgrade starts from 0 and covers all rows once)
+            createMetaTable(db);
+        }
+
+        if (oldVersion < 16) {
+            // Version 15 -> 16 Migration: One sync_queue row per entity. Keep the
+            // newest row of each duplicate group, still pending if any of the group
+            // had not synced and keeping the latest payload, then enforce the key.
+            db.execSQL("UPDATE " + TABLE_SYNC_QUEUE + " SET " + COL_SYNC_STATUS + " = '" + SYNC_PENDING
+                    + "' WHERE " + COL_SYNC_STATUS + " = '" + SYNC_SYNCED + "' AND EXISTS (SELECT 1 FROM "
+                    + TABLE_SYNC_QUEUE + " d WHERE d." + COL_TABLE_NAME + " = " + TABLE_SYNC_QUEUE + "."
+                    + COL_TABLE_NAME + " AND d." + COL_RECORD_ID + " = " + TABLE_SYNC_QUEUE + "." + COL_RECORD_ID
+                    + " AND d." + COL_SYNC_STATUS + " <> '" + SYNC_SYNCED + "')");
+            db.execSQL("UPDATE " + TABLE_SYNC_QUEUE + " SET " + COL_DATA_JSON + " = (SELECT d." + COL_DATA_JSON
+                    + " FROM " + TABLE_SYNC_QUEUE + " d WHERE d." + COL_TABLE_NAME + " = " + TABLE_SYNC_QUEUE + "."
+                    + COL_TABLE_NAME + " AND d." + COL_RECORD_ID + " = " + TABLE_SYNC_QUEUE + "." + COL_RECORD_ID
+                    + " AND d." + COL_DATA_JSON + " IS NOT NULL ORDER BY d." + COL_LOCAL_ID + " DESC LIMIT 1) WHERE "
+                    + COL_DATA_JSON + " IS NULL");
+            db.execSQL("DELETE FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " NOT IN (SELECT MAX("
+                    + COL_LOCAL_ID + ") FROM " + TABLE_SYNC_QUEUE + " GROUP BY " + COL_TABLE_NAME + ", "
+                    + COL_RECORD_ID + ")");
+            db.execSQL("DROP INDEX IF EXISTS idx_sync_queue_record");
+            db.execSQL(CREATE_SYNC_QUEUE_KEY);
+        }
+
+        if (oldVersion < 17) {
+            // Version 16 -> 17 Migration: Epoch-millis columns next to the text
+            // timestamps, filled from the existing text in chunks after open
+            addColumnIfNotExists(db, TABLE_VISITS, COL_VISIT_DATE_MS, "INTEGER");
+            addColumnIfNotExists(db, TABLE_PREGNANCY_VISITS, COL_VISIT_DATE_MS, "INTEGER");
+            addColumnIfNotExists(db, TABLE_SYNC_QUEUE, COL_CREATED_AT_MS, "INTEGER");
+            addColumnIfNotExists(db, TABLE_SYNC_QUEUE, COL_LAST_UPDATED_MS, "INTEGER");
+            createTimestampIndexes(db);
+            for (String table : EPOCH_MILLIS_TABLES) {
+                MigrationRunner.schedule(db, STEP_EPOCH_MILLIS_PREFIX + table);
+            }
+        }
+
+        if (oldVersion < 18) {
+            // Version 17 -> 18 Migration: Trigger-maintained dashboard counters,
+            // seeded from the current rows
+            createDashboardStats(db);
+            rebuildDashboardStats(db);
+        }
+
+        if (oldVersion < 19) {
+            // Version 18 -> 19 Migration: Sort-key indexes for the paged patient lists
+            createIndexes(db);
+        }
+
+        if (oldVersion < 20) {
+            // Version 19 -> 20 Migration: Integer category codes, backfilled from
+            // the category text; the text-keyed category indexes go
+            addColumnIfNotExists(db, TABLE_PATIENTS, COL_CATEGORY_CODE, "INTEGER NOT NULL DEFAULT 0");
+            backfillCategoryCodes(db);
+            db.execSQL("DROP INDEX IF EXISTS idx_patients_category_name");
+            db.execSQL("DROP INDEX IF EXISTS idx_patients_category_updated");
+            createListFilterIndexes(db);
+        }
+
+        if (oldVersion < 21) {
+            // Version 20 -> 21 Migration: Deleting a patient cascades to its records
+            // and their queued uploads; drop uploads already left behind by deletes
+            createCascadeTriggers(db);
+            for (String table : PATIENT_RECORD_TABLES) {
+                db.execSQL("DELETE FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_TABLE_NAME + " = '" + table + "' AND "
+                        + COL_RECORD_ID + " NOT IN (SELECT " + COL_LOCAL_ID + " FROM " + table + ")");
+            }
+        }
+
+        if (oldVersion < 22) {
+            // Version 21 -> 22 Migration: Latest-vitals cache, seeded from the
+            // records still waiting to upload
+            createLatestVitals(db);
+            seedLatestVitals(db);
+        }
+
+        if (oldVersion < 23) {
+            // Version 22 -> 23 Migration: Typed observations, filled in chunks after
+            // open from the notes of existing records. The vaccination backfill now
+            // reads them, so its per-table watermarks and notes-edit triggers go.
+            createObservations(db);
+            for (String table : LATEST_VITALS_SOURCE_TABLES) {
+                MigrationRunner.schedule(db, STEP_OBSERVATIONS_PREFIX + table);
+            }
+            db.execSQL("DROP TRIGGER IF EXISTS backfill_pregnancy_notes_update");
+            db.execSQL("DROP TRIGGER IF EXISTS backfill_growth_notes_update");
+            db.delete(TABLE_DB_META, COL_META_KEY + " IN (?, ?)", new String[] {
+                    "vaccine_backfill:" + TABLE_PREGNANCY_VISITS, "vaccine_backfill:" + TABLE_CHILD_GROWTH });
+        }
+
+        if (oldVersion < 24) {
+            // Version 23 -> 24 Migration: Completed uploads move from sync_queue to
+            // the compact sync_history, dropping their payloads
+            createSyncHistory(db);
+            moveSyncedToHistory(db, Long.MAX_VALUE);
+        }
+
+        if (oldVersion < 25) {
+            // Version 24 -> 25 Migration: Failed uploads wait out a backoff before
+            // the next try; existing FAILED entries are due at once
+            db.execSQL("ALTER TABLE " + TABLE_SYNC_QUEUE + " ADD COLUMN " + COL_NEXT_ATTEMPT_AT + " INTEGER");
+        }
+
+        if (oldVersion < 26) {
+            // Version 25 -> 26 Migration: Records always carry their patient's
+            // local id, so the cascade cannot reach a patient whose server id
+            // happens to equal it
+            rekeyPatientRecords(db);
+            // The latest-vitals cache follows: server records were cached under
+            // the server id, and a patient delete matched both ids
+            db.execSQL("DROP TRIGGER IF EXISTS patients_latest_vitals_delete");
+            createLatestVitals(db);
+            rekeyLatestVitals(db);
+            // Observations too, which matched either id when read
+            for (String table : LATEST_VITALS_SOURCE_TABLES) {
+                String recordPatient = "(SELECT " + COL_PATIENT_ID + " FROM " + table + " WHERE " + COL_LOCAL_ID
+                        + " = " + TABLE_OBSERVATIONS + "." + COL_SOURCE_ID + ")";
+                db.execSQL("UPDATE " + TABLE_OBSERVATIONS + " SET " + COL_PATIENT_ID + " = " + recordPatient
+                        + " WHERE " + COL_SOURCE_TABLE + " = '" + table + "' AND " + COL_PATIENT_ID + " IS NOT "
+                        + recordPatient);
+            }
+            // High-risk list filter indexes
+            createListFilterIndexes(db);
+            // Entries in flight are leased, so a later pass does not send them
+            // again while their upload may still answer
+            db.execSQL("ALTER TABLE " + TABLE_SYNC_QUEUE + " ADD COLUMN " + COL_LEASED_UNTIL + " INTEGER");
+        }
+    }
+
+    /**
+     * Point records saved under a patient's server id at its local id. Offline
+     * vaccinations were always saved under the server id; other records only
+     * when no local patient has that id.
+     */
+    private void rekeyPatientRecords(SQLiteDatabase db) {
+        for (String table : PATIENT_RECORD_TABLES) {
+            String byServerId = "(SELECT " + COL_LOCAL_ID + " FROM " + TABLE_PATIENTS + " WHERE " + COL_SERVER_ID
+                    + " > 0 AND " + COL_SERVER_ID + " = " + table + "." + COL_PATIENT_ID + " LIMIT 1)";
+            String where = byServerId + " IS NOT NULL";
+            if (!TABLE_VACCINATIONS.equals(table)) {
+                where += " AND " + COL_PATIENT_ID + " NOT IN (SELECT " + COL_LOCAL_ID + " FROM " + TABLE_PATIENTS
+                        + ")";
+            }
+            db.execSQL("UPDATE " + table + " SET " + COL_PATIENT_ID + " = " + byServerId + " WHERE " + where);
+        }
+    }
+
+    private void createSyncHistory(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_SYNC_HISTORY);
+        db.execSQL(CREATE_SYNC_HISTORY_INDEX);
+    }
+
+    /**
+     * Move cached vitals to their local patient: server records by the server
+     * id they were cached under, local ones by their source row. Server records
+     * of patients not on the device are dropped, and where two rows now share a
+     * patient the newer is kept.
+     */
+    private void rekeyLatestVitals(SQLiteDatabase db) {
+        StringBuilder sourcePatient = new StringBuilder("CASE " + COL_SOURCE_TABLE);
+        for (String table : LATEST_VITALS_SOURCE_TABLES) {
+            sourcePatient.append(" WHEN '").append(table).append("' THEN (SELECT ").append(COL_PATIENT_ID)
+                    .append(" FROM ").append(table).append(" WHERE ").append(COL_LOCAL_ID).append(" = v.")
+                    .append(COL_SOURCE_ID).append(")");
+        }
+        sourcePatient.append(" END");
+        String columns = COL_SOURCE_TABLE + ", " + COL_SOURCE_ID + ", " + COL_RECORD_DATE + ", " + COL_DATA_JSON
+                + ", " + COL_LAST_UPDATED_MS;
+
+        db.execSQL("CREATE TEMP TABLE latest_vitals_rekeyed AS SELECT CASE WHEN v." + COL_SOURCE_ID
+                + " IS NULL THEN (SELECT " + COL_LOCAL_ID + " FROM " + TABLE_PATIENTS + " WHERE " + COL_SERVER_ID
+                + " > 0 AND " + COL_SERVER_ID + " = v." + COL_PATIENT_ID + " LIMIT 1) ELSE " + sourcePatient
+                + " END AS " + COL_PATIENT_ID + ", " + columns + " FROM " + TABLE_PATIENT_LATEST_VITALS + " v");
+        db.execSQL("DELETE FROM " + TABLE_PATIENT_LATEST_VITALS);
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_PATIENT_LATEST_VITALS + "(" + COL_PATIENT_ID + ", " + columns
+                + ") SELECT " + COL_PATIENT_ID + ", " + columns + " FROM latest_vitals_rekeyed WHERE "
+                + COL_PATIENT_ID + " IS NOT NULL ORDER BY " + COL_RECORD_DATE);
+        db.execSQL("DROP TABLE latest_vitals_rekeyed");
+    }
+
+    /**
+     * ON DELETE CASCADE for patient records, done with triggers: deleting a
+     * patient deletes its records, and deleting a record drops its queued
+     * upload. Records carry the patient's local id (see rekeyPatientRecords);
+     * foreign keys stay unenforced, as records orphaned by older versions
+     * would fail them.
+     */
+    private void createCascadeTriggers(SQLiteDatabase db) {
+        StringBuilder cascade = new StringBuilder();
+        for (String table : PATIENT_RECORD_TABLES) {
+            cascade.append("DELETE FROM ").append(table).append(" WHERE ").append(COL_PATIENT_ID).append(" = old.")
+                    .append(COL_LOCAL_ID).append(";");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_sync_queue_delete AFTER DELETE ON " + table
+                    + " BEGIN DELETE FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_TABLE_NAME + " = '" + table
+                    + "' AND " + COL_RECORD_ID + " = old." + COL_LOCAL_ID + "; END");
+        }
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS patients_cascade_delete AFTER DELETE ON " + TABLE_PATIENTS
+                + " BEGIN " + cascade + " END");
+    }
+
+    /**
+     * Create patient_latest_vitals and the triggers that drop a cached record
+     * when its source row or its patient is deleted. Triggers are dropped with
+     * their table, so a migration that rebuilds a source table must call this
+     * again.
+     */
+    private void createLatestVitals(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_PATIENT_LATEST_VITALS);
+        for (String table : LATEST_VITALS_SOURCE_TABLES) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_latest_vitals_delete AFTER DELETE ON " + table
+                    + " BEGIN DELETE FROM " + TABLE_PATIENT_LATEST_VITALS + " WHERE " + COL_PATIENT_ID + " = old."
+                    + COL_PATIENT_ID + " AND " + COL_SOURCE_TABLE + " = '" + table + "' AND " + COL_SOURCE_ID
+                    + " = old." + COL_LOCAL_ID + "; END");
+        }
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS patients_latest_vitals_delete AFTER DELETE ON " + TABLE_PATIENTS
+                + " BEGIN DELETE FROM " + TABLE_PATIENT_LATEST_VITALS + " WHERE " + COL_PATIENT_ID + " = old."
+                + COL_LOCAL_ID + "; END");
+    }
+
+    /**
+     * Fill the cache from queued uploads, whose payloads are already in the
+     * server's field names. Rows go in oldest first so each patient ends up
+     * with its newest record.
+     */
+    private void seedLatestVitals(SQLiteDatabase db) {
+        StringBuilder queued = new StringBuilder();
+        for (String table : LATEST_VITALS_SOURCE_TABLES) {
+            String date = TABLE_CHILD_GROWTH.equals(table) ? COL_RECORD_DATE : COL_VISIT_DATE;
+            if (queued.length() > 0) {
+                queued.append(" UNION ALL ");
+            }
+            queued.append("SELECT r.").append(COL_PATIENT_ID).append(" AS patient, '").append(table)
+                    .append("' AS source, r.").append(COL_LOCAL_ID).append(" AS id, r.").append(date)
+                    .append(" AS day, q.").append(COL_DATA_JSON).append(" AS json FROM ").append(table)
+                    .append(" r JOIN ").append(TABLE_SYNC_QUEUE).append(" q ON q.").append(COL_TABLE_NAME)
+                    .append(" = '").append(table).append("' AND q.").append(COL_RECORD_ID).append(" = r.")
+                    .append(COL_LOCAL_ID).append(" WHERE q.").append(COL_DATA_JSON).append(" IS NOT NULL");
+        }
+        db.execSQL("INSERT OR REPLACE INTO " + TABLE_PATIENT_LATEST_VITALS + "(" + COL_PATIENT_ID + ", "
+                + COL_SOURCE_TABLE + ", " + COL_SOURCE_ID + ", " + COL_RECORD_DATE + ", " + COL_DATA_JSON + ", "
+                + COL_LAST_UPDATED_MS + ") SELECT patient, source, id, day, json, "
+                + "CAST(strftime('%s', 'now') AS INTEGER) * 1000 FROM (" + queued + ") ORDER BY day, id");
+    }
+
+    /**
+     * Observations table and its indexes. Deleting a record deletes its
+     * observations; patient deletes reach them through the record cascade.
+     */
+    private void createObservations(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_OBSERVATIONS);
+        for (String statement : CREATE_OBSERVATION_INDEXES) {
+            db.execSQL(statement);
+        }
+        for (String table : LATEST_VITALS_SOURCE_TABLES) {
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + table + "_observations_delete AFTER DELETE ON " + table
+                    + " BEGIN DELETE FROM " + TABLE_OBSERVATIONS + " WHERE " + COL_SOURCE_TABLE + " = '" + table
+                    + "' AND " + COL_SOURCE_ID + " = old." + COL_LOCAL_ID + "; END");
+        }
+    }
+
+    /**
+     * Parse the notes of a table's records with fromId < local_id <= toId into
+     * observations, the same way new records are written. Records that already
+     * have observations were written by current code and are skipped.
+     */
+    private void backfillObservations(SQLiteDatabase db, String table, long fromId, long toId) {
+        String range = " FROM " + table + " WHERE " + COL_LOCAL_ID + " > ? AND " + COL_LOCAL_ID + " <= ? AND NOT EXISTS"
+                + " (SELECT 1 FROM " + TABLE_OBSERVATIONS + " WHERE " + COL_SOURCE_TABLE + " = '" + table + "' AND "
+                + COL_SOURCE_ID + " = " + table + "." + COL_LOCAL_ID + ")";
+        String[] args = { String.valueOf(fromId), String.valueOf(toId) };
+        SQLiteStatement insert = db.compileStatement(INSERT_OBSERVATION);
+        Cursor cursor;
+
+        if (TABLE_PREGNANCY_VISITS.equals(table)) {
+            cursor = db.rawQuery("SELECT " + COL_LOCAL_ID + ", " + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ", "
+                    + COL_WEIGHT + ", " + COL_BP_SYSTOLIC + ", " + COL_BP_DIASTOLIC + ", " + COL_NOTES + range, args);
+            while (cursor.moveToNext()) {
+                String bloodPressure = cursor.isNull(4) || cursor.isNull(5) ? null
+                        : cursor.getInt(4) + "/" + cursor.getInt(5);
+                pregnancyObservations(cursor.getString(6), bloodPressure, 0)
+                        .addNumber(Constants.OBS_WEIGHT, cursor.getDouble(3))
+                        .insertAll(insert, cursor.getLong(1), table, cursor.getLong(0), cursor.getString(2));
+            }
+        } else if (TABLE_CHILD_GROWTH.equals(table)) {
+            cursor = db.rawQuery("SELECT " + COL_LOCAL_ID + ", " + COL_PATIENT_ID + ", " + COL_RECORD_DATE + ", "
+                    + COL_WEIGHT + ", " + COL_HEIGHT + ", " + COL_HEAD_CIRCUMFERENCE + ", " + COL_GROWTH_STATUS + range,
+                    args);
+            while (cursor.moveToNext()) {
+                String notes = cursor.getString(6);
+                ObservationSet observations = growthObservations(notes)
+                        .addNumber(Constants.OBS_WEIGHT, cursor.getDouble(3))
+                        .addNumber(Constants.OBS_HEIGHT, cursor.getDouble(4));
+                // addChildGrowth keeps MUAC in head_circumference; its rows carry the form notes
+                if (ObservationSet.noteLine(notes, "Temperature: ") != null) {
+                    observations.addNumber(Constants.OBS_MUAC, cursor.getDouble(5));
+                }
+                observations.insertAll(insert, cursor.getLong(1), table, cursor.getLong(0), cursor.getString(2));
+            }
+        } else {
+            cursor = db.rawQuery("SELECT " + COL_LOCAL_ID + ", " + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ", "
+                    + COL_DESCRIPTION + range, args);
+            while (cursor.moveToNext()) {
+                generalObservations(cursor.getString(3)).insertAll(insert, cursor.getLong(1), table,
+                        cursor.getLong(0), cursor.getString(2));
+            }
+        }
+        cursor.close();
+        insert.close();
+    }
+
+    /**
+     * The chunked data migrations, in the order MigrationRunner runs them
+     */
+    private List<MigrationRunner.Step> migrationSteps() {
+        List<MigrationRunner.Step> steps = new ArrayList<>();
+        steps.add(new MigrationRunner.Step(STEP_PATIENTS_REBUILD, TABLE_PATIENTS) {
+            @Override
+            void migrate(SQLiteDatabase db, long fromId, long toId) {
+                preparePatientsRebuild(db);
+                db.execSQL("INSERT OR REPLACE INTO " + TABLE_PATIENTS_NEW + "(" + PATIENTS_REBUILD_COLUMNS
+                        + ") SELECT " + PATIENTS_REBUILD_VALUES + " FROM " + TABLE_PATIENTS + " WHERE "
+                        + COL_LOCAL_ID + " > ? AND " + COL_LOCAL_ID + " <= ?", new Object[] { fromId, toId });
+            }
+
+            @Override
+            void finish(SQLiteDatabase db) {
+                finishPatientsRebuild(db);
+            }
+        });
+        for (String table : EPOCH_MILLIS_TABLES) {
+            String assignments = TABLE_SYNC_QUEUE.equals(table)
+                    ? COL_CREATED_AT_MS + " = " + epochMillis(COL_CREATED_AT) + ", " + COL_LAST_UPDATED_MS + " = "
+                            + epochMillis("COALESCE(" + COL_LAST_UPDATED + ", " + COL_CREATED_AT + ")")
+                    : COL_VISIT_DATE_MS + " = " + epochMillis(COL_VISIT_DATE);
+            steps.add(new MigrationRunner.Step(STEP_EPOCH_MILLIS_PREFIX + table, table) {
+                @Override
+                void migrate(SQLiteDatabase db, long fromId, long toId) {
+                    db.execSQL("UPDATE " + table + " SET " + assignments + " WHERE " + COL_LOCAL_ID + " > ? AND "
+                            + COL_LOCAL_ID + " <= ?", new Object[] { fromId, toId });
+                }
+            });
+        }
+        for (String table : LATEST_VITALS_SOURCE_TABLES) {
+            steps.add(new MigrationRunner.Step(STEP_OBSERVATIONS_PREFIX + table, table) {
+                @Override
+                void migrate(SQLiteDatabase db, long fromId, long toId) {
+                    backfillObservations(db, table, fromId, toId);
+                }
+            });
+        }
+        return steps;
+    }
+
+    /**
+     * Create patients_new and the triggers that carry writes to rows already
+     * copied over into it. Idempotent, so every chunk calls it.
+     */
+    private void preparePatientsRebuild(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PATIENTS_NEW
+                + CREATE_TABLE_PATIENTS.substring(("CREATE TABLE " + TABLE_PATIENTS).length()));
+
+        String copied = " <= (SELECT CAST(" + COL_META_VALUE + " AS INTEGER) FROM " + TABLE_DB_META + " WHERE "
+                + COL_META_KEY + " = '" + MigrationRunner.META_PREFIX + STEP_PATIENTS_REBUILD + "')";
+        String copyRow = "INSERT OR REPLACE INTO " + TABLE_PATIENTS_NEW + "(" + PATIENTS_REBUILD_COLUMNS + ") SELECT "
+                + PATIENTS_REBUILD_VALUES + " FROM " + TABLE_PATIENTS + " WHERE " + COL_LOCAL_ID + " = new."
+                + COL_LOCAL_ID + ";";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS patients_rebuild_insert AFTER INSERT ON " + TABLE_PATIENTS
+                + " WHEN new." + COL_LOCAL_ID + copied + " BEGIN " + copyRow + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS patients_rebuild_update AFTER UPDATE ON " + TABLE_PATIENTS
+                + " WHEN new." + COL_LOCAL_ID + copied + " BEGIN " + copyRow + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS patients_rebuild_delete AFTER DELETE ON " + TABLE_PATIENTS
+                + " WHEN old." + COL_LOCAL_ID + copied + " BEGIN DELETE FROM " + TABLE_PATIENTS_NEW + " WHERE "
+                + COL_LOCAL_ID + " = old." + COL_LOCAL_ID + "; END");
+    }
+
+    /**
+     * Swap patients_new in for patients. Dropping the old table drops its
+     * indexes and triggers, so they are all created again on the new one.
+     */
+    private void finishPatientsRebuild(SQLiteDatabase db) {
+        preparePatientsRebuild(db);
+        db.execSQL("DROP TABLE " + TABLE_PATIENTS);
+        db.execSQL("ALTER TABLE " + TABLE_PATIENTS_NEW + " RENAME TO " + TABLE_PATIENTS);
+        createIndexes(db);
+        createListFilterIndexes(db);
+        createPatientSearchIndex(db);
+        createDashboardStats(db);
+        createCascadeTriggers(db);
+        createLatestVitals(db);
+    }
+
+    private void createListFilterIndexes(SQLiteDatabase db) {
+        for (String statement : CREATE_LIST_FILTER_INDEXES) {
+            db.execSQL(statement);
+        }
+    }
+
+    /**
+     * Set category_code from the category text, one UPDATE per distinct
+     * spelling, so the mapping lives only in Constants.categoryCode()
+     */
+    private void backfillCategoryCodes(SQLiteDatabase db) {
+        List<String> categories = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " + COL_CATEGORY + " FROM " + TABLE_PATIENTS + " WHERE "
+                + COL_CATEGORY + " IS NOT NULL", null);
+        while (cursor.moveToNext()) {
+            categories.add(cursor.getString(0));
+        }
+        cursor.close();
+
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_PATIENTS + " SET " + COL_CATEGORY_CODE
+                + " = ? WHERE " + COL_CATEGORY + " = ?");
+        for (String category : categories) {
+            update.bindLong(1, Constants.categoryCode(category));
+            update.bindString(2, category);
+            update.executeUpdateDelete();
+        }
+        update.close();
+    }
+
+    private void createIndexes(SQLiteDatabase db) {
+        for (String statement : CREATE_INDEXES) {
+            db.execSQL(statement);
+        }
+    }
+
+    /**
+     * Epoch-millis triggers and indexes. The triggers are dropped with their
+     * table, so a migration that rebuilds visits or pregnancy_visits must call
+     * this again.
+     */
+    private void createTimestampIndexes(SQLiteDatabase db) {
+        for (String statement : CREATE_VISIT_DATE_MS_TRIGGERS) {
+            db.execSQL(statement);
+        }
+        for (String statement : CREATE_TIMESTAMP_INDEXES) {
+            db.execSQL(statement);
+        }
+    }
+
+    /**
+     * Create the dashboard_stats table and the triggers that keep its counters
+     * current on every insert, delete and relevant update. Triggers are dropped
+     * with their table, so a migration that rebuilds a counted table must call
+     * this again (and rebuildDashboardStats).
+     */
+    private void createDashboardStats(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_DASHBOARD_STATS);
+
+        String patientInsert = statDelta("'" + STAT_TOTAL_PATIENTS + "'", "1")
+                + statDelta("'" + STAT_HIGH_RISK_PATIENTS + "'", isHighRisk("new."));
+        String patientDelete = statDelta("'" + STAT_TOTAL_PATIENTS + "'", "-1")
+                + statDelta("'" + STAT_HIGH_RISK_PATIENTS + "'", "-" + isHighRisk("old."));
+        String patientUpdate = statDelta("'" + STAT_HIGH_RISK_PATIENTS + "'",
+                isHighRisk("new.") + " - " + isHighRisk("old."));
+
+        for (String table : PENDING_COUNTED_TABLES) {
+            String pendingKey = "'" + STAT_PENDING_PREFIX + table + "'";
+            StringBuilder onInsert = new StringBuilder(statDelta(pendingKey, isPending("new.")));
+            StringBuilder onDelete = new StringBuilder(statDelta(pendingKey, "-" + isPending("old.")));
+            StringBuilder onUpdate = new StringBuilder(statDelta(pendingKey,
+                    isPending("new.") + " - " + isPending("old.")));
+            String updatedColumns = COL_SYNC_STATUS;
+
+            if (TABLE_PATIENTS.equals(table)) {
+                onInsert.append(patientInsert);
+                onDelete.append(patientDelete);
+                onUpdate.append(patientUpdate);
+                updatedColumns += ", " + COL_IS_HIGH_RISK;
+            } else if (TABLE_VISITS.equals(table) || TABLE_PREGNANCY_VISITS.equals(table)) {
+                onInsert.append(visitDayDelta("new.", "1"));
+                onDelete.append(visitDayDelta("old.", "-1"));
+                onUpdate.append(visitDayDelta("old.", "-1")).append(visitDayDelta("new.", "1"));
+                updatedColumns += ", " + COL_VISIT_DATE;
+            }
+
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_" + table + "_insert AFTER INSERT ON " + table
+                    + " BEGIN " + onInsert + " END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_" + table + "_delete AFTER DELETE ON " + table
+                    + " BEGIN " + onDelete + " END");
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS stats_" + table + "_update AFTER UPDATE OF " + updatedColumns
+                    + " ON " + table + " BEGIN " + onUpdate + " END");
+        }
+    }
+
+    /**
+     * Recompute every dashboard counter from the tables
+     */
+    private void rebuildDashboardStats(SQLiteDatabase db) {
+        String insertStat = "INSERT INTO " + TABLE_DASHBOARD_STATS + "(" + COL_STAT_KEY + ", " + COL_STAT_VALUE + ") ";
+        db.execSQL("DELETE FROM " + TABLE_DASHBOARD_STATS);
+        db.execSQL(insertStat + "SELECT '" + STAT_TOTAL_PATIENTS + "', COUNT(*) FROM " + TABLE_PATIENTS);
+        db.execSQL(insertStat + "SELECT '" + STAT_HIGH_RISK_PATIENTS + "', COUNT(*) FROM " + TABLE_PATIENTS
+                + " WHERE " + COL_IS_HIGH_RISK + " = 1");
+        for (String table : PENDING_COUNTED_TABLES) {
+            db.execSQL(insertStat + "SELECT '" + STAT_PENDING_PREFIX + table + "', COUNT(*) FROM " + table
+                    + " WHERE " + COL_SYNC_STATUS + " = '" + SYNC_PENDING + "'");
+        }
+        db.execSQL(insertStat + "SELECT " + visitDayKey("") + ", COUNT(*) FROM (SELECT " + COL_VISIT_DATE + " FROM "
+                + TABLE_VISITS + " UNION ALL SELECT " + COL_VISIT_DATE + " FROM " + TABLE_PREGNANCY_VISITS
+                + ") GROUP BY 1");
+    }
+
+    private static String statDelta(String key, String delta) {
+        return "UPDATE " + TABLE_DASHBOARD_STATS + " SET " + COL_STAT_VALUE + " = " + COL_STAT_VALUE + " + (" + delta
+                + ") WHERE " + COL_STAT_KEY + " = " + key + ";";
+    }
+
+    private static String visitDayDelta(String row, String delta) {
+        // Day keys are created on first use
+        return "INSERT OR IGNORE INTO " + TABLE_DASHBOARD_STATS + "(" + COL_STAT_KEY + ") VALUES ("
+                + visitDayKey(row) + ");" + statDelta(visitDayKey(row), delta);
+    }
+
+    private static String visitDayKey(String row) {
+        // Text dates are local time, so date() gives the local day
+        return "'" + STAT_VISITS_ON_PREFIX + "' || COALESCE(date(" + row + COL_VISIT_DATE + "), '')";
+    }
+
+    // IS (not =) so a NULL column counts as 0 instead of nulling the counter
+    private static String isPending(String row) {
+        return "(" + row + COL_SYNC_STATUS + " IS '" + SYNC_PENDING + "')";
+    }
+
+    private static String isHighRisk(String row) {
+        return "(" + row + COL_IS_HIGH_RISK + " IS 1)";
+    }
+
+    private void createMetaTable(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_DB_META);
+    }
+
+    /**
+     * Create the alerts table and the triggers that keep it in step with
+     * vaccinations and child_growth on every insert, update and delete.
+     */
+    private void createAlertsTable(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_ALERTS);
+        for (String statement : CREATE_ALERT_INDEXES) {
+            db.execSQL(statement);
+        }
+
+        String insertAlert = "INSERT OR REPLACE INTO " + TABLE_ALERTS + "(" + ALERT_COLUMNS + ") ";
+        String vaccinationAlert = insertAlert + vaccinationAlertSelect("new.")
+                + " WHERE " + vaccinationAlertCondition("new.") + ";";
+        String deleteVaccinationAlert = "DELETE FROM " + TABLE_ALERTS + " WHERE " + COL_ALERT_KEY
+                + " = 'vaccination:' || old." + COL_LOCAL_ID + ";";
+        String growthAlert = insertAlert + growthAlertSelect("new.")
+                + " WHERE " + growthAlertCondition("new.") + ";";
+        String deleteGrowthAlert = "DELETE FROM " + TABLE_ALERTS + " WHERE " + COL_ALERT_KEY
+                + " = 'growth:' || old." + COL_LOCAL_ID + ";";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_vaccination_insert AFTER INSERT ON " + TABLE_VACCINATIONS
+                + " BEGIN " + vaccinationAlert + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_vaccination_update AFTER UPDATE OF " + COL_PATIENT_ID
+                + ", " + COL_VACCINE_NAME + ", " + COL_DUE_DATE + ", " + COL_STATUS + " ON " + TABLE_VACCINATIONS
+                + " BEGIN " + deleteVaccinationAlert + " " + vaccinationAlert + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_vaccination_delete AFTER DELETE ON " + TABLE_VACCINATIONS
+                + " BEGIN " + deleteVaccinationAlert + " END");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_growth_insert AFTER INSERT ON " + TABLE_CHILD_GROWTH
+                + " BEGIN " + growthAlert + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_growth_update AFTER UPDATE OF " + COL_PATIENT_ID + ", "
+                + COL_WEIGHT + " ON " + TABLE_CHILD_GROWTH
+                + " BEGIN " + deleteGrowthAlert + " " + growthAlert + " END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS alerts_growth_delete AFTER DELETE ON " + TABLE_CHILD_GROWTH
+                + " BEGIN " + deleteGrowthAlert + " END");
+    }
+
+    private static String vaccinationAlertSelect(String row) {
+        return "SELECT 'vaccination:' || " + row + COL_LOCAL_ID + ", " + row + COL_PATIENT_ID + ", '"
+                + ALERT_OVERDUE_VACCINE + "', 'Overdue Vaccine: ' || " + row + COL_VACCINE_NAME
+                + " || ' (Due: ' || " + row + COL_DUE_DATE + " || ')', " + row + COL_DUE_DATE;
+    }
+
+    private static String vaccinationAlertCondition(String row) {
+        return row + COL_STATUS + " IN ('Upcoming', 'Scheduled') AND " + row + COL_DUE_DATE + " IS NOT NULL AND "
+                + row + COL_DUE_DATE + " != ''";
+    }
+
+    private static String growthAlertSelect(String row) {
+        return "SELECT 'growth:' || " + row + COL_LOCAL_ID + ", " + row + COL_PATIENT_ID + ", '" + ALERT_LOW_WEIGHT
+                + "', 'Low Weight Alert: ' || CAST(" + row + COL_WEIGHT + " AS REAL) || 'kg', "
+                + row + COL_RECORD_DATE;
+    }
+
+    private static String growthAlertCondition(String row) {
+        // Weight is sometimes stored as an empty string; only real readings count
+        return "CAST(" + row + COL_WEIGHT + " AS REAL) > 0 AND CAST(" + row + COL_WEIGHT + " AS REAL) < 2.5";
+    }
+
+    /**
+     * Create the FTS table and its triggers. Triggers are dropped along with the
+     * patients table, so any migration that rebuilds patients must call this again.
+     */
+    private void createPatientSearchIndex(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_PATIENTS_FTS);
+        for (String statement : CREATE_PATIENTS_FTS_TRIGGERS) {
+            db.execSQL(statement);
         }
     }
 
@@ -403,6 +1505,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_ADDRESS, patient.getAddress());
         values.put(COL_BLOOD_GROUP, patient.getBloodGroup());
         values.put(COL_CATEGORY, patient.getCategory());
+        values.put(COL_CATEGORY_CODE, patient.getCategoryCode());
         values.put(COL_MEDICAL_NOTES, patient.getMedicalNotes());
         values.put(COL_PHOTO_PATH, patient.getPhotoPath());
         values.put(COL_IS_HIGH_RISK, patient.isHighRisk() ? 1 : 0);
@@ -428,30 +1531,66 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            do {
-                patients.add(cursorToPatient(cursor));
-            } while (cursor.moveToNext());
-        }
+        patients.addAll(new RowMappers.PatientMapper(cursor).mapAll());
         cursor.close();
         return patients;
     }
 
+    /**
+     * Keyset pager over local patients for list screens, optionally limited to
+     * the given Constants.CATEGORY_CODE_* values (see PatientPager)
+     */
+    public PatientPager newPatientPager(PatientPager.Sort sort, int pageSize, int... categoryCodes) {
+        return newPatientPager(sort, pageSize, false, categoryCodes);
+    }
+
+    /**
+     * newPatientPager() limited to high-risk patients when highRiskOnly is set
+     */
+    public PatientPager newPatientPager(PatientPager.Sort sort, int pageSize, boolean highRiskOnly,
+            int... categoryCodes) {
+        return new PatientPager(this, sort, pageSize, highRiskOnly, categoryCodes);
+    }
+
+    /**
+     * Pager over one patient's merged ANC, growth, vaccination and visit
+     * history, newest first, limited to the given kinds (all when none are
+     * given; see PatientTimeline)
+     */
+    public PatientTimeline newPatientTimeline(long patientId, int pageSize, TimelineEntry.Kind... kinds) {
+        return new PatientTimeline(this, patientId, pageSize, kinds);
+    }
+
+    /**
+     * Patient names by local id, for lists that only need to label rows
+     */
+    public Map<Long, String> getPatientNames() {
+        Map<Long, String> names = new HashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_PATIENTS, new String[] { COL_LOCAL_ID, COL_NAME }, null, null, null, null,
+                null);
+        while (cursor.moveToNext()) {
+            names.put(cursor.getLong(0), cursor.getString(1));
+        }
+        cursor.close();
+        return names;
+    }
+
     /**
      * Get patients by category
      */
     public List<Patient> getPatientsByCategory(String category) {
         List<Patient> patients = new ArrayList<>();
-        String query = "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_CATEGORY + " = ? ORDER BY " + COL_NAME
-                + " ASC";
+        int code = Constants.categoryCode(category);
+        // Unrecognised text has no code of its own, so match it literally
+        String query = "SELECT * FROM " + TABLE_PATIENTS + " WHERE "
+                + (code != Constants.CATEGORY_CODE_UNKNOWN ? COL_CATEGORY_CODE : COL_CATEGORY) + " = ? ORDER BY "
+                + COL_NAME + " ASC";
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[] { category });
+        Cursor cursor = db.rawQuery(query, new String[] {
+                code != Constants.CATEGORY_CODE_UNKNOWN ? String.valueOf(code) : category });
 
-        if (cursor.moveToFirst()) {
-            do {
-                patients.add(cursorToPatient(cursor));
-            } while (cursor.moveToNext());
-        }
+        patients.addAll(new RowMappers.PatientMapper(cursor).mapAll());
         cursor.close();
         return patients;
     }
@@ -466,7 +1605,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Patient patient = null;
         if (cursor.moveToFirst()) {
-            patient = cursorToPatient(cursor);
+            patient = new RowMappers.PatientMapper(cursor).map();
         }
         cursor.close();
         return patient;
@@ -493,6 +1632,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_ADDRESS, patient.getAddress());
         values.put(COL_BLOOD_GROUP, patient.getBloodGroup());
         values.put(COL_CATEGORY, patient.getCategory());
+        values.put(COL_CATEGORY_CODE, patient.getCategoryCode());
         values.put(COL_MEDICAL_NOTES, patient.getMedicalNotes());
         values.put(COL_PHOTO_PATH, patient.getPhotoPath());
         values.put(COL_IS_HIGH_RISK, patient.isHighRisk() ? 1 : 0);
@@ -520,29 +1660,71 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Delete patient
+     * Delete patient with its records, queueing the server delete (see
+     * deletePatients)
      */
     public int deletePatient(long localId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        // Also delete related data
-        db.delete(TABLE_CHILD_GROWTH, COL_PATIENT_ID + " = ?", new String[] { String.valueOf(localId) });
-        db.delete(TABLE_VACCINATIONS, COL_PATIENT_ID + " = ?", new String[] { String.valueOf(localId) });
-        db.delete(TABLE_VISITS, COL_PATIENT_ID + " = ?", new String[] { String.valueOf(localId) });
-        db.delete(TABLE_PREGNANCY_VISITS, COL_PATIENT_ID + " = ?", new String[] { String.valueOf(localId) });
-        db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_RECORD_ID + " = ?",
-                new String[] { TABLE_PATIENTS, String.valueOf(localId) });
-
-        int rows = db.delete(TABLE_PATIENTS, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
-        return rows;
+        return deletePatients(Collections.singletonList(localId), true);
+    }
+
+    // Tombstone carrying only the server id; replaces any queued upload of the
+    // patient. The IN list is appended by the caller.
+    private static final String INSERT_PATIENT_TOMBSTONES = "INSERT OR REPLACE INTO " + TABLE_SYNC_QUEUE + "("
+            + COL_TABLE_NAME + ", " + COL_RECORD_ID + ", " + COL_ACTION + ", " + COL_DATA_JSON + ", "
+            + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ", " + COL_LAST_UPDATED + ", " + COL_CREATED_AT_MS + ", "
+            + COL_LAST_UPDATED_MS + ") SELECT '" + TABLE_PATIENTS + "', " + COL_LOCAL_ID + ", '"
+            + Constants.ACTION_DELETE + "', '{\"id\":' || " + COL_SERVER_ID + " || '}', '" + SYNC_PENDING
+            + "', ?1, ?1, ?2, ?2 FROM " + TABLE_PATIENTS + " WHERE " + COL_SERVER_ID + " > 0 AND " + COL_LOCAL_ID;
+
+    /**
+     * Delete patients and everything recorded for them in one transaction,
+     * DELETE_CHUNK_SIZE patients per statement; the cascade triggers take their
+     * records and queued uploads. With queueServerDelete, each patient the
+     * server already has leaves a DELETE tombstone for the next sync. Returns
+     * the number of patients deleted.
+     */
+    public int deletePatients(Collection<Long> localIds, boolean queueServerDelete) {
+        List<Long> ids = new ArrayList<>(localIds);
+        long nowMillis = System.currentTimeMillis();
+        String now = DateTimeUtils.formatTimestamp(nowMillis);
+        int deleted = 0;
+
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int start = 0; start < ids.size(); start += DELETE_CHUNK_SIZE) {
+                // Ids are longs, so they go into the SQL as literals
+                String in = " IN (" + TextUtils.join(", ", ids.subList(start,
+                        Math.min(ids.size(), start + DELETE_CHUNK_SIZE))) + ")";
+                if (queueServerDelete) {
+                    db.execSQL(INSERT_PATIENT_TOMBSTONES + in, new Object[] { now, nowMillis });
+                }
+                db.execSQL("DELETE FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_TABLE_NAME + " = '" + TABLE_PATIENTS
+                        + "' AND " + COL_ACTION + " <> '" + Constants.ACTION_DELETE + "' AND " + COL_RECORD_ID + in);
+                deleted += db.delete(TABLE_PATIENTS, COL_LOCAL_ID + in, null);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return deleted;
     }
 
     /**
      * Delete patient by server ID
      */
     public int deletePatientByServerId(int serverId) {
+        return deletePatientByServerId(serverId, true);
+    }
+
+    /**
+     * Delete patient by server ID; queueServerDelete is false once the server
+     * delete has already gone through
+     */
+    public int deletePatientByServerId(int serverId, boolean queueServerDelete) {
         Patient patient = getPatientByServerId(serverId);
         if (patient != null) {
-            return deletePatient(patient.getLocalId());
+            return deletePatients(Collections.singletonList(patient.getLocalId()), queueServerDelete);
         }
         return 0;
     }
@@ -551,9 +1733,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Delete Child Growth record
      */
     public int deleteChildGrowth(long localId) {
+        // The queued upload goes with the row (see createCascadeTriggers)
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_RECORD_ID + " = ?",
-                new String[] { TABLE_CHILD_GROWTH, String.valueOf(localId) });
         return db.delete(TABLE_CHILD_GROWTH, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
     }
 
@@ -561,9 +1742,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Delete Vaccination record
      */
     public int deleteVaccinationRecord(long localId) {
+        // The queued upload goes with the row (see createCascadeTriggers)
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_RECORD_ID + " = ?",
-                new String[] { TABLE_VACCINATIONS, String.valueOf(localId) });
         return db.delete(TABLE_VACCINATIONS, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
     }
 
@@ -571,9 +1751,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Delete Visit record
      */
     public int deleteVisit(long localId) {
+        // The queued upload goes with the row (see createCascadeTriggers)
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_RECORD_ID + " = ?",
-                new String[] { TABLE_VISITS, String.valueOf(localId) });
         return db.delete(TABLE_VISITS, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
     }
 
@@ -581,9 +1760,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Delete Pregnancy Visit record
      */
     public int deletePregnancyVisit(long localId) {
+        // The queued upload goes with the row (see createCascadeTriggers)
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_RECORD_ID + " = ?",
-                new String[] { TABLE_PREGNANCY_VISITS, String.valueOf(localId) });
         return db.delete(TABLE_PREGNANCY_VISITS, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
     }
 
@@ -616,7 +1794,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Patient patient = null;
         if (cursor.moveToFirst()) {
-            patient = cursorToPatient(cursor);
+            patient = new RowMappers.PatientMapper(cursor).map();
         }
         cursor.close();
         return patient;
@@ -631,11 +1809,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING });
 
-        if (cursor.moveToFirst()) {
-            do {
-                patients.add(cursorToPatient(cursor));
-            } while (cursor.moveToNext());
-        }
+        patients.addAll(new RowMappers.PatientMapper(cursor).mapAll());
         cursor.close();
         return patients;
     }
@@ -681,61 +1855,47 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Get list of overdue vaccination alerts
      */
     public List<com.simats.ashasmartcare.models.HighRiskAlert> getOverdueVaccinationAlerts() {
-        List<com.simats.ashasmartcare.models.HighRiskAlert> alerts = new java.util.ArrayList<>();
-        SQLiteDatabase db = this.getReadableDatabase();
-        String query = "SELECT p." + COL_NAME + ", p." + COL_AREA + ", v." + COL_VACCINE_NAME + ", v." + COL_DUE_DATE
-                + ", p." + COL_LOCAL_ID
-                + " FROM " + TABLE_VACCINATIONS + " v "
-                + " JOIN " + TABLE_PATIENTS + " p ON v." + COL_PATIENT_ID + " = p." + COL_LOCAL_ID
-                + " WHERE (v." + COL_STATUS + " = 'Upcoming' OR v." + COL_STATUS + " = 'Scheduled')"
-                + " AND v." + COL_DUE_DATE + " < date('now')";
+        return queryAlerts("a." + COL_ALERT_TYPE + " = '" + ALERT_OVERDUE_VACCINE + "' AND a." + COL_DUE_DATE
+                + " < date('now', 'localtime')");
+    }
 
-        Cursor cursor = db.rawQuery(query, null);
-        if (cursor.moveToFirst()) {
-            do {
-                String name = cursor.getString(0);
-                String area = cursor.getString(1);
-                String vaccine = cursor.getString(2);
-                String dueDate = cursor.getString(3);
-                long patientId = cursor.getLong(4);
+    /**
+     * Get list of children with potential growth risks based on weight
+     */
+    public List<com.simats.ashasmartcare.models.HighRiskAlert> getChildGrowthRiskAlerts() {
+        return queryAlerts("a." + COL_ALERT_TYPE + " = '" + ALERT_LOW_WEIGHT + "'");
+    }
 
-                String alertType = "Overdue Vaccine: " + vaccine + " (Due: " + dueDate + ")";
-                com.simats.ashasmartcare.models.HighRiskAlert alert = new com.simats.ashasmartcare.models.HighRiskAlert(
-                        patientId, name, area, alertType);
-                alert.setReviewed(isAlertReviewed(patientId, alertType));
-                alerts.add(alert);
-            } while (cursor.moveToNext());
-        }
-        cursor.close();
-        return alerts;
+    /**
+     * Get every active alert (overdue vaccinations and growth risks) in one query
+     */
+    public List<com.simats.ashasmartcare.models.HighRiskAlert> getHighRiskAlerts() {
+        return queryAlerts("(a." + COL_ALERT_TYPE + " = '" + ALERT_OVERDUE_VACCINE + "' AND a." + COL_DUE_DATE
+                + " < date('now', 'localtime')) OR a." + COL_ALERT_TYPE + " = '" + ALERT_LOW_WEIGHT + "'");
     }
 
     /**
-     * Get list of children with potential growth risks based on weight/height
+     * Read alerts with patient details and the review flag in a single JOIN
      */
-    public List<com.simats.ashasmartcare.models.HighRiskAlert> getChildGrowthRiskAlerts() {
+    private List<com.simats.ashasmartcare.models.HighRiskAlert> queryAlerts(String where) {
         List<com.simats.ashasmartcare.models.HighRiskAlert> alerts = new java.util.ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
-
-        // Simplified Logic: Weight < 2.5kg for any child or significant drop (complex)
-        String query = "SELECT p." + COL_NAME + ", p." + COL_AREA + ", g." + COL_WEIGHT + ", g." + COL_GROWTH_STATUS
-                + ", p." + COL_LOCAL_ID
-                + " FROM " + TABLE_CHILD_GROWTH + " g "
-                + " JOIN " + TABLE_PATIENTS + " p ON g." + COL_PATIENT_ID + " = p." + COL_LOCAL_ID
-                + " WHERE CAST(g." + COL_WEIGHT + " AS REAL) < 2.5";
+        String query = "SELECT a." + COL_ALERT_KEY + ", a." + COL_TITLE + ", a." + COL_PATIENT_ID
+                + ", p." + COL_NAME + ", p." + COL_ADDRESS + ", COALESCE(r.is_reviewed, 0)"
+                + " FROM " + TABLE_ALERTS + " a "
+                + " JOIN " + TABLE_PATIENTS + " p ON a." + COL_PATIENT_ID + " = p." + COL_LOCAL_ID
+                + " LEFT JOIN " + TABLE_ALERTS_REVIEWED + " r ON r." + COL_PATIENT_ID + " = a." + COL_PATIENT_ID
+                + " AND r." + COL_VISIT_TYPE + " = a." + COL_ALERT_KEY
+                + " WHERE " + where
+                + " ORDER BY a." + COL_DUE_DATE + " ASC";
 
         Cursor cursor = db.rawQuery(query, null);
         if (cursor.moveToFirst()) {
             do {
-                String name = cursor.getString(0);
-                String area = cursor.getString(1);
-                float weight = cursor.getFloat(2);
-                long patientId = cursor.getLong(4);
-
-                String alertType = "Low Weight Alert: " + weight + "kg";
                 com.simats.ashasmartcare.models.HighRiskAlert alert = new com.simats.ashasmartcare.models.HighRiskAlert(
-                        patientId, name, area, alertType);
-                alert.setReviewed(isAlertReviewed(patientId, alertType));
+                        cursor.getLong(2), cursor.getString(3), cursor.getString(4), cursor.getString(1));
+                alert.setAlertKey(cursor.getString(0));
+                alert.setReviewed(cursor.getInt(5) == 1);
                 alerts.add(alert);
             } while (cursor.moveToNext());
         }
@@ -744,91 +1904,175 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Search patients by name
+     * Get patients that have at least one active alert or are flagged high risk
      */
-    public List<Patient> searchPatients(String searchTerm) {
+    public List<Patient> getPatientsWithActiveAlerts() {
         List<Patient> patients = new ArrayList<>();
-        String query = "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_NAME + " LIKE ? ORDER BY " + COL_NAME
-                + " ASC";
+        String query = "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_IS_HIGH_RISK + " = 1 OR "
+                + COL_LOCAL_ID + " IN (SELECT " + COL_PATIENT_ID + " FROM " + TABLE_ALERTS
+                + " WHERE (" + COL_ALERT_TYPE + " = '" + ALERT_OVERDUE_VACCINE + "' AND " + COL_DUE_DATE
+                + " < date('now', 'localtime')) OR " + COL_ALERT_TYPE + " = '" + ALERT_LOW_WEIGHT + "')"
+                + " ORDER BY " + COL_NAME + " ASC";
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[] { "%" + searchTerm + "%" });
+        Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            do {
-                patients.add(cursorToPatient(cursor));
-            } while (cursor.moveToNext());
-        }
+        patients.addAll(new RowMappers.PatientMapper(cursor).mapAll());
         cursor.close();
         return patients;
     }
 
-    private Patient cursorToPatient(Cursor cursor) {
-        Patient patient = new Patient();
-        patient.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-        patient.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SERVER_ID)));
-        patient.setName(cursor.getString(cursor.getColumnIndexOrThrow(COL_NAME)));
-        patient.setAge(cursor.getInt(cursor.getColumnIndexOrThrow(COL_AGE)));
-        patient.setDob(cursor.getString(cursor.getColumnIndexOrThrow(COL_DOB)));
-        patient.setGender(cursor.getString(cursor.getColumnIndexOrThrow(COL_GENDER)));
-        patient.setPhone(cursor.getString(cursor.getColumnIndexOrThrow(COL_PHONE)));
+    /**
+     * Search patients by name, phone, ABHA ID or address using the FTS index.
+     * Every word of the search term is prefix-matched; results are ranked with
+     * name-prefix hits first, then name-word hits, then hits on other fields.
+     */
+    public List<Patient> searchPatients(String searchTerm) {
+        return searchPatients(searchTerm, new int[0]);
+    }
+
+    /**
+     * searchPatients() limited to the given Constants.CATEGORY_CODE_* values;
+     * no codes means every category
+     */
+    public List<Patient> searchPatients(String searchTerm, int... categoryCodes) {
+        return searchPatients(searchTerm, false, categoryCodes);
+    }
 
-        // New schema columns
-        int addressIndex = cursor.getColumnIndex(COL_ADDRESS);
-        if (addressIndex != -1) {
-            patient.setAddress(cursor.getString(addressIndex));
+    /**
+     * searchPatients() limited to high-risk patients when highRiskOnly is set,
+     * and to the given category codes, with the same filter as the list pager
+     */
+    public List<Patient> searchPatients(String searchTerm, boolean highRiskOnly, int... categoryCodes) {
+        List<String> tokens = searchTokens(searchTerm);
+        String filter = patientListFilter("p.", highRiskOnly, categoryCodes);
+        if (tokens.isEmpty() && filter == null) {
+            return getAllPatients();
+        }
+        String categoryFilter = filter != null ? " WHERE " + filter : "";
+        if (tokens.isEmpty()) {
+            Cursor cursor = getReadableDatabase().rawQuery("SELECT p.* FROM " + TABLE_PATIENTS + " p"
+                    + categoryFilter + " ORDER BY p." + COL_NAME + " ASC", null);
+            List<Patient> patients = new RowMappers.PatientMapper(cursor).mapAll();
+            cursor.close();
+            return patients;
         }
 
-        int bloodGroupIndex = cursor.getColumnIndex(COL_BLOOD_GROUP);
-        if (bloodGroupIndex != -1) {
-            patient.setBloodGroup(cursor.getString(bloodGroupIndex));
+        StringBuilder anyColumn = new StringBuilder();
+        StringBuilder nameColumn = new StringBuilder();
+        for (String token : tokens) {
+            if (anyColumn.length() > 0) {
+                anyColumn.append(' ');
+                nameColumn.append(' ');
+            }
+            anyColumn.append(token).append('*');
+            nameColumn.append(COL_NAME).append(':').append(token).append('*');
         }
 
-        patient.setCategory(cursor.getString(cursor.getColumnIndexOrThrow(COL_CATEGORY)));
-        patient.setMedicalNotes(cursor.getString(cursor.getColumnIndexOrThrow(COL_MEDICAL_NOTES)));
-        patient.setPhotoPath(cursor.getString(cursor.getColumnIndexOrThrow(COL_PHOTO_PATH)));
+        List<Patient> patients = new ArrayList<>();
+        String query = "SELECT p.* FROM " + TABLE_PATIENTS + " p"
+                + " JOIN (SELECT docid FROM " + TABLE_PATIENTS_FTS + " WHERE " + TABLE_PATIENTS_FTS + " MATCH ?) f"
+                + " ON f.docid = p." + COL_LOCAL_ID
+                + categoryFilter
+                + " ORDER BY CASE WHEN p." + COL_NAME + " LIKE ? ESCAPE '\\' THEN 0"
+                + " WHEN p." + COL_LOCAL_ID + " IN (SELECT docid FROM " + TABLE_PATIENTS_FTS
+                + " WHERE " + TABLE_PATIENTS_FTS + " MATCH ?) THEN 1 ELSE 2 END, p." + COL_NAME + " ASC";
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(query, new String[] { anyColumn.toString(),
+                escapeLike(searchTerm.trim()) + "%", nameColumn.toString() });
 
-        // Handle new columns with safety checks for older DB versions/migrations if
-        // column doesn't exist
-        int highRiskIndex = cursor.getColumnIndex(COL_IS_HIGH_RISK);
-        if (highRiskIndex != -1) {
-            patient.setHighRisk(cursor.getInt(highRiskIndex) == 1);
-        }
+        patients.addAll(new RowMappers.PatientMapper(cursor).mapAll());
+        cursor.close();
+        return patients;
+    }
 
-        int reasonIndex = cursor.getColumnIndex(COL_HIGH_RISK_REASON);
-        if (reasonIndex != -1) {
-            patient.setHighRiskReason(cursor.getString(reasonIndex));
+    /**
+     * Split a search term the way the FTS "simple" tokenizer splits the
+     * indexed text: ASCII letters and digits and every non-ASCII character
+     * (Indic letters and their combining marks included) are token
+     * characters, other ASCII separates tokens, and only ASCII is lowercased.
+     * Anything else would query tokens the index never holds.
+     */
+    static List<String> searchTokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
         }
-
-        int abhaIdIndex = cursor.getColumnIndex(COL_ABHA_ID);
-        if (abhaIdIndex != -1) {
-            patient.setAbhaId(cursor.getString(abhaIdIndex));
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z')) {
+                current.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                current.append((char) (c + ('a' - 'A')));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
         }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
 
-        patient.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-        patient.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(COL_CREATED_AT)));
+    /**
+     * Escape LIKE wildcards so user text matches literally; pair with
+     * ESCAPE '\'
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
 
-        int lastUpdatedIndex = cursor.getColumnIndex(COL_LAST_UPDATED);
-        if (lastUpdatedIndex != -1) {
-            patient.setLastUpdated(cursor.getString(lastUpdatedIndex));
-        } else {
-            patient.setLastUpdated(patient.getCreatedAt()); // Fallback
+    /**
+     * WHERE condition for the patient list filters, or null for none: high
+     * risk only, and category codes (none means every category). Both are
+     * indexed with the list sort keys.
+     */
+    static String patientListFilter(String alias, boolean highRiskOnly, int... categoryCodes) {
+        String highRisk = highRiskOnly ? alias + COL_IS_HIGH_RISK + " = 1" : null;
+        if (categoryCodes == null || categoryCodes.length == 0) {
+            return highRisk;
         }
+        String in = categoryCodeIn(alias, categoryCodes);
+        return highRisk != null ? highRisk + " AND " + in : in;
+    }
 
-        return patient;
+    /**
+     * "category_code IN (...)" over integer literals; codes come from
+     * Constants, never from user text
+     */
+    static String categoryCodeIn(String alias, int... categoryCodes) {
+        StringBuilder in = new StringBuilder(alias).append(COL_CATEGORY_CODE).append(" IN (");
+        for (int i = 0; i < categoryCodes.length; i++) {
+            in.append(i == 0 ? "" : ", ").append(categoryCodes[i]);
+        }
+        return in.append(')').toString();
     }
 
     // ==================== PREGNANCY VISIT OPERATIONS ====================
 
     public long insertPregnancyVisit(PregnancyVisit visit) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long patientId = recordPatientId(db, visit.getPatientServerId(), visit.getPatientId());
+        if (patientId <= 0) {
+            return -1;
+        }
+        visit.setPatientId(patientId);
         ContentValues values = new ContentValues();
-        values.put(COL_PATIENT_ID, visit.getPatientId());
+        values.put(COL_PATIENT_ID, patientId);
         values.put(COL_VISIT_DATE, visit.getVisitDate());
         values.put(COL_WEIGHT, visit.getWeight());
         values.put(COL_NOTES, visit.getNotes());
         values.put(COL_SYNC_STATUS, visit.getSyncStatus());
 
-        return db.insert(TABLE_PREGNANCY_VISITS, null, values);
+        long visitId = db.insert(TABLE_PREGNANCY_VISITS, null, values);
+        if (visitId > 0) {
+            putLatestVitals(db, patientId, TABLE_PREGNANCY_VISITS, visitId, visit.getVisitDate(),
+                    pregnancyVitalsJson(visit));
+            putObservations(db, patientId, TABLE_PREGNANCY_VISITS, visitId, visit.getVisitDate(),
+                    pregnancyObservations(visit));
+        }
+        return visitId;
     }
 
     public List<PregnancyVisit> getPregnancyVisitsByPatient(long patientId) {
@@ -838,11 +2082,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(patientId) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToPregnancyVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.PregnancyVisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -872,11 +2112,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToPregnancyVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.PregnancyVisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -887,11 +2123,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING });
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToPregnancyVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.PregnancyVisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -907,24 +2139,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[] { String.valueOf(localId) });
     }
 
-    private PregnancyVisit cursorToPregnancyVisit(Cursor cursor) {
-        PregnancyVisit visit = new PregnancyVisit();
-        visit.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-        visit.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SERVER_ID)));
-        visit.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_PATIENT_ID)));
-        visit.setVisitDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_VISIT_DATE)));
-        visit.setWeight(cursor.getFloat(cursor.getColumnIndexOrThrow(COL_WEIGHT)));
-        visit.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOTES)));
-        visit.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-        return visit;
-    }
-
     // ==================== CHILD GROWTH OPERATIONS ====================
 
     public long insertChildGrowth(ChildGrowth growth) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long patientId = recordPatientId(db, growth.getPatientServerId(), growth.getPatientId());
+        if (patientId <= 0) {
+            return -1;
+        }
+        growth.setPatientId(patientId);
         ContentValues values = new ContentValues();
-        values.put(COL_PATIENT_ID, growth.getPatientId());
+        values.put(COL_PATIENT_ID, patientId);
         values.put(COL_RECORD_DATE, growth.getRecordDate());
         values.put(COL_WEIGHT, growth.getWeight());
         values.put(COL_HEIGHT, growth.getHeight());
@@ -933,7 +2158,14 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_NOTES, growth.getNotes());
         values.put(COL_SYNC_STATUS, growth.getSyncStatus());
 
-        return db.insert(TABLE_CHILD_GROWTH, null, values);
+        long growthId = db.insert(TABLE_CHILD_GROWTH, null, values);
+        if (growthId > 0) {
+            putLatestVitals(db, patientId, TABLE_CHILD_GROWTH, growthId, growth.getRecordDate(),
+                    growthVitalsJson(growth));
+            putObservations(db, patientId, TABLE_CHILD_GROWTH, growthId, growth.getRecordDate(),
+                    growthObservations(growth));
+        }
+        return growthId;
     }
 
     public List<ChildGrowth> getChildGrowthByPatient(long patientId) {
@@ -943,11 +2175,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(patientId) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                records.add(cursorToChildGrowth(cursor));
-            } while (cursor.moveToNext());
-        }
+        records.addAll(new RowMappers.ChildGrowthMapper(cursor).mapAll());
         cursor.close();
         return records;
     }
@@ -958,11 +2186,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING });
 
-        if (cursor.moveToFirst()) {
-            do {
-                records.add(cursorToChildGrowth(cursor));
-            } while (cursor.moveToNext());
-        }
+        records.addAll(new RowMappers.ChildGrowthMapper(cursor).mapAll());
         cursor.close();
         return records;
     }
@@ -978,21 +2202,6 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[] { String.valueOf(localId) });
     }
 
-    private ChildGrowth cursorToChildGrowth(Cursor cursor) {
-        ChildGrowth growth = new ChildGrowth();
-        growth.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-        growth.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SERVER_ID)));
-        growth.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_PATIENT_ID)));
-        growth.setRecordDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_RECORD_DATE)));
-        growth.setWeight(cursor.getFloat(cursor.getColumnIndexOrThrow(COL_WEIGHT)));
-        growth.setHeight(cursor.getFloat(cursor.getColumnIndexOrThrow(COL_HEIGHT)));
-        growth.setHeadCircumference(cursor.getFloat(cursor.getColumnIndexOrThrow(COL_HEAD_CIRCUMFERENCE)));
-        growth.setGrowthStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_GROWTH_STATUS)));
-        growth.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOTES)));
-        growth.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-        return growth;
-    }
-
     // ==================== VACCINATION OPERATIONS ====================
 
     public long insertVaccination(Vaccination vaccination) {
@@ -1018,11 +2227,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(patientId) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                vaccinations.add(cursorToVaccination(cursor));
-            } while (cursor.moveToNext());
-        }
+        vaccinations.addAll(new RowMappers.VaccinationMapper(cursor).mapAll());
         cursor.close();
         return vaccinations;
     }
@@ -1034,11 +2239,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(patientId) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                vaccinations.add(cursorToVaccination(cursor));
-            } while (cursor.moveToNext());
-        }
+        vaccinations.addAll(new RowMappers.VaccinationMapper(cursor).mapAll());
         cursor.close();
         return vaccinations;
     }
@@ -1057,11 +2258,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { status });
 
-        if (cursor.moveToFirst()) {
-            do {
-                vaccinations.add(cursorToVaccination(cursor));
-            } while (cursor.moveToNext());
-        }
+        vaccinations.addAll(new RowMappers.VaccinationMapper(cursor).mapAll());
         cursor.close();
         return vaccinations;
     }
@@ -1072,11 +2269,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            do {
-                vaccinations.add(cursorToVaccination(cursor));
-            } while (cursor.moveToNext());
-        }
+        vaccinations.addAll(new RowMappers.VaccinationMapper(cursor).mapAll());
         cursor.close();
         return vaccinations;
     }
@@ -1112,11 +2305,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING });
 
-        if (cursor.moveToFirst()) {
-            do {
-                vaccinations.add(cursorToVaccination(cursor));
-            } while (cursor.moveToNext());
-        }
+        vaccinations.addAll(new RowMappers.VaccinationMapper(cursor).mapAll());
         cursor.close();
         return vaccinations;
     }
@@ -1132,34 +2321,29 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[] { String.valueOf(localId) });
     }
 
-    private Vaccination cursorToVaccination(Cursor cursor) {
-        Vaccination vaccination = new Vaccination();
-        vaccination.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-        vaccination.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SERVER_ID)));
-        vaccination.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_PATIENT_ID)));
-        vaccination.setVaccineName(cursor.getString(cursor.getColumnIndexOrThrow(COL_VACCINE_NAME)));
-        vaccination.setDueDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_DUE_DATE)));
-        vaccination.setGivenDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_GIVEN_DATE)));
-        vaccination.setStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_STATUS)));
-        vaccination.setBatchNumber(cursor.getString(cursor.getColumnIndexOrThrow(COL_BATCH_NUMBER)));
-        vaccination.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOTES)));
-        vaccination.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-        return vaccination;
-    }
-
     // ==================== VISIT OPERATIONS ====================
 
     public long insertVisit(Visit visit) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long patientId = recordPatientId(db, visit.getPatientServerId(), visit.getPatientId());
+        if (patientId <= 0) {
+            return -1;
+        }
+        visit.setPatientId(patientId);
         ContentValues values = new ContentValues();
-        values.put(COL_PATIENT_ID, visit.getPatientId());
+        values.put(COL_PATIENT_ID, patientId);
         values.put(COL_VISIT_DATE, visit.getVisitDate());
         values.put(COL_VISIT_TYPE, visit.getVisitType());
         values.put(COL_DESCRIPTION, visit.getDescription());
         values.put(COL_NOTES, visit.getNotes());
         values.put(COL_SYNC_STATUS, visit.getSyncStatus());
 
-        return db.insert(TABLE_VISITS, null, values);
+        long visitId = db.insert(TABLE_VISITS, null, values);
+        if (visitId > 0) {
+            putObservations(db, patientId, TABLE_VISITS, visitId, visit.getVisitDate(),
+                    generalObservations(visit.getDescription()));
+        }
+        return visitId;
     }
 
     public List<Visit> getVisitsByPatient(long patientId) {
@@ -1169,11 +2353,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(patientId) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.VisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -1191,11 +2371,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.VisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -1206,11 +2382,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING });
 
-        if (cursor.moveToFirst()) {
-            do {
-                visits.add(cursorToVisit(cursor));
-            } while (cursor.moveToNext());
-        }
+        visits.addAll(new RowMappers.VisitMapper(cursor).mapAll());
         cursor.close();
         return visits;
     }
@@ -1226,65 +2398,55 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 new String[] { String.valueOf(localId) });
     }
 
-    private Visit cursorToVisit(Cursor cursor) {
-        Visit visit = new Visit();
-        visit.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-        visit.setServerId(cursor.getInt(cursor.getColumnIndexOrThrow(COL_SERVER_ID)));
-        visit.setPatientId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_PATIENT_ID)));
-        visit.setVisitDate(cursor.getString(cursor.getColumnIndexOrThrow(COL_VISIT_DATE)));
-        visit.setVisitType(cursor.getString(cursor.getColumnIndexOrThrow(COL_VISIT_TYPE)));
-        visit.setDescription(cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCRIPTION)));
-        visit.setNotes(cursor.getString(cursor.getColumnIndexOrThrow(COL_NOTES)));
-        visit.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-        return visit;
-    }
-
     // ==================== SYNC QUEUE OPERATIONS ====================
 
+    /**
+     * Queue a change for sync. An entity has at most one queue row: an existing
+     * row is reset to PENDING with the new action (and payload, when given),
+     * otherwise a row is inserted. Returns the number of rows updated, or the new
+     * row id.
+     */
     public long addToSyncQueue(String tableName, long recordId, String action, String dataJson) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
 
-        // Check if ANY record exists for this entity (Pending or Failed)
-        // We update any existing record to PENDING to avoid duplicates in the queue
-        String selection = COL_TABLE_NAME + "=? AND " + COL_RECORD_ID + "=?";
-        String[] selectionArgs = { tableName, String.valueOf(recordId) };
-
-        Cursor cursor = db.query(TABLE_SYNC_QUEUE, new String[] { COL_LOCAL_ID }, selection, selectionArgs, null, null,
-                null);
-
-        if (cursor != null && cursor.moveToFirst()) {
-            // Record exists (regardless of status), update it to PENDING instead of
-            // inserting new one
-            long queueLocalId = cursor.getLong(0);
-            cursor.close();
-
-            ContentValues updateValues = new ContentValues();
-            updateValues.put(COL_ACTION, action);
-            updateValues.put(COL_SYNC_STATUS, SYNC_PENDING); // Reset to pending
-            if (dataJson != null) {
-                updateValues.put(COL_DATA_JSON, dataJson);
+        // Transaction first: compiling and binding then run on this thread's
+        // write connection, and other writers wait for it, not for the lock
+        db.beginTransactionNonExclusive();
+        try {
+            SQLiteStatement update;
+            SQLiteStatement insert;
+            synchronized (syncQueueLock) {
+                if (updateSyncQueueStatement == null) {
+                    updateSyncQueueStatement = db.compileStatement(UPDATE_SYNC_QUEUE_ENTRY);
+                    insertSyncQueueStatement = db.compileStatement(INSERT_SYNC_QUEUE_ENTRY);
+                }
+                update = updateSyncQueueStatement;
+                insert = insertSyncQueueStatement;
             }
-            updateValues.put(COL_ERROR_MESSAGE, (String) null); // Clear old error
-            updateValues.put(COL_LAST_UPDATED, getCurrentTimestamp());
-
-            return db.update(TABLE_SYNC_QUEUE, updateValues, COL_LOCAL_ID + " = ?",
-                    new String[] { String.valueOf(queueLocalId) });
-        }
 
-        if (cursor != null) {
-            cursor.close();
+            bindSyncQueueEntry(update, tableName, recordId, action, dataJson, now);
+            long result = update.executeUpdateDelete();
+            if (result == 0) {
+                bindSyncQueueEntry(insert, tableName, recordId, action, dataJson, now);
+                result = insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            return result;
+        } finally {
+            db.endTransaction();
         }
+    }
 
-        ContentValues values = new ContentValues();
-        values.put(COL_TABLE_NAME, tableName);
-        values.put(COL_RECORD_ID, recordId);
-        values.put(COL_ACTION, action);
-        values.put(COL_DATA_JSON, dataJson);
-        values.put(COL_SYNC_STATUS, SYNC_PENDING);
-        values.put(COL_CREATED_AT, getCurrentTimestamp()); // Ensure created_at is set
-        values.put(COL_LAST_UPDATED, getCurrentTimestamp());
-
-        return db.insert(TABLE_SYNC_QUEUE, null, values);
+    private static void bindSyncQueueEntry(SQLiteStatement statement, String tableName, long recordId,
+            String action, String dataJson, long now) {
+        statement.clearBindings();
+        statement.bindString(1, action);
+        bindOptional(statement, 2, dataJson);
+        statement.bindString(3, DateTimeUtils.formatTimestamp(now));
+        statement.bindString(4, tableName);
+        statement.bindLong(5, recordId);
+        statement.bindLong(6, now);
     }
 
     /**
@@ -1294,96 +2456,322 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return addToSyncQueue(tableName, recordId, action, null);
     }
 
+    // PENDING entries, and FAILED ones whose backoff is over, unless an upload
+    // in flight holds their lease. A wait longer than the longest backoff or
+    // lease means the clock was set back; those are due too.
+    private static final String DUE_FOR_UPLOAD = "(" + COL_SYNC_STATUS + " = ?1 OR (" + COL_SYNC_STATUS + " = ?2 AND ("
+            + COL_NEXT_ATTEMPT_AT + " IS NULL OR " + COL_NEXT_ATTEMPT_AT + " <= ?3 OR " + COL_NEXT_ATTEMPT_AT
+            + " > ?3 + " + Constants.SYNC_RETRY_MAX_DELAY_MS + "))) AND (" + COL_LEASED_UNTIL + " IS NULL OR "
+            + COL_LEASED_UNTIL + " <= ?3 OR " + COL_LEASED_UNTIL + " > ?3 + " + Constants.SYNC_UPLOAD_LEASE_MS + ")";
+    private static final String PENDING_SYNC_RECORDS = "SELECT * FROM " + TABLE_SYNC_QUEUE + " WHERE "
+            + DUE_FOR_UPLOAD + " ORDER BY " + COL_CREATED_AT + " ASC";
+
+    // Local patient a queue entry belongs to: the patient itself, or the
+    // parent of a pregnancy, growth, vaccination or visit record, whose
+    // patient_id is always the local id (see rekeyPatientRecords), so it is
+    // matched on local_id alone
+    private static final String QUEUED_PATIENT = "CASE " + COL_TABLE_NAME
+            + " WHEN '" + TABLE_PATIENTS + "' THEN " + COL_RECORD_ID
+            + queuedPatientOf(TABLE_PREGNANCY_VISITS) + queuedPatientOf(TABLE_CHILD_GROWTH)
+            + queuedPatientOf(TABLE_VACCINATIONS) + queuedPatientOf(TABLE_VISITS) + " END";
+
+    // Due entries of patients who are high risk or have a change queued since
+    // ?4, and other due entries queued since then. A patient's entries are
+    // taken or left together, so a record never goes without its parent.
+    private static final String PENDING_SYNC_RECORDS_SINCE = "WITH due AS (SELECT *, " + QUEUED_PATIENT
+            + " AS queued_patient FROM " + TABLE_SYNC_QUEUE + " WHERE " + DUE_FOR_UPLOAD + ")"
+            + " SELECT * FROM due WHERE " + COL_CREATED_AT_MS + " >= ?4"
+            + " OR queued_patient IN (SELECT queued_patient FROM due WHERE " + COL_CREATED_AT_MS + " >= ?4)"
+            + " OR EXISTS (SELECT 1 FROM " + TABLE_PATIENTS + " WHERE " + COL_LOCAL_ID + " = queued_patient AND "
+            + COL_IS_HIGH_RISK + " = 1)"
+            + " ORDER BY " + COL_CREATED_AT + " ASC";
+
+    private static String queuedPatientOf(String table) {
+        return " WHEN '" + table + "' THEN (SELECT " + COL_PATIENT_ID + " FROM " + table + " WHERE " + COL_LOCAL_ID
+                + " = " + TABLE_SYNC_QUEUE + "." + COL_RECORD_ID + ")";
+    }
+
+    /**
+     * Queue entries due for upload now
+     */
     public List<SyncRecord> getPendingSyncRecords() {
         List<SyncRecord> records = new ArrayList<>();
-        // Select both PENDING and FAILED records for retry
-        String query = "SELECT * FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_SYNC_STATUS + " = ? OR " + COL_SYNC_STATUS
-                + " = ? ORDER BY "
-                + COL_CREATED_AT + " ASC";
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[] { SYNC_PENDING, SYNC_FAILED });
+        Cursor cursor = db.rawQuery(PENDING_SYNC_RECORDS, new String[] { SYNC_PENDING, SYNC_FAILED,
+                String.valueOf(System.currentTimeMillis()) });
 
-        if (cursor.moveToFirst()) {
-            do {
-                SyncRecord record = new SyncRecord();
-                record.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-                record.setTableName(cursor.getString(cursor.getColumnIndexOrThrow(COL_TABLE_NAME)));
-                record.setRecordId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_RECORD_ID)));
-                record.setAction(cursor.getString(cursor.getColumnIndexOrThrow(COL_ACTION)));
-                record.setDataJson(cursor.getString(cursor.getColumnIndexOrThrow(COL_DATA_JSON)));
-                record.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
-                record.setErrorMessage(cursor.getString(cursor.getColumnIndexOrThrow(COL_ERROR_MESSAGE)));
-                record.setRetryCount(cursor.getInt(cursor.getColumnIndexOrThrow(COL_RETRY_COUNT)));
-                record.setCreatedAt(cursor.getString(cursor.getColumnIndexOrThrow(COL_CREATED_AT)));
-                records.add(record);
-            } while (cursor.moveToNext());
-        }
+        records.addAll(new RowMappers.SyncRecordMapper(cursor).mapAll());
         cursor.close();
         return records;
     }
 
-    public void markSyncRecordComplete(long localId) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_SYNC_STATUS, SYNC_SYNCED);
-        values.put(COL_LAST_UPDATED, getCurrentTimestamp());
-        db.update(TABLE_SYNC_QUEUE, values, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
+    /**
+     * Queue entries due for upload now that were queued at or after the given
+     * time (epoch millis), along with the rest of their patient's entries and
+     * everything due for high-risk patients. Long.MAX_VALUE leaves only the
+     * high-risk patients' entries.
+     */
+    public List<SyncRecord> getPendingSyncRecords(long queuedSinceMillis) {
+        List<SyncRecord> records = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(PENDING_SYNC_RECORDS_SINCE, new String[] { SYNC_PENDING, SYNC_FAILED,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(queuedSinceMillis) });
+
+        records.addAll(new RowMappers.SyncRecordMapper(cursor).mapAll());
+        cursor.close();
+        return records;
     }
 
-    public void markSyncRecordFailed(long localId, String errorMessage) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_SYNC_STATUS, SYNC_FAILED);
-        values.put(COL_ERROR_MESSAGE, errorMessage);
-        values.put(COL_LAST_UPDATED, getCurrentTimestamp());
+    // Leaves last_updated_ms alone: upload results are matched on it
+    private static final String SET_SYNC_LEASE = "UPDATE " + TABLE_SYNC_QUEUE + " SET " + COL_LEASED_UNTIL + " = ? WHERE "
+            + COL_LOCAL_ID + " = ?";
 
-        db.update(TABLE_SYNC_QUEUE, values, COL_LOCAL_ID + " = ?",
-                new String[] { String.valueOf(localId) });
+    /**
+     * Lease queue entries to an upload about to be sent: they are not due again
+     * until the lease runs out (Constants.SYNC_UPLOAD_LEASE_MS), or their
+     * results are applied or released
+     */
+    public void leaseSyncRecords(List<SyncRecord> records) {
+        setSyncLease(records, System.currentTimeMillis() + Constants.SYNC_UPLOAD_LEASE_MS);
     }
 
-    public int getPendingSyncCount() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        int count = 0;
-        if (cursor.moveToFirst()) {
-            count = cursor.getInt(0);
+    /**
+     * Give back the leases of an upload that was not sent after all
+     */
+    public void releaseSyncRecords(List<SyncRecord> records) {
+        setSyncLease(records, null);
+    }
+
+    private void setSyncLease(List<SyncRecord> records, Long leasedUntil) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (SyncRecord record : records) {
+                db.execSQL(SET_SYNC_LEASE, new Object[] { leasedUntil, record.getLocalId() });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        cursor.close();
-        return count;
     }
 
     /**
-     * Delete sync record
+     * Record a finished upload in sync_history and drop its queue entry,
+     * payload included
      */
-    public SyncRecord getSyncRecordById(long localId) {
-        String query = "SELECT * FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " = ?";
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(localId) });
-        SyncRecord record = null;
-        if (cursor.moveToFirst()) {
-            record = new SyncRecord();
-            record.setLocalId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_LOCAL_ID)));
-            record.setTableName(cursor.getString(cursor.getColumnIndexOrThrow(COL_TABLE_NAME)));
-            record.setRecordId(cursor.getLong(cursor.getColumnIndexOrThrow(COL_RECORD_ID)));
-            record.setAction(cursor.getString(cursor.getColumnIndexOrThrow(COL_ACTION)));
-            record.setSyncStatus(cursor.getString(cursor.getColumnIndexOrThrow(COL_SYNC_STATUS)));
+    public void markSyncRecordComplete(long localId) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            moveToSyncHistory(db, localId, System.currentTimeMillis());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        cursor.close();
-        return record;
     }
 
-    public void updateSourceSyncStatus(String tableName, long recordId, String status) {
-        if (tableName == null || tableName.isEmpty())
-            return;
-        SQLiteDatabase db = this.getWritableDatabase();
-        ContentValues values = new ContentValues();
-        values.put(COL_SYNC_STATUS, status);
-        db.update(tableName, values, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(recordId) });
+    private static void moveToSyncHistory(SQLiteDatabase db, long localId, long syncedAtMillis) {
+        Object[] args = { localId, DateTimeUtils.formatTimestamp(syncedAtMillis), syncedAtMillis };
+        db.execSQL(INSERT_SYNC_HISTORY, args);
+        db.execSQL(UPDATE_SYNC_HISTORY, args);
+        db.delete(TABLE_SYNC_QUEUE, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(localId) });
     }
 
     /**
-     * Get the sync status of a record in its source table
+     * Move SYNCED queue entries last updated before the given time to
+     * sync_history. Returns the number moved.
+     */
+    private static int moveSyncedToHistory(SQLiteDatabase db, long beforeMillis) {
+        List<long[]> synced = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + COL_LOCAL_ID + ", " + COL_LAST_UPDATED_MS + " FROM "
+                + TABLE_SYNC_QUEUE + " WHERE " + COL_SYNC_STATUS + " = ? AND " + COL_LAST_UPDATED_MS + " < ?",
+                new String[] { SYNC_SYNCED, String.valueOf(beforeMillis) });
+        while (cursor.moveToNext()) {
+            synced.add(new long[] { cursor.getLong(0), cursor.getLong(1) });
+        }
+        cursor.close();
+
+        for (long[] entry : synced) {
+            moveToSyncHistory(db, entry[0], entry[1]);
+        }
+        return synced.size();
+    }
+
+    public void markSyncRecordFailed(long localId, String errorMessage) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COL_SYNC_STATUS, SYNC_FAILED);
+        values.put(COL_ERROR_MESSAGE, errorMessage);
+        putSyncQueueUpdated(values);
+
+        db.update(TABLE_SYNC_QUEUE, values, COL_LOCAL_ID + " = ?",
+                new String[] { String.valueOf(localId) });
+    }
+
+    /**
+     * Apply the server's answers for one upload in a single transaction.
+     * Stored records take their server id, are marked SYNCED and leave the queue
+     * for sync_history. Rejected ones are marked FAILED with the server's message
+     * and wait out a backoff before the next try, or are dead-lettered when the
+     * error is permanent or they have used up their retries; the records passed
+     * in take the new state. An entry re-queued by a local edit while its upload
+     * was in flight keeps its PENDING state so the edit goes up next time.
+     * Every entry's upload lease is given back. Returns the number of records
+     * completed.
+     */
+    public int applySyncResults(List<SyncItemResult> results) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        int completed = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            for (SyncItemResult result : results) {
+                SyncRecord record = result.getRecord();
+                String[] queueEntry = { String.valueOf(record.getLocalId()),
+                        String.valueOf(record.getLastUpdatedMillis()) };
+                db.execSQL(SET_SYNC_LEASE, new Object[] { null, record.getLocalId() });
+                if (!result.isSuccess()) {
+                    failSyncRecord(db, result, queueEntry, now);
+                    continue;
+                }
+
+                boolean unchanged = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + TABLE_SYNC_QUEUE
+                        + " WHERE " + COL_LOCAL_ID + " = ? AND " + COL_LAST_UPDATED_MS + " = ?", queueEntry) > 0;
+                if (!Constants.ACTION_DELETE.equalsIgnoreCase(record.getAction())) {
+                    ContentValues values = new ContentValues();
+                    if (result.getServerId() > 0) {
+                        values.put(COL_SERVER_ID, result.getServerId());
+                    }
+                    if (unchanged) {
+                        values.put(COL_SYNC_STATUS, SYNC_SYNCED);
+                        values.put(COL_LAST_UPDATED, getCurrentTimestamp());
+                    }
+                    if (values.size() > 0) {
+                        db.update(record.getTableName(), values, COL_LOCAL_ID + " = ?",
+                                new String[] { String.valueOf(record.getRecordId()) });
+                    }
+                }
+                if (unchanged) {
+                    moveToSyncHistory(db, record.getLocalId(), now);
+                    completed++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return completed;
+    }
+
+    // Failed attempts of an unchanged queue entry (?1 local_id, ?2 the
+    // last_updated_ms it was read with) counting this one, or 0 if it is gone
+    // or was re-queued by an edit
+    private static final String FAILED_ATTEMPTS = "SELECT IFNULL(MAX(IFNULL(" + COL_RETRY_COUNT + ", 0) + 1), 0) FROM "
+            + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " = ? AND " + COL_LAST_UPDATED_MS + " = ?";
+
+    private static void failSyncRecord(SQLiteDatabase db, SyncItemResult result, String[] queueEntry, long now) {
+        int failures = (int) DatabaseUtils.longForQuery(db, FAILED_ATTEMPTS, queueEntry);
+        if (failures == 0) {
+            return;
+        }
+        boolean deadLetter = !result.isRetryable() || failures >= Constants.SYNC_MAX_RETRIES;
+        long nextAttemptAt = deadLetter ? 0 : now + retryDelayMillis(failures);
+
+        ContentValues values = new ContentValues();
+        values.put(COL_SYNC_STATUS, deadLetter ? SYNC_DEAD_LETTER : SYNC_FAILED);
+        values.put(COL_ERROR_MESSAGE, result.getMessage());
+        values.put(COL_RETRY_COUNT, failures);
+        if (deadLetter) {
+            values.putNull(COL_NEXT_ATTEMPT_AT);
+        } else {
+            values.put(COL_NEXT_ATTEMPT_AT, nextAttemptAt);
+        }
+        putSyncQueueUpdated(values);
+        db.update(TABLE_SYNC_QUEUE, values, COL_LOCAL_ID + " = ?", new String[] { queueEntry[0] });
+
+        SyncRecord record = result.getRecord();
+        record.setSyncStatus(deadLetter ? SYNC_DEAD_LETTER : SYNC_FAILED);
+        record.setRetryCount(failures);
+        record.setNextAttemptAt(nextAttemptAt);
+    }
+
+    /**
+     * Wait before the next try after the given number of failed attempts: the
+     * base delay doubled for each earlier failure, capped, with the upper half
+     * random so records that failed together do not all retry together
+     */
+    @VisibleForTesting
+    static long retryDelayMillis(int failures) {
+        long delay = Math.min(Constants.SYNC_RETRY_BASE_DELAY_MS << Math.min(Math.max(failures - 1, 0), 30),
+                Constants.SYNC_RETRY_MAX_DELAY_MS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    /**
+     * Queue entries that stopped retrying, most recent failure first
+     */
+    public List<SyncRecord> getDeadLetterRecords() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_SYNC_QUEUE, null, COL_SYNC_STATUS + " = ?",
+                new String[] { SYNC_DEAD_LETTER }, null, null, COL_LAST_UPDATED_MS + " DESC");
+        List<SyncRecord> records = new RowMappers.SyncRecordMapper(cursor).mapAll();
+        cursor.close();
+        return records;
+    }
+
+    /**
+     * Put every dead-lettered entry back in line for the next sync with a fresh
+     * retry budget. Returns the number re-queued.
+     */
+    public int retryDeadLetterRecords() {
+        ContentValues values = new ContentValues();
+        values.put(COL_SYNC_STATUS, SYNC_PENDING);
+        values.putNull(COL_ERROR_MESSAGE);
+        values.put(COL_RETRY_COUNT, 0);
+        values.putNull(COL_NEXT_ATTEMPT_AT);
+        putSyncQueueUpdated(values);
+        return getWritableDatabase().update(TABLE_SYNC_QUEUE, values, COL_SYNC_STATUS + " = ?",
+                new String[] { SYNC_DEAD_LETTER });
+    }
+
+    public int getPendingSyncCount() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_SYNC_STATUS + " = ?",
+                new String[] { SYNC_PENDING });
+        int count = 0;
+        if (cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+        }
+        cursor.close();
+        return count;
+    }
+
+    /**
+     * Delete sync record
+     */
+    public SyncRecord getSyncRecordById(long localId) {
+        String query = "SELECT * FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_LOCAL_ID + " = ?";
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(query, new String[] { String.valueOf(localId) });
+        SyncRecord record = null;
+        if (cursor.moveToFirst()) {
+            record = new RowMappers.SyncRecordMapper(cursor).map();
+        }
+        cursor.close();
+        return record;
+    }
+
+    public void updateSourceSyncStatus(String tableName, long recordId, String status) {
+        if (tableName == null || tableName.isEmpty())
+            return;
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COL_SYNC_STATUS, status);
+        db.update(tableName, values, COL_LOCAL_ID + " = ?", new String[] { String.valueOf(recordId) });
+    }
+
+    /**
+     * Get the sync status of a record in its source table
      */
     public String getSourceSyncStatus(String tableName, long recordId) {
         if (tableName == null || tableName.isEmpty())
@@ -1424,10 +2812,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public void clearAllPendingRecords() {
         SQLiteDatabase db = this.getWritableDatabase();
 
-        // 1. Get only records with PENDING/FAILED status to clear their source status
-        List<SyncRecord> pending = getPendingSyncRecords();
-        for (SyncRecord record : pending) {
-            updateSourceSyncStatus(record.getTableName(), record.getRecordId(), SYNC_SYNCED);
+        // 1. Clear the source status of every entry not yet uploaded, whether due,
+        // backing off or dead-lettered
+        for (SyncRecord record : getAllSyncRecords()) {
+            if (!SYNC_SYNCED.equalsIgnoreCase(record.getSyncStatus())) {
+                updateSourceSyncStatus(record.getTableName(), record.getRecordId(), SYNC_SYNCED);
+            }
         }
 
         // 2. Clear only non-synced entries from the queue (case-insensitive check for
@@ -1447,27 +2837,26 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Clean up old SYNCED records from sync queue (older than 5 minutes)
-     * This prevents the sync status UI from showing stale "recently synced" items
+     * Move SYNCED entries older than 5 minutes from the sync queue to
+     * sync_history, so the sync status UI stops showing them as "recently
+     * synced" and their payloads are dropped
      */
     public int cleanupOldSyncedRecords() {
         SQLiteDatabase db = this.getWritableDatabase();
-        
-        // Calculate timestamp for 5 minutes ago
-        long fiveMinutesAgo = System.currentTimeMillis() - (5 * 60 * 1000);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", java.util.Locale.getDefault());
-        String cutoffTime = sdf.format(new java.util.Date(fiveMinutesAgo));
-        
-        // Delete SYNCED records older than 5 minutes
-        int deleted = db.delete(TABLE_SYNC_QUEUE, 
-                COL_SYNC_STATUS + " = ? AND " + COL_LAST_UPDATED + " < ?",
-                new String[] { "SYNCED", cutoffTime });
-        
-        if (deleted > 0) {
-            android.util.Log.d("DatabaseHelper", "Cleaned up " + deleted + " old SYNCED records from sync queue");
-        }
-        
-        return deleted;
+        int moved;
+        db.beginTransactionNonExclusive();
+        try {
+            moved = moveSyncedToHistory(db, System.currentTimeMillis() - SYNCED_QUEUE_RETENTION_MS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if (moved > 0) {
+            android.util.Log.d("DatabaseHelper", "Moved " + moved + " old SYNCED records to sync history");
+        }
+
+        return moved;
     }
 
     /**
@@ -1479,43 +2868,25 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
 
-        if (cursor.moveToFirst()) {
-            int localIdIndex = cursor.getColumnIndex(COL_LOCAL_ID);
-            int tableNameIndex = cursor.getColumnIndex(COL_TABLE_NAME);
-            int recordIdIndex = cursor.getColumnIndex(COL_RECORD_ID);
-            int actionIndex = cursor.getColumnIndex(COL_ACTION);
-            int dataJsonIndex = cursor.getColumnIndex(COL_DATA_JSON);
-            int syncStatusIndex = cursor.getColumnIndex(COL_SYNC_STATUS);
-            int errorMessageIndex = cursor.getColumnIndex(COL_ERROR_MESSAGE);
-            int retryCountIndex = cursor.getColumnIndex(COL_RETRY_COUNT);
-            int createdAtIndex = cursor.getColumnIndex(COL_CREATED_AT);
-            int lastUpdatedIndex = cursor.getColumnIndex(COL_LAST_UPDATED);
+        records.addAll(new RowMappers.SyncRecordMapper(cursor).mapAll());
+        cursor.close();
+        return records;
+    }
 
-            do {
-                SyncRecord record = new SyncRecord();
-                if (localIdIndex != -1)
-                    record.setLocalId(cursor.getLong(localIdIndex));
-                if (tableNameIndex != -1)
-                    record.setTableName(cursor.getString(tableNameIndex));
-                if (recordIdIndex != -1)
-                    record.setRecordId(cursor.getLong(recordIdIndex));
-                if (actionIndex != -1)
-                    record.setAction(cursor.getString(actionIndex));
-                if (dataJsonIndex != -1)
-                    record.setDataJson(cursor.getString(dataJsonIndex));
-                if (syncStatusIndex != -1)
-                    record.setSyncStatus(cursor.getString(syncStatusIndex));
-                if (errorMessageIndex != -1)
-                    record.setErrorMessage(cursor.getString(errorMessageIndex));
-                if (retryCountIndex != -1)
-                    record.setRetryCount(cursor.getInt(retryCountIndex));
-                if (createdAtIndex != -1)
-                    record.setCreatedAt(cursor.getString(createdAtIndex));
-                if (lastUpdatedIndex != -1)
-                    record.setLastUpdated(cursor.getString(lastUpdatedIndex));
-                records.add(record);
-            } while (cursor.moveToNext());
-        }
+    /**
+     * Most recently uploaded entities, newest first, as SYNCED records with no
+     * payload; retry count is the failed attempts over all their uploads
+     */
+    public List<SyncRecord> getSyncHistory(int limit) {
+        String query = "SELECT " + COL_LOCAL_ID + ", " + COL_TABLE_NAME + ", " + COL_RECORD_ID + ", " + COL_ACTION
+                + ", '" + SYNC_SYNCED + "' AS " + COL_SYNC_STATUS + ", " + COL_ATTEMPT_COUNT + " - "
+                + COL_UPLOAD_COUNT + " AS " + COL_RETRY_COUNT + ", " + COL_LAST_SYNCED_AT + " AS " + COL_CREATED_AT
+                + ", " + COL_LAST_SYNCED_AT + " AS " + COL_LAST_UPDATED + ", " + COL_LAST_SYNCED_AT_MS + " AS "
+                + COL_LAST_UPDATED_MS + " FROM " + TABLE_SYNC_HISTORY + " ORDER BY " + COL_LAST_SYNCED_AT_MS
+                + " DESC LIMIT " + limit;
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery(query, null);
+        List<SyncRecord> records = new RowMappers.SyncRecordMapper(cursor).mapAll();
         cursor.close();
         return records;
     }
@@ -1529,52 +2900,380 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_SYNC_STATUS, record.getSyncStatus());
         values.put(COL_ERROR_MESSAGE, record.getErrorMessage());
         values.put(COL_RETRY_COUNT, record.getRetryCount());
-        values.put(COL_LAST_UPDATED, getCurrentTimestamp());
+        putSyncQueueUpdated(values);
 
         return db.update(TABLE_SYNC_QUEUE, values, COL_LOCAL_ID + " = ?",
                 new String[] { String.valueOf(record.getLocalId()) });
     }
 
+    /**
+     * Records waiting for upload across the entity tables, from the
+     * dashboard_stats counters
+     */
     public int getTotalPendingRecords() {
+        String[] keys = new String[PENDING_COUNTED_TABLES.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = STAT_PENDING_PREFIX + PENDING_COUNTED_TABLES[i];
+        }
         int count = 0;
-        SQLiteDatabase db = this.getReadableDatabase();
+        Map<String, Integer> stats = readStats(keys);
+        for (Integer value : stats.values()) {
+            count += value;
+        }
+        return count;
+    }
 
-        // Count pending patients
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_PATIENTS + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        if (cursor.moveToFirst())
-            count += cursor.getInt(0);
-        cursor.close();
+    // ==================== BULK UPSERT ====================
 
-        // Count pending pregnancy visits
-        cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_PREGNANCY_VISITS + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        if (cursor.moveToFirst())
-            count += cursor.getInt(0);
-        cursor.close();
+    // Outcome of one row, an index into the counts kept by bulkUpsert()
+    private static final int UPSERT_INSERTED = 0;
+    private static final int UPSERT_UPDATED = 1;
+    private static final int UPSERT_SKIPPED = 2;
 
-        // Count pending child growth
-        cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_CHILD_GROWTH + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        if (cursor.moveToFirst())
-            count += cursor.getInt(0);
-        cursor.close();
+    // Server records replace the local row with the same server_id unless that
+    // row has edits still waiting to upload
+    private static final String NOT_AWAITING_UPLOAD = "IFNULL(" + COL_SYNC_STATUS + ", '') NOT IN ('" + SYNC_PENDING
+            + "', '" + SYNC_FAILED + "')";
 
-        // Count pending vaccinations
-        cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_VACCINATIONS + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        if (cursor.moveToFirst())
-            count += cursor.getInt(0);
-        cursor.close();
+    // Columns written from a server record, bound as ?1..?n in this order
+    private static final String[] SERVER_PATIENT_COLUMNS = {
+            COL_NAME, COL_AGE, COL_DOB, COL_GENDER, COL_PHONE, COL_ADDRESS, COL_BLOOD_GROUP, COL_CATEGORY,
+            COL_CATEGORY_CODE, COL_MEDICAL_NOTES, COL_IS_HIGH_RISK, COL_HIGH_RISK_REASON, COL_ABHA_ID, COL_SERVER_ID,
+            COL_LAST_UPDATED
+    };
 
-        // Count pending visits
-        cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_VISITS + " WHERE " + COL_SYNC_STATUS + " = ?",
-                new String[] { SYNC_PENDING });
-        if (cursor.moveToFirst())
-            count += cursor.getInt(0);
+    private static final String[] SERVER_PREGNANCY_VISIT_COLUMNS = {
+            COL_PATIENT_ID, COL_VISIT_DATE, COL_BP_SYSTOLIC, COL_BP_DIASTOLIC, COL_WEIGHT, COL_COMPLAINTS, COL_NOTES,
+            COL_SERVER_ID, COL_LAST_UPDATED
+    };
+
+    /**
+     * Insert of a server record as SYNCED
+     */
+    private static String insertServerRecord(String table, String[] columns) {
+        StringBuilder values = new StringBuilder();
+        for (int i = 1; i <= columns.length; i++) {
+            values.append('?').append(i).append(", ");
+        }
+        return "INSERT INTO " + table + "(" + TextUtils.join(", ", columns) + ", " + COL_SYNC_STATUS + ") VALUES ("
+                + values + "'" + SYNC_SYNCED + "')";
+    }
+
+    /**
+     * Update of the row with local_id ?(n+1) from a server record, unless it is
+     * awaiting upload. A column the record leaves out (bound as NULL) keeps its
+     * local value, so a list response with fewer fields clears nothing.
+     */
+    private static String updateServerRecord(String table, String[] columns) {
+        StringBuilder assignments = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            assignments.append(columns[i]).append(" = IFNULL(?").append(i + 1).append(", ").append(columns[i])
+                    .append("), ");
+        }
+        return "UPDATE " + table + " SET " + assignments + COL_SYNC_STATUS + " = '" + SYNC_SYNCED + "' WHERE "
+                + COL_LOCAL_ID + " = ?" + (columns.length + 1) + " AND " + NOT_AWAITING_UPLOAD;
+    }
+
+    // Local row for a server id, 0 if none
+    private static String findByServerId(String table) {
+        return "SELECT IFNULL((SELECT " + COL_LOCAL_ID + " FROM " + table + " WHERE " + COL_SERVER_ID
+                + " = ? LIMIT 1), 0)";
+    }
+
+    /**
+     * Store one record of a bulk upsert and return UPSERT_INSERTED,
+     * UPSERT_UPDATED or UPSERT_SKIPPED
+     */
+    private interface RowUpsert<T> {
+        int upsert(T row);
+    }
+
+    /**
+     * Store patients read from the server, matched to local rows on server_id,
+     * as SYNCED without queueing uploads. Records are taken from the iterable
+     * as they are stored, so it can stream them from the response, and
+     * committed UPSERT_CHUNK_SIZE to a transaction: if it fails part way, the
+     * chunks before stay stored. Each patient's localId is set to its row.
+     * Run it outside any transaction, through
+     * DbWriteExecutor.submitUngrouped; inside one the chunks do not commit.
+     */
+    public UpsertReport upsertServerPatients(Iterable<Patient> patients) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement find = db.compileStatement(findByServerId(TABLE_PATIENTS));
+        SQLiteStatement insert = db.compileStatement(insertServerRecord(TABLE_PATIENTS, SERVER_PATIENT_COLUMNS));
+        SQLiteStatement update = db.compileStatement(updateServerRecord(TABLE_PATIENTS, SERVER_PATIENT_COLUMNS));
+        String now = getCurrentTimestamp();
+        try {
+            return bulkUpsert(db, TABLE_PATIENTS, patients, patient -> {
+                if (patient.getServerId() <= 0) {
+                    return UPSERT_SKIPPED;
+                }
+                find.bindLong(1, patient.getServerId());
+                long localId = find.simpleQueryForLong();
+                if (localId > 0) {
+                    bindServerPatient(update, patient, now, false);
+                    update.bindLong(16, localId);
+                    if (update.executeUpdateDelete() == 0) {
+                        return UPSERT_SKIPPED;
+                    }
+                    patient.setLocalId(localId);
+                    return UPSERT_UPDATED;
+                }
+                bindServerPatient(insert, patient, now, true);
+                patient.setLocalId(insert.executeInsert());
+                return UPSERT_INSERTED;
+            });
+        } finally {
+            find.close();
+            insert.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Bind a server patient, with NULL for every field it does not carry so
+     * the update keeps the local value. An insert takes the column defaults
+     * for the NOT NULL and flag columns instead.
+     */
+    private static void bindServerPatient(SQLiteStatement statement, Patient patient, String now, boolean insert) {
+        statement.clearBindings();
+        bindOptional(statement, 1, patient.getName() != null || !insert ? patient.getName() : "");
+        if (patient.hasAge()) {
+            statement.bindLong(2, patient.getAge());
+        }
+        bindOptional(statement, 3, patient.getDob());
+        bindOptional(statement, 4, patient.getGender());
+        bindOptional(statement, 5, patient.getPhone());
+        bindOptional(statement, 6, patient.getAddress());
+        bindOptional(statement, 7, patient.getBloodGroup());
+        bindOptional(statement, 8, patient.getCategory());
+        if (patient.getCategory() != null || insert) {
+            statement.bindLong(9, patient.getCategoryCode());
+        }
+        bindOptional(statement, 10, patient.getMedicalNotes());
+        if (patient.hasHighRisk() || insert) {
+            statement.bindLong(11, patient.isHighRisk() ? 1 : 0);
+        }
+        bindOptional(statement, 12, patient.getHighRiskReason());
+        bindOptional(statement, 13, patient.getAbhaId());
+        statement.bindLong(14, patient.getServerId());
+        statement.bindString(15, now);
+    }
+
+    /**
+     * Store pregnancy visits read from the server, like upsertServerPatients,
+     * keeping their latest-vitals cache entries and observations up to date.
+     * A visit belongs to the local patient with its patient server id, or, if
+     * it has none, to the local patient id it carries; visits of patients not
+     * on the device are skipped.
+     */
+    public UpsertReport upsertServerPregnancyVisits(Iterable<PregnancyVisit> visits) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement find = db.compileStatement(findByServerId(TABLE_PREGNANCY_VISITS));
+        SQLiteStatement findPatient = db.compileStatement(findByServerId(TABLE_PATIENTS));
+        SQLiteStatement insert = db.compileStatement(insertServerRecord(TABLE_PREGNANCY_VISITS,
+                SERVER_PREGNANCY_VISIT_COLUMNS));
+        SQLiteStatement update = db.compileStatement(updateServerRecord(TABLE_PREGNANCY_VISITS,
+                SERVER_PREGNANCY_VISIT_COLUMNS));
+        SQLiteStatement putVitals = db.compileStatement(PUT_LATEST_VITALS);
+        SQLiteStatement deleteObservations = db.compileStatement(DELETE_OBSERVATIONS);
+        SQLiteStatement insertObservation = db.compileStatement(INSERT_OBSERVATION);
+        String now = getCurrentTimestamp();
+        try {
+            return bulkUpsert(db, TABLE_PREGNANCY_VISITS, visits, visit -> {
+                if (visit.getServerId() <= 0 || TextUtils.isEmpty(visit.getVisitDate())) {
+                    return UPSERT_SKIPPED;
+                }
+                if (visit.getPatientServerId() > 0) {
+                    findPatient.bindLong(1, visit.getPatientServerId());
+                    visit.setPatientId(findPatient.simpleQueryForLong());
+                }
+                if (visit.getPatientId() <= 0) {
+                    return UPSERT_SKIPPED;
+                }
+                find.bindLong(1, visit.getServerId());
+                long localId = find.simpleQueryForLong();
+                int outcome;
+                if (localId > 0) {
+                    bindServerPregnancyVisit(update, visit, now);
+                    update.bindLong(10, localId);
+                    if (update.executeUpdateDelete() == 0) {
+                        return UPSERT_SKIPPED;
+                    }
+                    outcome = UPSERT_UPDATED;
+                } else {
+                    bindServerPregnancyVisit(insert, visit, now);
+                    localId = insert.executeInsert();
+                    outcome = UPSERT_INSERTED;
+                }
+                visit.setLocalId(localId);
+                putLatestVitals(putVitals, visit.getPatientId(), TABLE_PREGNANCY_VISITS, localId,
+                        visit.getVisitDate(), pregnancyVitalsJson(visit));
+                putObservations(deleteObservations, insertObservation, visit.getPatientId(), TABLE_PREGNANCY_VISITS,
+                        localId, visit.getVisitDate(), pregnancyObservations(visit));
+                return outcome;
+            });
+        } finally {
+            find.close();
+            findPatient.close();
+            insert.close();
+            update.close();
+            putVitals.close();
+            deleteObservations.close();
+            insertObservation.close();
+        }
+    }
+
+    private static void bindServerPregnancyVisit(SQLiteStatement statement, PregnancyVisit visit, String now) {
+        statement.clearBindings();
+        statement.bindLong(1, visit.getPatientId());
+        statement.bindString(2, visit.getVisitDate());
+        statement.bindLong(3, visit.getBloodPressureSystolic());
+        statement.bindLong(4, visit.getBloodPressureDiastolic());
+        statement.bindDouble(5, visit.getWeight());
+        bindOptional(statement, 6, visit.getComplaints());
+        bindOptional(statement, 7, visit.getNotes());
+        statement.bindLong(8, visit.getServerId());
+        statement.bindString(9, now);
+    }
+
+    /**
+     * Feed rows to upsert in transactions of UPSERT_CHUNK_SIZE and report the
+     * outcome counts and throughput. The chunks commit only when the caller
+     * is not already in a transaction.
+     */
+    private <T> UpsertReport bulkUpsert(SQLiteDatabase db, String table, Iterable<T> rows, RowUpsert<T> upsert) {
+        long start = System.currentTimeMillis();
+        int[] counts = new int[3];
+        java.util.Iterator<T> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            db.beginTransactionNonExclusive();
+            try {
+                for (int i = 0; i < UPSERT_CHUNK_SIZE && iterator.hasNext(); i++) {
+                    counts[upsert.upsert(iterator.next())]++;
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+
+        UpsertReport report = new UpsertReport(table, counts[UPSERT_INSERTED], counts[UPSERT_UPDATED],
+                counts[UPSERT_SKIPPED], System.currentTimeMillis() - start);
+        Log.d("DatabaseHelper", "Bulk upsert " + report);
+        return report;
+    }
+
+    // ==================== STORAGE MAINTENANCE ====================
+
+    // Serialises maintenance passes without holding the helper's monitor,
+    // which getWriteExecutor() and close() take on the main thread
+    private final Object maintenanceLock = new Object();
+
+    /**
+     * Background storage pass, at most once per MAINTENANCE_INTERVAL_MS: moves
+     * old SYNCED queue entries to sync_history, drops queued uploads whose
+     * record is gone, switches a file from an older version to incremental
+     * auto-vacuum (a one-time VACUUM), hands free pages back to the file system
+     * and truncates the WAL.
+     * Call off the main thread and outside a transaction. Returns the storage
+     * stats afterwards, or null if the pass was not due.
+     */
+    public StorageStats runStorageMaintenance() {
+        synchronized (maintenanceLock) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            long now = System.currentTimeMillis();
+            if (now - getMetaLong(db, META_LAST_MAINTENANCE, 0) < MAINTENANCE_INTERVAL_MS) {
+                return null;
+            }
+
+            cleanupOldSyncedRecords();
+            purgeOrphanedSyncEntries(db);
+
+            try {
+                if (pragmaLong(db, "auto_vacuum") != 2) {
+                    // Only files created before onConfigure set the mode get here.
+                    // It can only change when the file is rebuilt: VACUUM rewrites
+                    // the whole file and needs about its size in free space.
+                    db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+                    db.execSQL("VACUUM");
+                }
+                // Each step is its own write transaction, so queued writes get in
+                // between steps
+                long free = pragmaLong(db, "freelist_count");
+                while (free > 0) {
+                    drainPragma(db, "incremental_vacuum(" + VACUUM_STEP_PAGES + ")");
+                    long left = pragmaLong(db, "freelist_count");
+                    if (left >= free) {
+                        break;
+                    }
+                    free = left;
+                }
+                // Freed pages leave the file when the WAL is checkpointed
+                drainPragma(db, "wal_checkpoint(TRUNCATE)");
+            } catch (SQLException e) {
+                // Low disk space or a busy database; the next pass tries again
+                Log.e("DatabaseHelper", "Storage maintenance stopped: " + e.getMessage());
+            }
+
+            putMeta(db, META_LAST_MAINTENANCE, String.valueOf(now));
+            StorageStats stats = getStorageStats();
+            Log.d("DatabaseHelper", "Storage maintenance done in " + (System.currentTimeMillis() - now) + " ms: "
+                    + stats);
+            return stats;
+        }
+    }
+
+    /**
+     * Current file, WAL and page counts of the database
+     */
+    public StorageStats getStorageStats() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        java.io.File file = new java.io.File(db.getPath());
+        java.io.File wal = new java.io.File(db.getPath() + "-wal");
+        return new StorageStats(file.length(), wal.length(), pragmaLong(db, "page_size"),
+                pragmaLong(db, "page_count"), pragmaLong(db, "freelist_count"), pragmaLong(db, "auto_vacuum") == 2);
+    }
+
+    /**
+     * Drop queued uploads, and their payloads, whose record no longer exists;
+     * patient DELETE tombstones are kept
+     */
+    private void purgeOrphanedSyncEntries(SQLiteDatabase db) {
+        int purged = 0;
+        db.beginTransactionNonExclusive();
+        try {
+            for (String table : PENDING_COUNTED_TABLES) {
+                purged += db.delete(TABLE_SYNC_QUEUE, COL_TABLE_NAME + " = ? AND " + COL_ACTION + " <> ? AND "
+                        + COL_RECORD_ID + " NOT IN (SELECT " + COL_LOCAL_ID + " FROM " + table + ")",
+                        new String[] { table, Constants.ACTION_DELETE });
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        if (purged > 0) {
+            Log.d("DatabaseHelper", "Purged " + purged + " queued uploads of deleted records");
+        }
+    }
+
+    private static long pragmaLong(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        long value = cursor.moveToFirst() ? cursor.getLong(0) : 0;
         cursor.close();
+        return value;
+    }
 
-        return count;
+    /**
+     * Run a pragma to completion. incremental_vacuum frees one page per step,
+     * and execSQL steps only once, so it goes through a cursor that is read to
+     * the end.
+     */
+    private static void drainPragma(SQLiteDatabase db, String pragma) {
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        // Counting fills the cursor window, stepping the statement to the end
+        cursor.getCount();
+        cursor.close();
     }
 
     // ==================== USER OPERATIONS ====================
@@ -1626,59 +3325,363 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         }
     }
 
-    public Cursor getLoggedInUser() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT * FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
+    public Cursor getLoggedInUser() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        return db.rawQuery("SELECT * FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
+    }
+
+    public String getLoggedInUserName() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db
+                .rawQuery("SELECT " + COL_NAME + " FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
+        String name = null;
+        if (cursor.moveToFirst()) {
+            name = cursor.getString(0);
+        }
+        cursor.close();
+        return name;
+    }
+
+    public String getLoggedInUserArea() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db
+                .rawQuery("SELECT " + COL_AREA + " FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
+        String area = null;
+        if (cursor.moveToFirst()) {
+            area = cursor.getString(0);
+        }
+        cursor.close();
+        return area;
+    }
+
+    public boolean isAnyUserLoggedIn() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1",
+                null);
+        int count = 0;
+        if (cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+        }
+        cursor.close();
+        return count > 0;
+    }
+
+    // ==================== UTILITY METHODS ====================
+
+    private String getCurrentTimestamp() {
+        return DateTimeUtils.formatTimestamp(System.currentTimeMillis());
+    }
+
+    /**
+     * Stamp a sync_queue update with both the text and the epoch-millis time
+     */
+    private static void putSyncQueueUpdated(ContentValues values) {
+        long now = System.currentTimeMillis();
+        values.put(COL_LAST_UPDATED, DateTimeUtils.formatTimestamp(now));
+        values.put(COL_LAST_UPDATED_MS, now);
+    }
+
+    public void closeDB() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        if (db != null && db.isOpen()) {
+            db.close();
+        }
+    }
+
+    // ==================== LATEST VITALS ====================
+
+    /**
+     * Cache a vitals record read from the server for the local patient with
+     * this server id, unless a newer record is already cached. Nothing is
+     * cached for a patient not on the device.
+     */
+    public void saveLatestVitals(int serverId, String sourceTable, String recordDate, org.json.JSONObject record) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        putLatestVitals(db, localPatientId(db, serverId), sourceTable, null, recordDate, record.toString());
+    }
+
+    /**
+     * Local patient id to store on a new record: the patient with the record's
+     * server patient id when one is set, since screens opened from server
+     * lists only know that id, else the record's own patient id. 0 if the
+     * server id names a patient not on the device.
+     */
+    private static long recordPatientId(SQLiteDatabase db, long patientServerId, long patientId) {
+        return patientServerId > 0 ? localPatientId(db, patientServerId) : patientId;
+    }
+
+    // Local id of the patient with this server id, 0 if there is none
+    private static long localPatientId(SQLiteDatabase db, long serverId) {
+        if (serverId <= 0) {
+            return 0;
+        }
+        return DatabaseUtils.longForQuery(db, findByServerId(TABLE_PATIENTS),
+                new String[] { String.valueOf(serverId) });
+    }
+
+    private static final String LATEST_VITALS_COLUMNS = COL_PATIENT_ID + ", " + COL_SOURCE_TABLE + ", "
+            + COL_RECORD_DATE + ", " + COL_DATA_JSON;
+
+    /**
+     * Cached vitals of the local patient with this server id, or null if none
+     * are cached
+     */
+    public LatestVitals getLatestVitals(int serverId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LATEST_VITALS_COLUMNS + " FROM " + TABLE_PATIENT_LATEST_VITALS
+                + " WHERE " + COL_PATIENT_ID + " = (SELECT " + COL_LOCAL_ID + " FROM " + TABLE_PATIENTS + " WHERE "
+                + COL_SERVER_ID + " = ? LIMIT 1)", new String[] { String.valueOf(serverId) });
+        LatestVitals vitals = null;
+        if (cursor.moveToFirst()) {
+            vitals = readLatestVitals(cursor);
+        }
+        cursor.close();
+        return vitals;
+    }
+
+    /**
+     * Cached vitals of every local patient that has any, by local id
+     */
+    public Map<Long, LatestVitals> getLatestVitalsByPatient() {
+        Map<Long, LatestVitals> vitalsByPatient = new HashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + LATEST_VITALS_COLUMNS + " FROM " + TABLE_PATIENT_LATEST_VITALS
+                + " WHERE " + COL_PATIENT_ID + " IN (SELECT " + COL_LOCAL_ID + " FROM " + TABLE_PATIENTS + ")", null);
+        while (cursor.moveToNext()) {
+            LatestVitals vitals = readLatestVitals(cursor);
+            vitalsByPatient.put(vitals.getPatientId(), vitals);
+        }
+        cursor.close();
+        return vitalsByPatient;
+    }
+
+    private static LatestVitals readLatestVitals(Cursor cursor) {
+        return new LatestVitals(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getString(3));
+    }
+
+    /**
+     * Write one record to the cache unless the patient already has a newer one.
+     * sourceId is the local row the record came from, null for server data.
+     */
+    private static void putLatestVitals(SQLiteDatabase db, long patientId, String sourceTable, Long sourceId,
+            String recordDate, String dataJson) {
+        if (patientId <= 0 || dataJson == null) {
+            return;
+        }
+        SQLiteStatement put = db.compileStatement(PUT_LATEST_VITALS);
+        putLatestVitals(put, patientId, sourceTable, sourceId, recordDate, dataJson);
+        put.close();
+    }
+
+    /**
+     * putLatestVitals through a compiled PUT_LATEST_VITALS, for bulk writes
+     */
+    private static void putLatestVitals(SQLiteStatement put, long patientId, String sourceTable, Long sourceId,
+            String recordDate, String dataJson) {
+        if (patientId <= 0 || dataJson == null) {
+            return;
+        }
+        put.clearBindings();
+        put.bindLong(1, patientId);
+        put.bindString(2, sourceTable);
+        if (sourceId != null) {
+            put.bindLong(3, sourceId);
+        } else {
+            put.bindNull(3);
+        }
+        bindOptional(put, 4, recordDate);
+        put.bindString(5, dataJson);
+        put.bindLong(6, System.currentTimeMillis());
+        put.executeInsert();
+    }
+
+    /**
+     * A pregnancy visit in the server's field names
+     */
+    private static String pregnancyVitalsJson(PregnancyVisit visit) {
+        try {
+            org.json.JSONObject json = new org.json.JSONObject();
+            json.put("visit_date", visit.getVisitDate());
+            if (visit.getBloodPressure() != null && !visit.getBloodPressure().isEmpty()) {
+                json.put("blood_pressure", visit.getBloodPressure());
+            }
+            if (visit.getWeight() > 0) {
+                json.put("weight", visit.getWeight());
+            }
+            if (visit.getHemoglobin() > 0) {
+                json.put("hemoglobin", visit.getHemoglobin());
+            }
+            if (visit.getFetalHeartRate() > 0) {
+                json.put("fetal_heart_rate", visit.getFetalHeartRate());
+            }
+            if (visit.getGestationalWeeks() > 0) {
+                json.put("gestational_weeks", visit.getGestationalWeeks());
+            }
+            return json.toString();
+        } catch (org.json.JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A growth record in the server's field names
+     */
+    private static String growthVitalsJson(ChildGrowth growth) {
+        try {
+            org.json.JSONObject json = new org.json.JSONObject();
+            json.put("checkup_date", growth.getRecordDate());
+            if (growth.getWeight() > 0) {
+                json.put("weight", growth.getWeight());
+            }
+            if (growth.getHeight() > 0) {
+                json.put("height", growth.getHeight());
+            }
+            if (growth.getMuac() > 0) {
+                json.put("muac", growth.getMuac());
+            }
+            if (growth.getAgeMonths() > 0) {
+                json.put("age_months", growth.getAgeMonths());
+            }
+            if (growth.getNutritionalStatus() != null && !growth.getNutritionalStatus().isEmpty()) {
+                json.put("nutritional_status", growth.getNutritionalStatus());
+            }
+            return json.toString();
+        } catch (org.json.JSONException e) {
+            return null;
+        }
+    }
+
+    // ==================== OBSERVATIONS ====================
+
+    /**
+     * Local patients with a text observation of the given value, e.g.
+     * (OBS_MEDICINE, "Tetanus Injection") for every woman who received TT
+     */
+    public List<Patient> getPatientsWithObservation(int obsCode, String value) {
+        return getPatientsMatching("SELECT " + COL_PATIENT_ID + " FROM " + TABLE_OBSERVATIONS + " WHERE "
+                + COL_OBS_CODE + " = ?1 AND " + COL_VALUE_TEXT + " = ?2",
+                new String[] { String.valueOf(obsCode), value });
     }
 
-    public String getLoggedInUserName() {
+    /**
+     * Local patients whose most recent numeric observation of the code is below
+     * the limit, e.g. (OBS_MUAC, 11.5) for children whose last MUAC was below 11.5
+     */
+    public List<Patient> getPatientsWithLatestObservationBelow(int obsCode, double limit) {
+        // The bare value_num column comes from each patient's MAX(observed_at_ms) row
+        return getPatientsMatching("SELECT " + COL_PATIENT_ID + " FROM (SELECT " + COL_PATIENT_ID + ", "
+                + COL_VALUE_NUM + ", MAX(" + COL_OBSERVED_AT_MS + ") FROM " + TABLE_OBSERVATIONS + " WHERE "
+                + COL_OBS_CODE + " = ?1 GROUP BY " + COL_PATIENT_ID + ") WHERE " + COL_VALUE_NUM + " < ?2",
+                new String[] { String.valueOf(obsCode), String.valueOf(limit) });
+    }
+
+    // Patients whose local id is among those the subquery selects
+    private List<Patient> getPatientsMatching(String patientIds, String[] args) {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db
-                .rawQuery("SELECT " + COL_NAME + " FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
-        String name = null;
-        if (cursor.moveToFirst()) {
-            name = cursor.getString(0);
-        }
+        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_LOCAL_ID + " IN ("
+                + patientIds + ") ORDER BY " + COL_NAME, args);
+        List<Patient> patients = new RowMappers.PatientMapper(cursor).mapAll();
         cursor.close();
-        return name;
+        return patients;
     }
 
-    public String getLoggedInUserArea() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db
-                .rawQuery("SELECT " + COL_AREA + " FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1", null);
-        String area = null;
-        if (cursor.moveToFirst()) {
-            area = cursor.getString(0);
+    /**
+     * Replace the observations of one record
+     */
+    private static void putObservations(SQLiteDatabase db, long patientId, String sourceTable, long sourceId,
+            String observedAt, ObservationSet observations) {
+        SQLiteStatement delete = db.compileStatement(DELETE_OBSERVATIONS);
+        SQLiteStatement insert = db.compileStatement(INSERT_OBSERVATION);
+        db.beginTransactionNonExclusive();
+        try {
+            putObservations(delete, insert, patientId, sourceTable, sourceId, observedAt, observations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            delete.close();
+            insert.close();
         }
-        cursor.close();
-        return area;
     }
 
-    public boolean isAnyUserLoggedIn() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_USERS + " WHERE " + COL_IS_LOGGED_IN + " = 1",
-                null);
-        int count = 0;
-        if (cursor.moveToFirst()) {
-            count = cursor.getInt(0);
+    /**
+     * putObservations through compiled DELETE_OBSERVATIONS and
+     * INSERT_OBSERVATION statements, inside the caller's transaction
+     */
+    private static void putObservations(SQLiteStatement delete, SQLiteStatement insert, long patientId,
+            String sourceTable, long sourceId, String observedAt, ObservationSet observations) {
+        delete.bindString(1, sourceTable);
+        delete.bindLong(2, sourceId);
+        delete.executeUpdateDelete();
+        if (patientId > 0 && !observations.isEmpty()) {
+            observations.insertAll(insert, patientId, sourceTable, sourceId, observedAt);
         }
-        cursor.close();
-        return count > 0;
     }
 
-    // ==================== UTILITY METHODS ====================
+    /**
+     * Observations of a pregnancy visit's notes. bloodPressure and hemoglobin
+     * come from the visit's fields when set, else from its notes.
+     */
+    private ObservationSet pregnancyObservations(String notes, String bloodPressure, double hemoglobin) {
+        ObservationSet observations = new ObservationSet();
+        observations.addBloodPressure(Constants.OBS_BP_SYSTOLIC, Constants.OBS_BP_DIASTOLIC,
+                bloodPressure != null && !bloodPressure.isEmpty() ? bloodPressure
+                        : ObservationSet.noteLine(notes, "Blood Pressure: "));
+        if (hemoglobin > 0) {
+            observations.addNumber(Constants.OBS_HEMOGLOBIN, hemoglobin);
+        } else {
+            observations.addNumber(Constants.OBS_HEMOGLOBIN, ObservationSet.noteLine(notes, "Hemoglobin: "));
+        }
+        observations.addList(Constants.OBS_DANGER_SIGN, ObservationSet.noteLine(notes, "Danger Signs: "));
+        observations.addList(Constants.OBS_MEDICINE, ObservationSet.noteLine(notes, "Medicines: "));
+        observations.addText(Constants.OBS_NEXT_VISIT_DATE,
+                convertDateToDB(ObservationSet.noteLine(notes, "Next Visit Date: ")));
+        return observations;
+    }
 
-    private String getCurrentTimestamp() {
-        return new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss", java.util.Locale.getDefault())
-                .format(new java.util.Date());
+    private ObservationSet pregnancyObservations(PregnancyVisit visit) {
+        return pregnancyObservations(visit.getNotes(), visit.getBloodPressure(), visit.getHemoglobin())
+                .addNumber(Constants.OBS_WEIGHT, visit.getWeight());
     }
 
-    public void closeDB() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        if (db != null && db.isOpen()) {
-            db.close();
+    private ObservationSet growthObservations(ChildGrowth growth) {
+        return growthObservations(growth.getGrowthStatus()).addNumber(Constants.OBS_WEIGHT, growth.getWeight())
+                .addNumber(Constants.OBS_HEIGHT, growth.getHeight()).addNumber(Constants.OBS_MUAC, growth.getMuac());
+    }
+
+    // Form values as entered in the child growth screen
+    private ObservationSet growthObservations(String notes, String weight, String height, String muac) {
+        return growthObservations(notes).addNumber(Constants.OBS_WEIGHT, weight)
+                .addNumber(Constants.OBS_HEIGHT, height).addNumber(Constants.OBS_MUAC, muac);
+    }
+
+    /**
+     * Observations of a growth record's notes (kept in growth_status by
+     * addChildGrowth); weight, height and MUAC are added by the caller
+     */
+    private ObservationSet growthObservations(String notes) {
+        ObservationSet observations = new ObservationSet();
+        observations.addNumber(Constants.OBS_TEMPERATURE, ObservationSet.noteLine(notes, "Temperature: "));
+        String lastVaccine = ObservationSet.noteLine(notes, "Last Vaccine: ");
+        if (!"Select Vaccine".equals(lastVaccine)) {
+            observations.addText(Constants.OBS_VACCINE_GIVEN, lastVaccine);
         }
+        observations.addText(Constants.OBS_NEXT_VACCINE_DATE,
+                convertDateToDB(ObservationSet.noteLine(notes, "Next Vaccine Date: ")));
+        return observations;
+    }
+
+    /**
+     * Observations of a general visit's description
+     */
+    private ObservationSet generalObservations(String description) {
+        ObservationSet observations = new ObservationSet();
+        observations.addBloodPressure(Constants.OBS_BP_SYSTOLIC, Constants.OBS_BP_DIASTOLIC,
+                ObservationSet.noteLine(description, "Blood Pressure: "));
+        observations.addNumber(Constants.OBS_WEIGHT, ObservationSet.noteLine(description, "Weight: "));
+        observations.addNumber(Constants.OBS_BLOOD_SUGAR, ObservationSet.noteLine(description, "Blood Sugar: "));
+        observations.addText(Constants.OBS_NEXT_VISIT_DATE,
+                convertDateToDB(ObservationSet.noteLine(description, "Follow-up Date: ")));
+        return observations;
     }
 
     // ==================== DASHBOARD STATISTICS METHODS ====================
@@ -1687,31 +3690,168 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Get count of visits today
      */
     public int getVisitsCountToday() {
-        SQLiteDatabase db = this.getReadableDatabase();
-        String today = new java.text.SimpleDateFormat("yyyy-MM-dd", java.util.Locale.getDefault())
-                .format(new java.util.Date());
+        long now = System.currentTimeMillis();
+        return getVisitsCountBetween(DateTimeUtils.startOfDay(now), DateTimeUtils.startOfNextDay(now));
+    }
 
+    /**
+     * Get count of visits this week (first day of week per device locale)
+     */
+    public int getVisitsCountThisWeek() {
+        long now = System.currentTimeMillis();
+        return getVisitsCountBetween(DateTimeUtils.startOfWeek(now), DateTimeUtils.startOfNextDay(now));
+    }
+
+    /**
+     * Count general and pregnancy visits in [fromMillis, toMillis), as index
+     * range scans on visit_date_ms
+     */
+    public int getVisitsCountBetween(long fromMillis, long toMillis) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String[] range = { String.valueOf(fromMillis), String.valueOf(toMillis) };
         int count = 0;
 
-        // Count general visits
-        String queryVisits = "SELECT COUNT(*) FROM " + TABLE_VISITS +
-                " WHERE date(" + COL_VISIT_DATE + ") = ?";
-        Cursor cursor = db.rawQuery(queryVisits, new String[] { today });
-        if (cursor.moveToFirst()) {
-            count += cursor.getInt(0);
+        for (String table : new String[] { TABLE_VISITS, TABLE_PREGNANCY_VISITS }) {
+            Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table + " WHERE " + COL_VISIT_DATE_MS
+                    + " >= ? AND " + COL_VISIT_DATE_MS + " < ?", range);
+            if (cursor.moveToFirst()) {
+                count += cursor.getInt(0);
+            }
+            cursor.close();
+        }
+
+        return count;
+    }
+
+    /**
+     * All home dashboard tiles in one primary-key lookup on dashboard_stats
+     */
+    public DashboardStats getDashboardStats() {
+        String visitsTodayKey = STAT_VISITS_ON_PREFIX + DateTimeUtils.formatDate(System.currentTimeMillis());
+        String[] keys = new String[PENDING_COUNTED_TABLES.length + 3];
+        keys[0] = STAT_TOTAL_PATIENTS;
+        keys[1] = STAT_HIGH_RISK_PATIENTS;
+        keys[2] = visitsTodayKey;
+        for (int i = 0; i < PENDING_COUNTED_TABLES.length; i++) {
+            keys[i + 3] = STAT_PENDING_PREFIX + PENDING_COUNTED_TABLES[i];
+        }
+
+        Map<String, Integer> stats = readStats(keys);
+        int pending = 0;
+        for (int i = 3; i < keys.length; i++) {
+            pending += getStat(stats, keys[i]);
+        }
+        return new DashboardStats(getStat(stats, STAT_TOTAL_PATIENTS), getStat(stats, STAT_HIGH_RISK_PATIENTS),
+                getStat(stats, visitsTodayKey), pending);
+    }
+
+    private Map<String, Integer> readStats(String[] keys) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        Map<String, Integer> stats = new HashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_STAT_KEY + ", " + COL_STAT_VALUE + " FROM " + TABLE_DASHBOARD_STATS
+                + " WHERE " + COL_STAT_KEY + " IN (" + placeholders + ")", keys);
+        while (cursor.moveToNext()) {
+            stats.put(cursor.getString(0), cursor.getInt(1));
         }
         cursor.close();
+        return stats;
+    }
+
+    private static int getStat(Map<String, Integer> stats, String key) {
+        Integer value = stats.get(key);
+        return value != null ? value : 0;
+    }
+
+    // ==================== QUERY PLAN DIAGNOSTICS ====================
 
-        // Count pregnancy visits
-        String queryPregnancy = "SELECT COUNT(*) FROM " + TABLE_PREGNANCY_VISITS +
-                " WHERE date(" + COL_VISIT_DATE + ") = ?";
-        cursor = db.rawQuery(queryPregnancy, new String[] { today });
+    /**
+     * Hot queries that must be served by an index. Each entry is the SQL as the
+     * corresponding method issues it plus representative bind arguments.
+     */
+    private static final String[][] HOT_QUERIES = {
+            { "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_SYNC_STATUS + " = ?", SYNC_PENDING },
+            { "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_SERVER_ID + " = ?", "1" },
+            { "SELECT * FROM " + TABLE_VISITS + " WHERE " + COL_PATIENT_ID + " = ? ORDER BY " + COL_VISIT_DATE
+                    + " DESC", "1" },
+            { "SELECT * FROM " + TABLE_PREGNANCY_VISITS + " WHERE " + COL_PATIENT_ID + " = ? ORDER BY "
+                    + COL_VISIT_DATE + " DESC", "1" },
+            { "SELECT * FROM " + TABLE_CHILD_GROWTH + " WHERE " + COL_PATIENT_ID + " = ? ORDER BY "
+                    + COL_RECORD_DATE + " DESC", "1" },
+            { "SELECT * FROM " + TABLE_VACCINATIONS + " WHERE " + COL_PATIENT_ID + " = ? ORDER BY "
+                    + COL_DUE_DATE + " ASC", "1" },
+            { "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_CATEGORY_CODE + " IN (?, ?) ORDER BY " + COL_NAME
+                    + " LIMIT 50", "1", "2" },
+            { "SELECT * FROM " + TABLE_PATIENTS + " WHERE " + COL_IS_HIGH_RISK + " = 1 ORDER BY " + COL_NAME
+                    + " LIMIT 50" },
+            { "SELECT COUNT(*) FROM " + TABLE_VISITS + " WHERE " + COL_VISIT_DATE_MS + " >= ? AND "
+                    + COL_VISIT_DATE_MS + " < ?", "0", "86400000" },
+            { "SELECT COUNT(*) FROM " + TABLE_PREGNANCY_VISITS + " WHERE " + COL_VISIT_DATE_MS + " >= ? AND "
+                    + COL_VISIT_DATE_MS + " < ?", "0", "86400000" },
+            { "SELECT " + COL_LOCAL_ID + ", " + COL_LAST_UPDATED_MS + " FROM " + TABLE_SYNC_QUEUE + " WHERE "
+                    + COL_SYNC_STATUS + " = ? AND " + COL_LAST_UPDATED_MS + " < ?", SYNC_SYNCED, "0" },
+            { "SELECT * FROM " + TABLE_SYNC_HISTORY + " ORDER BY " + COL_LAST_SYNCED_AT_MS + " DESC LIMIT 200" },
+            { "SELECT " + COL_LOCAL_ID + " FROM " + TABLE_SYNC_QUEUE + " WHERE " + COL_TABLE_NAME + "=? AND "
+                    + COL_RECORD_ID + "=?", TABLE_PATIENTS, "1" },
+            { PENDING_SYNC_RECORDS, SYNC_PENDING, SYNC_FAILED, "0" },
+            { "SELECT a." + COL_ALERT_KEY + ", p." + COL_NAME + ", COALESCE(r.is_reviewed, 0)"
+                    + " FROM " + TABLE_ALERTS + " a "
+                    + " JOIN " + TABLE_PATIENTS + " p ON a." + COL_PATIENT_ID + " = p." + COL_LOCAL_ID
+                    + " LEFT JOIN " + TABLE_ALERTS_REVIEWED + " r ON r." + COL_PATIENT_ID + " = a." + COL_PATIENT_ID
+                    + " AND r." + COL_VISIT_TYPE + " = a." + COL_ALERT_KEY
+                    + " WHERE a." + COL_ALERT_TYPE + " = '" + ALERT_OVERDUE_VACCINE + "' AND a." + COL_DUE_DATE
+                    + " < date('now', 'localtime')" }
+    };
+
+    /**
+     * Run EXPLAIN QUERY PLAN for a statement and return the plan detail lines
+     */
+    public List<String> explainQueryPlan(String sql, String[] selectionArgs) {
+        List<String> plan = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+        int detailIndex = cursor.getColumnIndex("detail");
         if (cursor.moveToFirst()) {
-            count += cursor.getInt(0);
+            do {
+                plan.add(cursor.getString(detailIndex));
+            } while (cursor.moveToNext());
         }
         cursor.close();
+        return plan;
+    }
 
-        return count;
+    /**
+     * Debug-only self-check: returns every hot query whose plan falls back to a
+     * full table scan. Always empty in release builds.
+     */
+    public List<String> findFullTableScans() {
+        List<String> offenders = new ArrayList<>();
+        if (!BuildConfig.DEBUG) {
+            return offenders;
+        }
+
+        for (String[] hotQuery : HOT_QUERIES) {
+            String sql = hotQuery[0];
+            String[] args = new String[hotQuery.length - 1];
+            System.arraycopy(hotQuery, 1, args, 0, args.length);
+
+            for (String detail : explainQueryPlan(sql, args.length > 0 ? args : null)) {
+                if (isFullTableScan(detail)) {
+                    offenders.add(sql + " -> " + detail);
+                    Log.w("DatabaseHelper", "Full table scan: " + sql + " -> " + detail);
+                }
+            }
+        }
+        return offenders;
+    }
+
+    private boolean isFullTableScan(String detail) {
+        // Older SQLite prints "SCAN TABLE x", newer prints "SCAN x"; index-backed
+        // scans always carry a "USING ..." clause.
+        return detail != null && detail.startsWith("SCAN ") && !detail.contains(" USING ");
     }
 
     // ==================== ADDITIONAL METHODS ====================
@@ -1726,7 +3866,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         PregnancyVisit visit = null;
         if (cursor.moveToFirst()) {
-            visit = cursorToPregnancyVisit(cursor);
+            visit = new RowMappers.PregnancyVisitMapper(cursor).map();
         }
         cursor.close();
         return visit;
@@ -1760,6 +3900,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         int result = db.update(TABLE_PREGNANCY_VISITS, values, COL_LOCAL_ID + " = ?",
                 new String[] { String.valueOf(visit.getLocalId()) });
+        if (result > 0) {
+            putLatestVitals(db, visit.getPatientId(), TABLE_PREGNANCY_VISITS, visit.getLocalId(), visit.getVisitDate(),
+                    pregnancyVitalsJson(visit));
+            putObservations(db, visit.getPatientId(), TABLE_PREGNANCY_VISITS, visit.getLocalId(),
+                    visit.getVisitDate(), pregnancyObservations(visit));
+        }
 
         if (result > 0 && addToSyncQueue) {
             addToSyncQueue(TABLE_PREGNANCY_VISITS, visit.getLocalId(), Constants.ACTION_UPDATE);
@@ -1777,7 +3923,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Vaccination vaccination = null;
         if (cursor.moveToFirst()) {
-            vaccination = cursorToVaccination(cursor);
+            vaccination = new RowMappers.VaccinationMapper(cursor).map();
         }
         cursor.close();
         return vaccination;
@@ -1793,7 +3939,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Visit visit = null;
         if (cursor.moveToFirst()) {
-            visit = cursorToVisit(cursor);
+            visit = new RowMappers.VisitMapper(cursor).map();
         }
         cursor.close();
         return visit;
@@ -1839,7 +3985,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         ChildGrowth growth = null;
         if (cursor.moveToFirst()) {
-            growth = cursorToChildGrowth(cursor);
+            growth = new RowMappers.ChildGrowthMapper(cursor).map();
         }
         cursor.close();
         return growth;
@@ -1870,6 +4016,12 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         int result = db.update(TABLE_CHILD_GROWTH, values, COL_LOCAL_ID + " = ?",
                 new String[] { String.valueOf(growth.getLocalId()) });
+        if (result > 0) {
+            putLatestVitals(db, growth.getPatientId(), TABLE_CHILD_GROWTH, growth.getLocalId(),
+                    growth.getRecordDate(), growthVitalsJson(growth));
+            putObservations(db, growth.getPatientId(), TABLE_CHILD_GROWTH, growth.getLocalId(),
+                    growth.getRecordDate(), growthObservations(growth));
+        }
 
         if (result > 0 && addToSyncQueue) {
             addToSyncQueue(TABLE_CHILD_GROWTH, growth.getLocalId(), Constants.ACTION_UPDATE);
@@ -1903,6 +4055,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_AGE, age);
         values.put(COL_GENDER, gender);
         values.put(COL_CATEGORY, category);
+        values.put(COL_CATEGORY_CODE, Constants.categoryCode(category));
         values.put(COL_ADDRESS, address);
         values.put(COL_BLOOD_GROUP, bloodGroup);
         values.put(COL_PHONE, phone);
@@ -1956,6 +4109,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_AGE, age);
         values.put(COL_GENDER, gender);
         values.put(COL_CATEGORY, category);
+        values.put(COL_CATEGORY_CODE, Constants.categoryCode(category));
         values.put(COL_AREA, village);
         values.put(COL_PHONE, phone);
         values.put(COL_ABHA_ID, ""); // Placeholder, adjust if needed
@@ -1992,22 +4146,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_WEIGHT, weight);
 
         // Store additional data in notes
-        StringBuilder notes = new StringBuilder();
-        notes.append("LMP Date: ").append(lmpDate).append("\n");
-        notes.append("Blood Pressure: ").append(bloodPressure).append("\n");
-        notes.append("Hemoglobin: ").append(hemoglobin).append("\n");
-        if (!dangerSigns.isEmpty()) {
-            notes.append("Danger Signs: ").append(dangerSigns).append("\n");
-        }
-        if (!medicines.isEmpty()) {
-            notes.append("Medicines: ").append(medicines).append("\n");
-        }
-        notes.append("Next Visit Date: ").append(nextVisitDate);
-
-        values.put(COL_NOTES, notes.toString());
+        String notes = buildPregnancyNotes(lmpDate, bloodPressure, hemoglobin, dangerSigns, medicines, nextVisitDate);
+        values.put(COL_NOTES, notes);
         values.put(COL_SYNC_STATUS, shouldAddToSyncQueue ? SYNC_PENDING : SYNC_SYNCED);
 
         long visitId = db.insert(TABLE_PREGNANCY_VISITS, null, values);
+        if (visitId > 0) {
+            putLatestVitals(db, patientId, TABLE_PREGNANCY_VISITS, visitId, values.getAsString(COL_VISIT_DATE),
+                    dataJson);
+            putObservations(db, patientId, TABLE_PREGNANCY_VISITS, visitId, values.getAsString(COL_VISIT_DATE),
+                    pregnancyObservations(notes, null, 0).addNumber(Constants.OBS_WEIGHT, weight));
+        }
 
         if (visitId > 0 && shouldAddToSyncQueue) {
             addToSyncQueue(TABLE_PREGNANCY_VISITS, visitId, "INSERT", dataJson);
@@ -2053,21 +4202,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_HEAD_CIRCUMFERENCE, muac);
 
         // Store additional data in growth_status or notes column
-        StringBuilder notes = new StringBuilder();
-        notes.append("Temperature: ").append(temperature).append("\n");
-        notes.append("Breastfeeding: ").append(breastfeeding).append("\n");
-        notes.append("Complementary Feeding: ").append(complementaryFeeding).append("\n");
-        notes.append("Appetite: ").append(appetite).append("\n");
-        if (!symptoms.isEmpty()) {
-            notes.append("Symptoms: ").append(symptoms).append("\n");
-        }
-        notes.append("Last Vaccine: ").append(lastVaccine).append("\n");
-        notes.append("Next Vaccine Date: ").append(nextVaccineDate);
-
-        values.put(COL_GROWTH_STATUS, notes.toString());
+        String notes = buildChildGrowthNotes(temperature, breastfeeding, complementaryFeeding, appetite, symptoms,
+                lastVaccine, nextVaccineDate);
+        values.put(COL_GROWTH_STATUS, notes);
         values.put(COL_SYNC_STATUS, shouldAddToSyncQueue ? SYNC_PENDING : SYNC_SYNCED);
 
         long growthId = db.insert(TABLE_CHILD_GROWTH, null, values);
+        if (growthId > 0) {
+            putLatestVitals(db, patientId, TABLE_CHILD_GROWTH, growthId, values.getAsString(COL_RECORD_DATE),
+                    dataJson);
+            putObservations(db, patientId, TABLE_CHILD_GROWTH, growthId, values.getAsString(COL_RECORD_DATE),
+                    growthObservations(notes, weight, height, muac));
+        }
 
         if (growthId > 0 && shouldAddToSyncQueue) {
             addToSyncQueue(TABLE_CHILD_GROWTH, growthId, "INSERT", dataJson);
@@ -2113,89 +4259,96 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
 
     /**
-     * Migration logic to populate vaccinations table from existing notes in other
-     * tables.
-     * This handles cases where vaccinations were "mentioned" in notes but no record
-     * was created.
+     * Populate the vaccinations table from the vaccine observations of visits
+     * and growth records.
+     *
+     * Incremental: only observations past the stored watermark are read (an
+     * edited record rewrites its observations, so they are read again), and all
+     * inserts plus the new watermark commit in one transaction. Returns the
+     * number of vaccinations created. Runs on the caller's thread; call it off
+     * the UI thread.
      */
-    public void syncMissingVaccinations() {
+    public int syncMissingVaccinations() {
         SQLiteDatabase db = this.getWritableDatabase();
+        int inserted = 0;
 
-        // 1. Sync from pregnancy_visits
-        String pregQuery = "SELECT " + COL_PATIENT_ID + ", " + COL_NOTES + " FROM " + TABLE_PREGNANCY_VISITS;
-        Cursor pregCursor = db.rawQuery(pregQuery, null);
-        if (pregCursor.moveToFirst()) {
-            do {
-                long patientId = pregCursor.getLong(0);
-                String notes = pregCursor.getString(1);
-                if (notes != null && notes.contains("Medicines: ") && notes.contains("Tetanus Injection")) {
-                    if (!isVaccinationExists(patientId, "Tetanus Injection")) {
-                        com.simats.ashasmartcare.models.Vaccination v = new com.simats.ashasmartcare.models.Vaccination();
-                        v.setPatientId(patientId);
-                        v.setVaccineName("Tetanus Injection");
-                        v.setStatus("Given");
-                        v.setGivenDate(getCurrentTimestamp());
-                        v.setSyncStatus(SYNC_PENDING);
-                        insertVaccination(v);
-                    }
-                }
-            } while (pregCursor.moveToNext());
-        }
-        pregCursor.close();
-
-        // 2. Sync from child_growth
-        String childQuery = "SELECT " + COL_PATIENT_ID + ", " + COL_GROWTH_STATUS + " FROM " + TABLE_CHILD_GROWTH;
-        Cursor childCursor = db.rawQuery(childQuery, null);
-        if (childCursor.moveToFirst()) {
-            do {
-                long patientId = childCursor.getLong(0);
-                String notes = childCursor.getString(1);
-                if (notes != null) {
-                    // Extract last vaccine
-                    if (notes.contains("Last Vaccine: ")) {
-                        String lastVaccineLine = extractNoteLine(notes, "Last Vaccine: ");
-                        if (lastVaccineLine != null && !lastVaccineLine.isEmpty()
-                                && !lastVaccineLine.equals("Select Vaccine")) {
-                            if (!isVaccinationExists(patientId, lastVaccineLine)) {
-                                com.simats.ashasmartcare.models.Vaccination v = new com.simats.ashasmartcare.models.Vaccination();
-                                v.setPatientId(patientId);
-                                v.setVaccineName(lastVaccineLine);
-                                v.setStatus("Given");
-                                v.setGivenDate(getCurrentTimestamp());
-                                v.setSyncStatus(SYNC_PENDING);
-                                insertVaccination(v);
-                            }
-                        }
+        db.beginTransactionNonExclusive();
+        SQLiteStatement insert = db.compileStatement(INSERT_MISSING_VACCINATION);
+        try {
+            long from = getMetaLong(db, META_BACKFILL_OBSERVATIONS, 0);
+            long to = getMaxLocalId(db, TABLE_OBSERVATIONS);
+            if (to > from) {
+                String givenDate = getCurrentTimestamp();
+                Cursor cursor = db.rawQuery("SELECT " + COL_PATIENT_ID + ", " + COL_OBS_CODE + ", " + COL_VALUE_TEXT
+                        + " FROM " + TABLE_OBSERVATIONS + " WHERE " + COL_LOCAL_ID + " > ?1 AND " + COL_LOCAL_ID
+                        + " <= ?2 AND (" + COL_OBS_CODE + " IN (" + Constants.OBS_VACCINE_GIVEN + ", "
+                        + Constants.OBS_NEXT_VACCINE_DATE + ") OR (" + COL_OBS_CODE + " = " + Constants.OBS_MEDICINE
+                        + " AND " + COL_VALUE_TEXT + " = 'Tetanus Injection'))",
+                        new String[] { String.valueOf(from), String.valueOf(to) });
+                while (cursor.moveToNext()) {
+                    long patientId = cursor.getLong(0);
+                    String value = cursor.getString(2);
+                    boolean created;
+                    switch (cursor.getInt(1)) {
+                        case Constants.OBS_NEXT_VACCINE_DATE:
+                            created = insertMissingVaccination(insert, patientId, "Scheduled Dose", value, null,
+                                    "Scheduled");
+                            break;
+                        default:
+                            // A given vaccine, or a Tetanus Injection among the medicines
+                            created = insertMissingVaccination(insert, patientId, value, null, givenDate, "Given");
+                            break;
                     }
-                    // Extract next vaccine date
-                    if (notes.contains("Next Vaccine Date: ")) {
-                        String nextDateStr = extractNoteLine(notes, "Next Vaccine Date: ");
-                        if (nextDateStr != null && !nextDateStr.isEmpty()) {
-                            if (!isVaccinationExists(patientId, "Scheduled Dose")) {
-                                com.simats.ashasmartcare.models.Vaccination v = new com.simats.ashasmartcare.models.Vaccination();
-                                v.setPatientId(patientId);
-                                v.setVaccineName("Scheduled Dose");
-                                v.setStatus("Scheduled");
-                                v.setScheduledDate(convertDateToDB(nextDateStr));
-                                v.setSyncStatus(SYNC_PENDING);
-                                insertVaccination(v);
-                            }
-                        }
+                    if (created) {
+                        inserted++;
                     }
                 }
-            } while (childCursor.moveToNext());
+                cursor.close();
+                putMeta(db, META_BACKFILL_OBSERVATIONS, String.valueOf(to));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insert.close();
+            db.endTransaction();
         }
-        childCursor.close();
+        return inserted;
     }
 
-    private String extractNoteLine(String notes, String prefix) {
-        String[] lines = notes.split("\n");
-        for (String line : lines) {
-            if (line.startsWith(prefix)) {
-                return line.substring(prefix.length()).trim();
-            }
+    private boolean insertMissingVaccination(SQLiteStatement insert, long patientId, String vaccineName,
+            String dueDate, String givenDate, String status) {
+        insert.clearBindings();
+        insert.bindLong(1, patientId);
+        insert.bindString(2, vaccineName);
+        if (dueDate != null) {
+            insert.bindString(3, dueDate);
         }
-        return null;
+        if (givenDate != null) {
+            insert.bindString(4, givenDate);
+        }
+        insert.bindString(5, status);
+        return insert.executeInsert() != -1;
+    }
+
+    private long getMaxLocalId(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT MAX(" + COL_LOCAL_ID + ") FROM " + table, null);
+        long maxId = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return maxId;
+    }
+
+    private long getMetaLong(SQLiteDatabase db, String key, long defaultValue) {
+        Cursor cursor = db.rawQuery("SELECT " + COL_META_VALUE + " FROM " + TABLE_DB_META + " WHERE "
+                + COL_META_KEY + " = ?", new String[] { key });
+        long value = cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : defaultValue;
+        cursor.close();
+        return value;
+    }
+
+    private void putMeta(SQLiteDatabase db, String key, String value) {
+        ContentValues values = new ContentValues();
+        values.put(COL_META_KEY, key);
+        values.put(COL_META_VALUE, value);
+        db.insertWithOnConflict(TABLE_DB_META, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 
     private String convertDateToDB(String uiDate) {
@@ -2234,6 +4387,62 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_VISIT_TYPE, "General Health Visit");
 
         // Store all data in description
+        String description = buildGeneralVisitDescription(bloodPressure, weight, sugar, symptoms, tobacco, alcohol,
+                physicalActivity, referral, followUpDate);
+        values.put(COL_DESCRIPTION, description);
+        // Set sync status: SYNCED if online (don't add to queue), PENDING if offline
+        values.put(COL_SYNC_STATUS, shouldAddToSyncQueue ? SYNC_PENDING : SYNC_SYNCED);
+
+        long visitId = db.insert(TABLE_VISITS, null, values);
+        if (visitId > 0) {
+            putLatestVitals(db, patientId, TABLE_VISITS, visitId, values.getAsString(COL_VISIT_DATE), dataJson);
+            putObservations(db, patientId, TABLE_VISITS, visitId, values.getAsString(COL_VISIT_DATE),
+                    generalObservations(description));
+        }
+
+        // Only add to sync queue if offline
+        if (visitId > 0 && shouldAddToSyncQueue) {
+            addToSyncQueue(TABLE_VISITS, visitId, "INSERT", dataJson);
+        }
+
+        return visitId;
+    }
+
+    private static String buildPregnancyNotes(String lmpDate, String bloodPressure, String hemoglobin,
+            String dangerSigns, String medicines, String nextVisitDate) {
+        StringBuilder notes = new StringBuilder();
+        notes.append("LMP Date: ").append(lmpDate).append("\n");
+        notes.append("Blood Pressure: ").append(bloodPressure).append("\n");
+        notes.append("Hemoglobin: ").append(hemoglobin).append("\n");
+        if (!dangerSigns.isEmpty()) {
+            notes.append("Danger Signs: ").append(dangerSigns).append("\n");
+        }
+        if (!medicines.isEmpty()) {
+            notes.append("Medicines: ").append(medicines).append("\n");
+        }
+        notes.append("Next Visit Date: ").append(nextVisitDate);
+        return notes.toString();
+    }
+
+    private static String buildChildGrowthNotes(String temperature, String breastfeeding,
+            String complementaryFeeding, String appetite, String symptoms, String lastVaccine,
+            String nextVaccineDate) {
+        StringBuilder notes = new StringBuilder();
+        notes.append("Temperature: ").append(temperature).append("\n");
+        notes.append("Breastfeeding: ").append(breastfeeding).append("\n");
+        notes.append("Complementary Feeding: ").append(complementaryFeeding).append("\n");
+        notes.append("Appetite: ").append(appetite).append("\n");
+        if (!symptoms.isEmpty()) {
+            notes.append("Symptoms: ").append(symptoms).append("\n");
+        }
+        notes.append("Last Vaccine: ").append(lastVaccine).append("\n");
+        notes.append("Next Vaccine Date: ").append(nextVaccineDate);
+        return notes.toString();
+    }
+
+    private static String buildGeneralVisitDescription(String bloodPressure, String weight, String sugar,
+            String symptoms, String tobacco, String alcohol, String physicalActivity, String referral,
+            String followUpDate) {
         StringBuilder description = new StringBuilder();
         description.append("Blood Pressure: ").append(bloodPressure).append("\n");
         description.append("Weight: ").append(weight).append(" kg\n");
@@ -2248,19 +4457,190 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         description.append("Physical Activity: ").append(physicalActivity).append("\n");
         description.append("Referral Required: ").append(referral).append("\n");
         description.append("Follow-up Date: ").append(followUpDate);
+        return description.toString();
+    }
 
-        values.put(COL_DESCRIPTION, description.toString());
-        // Set sync status: SYNCED if online (don't add to queue), PENDING if offline
-        values.put(COL_SYNC_STATUS, shouldAddToSyncQueue ? SYNC_PENDING : SYNC_SYNCED);
+    // ==================== PATIENT REGISTRATION ====================
 
-        long visitId = db.insert(TABLE_VISITS, null, values);
+    private static final String INSERT_REGISTERED_PATIENT = "INSERT INTO " + TABLE_PATIENTS + "("
+            + COL_NAME + ", " + COL_AGE + ", " + COL_GENDER + ", " + COL_CATEGORY + ", " + COL_ADDRESS + ", "
+            + COL_BLOOD_GROUP + ", " + COL_PHONE + ", " + COL_ABHA_ID + ", " + COL_IS_HIGH_RISK + ", "
+            + COL_HIGH_RISK_REASON + ", " + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ", " + COL_LAST_UPDATED + ", "
+            + COL_CATEGORY_CODE + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, '" + SYNC_PENDING + "', ?, ?, ?)";
 
-        // Only add to sync queue if offline
-        if (visitId > 0 && shouldAddToSyncQueue) {
-            addToSyncQueue(TABLE_VISITS, visitId, "INSERT", dataJson);
+    private static final String INSERT_REGISTERED_PREGNANCY_VISIT = "INSERT INTO " + TABLE_PREGNANCY_VISITS + "("
+            + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ", " + COL_EXPECTED_DELIVERY + ", " + COL_WEIGHT + ", "
+            + COL_NOTES + ", " + COL_SYNC_STATUS + ") VALUES (?, ?, ?, ?, ?, '" + SYNC_PENDING + "')";
+
+    private static final String INSERT_REGISTERED_CHILD_GROWTH = "INSERT INTO " + TABLE_CHILD_GROWTH + "("
+            + COL_PATIENT_ID + ", " + COL_RECORD_DATE + ", " + COL_WEIGHT + ", " + COL_HEIGHT + ", "
+            + COL_HEAD_CIRCUMFERENCE + ", " + COL_GROWTH_STATUS + ", " + COL_SYNC_STATUS
+            + ") VALUES (?, ?, ?, ?, ?, ?, '" + SYNC_PENDING + "')";
+
+    private static final String INSERT_REGISTERED_GENERAL_VISIT = "INSERT INTO " + TABLE_VISITS + "("
+            + COL_PATIENT_ID + ", " + COL_VISIT_DATE + ", " + COL_VISIT_TYPE + ", " + COL_DESCRIPTION + ", "
+            + COL_SYNC_STATUS + ") VALUES (?, ?, 'General Health Visit', ?, '" + SYNC_PENDING + "')";
+
+    private static final String INSERT_REGISTRATION_QUEUE_ENTRY = "INSERT INTO " + TABLE_SYNC_QUEUE + "("
+            + COL_TABLE_NAME + ", " + COL_RECORD_ID + ", " + COL_ACTION + ", " + COL_DATA_JSON + ", "
+            + COL_SYNC_STATUS + ", " + COL_CREATED_AT + ", " + COL_LAST_UPDATED + ", " + COL_CREATED_AT_MS + ", "
+            + COL_LAST_UPDATED_MS + ") VALUES (?1, ?2, 'INSERT', ?3, '" + SYNC_PENDING + "', ?4, ?4, "
+            + epochMillis("?4") + ", " + epochMillis("?4") + ")";
+
+    /**
+     * Save an offline registration in one transaction: the patient, its first
+     * category visit, the vaccinations that visit records and the sync queue
+     * entries. Either everything is written or nothing is. Returns the patient's
+     * local id.
+     */
+    public long registerPatient(PatientRegistration registration) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        String now = getCurrentTimestamp();
+        Patient patient = registration.getPatient();
+
+        db.beginTransactionNonExclusive();
+        SQLiteStatement queueInsert = db.compileStatement(INSERT_REGISTRATION_QUEUE_ENTRY);
+        try {
+            SQLiteStatement patientInsert = db.compileStatement(INSERT_REGISTERED_PATIENT);
+            patientInsert.bindString(1, patient.getName());
+            patientInsert.bindLong(2, patient.getAge());
+            bindOptional(patientInsert, 3, patient.getGender());
+            bindOptional(patientInsert, 4, patient.getCategory());
+            bindOptional(patientInsert, 5, patient.getAddress());
+            bindOptional(patientInsert, 6, patient.getBloodGroup());
+            bindOptional(patientInsert, 7, patient.getPhone());
+            bindOptional(patientInsert, 8, patient.getAbhaId());
+            patientInsert.bindLong(9, patient.isHighRisk() ? 1 : 0);
+            bindOptional(patientInsert, 10, patient.getHighRiskReason());
+            bindOptional(patientInsert, 11, patient.getCreatedAt() != null ? patient.getCreatedAt() : now);
+            bindOptional(patientInsert, 12, patient.getCreatedAt() != null ? patient.getCreatedAt() : now);
+            patientInsert.bindLong(13, patient.getCategoryCode());
+            long patientId = executeInsertOrThrow(patientInsert);
+            patientInsert.close();
+            queueInsertOrThrow(queueInsert, TABLE_PATIENTS, patientId, registration.getPatientJson(), now);
+
+            switch (registration.getVisitKind()) {
+                case PREGNANCY:
+                    registerPregnancyVisit(db, queueInsert, patientId, registration, now);
+                    break;
+                case CHILD_GROWTH:
+                    registerChildGrowth(db, queueInsert, patientId, registration, now);
+                    break;
+                case GENERAL:
+                    registerGeneralVisit(db, queueInsert, patientId, registration, now);
+                    break;
+                default:
+                    break;
+            }
+
+            db.setTransactionSuccessful();
+            return patientId;
+        } finally {
+            queueInsert.close();
+            db.endTransaction();
+        }
+    }
+
+    private void registerPregnancyVisit(SQLiteDatabase db, SQLiteStatement queueInsert, long patientId,
+            PatientRegistration registration, String now) {
+        SQLiteStatement insert = db.compileStatement(INSERT_REGISTERED_PREGNANCY_VISIT);
+        insert.bindLong(1, patientId);
+        insert.bindString(2, now);
+        bindOptional(insert, 3, registration.getEdd());
+        bindOptional(insert, 4, registration.getWeight());
+        String notes = buildPregnancyNotes(registration.getLmpDate(), registration.getBloodPressure(),
+                registration.getHemoglobin(), registration.getDangerSigns(), registration.getMedicines(),
+                registration.getNextVisitDate());
+        insert.bindString(5, notes);
+        long visitId = executeInsertOrThrow(insert);
+        insert.close();
+        queueInsertOrThrow(queueInsert, TABLE_PREGNANCY_VISITS, visitId, registration.getVisitJson(), now);
+        putLatestVitals(db, patientId, TABLE_PREGNANCY_VISITS, visitId, now, registration.getVisitJson());
+        putObservations(db, patientId, TABLE_PREGNANCY_VISITS, visitId, now,
+                pregnancyObservations(notes, null, 0).addNumber(Constants.OBS_WEIGHT, registration.getWeight()));
+
+        if (registration.getMedicines().contains("Tetanus Injection")) {
+            SQLiteStatement vaccination = db.compileStatement(INSERT_MISSING_VACCINATION);
+            insertMissingVaccination(vaccination, patientId, "Tetanus Injection", null, now, "Given");
+            vaccination.close();
         }
+    }
 
-        return visitId;
+    private void registerChildGrowth(SQLiteDatabase db, SQLiteStatement queueInsert, long patientId,
+            PatientRegistration registration, String now) {
+        SQLiteStatement insert = db.compileStatement(INSERT_REGISTERED_CHILD_GROWTH);
+        insert.bindLong(1, patientId);
+        insert.bindString(2, now);
+        bindOptional(insert, 3, registration.getWeight());
+        bindOptional(insert, 4, registration.getHeight());
+        // MUAC is stored in head_circumference, as in addChildGrowth
+        bindOptional(insert, 5, registration.getMuac());
+        String notes = buildChildGrowthNotes(registration.getTemperature(), registration.getBreastfeeding(),
+                registration.getComplementaryFeeding(), registration.getAppetite(), registration.getSymptoms(),
+                registration.getLastVaccine(), registration.getNextVaccineDate());
+        insert.bindString(6, notes);
+        long growthId = executeInsertOrThrow(insert);
+        insert.close();
+        queueInsertOrThrow(queueInsert, TABLE_CHILD_GROWTH, growthId, registration.getVisitJson(), now);
+        putLatestVitals(db, patientId, TABLE_CHILD_GROWTH, growthId, now, registration.getVisitJson());
+        putObservations(db, patientId, TABLE_CHILD_GROWTH, growthId, now, growthObservations(notes,
+                registration.getWeight(), registration.getHeight(), registration.getMuac()));
+
+        // Vaccination schedule from the growth record
+        SQLiteStatement vaccination = db.compileStatement(INSERT_MISSING_VACCINATION);
+        String lastVaccine = registration.getLastVaccine();
+        if (lastVaccine != null && !lastVaccine.isEmpty() && !lastVaccine.equals("Select Vaccine")) {
+            insertMissingVaccination(vaccination, patientId, lastVaccine, null, now, "Given");
+        }
+        String nextVaccineDate = registration.getNextVaccineDate();
+        if (nextVaccineDate != null && !nextVaccineDate.isEmpty()) {
+            insertMissingVaccination(vaccination, patientId, "Scheduled Dose", convertDateToDB(nextVaccineDate),
+                    null, "Scheduled");
+        }
+        vaccination.close();
+    }
+
+    private void registerGeneralVisit(SQLiteDatabase db, SQLiteStatement queueInsert, long patientId,
+            PatientRegistration registration, String now) {
+        SQLiteStatement insert = db.compileStatement(INSERT_REGISTERED_GENERAL_VISIT);
+        insert.bindLong(1, patientId);
+        insert.bindString(2, now);
+        String description = buildGeneralVisitDescription(registration.getBloodPressure(),
+                registration.getWeight(), registration.getSugar(), registration.getSymptoms(),
+                registration.getTobacco(), registration.getAlcohol(), registration.getPhysicalActivity(),
+                registration.getReferral(), registration.getFollowUpDate());
+        insert.bindString(3, description);
+        long visitId = executeInsertOrThrow(insert);
+        insert.close();
+        queueInsertOrThrow(queueInsert, TABLE_VISITS, visitId, registration.getVisitJson(), now);
+        putLatestVitals(db, patientId, TABLE_VISITS, visitId, now, registration.getVisitJson());
+        putObservations(db, patientId, TABLE_VISITS, visitId, now, generalObservations(description));
+    }
+
+    private void queueInsertOrThrow(SQLiteStatement queueInsert, String tableName, long recordId, String dataJson,
+            String now) {
+        queueInsert.clearBindings();
+        queueInsert.bindString(1, tableName);
+        queueInsert.bindLong(2, recordId);
+        bindOptional(queueInsert, 3, dataJson);
+        queueInsert.bindString(4, now);
+        executeInsertOrThrow(queueInsert);
+    }
+
+    private static long executeInsertOrThrow(SQLiteStatement statement) {
+        long rowId = statement.executeInsert();
+        if (rowId == -1) {
+            throw new SQLException("Insert failed: " + statement);
+        }
+        return rowId;
+    }
+
+    private static void bindOptional(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 
     // ==================== WORKER OPERATIONS ====================
@@ -2399,6 +4779,29 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         db.insertWithOnConflict(TABLE_ALERTS_REVIEWED, null, values, SQLiteDatabase.CONFLICT_REPLACE);
     }
 
+    /**
+     * Get every reviewed alert key per patient in one query, for screens that
+     * build their alert list elsewhere (e.g. from the backend)
+     */
+    public java.util.Map<Long, java.util.Set<String>> getReviewedAlertKeys() {
+        java.util.Map<Long, java.util.Set<String>> reviewed = new java.util.HashMap<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + COL_PATIENT_ID + ", " + COL_VISIT_TYPE + " FROM "
+                + TABLE_ALERTS_REVIEWED + " WHERE is_reviewed = 1", null);
+        if (cursor.moveToFirst()) {
+            do {
+                java.util.Set<String> keys = reviewed.get(cursor.getLong(0));
+                if (keys == null) {
+                    keys = new java.util.HashSet<>();
+                    reviewed.put(cursor.getLong(0), keys);
+                }
+                keys.add(cursor.getString(1));
+            } while (cursor.moveToNext());
+        }
+        cursor.close();
+        return reviewed;
+    }
+
     /**
      * Check if an AI alert has been reviewed
      */
@@ -0,0 +1,255 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteTransactionListener;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer thread for the local database with group commit.
+ *
+ * Writes submitted within a short window are run back to back in one
+ * transaction, so a burst of small writes (sync results, queue updates,
+ * review flags) costs one commit instead of one each. A future or callback
+ * completes only after the transaction holding the write has committed.
+ *
+ * If any write in a group throws, or a helper method it calls ends a nested
+ * transaction without success, the group is rolled back and every write in it
+ * is retried in its own transaction, so one bad write never takes the others
+ * down with it. Writes must therefore be safe to run twice. A write whose own
+ * transaction is rolled back fails even if it returned normally.
+ *
+ * Bulk writes that commit in chunks of their own (the server upserts) go
+ * through submitUngrouped instead: inside a group their chunks would only be
+ * nested transactions, so one bad row would roll back every row and the
+ * whole write would be retried.
+ */
+public final class DbWriteExecutor {
+
+    private static final String TAG = "DbWriteExecutor";
+
+    // How long the writer waits for more writes after the first one arrives
+    private static final long GROUP_COMMIT_WINDOW_MS = 8;
+    private static final int MAX_GROUP_SIZE = 64;
+
+    /**
+     * A unit of work run on the writer thread inside a transaction
+     */
+    public interface WriteTask<T> {
+        T run(DatabaseHelper dbHelper) throws Exception;
+    }
+
+    /**
+     * Result delivery on the main thread
+     */
+    public interface WriteCallback<T> {
+        void onSuccess(T result);
+
+        void onError(Exception e);
+    }
+
+    private static final class PendingWrite<T> {
+        final WriteTask<T> task;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+        Exception error;
+
+        PendingWrite(WriteTask<T> task) {
+            this.task = task;
+        }
+
+        boolean execute(DatabaseHelper dbHelper) {
+            try {
+                result = task.run(dbHelper);
+                error = null;
+                return true;
+            } catch (Exception e) {
+                error = e;
+                return false;
+            }
+        }
+
+        void complete() {
+            if (error == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final LinkedBlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Thread writer;
+    private final ExecutorService bulkWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "db-bulk-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    DbWriteExecutor(DatabaseHelper dbHelper) {
+        this.dbHelper = dbHelper;
+        this.writer = new Thread(this::writeLoop, "db-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a write; the future completes after its transaction commits. Do not
+     * block on the future from inside another write task.
+     */
+    public <T> Future<T> submit(WriteTask<T> task) {
+        return enqueue(task);
+    }
+
+    /**
+     * Queue a write and deliver the result on the main thread after commit.
+     * The callback may be null for fire-and-forget writes.
+     */
+    public <T> void submit(WriteTask<T> task, WriteCallback<T> callback) {
+        deliver(enqueue(task), callback);
+    }
+
+    /**
+     * Run a write that manages its own transactions on a background thread,
+     * outside any group, and deliver the result on the main thread. It runs
+     * once: if it fails part way, what it committed before stays committed.
+     * The callback may be null.
+     */
+    public <T> void submitUngrouped(WriteTask<T> task, WriteCallback<T> callback) {
+        PendingWrite<T> write = new PendingWrite<>(task);
+        bulkWriter.execute(() -> {
+            write.execute(dbHelper);
+            write.complete();
+        });
+        deliver(write.future, callback);
+    }
+
+    private <T> void deliver(CompletableFuture<T> future, WriteCallback<T> callback) {
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                Log.e(TAG, "Write failed: " + error.getMessage(), error);
+            }
+            if (callback == null) {
+                return;
+            }
+            mainHandler.post(() -> {
+                if (error == null) {
+                    callback.onSuccess(result);
+                } else {
+                    callback.onError(error instanceof Exception ? (Exception) error : new Exception(error));
+                }
+            });
+        });
+    }
+
+    private <T> CompletableFuture<T> enqueue(WriteTask<T> task) {
+        PendingWrite<T> write = new PendingWrite<>(task);
+        if (Thread.currentThread() == writer) {
+            // Already inside a group: join its transaction
+            write.execute(dbHelper);
+            write.complete();
+        } else {
+            queue.add(write);
+        }
+        return write.future;
+    }
+
+    private void writeLoop() {
+        List<PendingWrite<?>> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (true) {
+            try {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_COMMIT_WINDOW_MS);
+                while (group.size() < MAX_GROUP_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Opening the database failed; fail this group and keep serving
+                for (PendingWrite<?> write : group) {
+                    write.error = e;
+                    write.complete();
+                }
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<PendingWrite<?>> group) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        if (runInTransaction(db, group)) {
+            for (PendingWrite<?> write : group) {
+                write.complete();
+            }
+            return;
+        }
+
+        // Rolled back, by a write that threw or by a helper method inside one
+        // that ended its own transaction without success: isolate the write
+        for (PendingWrite<?> write : group) {
+            boolean committed = group.size() > 1 && runInTransaction(db, Collections.singletonList(write));
+            if (!committed && write.error == null) {
+                write.error = new SQLiteException("Write was rolled back by a nested transaction");
+            }
+            write.complete();
+        }
+    }
+
+    /**
+     * Run the writes in one transaction, stopping at the first that throws.
+     * Returns whether the transaction committed; a nested transaction ended
+     * without success rolls it back even though every write returned.
+     */
+    private boolean runInTransaction(SQLiteDatabase db, List<PendingWrite<?>> writes) {
+        boolean[] committed = { false };
+        db.beginTransactionWithListenerNonExclusive(new SQLiteTransactionListener() {
+            @Override
+            public void onBegin() {
+            }
+
+            @Override
+            public void onCommit() {
+                committed[0] = true;
+            }
+
+            @Override
+            public void onRollback() {
+                committed[0] = false;
+            }
+        });
+        try {
+            for (PendingWrite<?> write : writes) {
+                if (!write.execute(dbHelper)) {
+                    return false;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return committed[0];
+    }
+}
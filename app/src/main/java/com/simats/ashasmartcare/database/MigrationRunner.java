@@ -0,0 +1,182 @@
+package com.simats.ashasmartcare.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data migrations too large for onUpgrade, which runs as one transaction on
+ * whichever thread first opens the database.
+ *
+ * onUpgrade only changes the schema and schedules a step: a "migration:<step>"
+ * row in db_meta holding its checkpoint, the last local_id migrated. run() then
+ * walks each scheduled step's table CHUNK_SIZE rows at a time, committing every
+ * chunk together with its checkpoint, so a run cut short by process death
+ * resumes after the last committed chunk. A step is done, and its row deleted,
+ * once no rows are left past the checkpoint; rows written meanwhile by the
+ * current code are walked too, so steps must be safe to apply to them.
+ *
+ * Get the runner from DatabaseHelper.getMigrationRunner() and call run() off
+ * the main thread before the app reads migrated data (see SplashActivity).
+ */
+public final class MigrationRunner {
+
+    private static final String TAG = "MigrationRunner";
+
+    static final String META_PREFIX = "migration:";
+    static final int CHUNK_SIZE = 500;
+
+    /**
+     * Progress across all pending steps, reported after each committed chunk on
+     * the thread calling run()
+     */
+    public interface ProgressListener {
+        void onProgress(long rowsDone, long rowsTotal);
+    }
+
+    /**
+     * One chunked data migration over the rows of a table
+     */
+    abstract static class Step {
+        final String name;
+        final String table;
+
+        Step(String name, String table) {
+            this.name = name;
+            this.table = table;
+        }
+
+        /**
+         * Migrate the rows with fromId < local_id <= toId; runs inside the
+         * chunk's transaction
+         */
+        abstract void migrate(SQLiteDatabase db, long fromId, long toId);
+
+        /**
+         * Called once, in the transaction of the last chunk
+         */
+        void finish(SQLiteDatabase db) {
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final List<Step> steps;
+    private final int chunkSize;
+
+    MigrationRunner(DatabaseHelper dbHelper, List<Step> steps, int chunkSize) {
+        this.dbHelper = dbHelper;
+        this.steps = steps;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Mark a step pending; called from onUpgrade. A step already pending keeps
+     * its checkpoint.
+     */
+    static void schedule(SQLiteDatabase db, String stepName) {
+        ContentValues values = new ContentValues();
+        values.put(DatabaseHelper.COL_META_KEY, META_PREFIX + stepName);
+        values.put(DatabaseHelper.COL_META_VALUE, "0");
+        db.insertWithOnConflict(DatabaseHelper.TABLE_DB_META, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * Checkpoint of a pending step, or -1 if it is not pending
+     */
+    static long checkpoint(SQLiteDatabase db, String stepName) {
+        Cursor cursor = db.rawQuery("SELECT " + DatabaseHelper.COL_META_VALUE + " FROM " + DatabaseHelper.TABLE_DB_META
+                + " WHERE " + DatabaseHelper.COL_META_KEY + " = ?", new String[] { META_PREFIX + stepName });
+        long checkpoint = cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        cursor.close();
+        return checkpoint;
+    }
+
+    public boolean hasPending() {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        for (Step step : steps) {
+            if (checkpoint(db, step.name) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run every pending step to completion. Concurrent callers wait for the
+     * first; listener may be null.
+     */
+    public synchronized void run(ProgressListener listener) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+
+        List<Step> pending = new ArrayList<>();
+        long total = 0;
+        for (Step step : steps) {
+            long checkpoint = checkpoint(db, step.name);
+            if (checkpoint >= 0) {
+                pending.add(step);
+                total += countAfter(db, step.table, checkpoint);
+            }
+        }
+
+        long done = 0;
+        for (Step step : pending) {
+            long start = System.currentTimeMillis();
+            long rows;
+            do {
+                rows = runChunk(db, step);
+                done += rows;
+                if (listener != null) {
+                    listener.onProgress(done, Math.max(done, total));
+                }
+            } while (rows > 0);
+            Log.d(TAG, step.name + " finished in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /**
+     * Migrate the next chunk of a step and commit it with the new checkpoint, or
+     * finish the step if no rows are left. Returns the rows migrated.
+     */
+    private long runChunk(SQLiteDatabase db, Step step) {
+        db.beginTransactionNonExclusive();
+        try {
+            long from = checkpoint(db, step.name);
+            Cursor cursor = db.rawQuery("SELECT MAX(" + DatabaseHelper.COL_LOCAL_ID + "), COUNT(*) FROM (SELECT "
+                    + DatabaseHelper.COL_LOCAL_ID + " FROM " + step.table + " WHERE " + DatabaseHelper.COL_LOCAL_ID
+                    + " > ? ORDER BY " + DatabaseHelper.COL_LOCAL_ID + " LIMIT " + chunkSize + ")",
+                    new String[] { String.valueOf(from) });
+            cursor.moveToFirst();
+            long to = cursor.getLong(0);
+            long rows = cursor.getLong(1);
+            cursor.close();
+
+            if (rows > 0) {
+                step.migrate(db, from, to);
+                ContentValues values = new ContentValues();
+                values.put(DatabaseHelper.COL_META_VALUE, String.valueOf(to));
+                db.update(DatabaseHelper.TABLE_DB_META, values, DatabaseHelper.COL_META_KEY + " = ?",
+                        new String[] { META_PREFIX + step.name });
+            } else {
+                step.finish(db);
+                db.delete(DatabaseHelper.TABLE_DB_META, DatabaseHelper.COL_META_KEY + " = ?",
+                        new String[] { META_PREFIX + step.name });
+            }
+            db.setTransactionSuccessful();
+            return rows;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static long countAfter(SQLiteDatabase db, String table, long checkpoint) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table + " WHERE " + DatabaseHelper.COL_LOCAL_ID
+                + " > ?", new String[] { String.valueOf(checkpoint) });
+        long count = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        cursor.close();
+        return count;
+    }
+}
@@ -0,0 +1,128 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The typed observations (Constants.OBS_*) of one visit or growth record,
+ * collected from form values before they are written to the observations
+ * table. Blank, "null" and unparseable values are skipped.
+ */
+final class ObservationSet {
+
+    // Leading number of a form value such as "55", "55 kg" or "98.6 F"
+    private static final Pattern LEADING_NUMBER = Pattern.compile("^\\s*(\\d+(?:\\.\\d+)?)");
+
+    private final List<Integer> codes = new ArrayList<>();
+    private final List<Double> numbers = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+
+    boolean isEmpty() {
+        return codes.isEmpty();
+    }
+
+    ObservationSet addNumber(int code, String value) {
+        if (value != null) {
+            Matcher matcher = LEADING_NUMBER.matcher(value);
+            if (matcher.find()) {
+                addNumber(code, Double.parseDouble(matcher.group(1)));
+            }
+        }
+        return this;
+    }
+
+    ObservationSet addNumber(int code, double value) {
+        if (value > 0) {
+            add(code, value, null);
+        }
+        return this;
+    }
+
+    ObservationSet addText(int code, String value) {
+        if (!isBlank(value)) {
+            add(code, null, value.trim());
+        }
+        return this;
+    }
+
+    /**
+     * One observation per item of a comma separated list ("Iron Tablets,Tetanus
+     * Injection,")
+     */
+    ObservationSet addList(int code, String values) {
+        if (values != null) {
+            for (String value : values.split(",")) {
+                addText(code, value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * "120/80" as a systolic and a diastolic observation
+     */
+    ObservationSet addBloodPressure(int systolicCode, int diastolicCode, String value) {
+        if (value != null) {
+            String[] parts = value.split("/");
+            if (parts.length == 2) {
+                addNumber(systolicCode, parts[0]);
+                addNumber(diastolicCode, parts[1]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Run insert once per observation. The statement binds ?1 patient_id, ?2
+     * source_table, ?3 source_id, ?4 obs_code, ?5 value_num, ?6 value_text and
+     * ?7 observed_at.
+     */
+    void insertAll(SQLiteStatement insert, long patientId, String sourceTable, long sourceId, String observedAt) {
+        for (int i = 0; i < codes.size(); i++) {
+            insert.clearBindings();
+            insert.bindLong(1, patientId);
+            insert.bindString(2, sourceTable);
+            insert.bindLong(3, sourceId);
+            insert.bindLong(4, codes.get(i));
+            if (numbers.get(i) != null) {
+                insert.bindDouble(5, numbers.get(i));
+            }
+            if (texts.get(i) != null) {
+                insert.bindString(6, texts.get(i));
+            }
+            if (observedAt != null) {
+                insert.bindString(7, observedAt);
+            }
+            insert.executeInsert();
+        }
+    }
+
+    /**
+     * Value of the "Prefix: value" line of a notes text, or null
+     */
+    static String noteLine(String notes, String prefix) {
+        if (notes == null) {
+            return null;
+        }
+        for (String line : notes.split("\n")) {
+            if (line.startsWith(prefix)) {
+                return line.substring(prefix.length()).trim();
+            }
+        }
+        return null;
+    }
+
+    private void add(int code, Double number, String text) {
+        codes.add(code);
+        numbers.add(number);
+        texts.add(text);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty() || "null".equals(value.trim());
+    }
+}
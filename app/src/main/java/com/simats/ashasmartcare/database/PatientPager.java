@@ -0,0 +1,139 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.Cursor;
+
+import com.simats.ashasmartcare.models.Patient;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset pagination over the local patients table for list screens.
+ *
+ * Each page continues after the (sort value, local_id) of the last row handed
+ * out, so every page is an index range scan of at most pageSize rows, however
+ * deep the list is scrolled. Rows carry only the list-row columns; open the
+ * full record with DatabaseHelper.getPatientById().
+ *
+ * Create one per list (see DatabaseHelper.newPatientPager) and call nextPage()
+ * off the main thread until hasMore() is false.
+ */
+public final class PatientPager {
+
+    public enum Sort {
+        NAME, LAST_UPDATED
+    }
+
+    // Columns the patient list rows bind; skips notes and photo paths
+    private static final String LIST_COLUMNS = DatabaseHelper.COL_LOCAL_ID + ", " + DatabaseHelper.COL_SERVER_ID
+            + ", " + DatabaseHelper.COL_NAME + ", " + DatabaseHelper.COL_AGE + ", " + DatabaseHelper.COL_GENDER
+            + ", " + DatabaseHelper.COL_PHONE + ", " + DatabaseHelper.COL_ADDRESS + ", "
+            + DatabaseHelper.COL_CATEGORY + ", " + DatabaseHelper.COL_IS_HIGH_RISK + ", "
+            + DatabaseHelper.COL_HIGH_RISK_REASON + ", " + DatabaseHelper.COL_SYNC_STATUS + ", "
+            + DatabaseHelper.COL_LAST_UPDATED;
+
+    private final DatabaseHelper dbHelper;
+    private final Sort sort;
+    private final int[] categoryCodes;
+    private final boolean highRiskOnly;
+    private final int pageSize;
+
+    private boolean started;
+    private String lastSortValue;
+    private long lastLocalId;
+    // LAST_UPDATED only: rows without a timestamp are listed last, by local_id
+    private boolean inNullTail;
+    private boolean hasMore = true;
+
+    PatientPager(DatabaseHelper dbHelper, Sort sort, int pageSize, boolean highRiskOnly, int... categoryCodes) {
+        this.dbHelper = dbHelper;
+        this.sort = sort;
+        this.pageSize = pageSize;
+        this.highRiskOnly = highRiskOnly;
+        this.categoryCodes = categoryCodes != null ? categoryCodes : new int[0];
+    }
+
+    public synchronized boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Load the next page; empty once the list is exhausted
+     */
+    public synchronized List<Patient> nextPage() {
+        List<Patient> page = new ArrayList<>();
+        if (!hasMore) {
+            return page;
+        }
+
+        if (sort == Sort.NAME) {
+            page.addAll(query(nameWhere(), DatabaseHelper.COL_NAME + " ASC, " + DatabaseHelper.COL_LOCAL_ID + " ASC",
+                    started ? new String[] { lastSortValue, String.valueOf(lastLocalId) } : new String[0],
+                    pageSize));
+        } else {
+            if (!inNullTail) {
+                page.addAll(query(updatedWhere(), DatabaseHelper.COL_LAST_UPDATED + " DESC, "
+                        + DatabaseHelper.COL_LOCAL_ID + " DESC",
+                        started ? new String[] { lastSortValue, String.valueOf(lastLocalId) } : new String[0],
+                        pageSize));
+                if (page.size() < pageSize) {
+                    inNullTail = true;
+                    lastLocalId = Long.MAX_VALUE;
+                }
+            }
+            if (inNullTail && page.size() < pageSize) {
+                List<Patient> tail = query(DatabaseHelper.COL_LAST_UPDATED + " IS NULL AND "
+                        + DatabaseHelper.COL_LOCAL_ID + " < ?1", DatabaseHelper.COL_LOCAL_ID + " DESC",
+                        new String[] { String.valueOf(lastLocalId) }, pageSize - page.size());
+                page.addAll(tail);
+            }
+        }
+
+        started = true;
+        if (page.size() < pageSize) {
+            hasMore = false;
+        }
+        if (!page.isEmpty()) {
+            Patient last = page.get(page.size() - 1);
+            lastSortValue = sort == Sort.NAME ? last.getName() : last.getLastUpdated();
+            lastLocalId = last.getLocalId();
+        }
+        return page;
+    }
+
+    private String nameWhere() {
+        if (!started) {
+            return null;
+        }
+        return DatabaseHelper.COL_NAME + " >= ?1 AND (" + DatabaseHelper.COL_NAME + " > ?1 OR "
+                + DatabaseHelper.COL_LOCAL_ID + " > ?2)";
+    }
+
+    private String updatedWhere() {
+        String notNull = DatabaseHelper.COL_LAST_UPDATED + " IS NOT NULL";
+        if (!started) {
+            return notNull;
+        }
+        return notNull + " AND " + DatabaseHelper.COL_LAST_UPDATED + " <= ?1 AND (" + DatabaseHelper.COL_LAST_UPDATED
+                + " < ?1 OR " + DatabaseHelper.COL_LOCAL_ID + " < ?2)";
+    }
+
+    private List<Patient> query(String where, String orderBy, String[] keyArgs, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(LIST_COLUMNS).append(" FROM ")
+                .append(DatabaseHelper.TABLE_PATIENTS);
+        String conditions = where;
+        String filter = DatabaseHelper.patientListFilter("", highRiskOnly, categoryCodes);
+        if (filter != null) {
+            conditions = conditions == null ? filter : filter + " AND " + conditions;
+        }
+        if (conditions != null) {
+            sql.append(" WHERE ").append(conditions);
+        }
+        sql.append(" ORDER BY ").append(orderBy).append(" LIMIT ").append(limit);
+
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql.toString(), keyArgs);
+        List<Patient> rows = new RowMappers.PatientMapper(cursor).mapAll();
+        cursor.close();
+        return rows;
+    }
+}
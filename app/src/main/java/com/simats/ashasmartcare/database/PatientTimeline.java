@@ -0,0 +1,157 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.Cursor;
+
+import com.simats.ashasmartcare.models.TimelineEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One patient's clinical timeline: ANC visits, growth records, vaccinations
+ * and general visits merged newest first by a single UNION ALL query, read a
+ * page at a time.
+ *
+ * Each branch is limited to the patient through its (patient_id, date) index,
+ * and each page continues after the (date, kind, local_id) of the last entry
+ * handed out. Only the kinds asked for are queried.
+ *
+ * Create one per screen (see DatabaseHelper.newPatientTimeline) and call
+ * nextPage() off the main thread until hasMore() is false.
+ */
+public final class PatientTimeline {
+
+    private static final String COL_ENTRY_KIND = "entry_kind";
+    private static final String COL_ENTRY_DATE = "entry_date";
+    private static final String COL_ENTRY_TITLE = "entry_title";
+    private static final String COL_ENTRY_STATUS = "entry_status";
+
+    private final DatabaseHelper dbHelper;
+    private final long patientId;
+    private final int pageSize;
+    private final String union;
+
+    private boolean started;
+    private String lastDate;
+    private String lastKind;
+    private long lastLocalId;
+    private boolean hasMore = true;
+
+    PatientTimeline(DatabaseHelper dbHelper, long patientId, int pageSize, TimelineEntry.Kind... kinds) {
+        this.dbHelper = dbHelper;
+        this.patientId = patientId;
+        this.pageSize = pageSize;
+        if (kinds == null || kinds.length == 0) {
+            kinds = TimelineEntry.Kind.values();
+        }
+
+        StringBuilder sql = new StringBuilder();
+        for (TimelineEntry.Kind kind : kinds) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append(branch(kind));
+        }
+        this.union = sql.toString();
+    }
+
+    public synchronized boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * Load the next page, newest first; empty once the timeline is exhausted
+     */
+    public synchronized List<TimelineEntry> nextPage() {
+        if (!hasMore) {
+            return new ArrayList<>();
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT * FROM (").append(union).append(")");
+        String[] args;
+        if (started) {
+            sql.append(" WHERE ").append(COL_ENTRY_DATE).append(" < ?2 OR (").append(COL_ENTRY_DATE)
+                    .append(" = ?2 AND (").append(COL_ENTRY_KIND).append(" < ?3 OR (").append(COL_ENTRY_KIND)
+                    .append(" = ?3 AND ").append(DatabaseHelper.COL_LOCAL_ID).append(" < ?4)))");
+            args = new String[] { String.valueOf(patientId), lastDate, lastKind, String.valueOf(lastLocalId) };
+        } else {
+            args = new String[] { String.valueOf(patientId) };
+        }
+        sql.append(" ORDER BY ").append(COL_ENTRY_DATE).append(" DESC, ").append(COL_ENTRY_KIND).append(" DESC, ")
+                .append(DatabaseHelper.COL_LOCAL_ID).append(" DESC LIMIT ").append(pageSize);
+
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(sql.toString(), args);
+        List<TimelineEntry> page = new TimelineMapper(cursor).mapAll();
+        cursor.close();
+
+        started = true;
+        if (page.size() < pageSize) {
+            hasMore = false;
+        }
+        if (!page.isEmpty()) {
+            TimelineEntry last = page.get(page.size() - 1);
+            lastDate = last.getDate();
+            lastKind = last.getKind().name();
+            lastLocalId = last.getLocalId();
+        }
+        return page;
+    }
+
+    private static String branch(TimelineEntry.Kind kind) {
+        switch (kind) {
+            case ANC:
+                return select(kind, DatabaseHelper.TABLE_PREGNANCY_VISITS, DatabaseHelper.COL_VISIT_DATE, "NULL",
+                        "NULL", DatabaseHelper.COL_WEIGHT, "NULL", DatabaseHelper.COL_BP_SYSTOLIC,
+                        DatabaseHelper.COL_BP_DIASTOLIC, DatabaseHelper.COL_TRIMESTER);
+            case GROWTH:
+                return select(kind, DatabaseHelper.TABLE_CHILD_GROWTH, DatabaseHelper.COL_RECORD_DATE, "NULL",
+                        DatabaseHelper.COL_GROWTH_STATUS, DatabaseHelper.COL_WEIGHT, DatabaseHelper.COL_HEIGHT, "NULL",
+                        "NULL", "NULL");
+            case VACCINATION:
+                // Given vaccines sit at the given date, open ones at their due date
+                return select(kind, DatabaseHelper.TABLE_VACCINATIONS, "COALESCE(NULLIF("
+                        + DatabaseHelper.COL_GIVEN_DATE + ", ''), " + DatabaseHelper.COL_DUE_DATE + ")",
+                        DatabaseHelper.COL_VACCINE_NAME, DatabaseHelper.COL_STATUS, "NULL", "NULL", "NULL", "NULL",
+                        "NULL");
+            default:
+                return select(kind, DatabaseHelper.TABLE_VISITS, DatabaseHelper.COL_VISIT_DATE,
+                        DatabaseHelper.COL_VISIT_TYPE, "NULL", "NULL", "NULL", "NULL", "NULL", "NULL");
+        }
+    }
+
+    private static String select(TimelineEntry.Kind kind, String table, String date, String title, String status,
+            String weight, String height, String bpSystolic, String bpDiastolic, String trimester) {
+        return "SELECT '" + kind.name() + "' AS " + COL_ENTRY_KIND + ", " + DatabaseHelper.COL_LOCAL_ID
+                + ", COALESCE(" + date + ", '') AS " + COL_ENTRY_DATE + ", " + title + " AS " + COL_ENTRY_TITLE
+                + ", " + status + " AS " + COL_ENTRY_STATUS + ", " + weight + " AS " + DatabaseHelper.COL_WEIGHT
+                + ", " + height + " AS " + DatabaseHelper.COL_HEIGHT + ", " + bpSystolic + " AS "
+                + DatabaseHelper.COL_BP_SYSTOLIC + ", " + bpDiastolic + " AS " + DatabaseHelper.COL_BP_DIASTOLIC
+                + ", " + trimester + " AS " + DatabaseHelper.COL_TRIMESTER + " FROM " + table + " WHERE "
+                + DatabaseHelper.COL_PATIENT_ID + " = ?1";
+    }
+
+    private static final class TimelineMapper extends RowMapper<TimelineEntry> {
+        private final int kind, localId, date, title, status, weight, height, bpSystolic, bpDiastolic, trimester;
+
+        TimelineMapper(Cursor cursor) {
+            super(cursor);
+            kind = column(COL_ENTRY_KIND);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            date = column(COL_ENTRY_DATE);
+            title = column(COL_ENTRY_TITLE);
+            status = column(COL_ENTRY_STATUS);
+            weight = column(DatabaseHelper.COL_WEIGHT);
+            height = column(DatabaseHelper.COL_HEIGHT);
+            bpSystolic = column(DatabaseHelper.COL_BP_SYSTOLIC);
+            bpDiastolic = column(DatabaseHelper.COL_BP_DIASTOLIC);
+            trimester = column(DatabaseHelper.COL_TRIMESTER);
+        }
+
+        @Override
+        TimelineEntry map() {
+            return new TimelineEntry(TimelineEntry.Kind.valueOf(getString(kind)), getLong(localId),
+                    getString(date), getString(title), getString(status), getFloat(weight), getFloat(height),
+                    getInt(bpSystolic), getInt(bpDiastolic), getInt(trimester));
+        }
+    }
+}
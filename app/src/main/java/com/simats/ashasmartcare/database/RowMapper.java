@@ -0,0 +1,63 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps cursor rows to a model object.
+ *
+ * Column indices are resolved once when the mapper is created for a cursor,
+ * so mapping a row is only the getX calls. Columns the cursor does not have
+ * (narrow projections, tables created by older schema versions) resolve to -1
+ * and are left at the model's default.
+ */
+abstract class RowMapper<T> {
+
+    protected final Cursor cursor;
+
+    RowMapper(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Map the row the cursor is currently positioned on
+     */
+    abstract T map();
+
+    /**
+     * Map every remaining row, starting after the current position
+     */
+    List<T> mapAll() {
+        List<T> rows = new ArrayList<>(Math.max(cursor.getCount(), 0));
+        while (cursor.moveToNext()) {
+            rows.add(map());
+        }
+        return rows;
+    }
+
+    protected int column(String name) {
+        return cursor.getColumnIndex(name);
+    }
+
+    protected boolean has(int index) {
+        return index != -1;
+    }
+
+    protected String getString(int index) {
+        return index != -1 ? cursor.getString(index) : null;
+    }
+
+    protected long getLong(int index) {
+        return index != -1 ? cursor.getLong(index) : 0;
+    }
+
+    protected int getInt(int index) {
+        return index != -1 ? cursor.getInt(index) : 0;
+    }
+
+    protected float getFloat(int index) {
+        return index != -1 ? cursor.getFloat(index) : 0f;
+    }
+}
@@ -0,0 +1,239 @@
+package com.simats.ashasmartcare.database;
+
+import android.database.Cursor;
+
+import com.simats.ashasmartcare.models.ChildGrowth;
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.Vaccination;
+import com.simats.ashasmartcare.models.Visit;
+
+/**
+ * Row mappers for the entity tables. Create one per cursor, then call map()
+ * per row or mapAll() for the whole result.
+ */
+final class RowMappers {
+
+    private RowMappers() {
+    }
+
+    static final class PatientMapper extends RowMapper<Patient> {
+        private final int localId, serverId, name, age, dob, gender, phone, address, bloodGroup, category,
+                medicalNotes, photoPath, highRisk, highRiskReason, abhaId, syncStatus, createdAt, lastUpdated;
+
+        PatientMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            serverId = column(DatabaseHelper.COL_SERVER_ID);
+            name = column(DatabaseHelper.COL_NAME);
+            age = column(DatabaseHelper.COL_AGE);
+            dob = column(DatabaseHelper.COL_DOB);
+            gender = column(DatabaseHelper.COL_GENDER);
+            phone = column(DatabaseHelper.COL_PHONE);
+            address = column(DatabaseHelper.COL_ADDRESS);
+            bloodGroup = column(DatabaseHelper.COL_BLOOD_GROUP);
+            category = column(DatabaseHelper.COL_CATEGORY);
+            medicalNotes = column(DatabaseHelper.COL_MEDICAL_NOTES);
+            photoPath = column(DatabaseHelper.COL_PHOTO_PATH);
+            highRisk = column(DatabaseHelper.COL_IS_HIGH_RISK);
+            highRiskReason = column(DatabaseHelper.COL_HIGH_RISK_REASON);
+            abhaId = column(DatabaseHelper.COL_ABHA_ID);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+            createdAt = column(DatabaseHelper.COL_CREATED_AT);
+            lastUpdated = column(DatabaseHelper.COL_LAST_UPDATED);
+        }
+
+        @Override
+        Patient map() {
+            Patient patient = new Patient();
+            patient.setLocalId(getLong(localId));
+            patient.setServerId(getInt(serverId));
+            patient.setName(getString(name));
+            patient.setAge(getInt(age));
+            patient.setDob(getString(dob));
+            patient.setGender(getString(gender));
+            patient.setPhone(getString(phone));
+            patient.setAddress(getString(address));
+            patient.setBloodGroup(getString(bloodGroup));
+            patient.setCategory(getString(category));
+            patient.setMedicalNotes(getString(medicalNotes));
+            patient.setPhotoPath(getString(photoPath));
+            patient.setHighRisk(getInt(highRisk) == 1);
+            patient.setHighRiskReason(getString(highRiskReason));
+            patient.setAbhaId(getString(abhaId));
+            patient.setSyncStatus(getString(syncStatus));
+            patient.setCreatedAt(getString(createdAt));
+            // Fall back to created_at for schemas without last_updated
+            patient.setLastUpdated(has(lastUpdated) ? getString(lastUpdated) : patient.getCreatedAt());
+            return patient;
+        }
+    }
+
+    static final class PregnancyVisitMapper extends RowMapper<PregnancyVisit> {
+        private final int localId, serverId, patientId, visitDate, weight, notes, syncStatus;
+
+        PregnancyVisitMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            serverId = column(DatabaseHelper.COL_SERVER_ID);
+            patientId = column(DatabaseHelper.COL_PATIENT_ID);
+            visitDate = column(DatabaseHelper.COL_VISIT_DATE);
+            weight = column(DatabaseHelper.COL_WEIGHT);
+            notes = column(DatabaseHelper.COL_NOTES);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+        }
+
+        @Override
+        PregnancyVisit map() {
+            PregnancyVisit visit = new PregnancyVisit();
+            visit.setLocalId(getLong(localId));
+            visit.setServerId(getInt(serverId));
+            visit.setPatientId(getLong(patientId));
+            visit.setVisitDate(getString(visitDate));
+            visit.setWeight(getFloat(weight));
+            visit.setNotes(getString(notes));
+            visit.setSyncStatus(getString(syncStatus));
+            return visit;
+        }
+    }
+
+    static final class ChildGrowthMapper extends RowMapper<ChildGrowth> {
+        private final int localId, serverId, patientId, recordDate, weight, height, headCircumference,
+                growthStatus, notes, syncStatus;
+
+        ChildGrowthMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            serverId = column(DatabaseHelper.COL_SERVER_ID);
+            patientId = column(DatabaseHelper.COL_PATIENT_ID);
+            recordDate = column(DatabaseHelper.COL_RECORD_DATE);
+            weight = column(DatabaseHelper.COL_WEIGHT);
+            height = column(DatabaseHelper.COL_HEIGHT);
+            headCircumference = column(DatabaseHelper.COL_HEAD_CIRCUMFERENCE);
+            growthStatus = column(DatabaseHelper.COL_GROWTH_STATUS);
+            notes = column(DatabaseHelper.COL_NOTES);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+        }
+
+        @Override
+        ChildGrowth map() {
+            ChildGrowth growth = new ChildGrowth();
+            growth.setLocalId(getLong(localId));
+            growth.setServerId(getInt(serverId));
+            growth.setPatientId(getLong(patientId));
+            growth.setRecordDate(getString(recordDate));
+            growth.setWeight(getFloat(weight));
+            growth.setHeight(getFloat(height));
+            growth.setHeadCircumference(getFloat(headCircumference));
+            growth.setGrowthStatus(getString(growthStatus));
+            growth.setNotes(getString(notes));
+            growth.setSyncStatus(getString(syncStatus));
+            return growth;
+        }
+    }
+
+    static final class VaccinationMapper extends RowMapper<Vaccination> {
+        private final int localId, serverId, patientId, vaccineName, dueDate, givenDate, status, batchNumber,
+                notes, syncStatus;
+
+        VaccinationMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            serverId = column(DatabaseHelper.COL_SERVER_ID);
+            patientId = column(DatabaseHelper.COL_PATIENT_ID);
+            vaccineName = column(DatabaseHelper.COL_VACCINE_NAME);
+            dueDate = column(DatabaseHelper.COL_DUE_DATE);
+            givenDate = column(DatabaseHelper.COL_GIVEN_DATE);
+            status = column(DatabaseHelper.COL_STATUS);
+            batchNumber = column(DatabaseHelper.COL_BATCH_NUMBER);
+            notes = column(DatabaseHelper.COL_NOTES);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+        }
+
+        @Override
+        Vaccination map() {
+            Vaccination vaccination = new Vaccination();
+            vaccination.setLocalId(getLong(localId));
+            vaccination.setServerId(getInt(serverId));
+            vaccination.setPatientId(getLong(patientId));
+            vaccination.setVaccineName(getString(vaccineName));
+            vaccination.setDueDate(getString(dueDate));
+            vaccination.setGivenDate(getString(givenDate));
+            vaccination.setStatus(getString(status));
+            vaccination.setBatchNumber(getString(batchNumber));
+            vaccination.setNotes(getString(notes));
+            vaccination.setSyncStatus(getString(syncStatus));
+            return vaccination;
+        }
+    }
+
+    static final class VisitMapper extends RowMapper<Visit> {
+        private final int localId, serverId, patientId, visitDate, visitType, description, notes, syncStatus;
+
+        VisitMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            serverId = column(DatabaseHelper.COL_SERVER_ID);
+            patientId = column(DatabaseHelper.COL_PATIENT_ID);
+            visitDate = column(DatabaseHelper.COL_VISIT_DATE);
+            visitType = column(DatabaseHelper.COL_VISIT_TYPE);
+            description = column(DatabaseHelper.COL_DESCRIPTION);
+            notes = column(DatabaseHelper.COL_NOTES);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+        }
+
+        @Override
+        Visit map() {
+            Visit visit = new Visit();
+            visit.setLocalId(getLong(localId));
+            visit.setServerId(getInt(serverId));
+            visit.setPatientId(getLong(patientId));
+            visit.setVisitDate(getString(visitDate));
+            visit.setVisitType(getString(visitType));
+            visit.setDescription(getString(description));
+            visit.setNotes(getString(notes));
+            visit.setSyncStatus(getString(syncStatus));
+            return visit;
+        }
+    }
+
+    static final class SyncRecordMapper extends RowMapper<SyncRecord> {
+        private final int localId, tableName, recordId, action, dataJson, syncStatus, errorMessage, retryCount,
+                nextAttemptAt, createdAt, lastUpdated, lastUpdatedMillis;
+
+        SyncRecordMapper(Cursor cursor) {
+            super(cursor);
+            localId = column(DatabaseHelper.COL_LOCAL_ID);
+            tableName = column(DatabaseHelper.COL_TABLE_NAME);
+            recordId = column(DatabaseHelper.COL_RECORD_ID);
+            action = column(DatabaseHelper.COL_ACTION);
+            dataJson = column(DatabaseHelper.COL_DATA_JSON);
+            syncStatus = column(DatabaseHelper.COL_SYNC_STATUS);
+            errorMessage = column(DatabaseHelper.COL_ERROR_MESSAGE);
+            retryCount = column(DatabaseHelper.COL_RETRY_COUNT);
+            nextAttemptAt = column(DatabaseHelper.COL_NEXT_ATTEMPT_AT);
+            createdAt = column(DatabaseHelper.COL_CREATED_AT);
+            lastUpdated = column(DatabaseHelper.COL_LAST_UPDATED);
+            lastUpdatedMillis = column(DatabaseHelper.COL_LAST_UPDATED_MS);
+        }
+
+        @Override
+        SyncRecord map() {
+            SyncRecord record = new SyncRecord();
+            record.setLocalId(getLong(localId));
+            record.setTableName(getString(tableName));
+            record.setRecordId(getLong(recordId));
+            record.setAction(getString(action));
+            record.setDataJson(getString(dataJson));
+            record.setSyncStatus(getString(syncStatus));
+            record.setErrorMessage(getString(errorMessage));
+            record.setRetryCount(getInt(retryCount));
+            record.setNextAttemptAt(getLong(nextAttemptAt));
+            record.setCreatedAt(getString(createdAt));
+            record.setLastUpdated(getString(lastUpdated));
+            record.setLastUpdatedMillis(getLong(lastUpdatedMillis));
+            return record;
+        }
+    }
+}
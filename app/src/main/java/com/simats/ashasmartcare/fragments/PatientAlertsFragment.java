@@ -15,12 +15,16 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.PatientTimeline;
+import com.simats.ashasmartcare.models.TimelineEntry;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class PatientAlertsFragment extends Fragment {
 
+    private static final int PAGE_SIZE = 50;
+
     private RecyclerView rvActive, rvResolved;
     private int patientId;
 
@@ -37,6 +41,8 @@ public class PatientAlertsFragment extends Fragment {
         databaseHelper = DatabaseHelper.getInstance(requireContext());
         rvActive = view.findViewById(R.id.rv_active_alerts);
         rvResolved = view.findViewById(R.id.rv_resolved_alerts);
+        rvActive.setLayoutManager(new LinearLayoutManager(requireContext()));
+        rvResolved.setLayoutManager(new LinearLayoutManager(requireContext()));
 
         setupAlerts();
 
@@ -46,57 +52,51 @@ public class PatientAlertsFragment extends Fragment {
     private DatabaseHelper databaseHelper;
 
     private void setupAlerts() {
-        List<AlertItem> active = new ArrayList<>();
-        List<AlertItem> resolved = new ArrayList<>();
-
         String category = getArguments() != null ? getArguments().getString("category", "") : "";
-        com.simats.ashasmartcare.models.Patient patient = databaseHelper.getPatientById(patientId);
+        boolean child = "child".equalsIgnoreCase(category);
 
-        if (patient != null && patient.isHighRisk()) {
-            active.add(new AlertItem("High Risk Patient", "Patient marked as high risk. Monitor closely.", "Ongoing",
-                    "High"));
-        }
+        new Thread(() -> {
+            List<AlertItem> active = new ArrayList<>();
+            com.simats.ashasmartcare.models.Patient patient = databaseHelper.getPatientById(patientId);
 
-        if ("child".equalsIgnoreCase(category)) {
-            List<com.simats.ashasmartcare.models.ChildGrowth> records = databaseHelper
-                    .getChildGrowthByPatient(patientId);
-            for (com.simats.ashasmartcare.models.ChildGrowth r : records) {
-                if (!"Normal".equalsIgnoreCase(r.getNutritionalStatus()) && !"".equals(r.getNutritionalStatus())) {
-                    active.add(new AlertItem("Growth Issue", "Status: " + r.getNutritionalStatus(), r.getRecordDate(),
-                            "High"));
-                    // We collect all past issues as 'active' for history visibility, or just latest
-                }
+            if (patient != null && patient.isHighRisk()) {
+                active.add(new AlertItem("High Risk Patient", "Patient marked as high risk. Monitor closely.",
+                        "Ongoing", "High"));
             }
-        } else {
-            List<com.simats.ashasmartcare.models.PregnancyVisit> visits = databaseHelper
-                    .getPregnancyVisitsByPatient(patientId);
-            for (com.simats.ashasmartcare.models.PregnancyVisit v : visits) {
-                if (v.isHighRisk()) {
-                    String reason = v.getRiskFactors();
-                    if (reason == null || reason.isEmpty())
-                        reason = "High risk factors identified during visit.";
-                    active.add(new AlertItem("High Risk Visit", reason, v.getVisitDate(), "High"));
-                }
-                if (v.getHemoglobin() > 0 && v.getHemoglobin() < 11.0) {
-                    active.add(new AlertItem("Low Hemoglobin", "Reading: " + v.getHemoglobin() + " g/dL",
-                            v.getVisitDate(), "Medium"));
-                }
-                if (v.getBloodPressureSystolic() >= 140 || v.getBloodPressureDiastolic() >= 90) {
-                    active.add(new AlertItem("High Blood Pressure", "BP: " + v.getBloodPressure(), v.getVisitDate(),
-                            "High"));
+
+            PatientTimeline timeline = databaseHelper.newPatientTimeline(patientId, PAGE_SIZE,
+                    child ? TimelineEntry.Kind.GROWTH : TimelineEntry.Kind.ANC);
+            while (timeline.hasMore()) {
+                for (TimelineEntry entry : timeline.nextPage()) {
+                    if (child) {
+                        String status = entry.getStatus();
+                        if (status != null && !status.isEmpty() && !"Normal".equalsIgnoreCase(status)) {
+                            active.add(new AlertItem("Growth Issue", "Status: " + status, entry.getDate(), "High"));
+                        }
+                    } else if (entry.hasHighBloodPressure()) {
+                        active.add(new AlertItem("High Blood Pressure",
+                                "BP: " + entry.getBpSystolic() + "/" + entry.getBpDiastolic(), entry.getDate(),
+                                "High"));
+                    }
                 }
             }
-        }
-
-        if (active.isEmpty()) {
-            active.add(new AlertItem("No Active Alerts", "Patient vitals are within normal range.", "Today", "Normal"));
-        }
 
-        rvActive.setLayoutManager(new LinearLayoutManager(requireContext()));
-        rvActive.setAdapter(new AlertAdapter(active, false));
+            if (active.isEmpty()) {
+                active.add(new AlertItem("No Active Alerts", "Patient vitals are within normal range.", "Today",
+                        "Normal"));
+            }
 
-        rvResolved.setLayoutManager(new LinearLayoutManager(requireContext()));
-        rvResolved.setAdapter(new AlertAdapter(resolved, true));
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
+                }
+                rvActive.setAdapter(new AlertAdapter(active, false));
+                rvResolved.setAdapter(new AlertAdapter(new ArrayList<>(), true));
+            });
+        }).start();
     }
 
     private class AlertItem {
@@ -15,12 +15,16 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.PatientTimeline;
+import com.simats.ashasmartcare.models.TimelineEntry;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class PatientGrowthFragment extends Fragment {
 
+    private static final int PAGE_SIZE = 50;
+
     private TextView tvCurrentWeight, tvWeightChange, tvCurrentHb, tvHbStatus, tvLastChecked;
     private RecyclerView rvHistory;
     private int patientId;
@@ -37,8 +41,7 @@ public class PatientGrowthFragment extends Fragment {
 
         databaseHelper = DatabaseHelper.getInstance(requireContext());
         initViews(view);
-        loadSummary(view);
-        setupHistory();
+        loadMeasurements(view);
 
         return view;
     }
@@ -52,135 +55,115 @@ public class PatientGrowthFragment extends Fragment {
         tvHbStatus = view.findViewById(R.id.tv_hemoglobin_status);
         tvLastChecked = view.findViewById(R.id.tv_last_checked);
         rvHistory = view.findViewById(R.id.rv_measurements);
+        rvHistory.setLayoutManager(new LinearLayoutManager(requireContext()));
     }
 
-    private void loadSummary(View view) {
+    private void loadMeasurements(View view) {
         String category = getArguments() != null ? getArguments().getString("category", "") : "";
+        boolean child = "child".equalsIgnoreCase(category);
 
-        if ("child".equalsIgnoreCase(category)) {
+        if (child) {
             // Child Growth Metrics
             ((TextView) view.findViewById(R.id.tv_label_hemoglobin)).setText("Height");
             ((TextView) view.findViewById(R.id.tv_unit_hemoglobin)).setText("cm");
             ((ImageView) view.findViewById(R.id.iv_icon_hemoglobin)).setImageResource(R.drawable.ic_scale);
             ((ImageView) view.findViewById(R.id.iv_icon_hemoglobin))
                     .setColorFilter(android.graphics.Color.parseColor("#3B82F6"));
+        } else {
+            // Hemoglobin is not recorded on local ANC visits; blood pressure is
+            ((TextView) view.findViewById(R.id.tv_label_hemoglobin)).setText("Blood Pressure");
+            ((TextView) view.findViewById(R.id.tv_unit_hemoglobin)).setText("mmHg");
+        }
 
-            List<com.simats.ashasmartcare.models.ChildGrowth> records = databaseHelper
-                    .getChildGrowthByPatient(patientId);
-            if (!records.isEmpty()) {
-                com.simats.ashasmartcare.models.ChildGrowth latest = records.get(0);
-                tvCurrentWeight.setText(String.valueOf(latest.getWeight()));
-                tvCurrentHb.setText(String.valueOf(latest.getHeight())); // Reusing Hb field for Height
-
-                // Calculate change if enough records
-                if (records.size() > 1) {
-                    double diff = latest.getWeight() - records.get(1).getWeight();
-                    String diffStr = (diff >= 0 ? "+ " : "- ") + Math.abs(diff) + "kg";
-                    tvWeightChange.setText(diffStr);
-                } else {
-                    tvWeightChange.setText("-");
+        PatientTimeline timeline = databaseHelper.newPatientTimeline(patientId, PAGE_SIZE,
+                child ? TimelineEntry.Kind.GROWTH : TimelineEntry.Kind.ANC);
+        new Thread(() -> {
+            List<TimelineEntry> entries = new ArrayList<>();
+            while (timeline.hasMore()) {
+                entries.addAll(timeline.nextPage());
+            }
+            if (getActivity() == null) {
+                return;
+            }
+            getActivity().runOnUiThread(() -> {
+                if (!isAdded()) {
+                    return;
                 }
+                bindSummary(entries, child);
+                bindHistory(entries, child);
+            });
+        }).start();
+    }
 
-                tvHbStatus.setText(latest.getGrowthStatus());
-                tvLastChecked.setText("Last checked: " + latest.getRecordDate());
-            } else {
-                tvCurrentWeight.setText("-");
-                tvCurrentHb.setText("-");
-                tvWeightChange.setText("-");
-                tvHbStatus.setText("-");
-                tvLastChecked.setText("No records");
-            }
+    private void bindSummary(List<TimelineEntry> entries, boolean child) {
+        if (entries.isEmpty()) {
+            tvCurrentWeight.setText("-");
+            tvCurrentHb.setText("-");
+            tvWeightChange.setText("-");
+            tvHbStatus.setText("-");
+            tvLastChecked.setText("No records");
+            return;
+        }
+
+        TimelineEntry latest = entries.get(0);
+        tvCurrentWeight.setText(String.valueOf(latest.getWeight()));
+
+        // Calculate change if enough records
+        if (entries.size() > 1) {
+            double diff = latest.getWeight() - entries.get(1).getWeight();
+            String diffStr = (diff >= 0 ? "+ " : "- ") + Math.abs(diff) + "kg";
+            tvWeightChange.setText(diffStr);
         } else {
-            // Pregnancy Growth Metrics
-            List<com.simats.ashasmartcare.models.PregnancyVisit> visits = databaseHelper
-                    .getPregnancyVisitsByPatient(patientId);
-            if (!visits.isEmpty()) {
-                com.simats.ashasmartcare.models.PregnancyVisit latest = visits.get(0);
-                tvCurrentWeight.setText(String.valueOf(latest.getWeight()));
-                tvCurrentHb.setText(String.valueOf(latest.getHemoglobin()));
-
-                if (visits.size() > 1) {
-                    double diff = latest.getWeight() - visits.get(1).getWeight();
-                    String diffStr = (diff >= 0 ? "+ " : "- ") + Math.abs(diff) + "kg";
-                    tvWeightChange.setText(diffStr);
-                } else {
-                    tvWeightChange.setText("-");
-                }
+            tvWeightChange.setText("-");
+        }
 
-                if (latest.getHemoglobin() < 11.0) {
-                    tvHbStatus.setText("Low");
-                    tvHbStatus.setBackgroundResource(R.drawable.bg_badge_missed);
-                    tvHbStatus.setTextColor(android.graphics.Color.parseColor("#EF4444"));
-                } else {
-                    tvHbStatus.setText("Normal");
-                    tvHbStatus.setBackgroundResource(R.drawable.bg_badge_completed);
-                    tvHbStatus.setTextColor(android.graphics.Color.parseColor("#10B981"));
-                }
-                tvLastChecked.setText("Last checked: " + latest.getVisitDate());
+        if (child) {
+            tvCurrentHb.setText(String.valueOf(latest.getHeight())); // Reusing Hb field for Height
+            tvHbStatus.setText(latest.getStatus());
+        } else {
+            tvCurrentHb.setText(latest.getBpSystolic() + "/" + latest.getBpDiastolic());
+            if (latest.hasHighBloodPressure()) {
+                tvHbStatus.setText("High");
+                tvHbStatus.setBackgroundResource(R.drawable.bg_badge_missed);
+                tvHbStatus.setTextColor(android.graphics.Color.parseColor("#EF4444"));
             } else {
-                tvCurrentWeight.setText("-");
-                tvCurrentHb.setText("-");
-                tvWeightChange.setText("-");
-                tvHbStatus.setText("-");
-                tvLastChecked.setText("No records");
+                tvHbStatus.setText("Normal");
+                tvHbStatus.setBackgroundResource(R.drawable.bg_badge_completed);
+                tvHbStatus.setTextColor(android.graphics.Color.parseColor("#10B981"));
             }
         }
+        tvLastChecked.setText("Last checked: " + latest.getDate());
     }
 
-    private void setupHistory() {
-        String category = getArguments() != null ? getArguments().getString("category", "") : "";
+    private void bindHistory(List<TimelineEntry> entries, boolean child) {
+        String[] months = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC" };
         List<MeasurementItem> items = new ArrayList<>();
 
-        if ("child".equalsIgnoreCase(category)) {
-            List<com.simats.ashasmartcare.models.ChildGrowth> records = databaseHelper
-                    .getChildGrowthByPatient(patientId);
-            for (com.simats.ashasmartcare.models.ChildGrowth r : records) {
-                String date = r.getRecordDate(); // YYYY-MM-DD
-                String month = "JAN";
-                String day = "01";
-                try {
-                    String[] parts = date.split("-");
-                    if (parts.length >= 3) {
-                        // Simple month mapping (can use SimpleDateFormat but keeping it simple/fast)
-                        int m = Integer.parseInt(parts[1]);
-                        String[] months = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV",
-                                "DEC" };
-                        if (m >= 1 && m <= 12)
-                            month = months[m - 1];
-                        day = parts[2];
-                    }
-                } catch (Exception e) {
+        for (TimelineEntry entry : entries) {
+            String date = entry.getDate(); // YYYY-MM-DD
+            String month = "JAN";
+            String day = "01";
+            try {
+                String[] parts = date.split("-");
+                if (parts.length >= 3) {
+                    int m = Integer.parseInt(parts[1]);
+                    if (m >= 1 && m <= 12)
+                        month = months[m - 1];
+                    day = parts[2].length() > 2 ? parts[2].substring(0, 2) : parts[2];
                 }
-
-                items.add(
-                        new MeasurementItem(month, day, "Growth Record", r.getWeight() + " kg", r.getHeight() + " cm"));
+            } catch (Exception e) {
             }
-        } else {
-            List<com.simats.ashasmartcare.models.PregnancyVisit> visits = databaseHelper
-                    .getPregnancyVisitsByPatient(patientId);
-            for (com.simats.ashasmartcare.models.PregnancyVisit v : visits) {
-                String date = v.getVisitDate();
-                String month = "JAN";
-                String day = "01";
-                try {
-                    String[] parts = date.split("-");
-                    if (parts.length >= 3) {
-                        int m = Integer.parseInt(parts[1]);
-                        String[] months = { "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV",
-                                "DEC" };
-                        if (m >= 1 && m <= 12)
-                            month = months[m - 1];
-                        day = parts[2];
-                    }
-                } catch (Exception e) {
-                }
 
-                String title = v.getWeeksPregnant() > 0 ? "Week " + v.getWeeksPregnant() : "ANC Checkup";
-                items.add(new MeasurementItem(month, day, title, v.getWeight() + " kg", v.getHemoglobin() + " g/dL"));
+            if (child) {
+                items.add(new MeasurementItem(month, day, "Growth Record", entry.getWeight() + " kg",
+                        entry.getHeight() + " cm"));
+            } else {
+                String title = entry.getTrimester() > 0 ? "Trimester " + entry.getTrimester() : "ANC Checkup";
+                items.add(new MeasurementItem(month, day, title, entry.getWeight() + " kg",
+                        entry.getBpSystolic() + "/" + entry.getBpDiastolic() + " mmHg"));
             }
         }
 
-        rvHistory.setLayoutManager(new LinearLayoutManager(requireContext()));
         rvHistory.setAdapter(new HistoryAdapter(items));
     }
 
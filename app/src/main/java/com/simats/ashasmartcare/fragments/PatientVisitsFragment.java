@@ -16,14 +16,22 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.simats.ashasmartcare.R;
 import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.database.PatientTimeline;
+import com.simats.ashasmartcare.models.TimelineEntry;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class PatientVisitsFragment extends Fragment {
 
+    private static final int PAGE_SIZE = 30;
+
     private RecyclerView rvVisits;
     private int patientId;
+    private final List<VisitItem> items = new ArrayList<>();
+    private final VisitAdapter adapter = new VisitAdapter(items);
+    private PatientTimeline timeline;
+    private boolean loadingPage;
 
     @Nullable
     @Override
@@ -50,45 +58,75 @@ public class PatientVisitsFragment extends Fragment {
 
     private void setupVisits() {
         String category = getArguments() != null ? getArguments().getString("category", "") : "";
-        List<VisitItem> items = new ArrayList<>();
-
         if ("child".equalsIgnoreCase(category)) {
-            // General Visits for Child
-            List<com.simats.ashasmartcare.models.Visit> visits = databaseHelper.getVisitsByPatient(patientId);
-            for (com.simats.ashasmartcare.models.Visit v : visits) {
-                items.add(new VisitItem(v.getVisitType(), v.getVisitDate(), "Completed"));
-
-                // Check if this is the most recent visit and has a next visit date
-                if (visits.indexOf(v) == 0 && v.getNextVisitDate() != null && !v.getNextVisitDate().isEmpty()) {
-                    // Simple future check logic could go here, for now just add as upcoming
-                    items.add(0, new VisitItem("Next Visit", "Due: " + v.getNextVisitDate(), "Due Soon"));
+            timeline = databaseHelper.newPatientTimeline(patientId, PAGE_SIZE, TimelineEntry.Kind.VISIT,
+                    TimelineEntry.Kind.GROWTH, TimelineEntry.Kind.VACCINATION);
+        } else {
+            timeline = databaseHelper.newPatientTimeline(patientId, PAGE_SIZE, TimelineEntry.Kind.ANC,
+                    TimelineEntry.Kind.VISIT);
+        }
+
+        LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+        rvVisits.setLayoutManager(layoutManager);
+        rvVisits.setAdapter(adapter);
+        rvVisits.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= items.size() - PAGE_SIZE / 2) {
+                    loadNextPage();
                 }
             }
-            if (items.isEmpty()) {
-                // Add empty state or just show nothing? Maybe a placeholder.
-                // For now, let's leave it empty or add a "No visits recorded" item if
-                // supported,
-                // but standard RecyclerView just shows empty.
+        });
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loadingPage || !timeline.hasMore()) {
+            return;
+        }
+        loadingPage = true;
+        final PatientTimeline pager = timeline;
+        new Thread(() -> {
+            List<TimelineEntry> page = pager.nextPage();
+            if (getActivity() == null) {
+                return;
             }
-        } else {
-            // Pregnancy Visits
-            List<com.simats.ashasmartcare.models.PregnancyVisit> visits = databaseHelper
-                    .getPregnancyVisitsByPatient(patientId);
-            for (com.simats.ashasmartcare.models.PregnancyVisit v : visits) {
-                String title = "ANC Checkup";
-                if (v.getWeeksPregnant() > 0) {
-                    title += " (" + v.getWeeksPregnant() + " Weeks)";
+            getActivity().runOnUiThread(() -> {
+                loadingPage = false;
+                if (!isAdded()) {
+                    return;
+                }
+                int start = items.size();
+                for (TimelineEntry entry : page) {
+                    items.add(toVisitItem(entry));
                 }
-                items.add(new VisitItem(title, v.getVisitDate(), "Completed"));
+                adapter.notifyItemRangeInserted(start, page.size());
+            });
+        }).start();
+    }
 
-                if (visits.indexOf(v) == 0 && v.getNextVisitDate() != null && !v.getNextVisitDate().isEmpty()) {
-                    items.add(0, new VisitItem("Next ANC Visit", "Due: " + v.getNextVisitDate(), "Due Soon"));
+    private VisitItem toVisitItem(TimelineEntry entry) {
+        switch (entry.getKind()) {
+            case ANC:
+                String title = "ANC Checkup";
+                if (entry.getTrimester() > 0) {
+                    title += " (Trimester " + entry.getTrimester() + ")";
                 }
-            }
+                return new VisitItem(title, entry.getDate(), "Completed");
+            case GROWTH:
+                return new VisitItem("Growth Check", entry.getDate(), "Completed");
+            case VACCINATION:
+                String status = entry.getStatus();
+                if ("Given".equalsIgnoreCase(status) || "COMPLETED".equalsIgnoreCase(status)) {
+                    return new VisitItem(entry.getTitle(), entry.getDate(), "Completed");
+                }
+                if ("OVERDUE".equalsIgnoreCase(status)) {
+                    return new VisitItem(entry.getTitle(), "Due: " + entry.getDate(), "Missed");
+                }
+                return new VisitItem(entry.getTitle(), "Due: " + entry.getDate(), "Due Soon");
+            default:
+                return new VisitItem(entry.getTitle(), entry.getDate(), "Completed");
         }
-
-        rvVisits.setLayoutManager(new LinearLayoutManager(requireContext()));
-        rvVisits.setAdapter(new VisitAdapter(items));
     }
 
     private DatabaseHelper databaseHelper;
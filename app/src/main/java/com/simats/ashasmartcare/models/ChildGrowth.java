@@ -16,6 +16,9 @@ public class ChildGrowth {
     @SerializedName("patient_id")
     private long patientId;
 
+    @SerializedName("patient_server_id")
+    private int patientServerId;
+
     @SerializedName("record_date")
     private String recordDate;
 
@@ -114,13 +117,20 @@ public class ChildGrowth {
         this.recordDate = date;
     }
     
-    // Compatibility methods
-    public void setPatientServerId(String id) {
-        // Compatibility method - no-op
+    public int getPatientServerId() {
+        return patientServerId;
     }
-    
-    public void setPatientServerId(int id) {
-        // Compatibility method - no-op
+
+    public void setPatientServerId(int patientServerId) {
+        this.patientServerId = patientServerId;
+    }
+
+    public void setPatientServerId(String id) {
+        try {
+            this.patientServerId = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            this.patientServerId = 0;
+        }
     }
 
     public float getWeight() {
@@ -0,0 +1,34 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Home dashboard tiles, read in one lookup from the dashboard_stats counters
+ */
+public class DashboardStats {
+    private final int totalPatients;
+    private final int highRiskPatients;
+    private final int visitsToday;
+    private final int pendingRecords;
+
+    public DashboardStats(int totalPatients, int highRiskPatients, int visitsToday, int pendingRecords) {
+        this.totalPatients = totalPatients;
+        this.highRiskPatients = highRiskPatients;
+        this.visitsToday = visitsToday;
+        this.pendingRecords = pendingRecords;
+    }
+
+    public int getTotalPatients() {
+        return totalPatients;
+    }
+
+    public int getHighRiskPatients() {
+        return highRiskPatients;
+    }
+
+    public int getVisitsToday() {
+        return visitsToday;
+    }
+
+    public int getPendingRecords() {
+        return pendingRecords;
+    }
+}
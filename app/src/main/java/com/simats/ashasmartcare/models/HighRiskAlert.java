@@ -5,6 +5,7 @@ public class HighRiskAlert {
     private String patientName;
     private String village;
     private String alertType;
+    private String alertKey;
     private boolean isReviewed;
 
     public HighRiskAlert() {
@@ -55,6 +56,22 @@ public class HighRiskAlert {
         this.alertType = alertType;
     }
 
+    public String getAlertKey() {
+        return alertKey;
+    }
+
+    public void setAlertKey(String alertKey) {
+        this.alertKey = alertKey;
+    }
+
+    /**
+     * Key used in alerts_reviewed: the stable alert id for locally materialized
+     * alerts, the alert text for alerts built from backend data
+     */
+    public String getReviewKey() {
+        return alertKey != null ? alertKey : alertType;
+    }
+
     public boolean isReviewed() {
         return isReviewed;
     }
@@ -0,0 +1,49 @@
+package com.simats.ashasmartcare.models;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A patient's most recent vitals record, read from the patient_latest_vitals
+ * cache. The record is kept in the server's field names (blood_pressure,
+ * hemoglobin, muac, ...) whichever path wrote it.
+ */
+public class LatestVitals {
+    private final long patientId;
+    private final String sourceTable;
+    private final String recordDate;
+    private final String dataJson;
+
+    public LatestVitals(long patientId, String sourceTable, String recordDate, String dataJson) {
+        this.patientId = patientId;
+        this.sourceTable = sourceTable;
+        this.recordDate = recordDate;
+        this.dataJson = dataJson;
+    }
+
+    public long getPatientId() {
+        return patientId;
+    }
+
+    /**
+     * pregnancy_visits, child_growth or visits
+     */
+    public String getSourceTable() {
+        return sourceTable;
+    }
+
+    public String getRecordDate() {
+        return recordDate;
+    }
+
+    /**
+     * The record as JSON; empty if the stored text does not parse
+     */
+    public JSONObject getRecord() {
+        try {
+            return new JSONObject(dataJson);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.simats.ashasmartcare.models;
 
 import com.google.gson.annotations.SerializedName;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * Patient model class representing a person in the healthcare system
@@ -17,8 +21,9 @@ public class Patient {
     @SerializedName("name")
     private String name;
 
+    // Null when not known, e.g. left out of a server list response
     @SerializedName("age")
-    private int age;
+    private Integer age;
 
     @SerializedName("dob")
     private String dob;
@@ -35,14 +40,18 @@ public class Patient {
     @SerializedName("category")
     private String category;
 
+    // Constants.categoryCode(category), worked out on first use; not serialized
+    private transient int categoryCode = -1;
+
     @SerializedName("medical_notes")
     private String medicalNotes;
 
     @SerializedName("photo_path")
     private String photoPath;
 
+    // Null when not known, like age
     @SerializedName("is_high_risk")
-    private boolean isHighRisk;
+    private Boolean isHighRisk;
 
     @SerializedName("high_risk_reason")
     private String highRiskReason;
@@ -111,7 +120,11 @@ public class Patient {
     }
 
     public int getAge() {
-        return age;
+        return age != null ? age : 0;
+    }
+
+    public boolean hasAge() {
+        return age != null;
     }
 
     public void setAge(int age) {
@@ -156,6 +169,14 @@ public class Patient {
 
     public void setCategory(String category) {
         this.category = category;
+        this.categoryCode = -1;
+    }
+
+    public int getCategoryCode() {
+        if (categoryCode < 0) {
+            categoryCode = Constants.categoryCode(category);
+        }
+        return categoryCode;
     }
 
     public String getMedicalNotes() {
@@ -199,7 +220,11 @@ public class Patient {
     }
 
     public boolean isHighRisk() {
-        return isHighRisk;
+        return Boolean.TRUE.equals(isHighRisk);
+    }
+
+    public boolean hasHighRisk() {
+        return isHighRisk != null;
     }
 
     public void setHighRisk(boolean highRisk) {
@@ -254,6 +279,39 @@ public class Patient {
         this.abhaId = abhaId;
     }
 
+    /**
+     * Patient from a server response (patients.php). Fields the response
+     * leaves out or sends as null stay null, so storing it with
+     * DatabaseHelper.upsertServerPatients keeps their local values.
+     */
+    public static Patient fromServerJson(JSONObject obj) throws JSONException {
+        Patient patient = new Patient();
+        patient.setServerId(obj.optInt("id", 0));
+        patient.name = optString(obj, "name");
+        patient.age = obj.isNull("age") ? null : obj.optInt("age");
+        patient.dob = optString(obj, "dob");
+        patient.gender = optString(obj, "gender");
+        patient.phone = optString(obj, "phone");
+        patient.address = optString(obj, "address");
+        patient.setCategory(optString(obj, "category"));
+        patient.bloodGroup = optString(obj, "blood_group");
+        if (!obj.isNull("is_high_risk")) {
+            Object highRisk = obj.get("is_high_risk");
+            patient.isHighRisk = highRisk instanceof Boolean ? (Boolean) highRisk : obj.optInt("is_high_risk") == 1;
+        }
+        patient.highRiskReason = optString(obj, "high_risk_reason");
+        patient.medicalHistory = optString(obj, "medical_history");
+        patient.ashaId = optString(obj, "asha_id");
+        patient.registrationDate = optString(obj, "registration_date");
+        patient.abhaId = optString(obj, "abha_id");
+        patient.setSyncStatus("SYNCED");
+        return patient;
+    }
+
+    private static String optString(JSONObject obj, String key) {
+        return obj.isNull(key) ? null : obj.optString(key);
+    }
+
     // ID alias
     public long getId() {
         return localId;
@@ -0,0 +1,210 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Everything an offline patient registration writes: the patient, the first
+ * category visit and the sync payloads. Saved in one transaction by
+ * DatabaseHelper.registerPatient().
+ */
+public class PatientRegistration {
+
+    public enum VisitKind {
+        NONE, PREGNANCY, CHILD_GROWTH, GENERAL
+    }
+
+    private final Patient patient;
+    private final String patientJson;
+
+    private VisitKind visitKind = VisitKind.NONE;
+    private String visitJson;
+
+    // Pregnancy visit
+    private String lmpDate;
+    private String edd;
+    private String bloodPressure;
+    private String hemoglobin;
+    private String dangerSigns;
+    private String medicines;
+    private String nextVisitDate;
+
+    // Child growth
+    private String height;
+    private String muac;
+    private String temperature;
+    private String breastfeeding;
+    private String complementaryFeeding;
+    private String appetite;
+    private String lastVaccine;
+    private String nextVaccineDate;
+
+    // General visit
+    private String sugar;
+    private String tobacco;
+    private String alcohol;
+    private String physicalActivity;
+    private String referral;
+    private String followUpDate;
+
+    // Shared by the visit kinds
+    private String weight;
+    private String symptoms;
+
+    public PatientRegistration(Patient patient, String patientJson) {
+        this.patient = patient;
+        this.patientJson = patientJson;
+    }
+
+    public void setPregnancyVisit(String lmpDate, String edd, String bloodPressure, String weight,
+            String hemoglobin, String dangerSigns, String medicines, String nextVisitDate, String dataJson) {
+        this.visitKind = VisitKind.PREGNANCY;
+        this.lmpDate = lmpDate;
+        this.edd = edd;
+        this.bloodPressure = bloodPressure;
+        this.weight = weight;
+        this.hemoglobin = hemoglobin;
+        this.dangerSigns = dangerSigns;
+        this.medicines = medicines;
+        this.nextVisitDate = nextVisitDate;
+        this.visitJson = dataJson;
+    }
+
+    public void setChildGrowth(String weight, String height, String muac, String temperature,
+            String breastfeeding, String complementaryFeeding, String appetite, String symptoms,
+            String lastVaccine, String nextVaccineDate, String dataJson) {
+        this.visitKind = VisitKind.CHILD_GROWTH;
+        this.weight = weight;
+        this.height = height;
+        this.muac = muac;
+        this.temperature = temperature;
+        this.breastfeeding = breastfeeding;
+        this.complementaryFeeding = complementaryFeeding;
+        this.appetite = appetite;
+        this.symptoms = symptoms;
+        this.lastVaccine = lastVaccine;
+        this.nextVaccineDate = nextVaccineDate;
+        this.visitJson = dataJson;
+    }
+
+    public void setGeneralVisit(String bloodPressure, String weight, String sugar, String symptoms,
+            String tobacco, String alcohol, String physicalActivity, String referral, String followUpDate,
+            String dataJson) {
+        this.visitKind = VisitKind.GENERAL;
+        this.bloodPressure = bloodPressure;
+        this.weight = weight;
+        this.sugar = sugar;
+        this.symptoms = symptoms;
+        this.tobacco = tobacco;
+        this.alcohol = alcohol;
+        this.physicalActivity = physicalActivity;
+        this.referral = referral;
+        this.followUpDate = followUpDate;
+        this.visitJson = dataJson;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public String getPatientJson() {
+        return patientJson;
+    }
+
+    public VisitKind getVisitKind() {
+        return visitKind;
+    }
+
+    public String getVisitJson() {
+        return visitJson;
+    }
+
+    public String getLmpDate() {
+        return lmpDate;
+    }
+
+    public String getEdd() {
+        return edd;
+    }
+
+    public String getBloodPressure() {
+        return bloodPressure;
+    }
+
+    public String getHemoglobin() {
+        return hemoglobin;
+    }
+
+    public String getDangerSigns() {
+        return dangerSigns;
+    }
+
+    public String getMedicines() {
+        return medicines;
+    }
+
+    public String getNextVisitDate() {
+        return nextVisitDate;
+    }
+
+    public String getHeight() {
+        return height;
+    }
+
+    public String getMuac() {
+        return muac;
+    }
+
+    public String getTemperature() {
+        return temperature;
+    }
+
+    public String getBreastfeeding() {
+        return breastfeeding;
+    }
+
+    public String getComplementaryFeeding() {
+        return complementaryFeeding;
+    }
+
+    public String getAppetite() {
+        return appetite;
+    }
+
+    public String getLastVaccine() {
+        return lastVaccine;
+    }
+
+    public String getNextVaccineDate() {
+        return nextVaccineDate;
+    }
+
+    public String getSugar() {
+        return sugar;
+    }
+
+    public String getTobacco() {
+        return tobacco;
+    }
+
+    public String getAlcohol() {
+        return alcohol;
+    }
+
+    public String getPhysicalActivity() {
+        return physicalActivity;
+    }
+
+    public String getReferral() {
+        return referral;
+    }
+
+    public String getFollowUpDate() {
+        return followUpDate;
+    }
+
+    public String getWeight() {
+        return weight;
+    }
+
+    public String getSymptoms() {
+        return symptoms;
+    }
+}
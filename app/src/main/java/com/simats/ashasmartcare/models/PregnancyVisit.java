@@ -16,6 +16,9 @@ public class PregnancyVisit {
     @SerializedName("patient_id")
     private long patientId;
 
+    @SerializedName("patient_server_id")
+    private int patientServerId;
+
     @SerializedName("visit_date")
     private String visitDate;
 
@@ -109,6 +112,14 @@ public class PregnancyVisit {
         this.patientId = patientId;
     }
 
+    public int getPatientServerId() {
+        return patientServerId;
+    }
+
+    public void setPatientServerId(int patientServerId) {
+        this.patientServerId = patientServerId;
+    }
+
     public String getVisitDate() {
         return visitDate;
     }
@@ -280,7 +291,11 @@ public class PregnancyVisit {
     }
     
     public void setPatientServerId(String id) {
-        // Compatibility method - no-op
+        try {
+            this.patientServerId = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            this.patientServerId = 0;
+        }
     }
     
     public void setWeeksPregnant(int weeks) {
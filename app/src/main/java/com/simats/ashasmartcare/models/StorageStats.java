@@ -0,0 +1,61 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Size of the database on disk: the main file and its WAL, and how much of the
+ * file is free pages waiting to be vacuumed
+ */
+public class StorageStats {
+    private final long fileBytes;
+    private final long walBytes;
+    private final long pageSize;
+    private final long pageCount;
+    private final long freelistCount;
+    private final boolean incrementalVacuum;
+
+    public StorageStats(long fileBytes, long walBytes, long pageSize, long pageCount, long freelistCount,
+            boolean incrementalVacuum) {
+        this.fileBytes = fileBytes;
+        this.walBytes = walBytes;
+        this.pageSize = pageSize;
+        this.pageCount = pageCount;
+        this.freelistCount = freelistCount;
+        this.incrementalVacuum = incrementalVacuum;
+    }
+
+    public long getFileBytes() {
+        return fileBytes;
+    }
+
+    public long getWalBytes() {
+        return walBytes;
+    }
+
+    public long getPageSize() {
+        return pageSize;
+    }
+
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    public long getFreelistCount() {
+        return freelistCount;
+    }
+
+    public long getFreeBytes() {
+        return freelistCount * pageSize;
+    }
+
+    /**
+     * Whether the file is in incremental auto-vacuum mode yet
+     */
+    public boolean isIncrementalVacuum() {
+        return incrementalVacuum;
+    }
+
+    @Override
+    public String toString() {
+        return "file=" + fileBytes + " wal=" + walBytes + " pages=" + pageCount + " free=" + freelistCount
+                + " pageSize=" + pageSize + " incrementalVacuum=" + incrementalVacuum;
+    }
+}
@@ -0,0 +1,50 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Server's answer for one queued record of an upload: whether it was stored,
+ * the server id it was stored under and any message. A failure is retryable
+ * unless sending the same record again cannot succeed (the server rejected
+ * its data, or it could not be built).
+ */
+public class SyncItemResult {
+    private final SyncRecord record;
+    private final boolean success;
+    private final int serverId;
+    private final String message;
+    private final boolean retryable;
+
+    public SyncItemResult(SyncRecord record, boolean success, int serverId, String message) {
+        this(record, success, serverId, message, true);
+    }
+
+    public SyncItemResult(SyncRecord record, boolean success, int serverId, String message, boolean retryable) {
+        this.record = record;
+        this.success = success;
+        this.serverId = serverId;
+        this.message = message;
+        this.retryable = retryable;
+    }
+
+    public SyncRecord getRecord() {
+        return record;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Server id of the stored record, or 0 when the server did not return one
+     */
+    public int getServerId() {
+        return serverId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -11,8 +11,10 @@ public class SyncRecord {
     private String errorMessage;
     private int retryCount;
     private long lastSyncAttempt;
+    private long nextAttemptAt;
     private String createdAt;
     private String lastUpdated;
+    private long lastUpdatedMillis;
 
     // UI specific fields (optional, can be derived)
     private String title;
@@ -51,7 +53,7 @@ public class SyncRecord {
 
     public long getId() {
         return localId;
-    } // Alias for getLocalId as used in SyncService
+    } // Alias for getLocalId
 
     public int getServerId() {
         return serverId;
@@ -126,6 +128,17 @@ public class SyncRecord {
         this.lastSyncAttempt = lastSyncAttempt;
     }
 
+    /**
+     * Epoch millis before which a failed record is not retried, or 0
+     */
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(long nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
     public String getCreatedAt() {
         return createdAt;
     }
@@ -142,6 +155,14 @@ public class SyncRecord {
         this.lastUpdated = lastUpdated;
     }
 
+    public long getLastUpdatedMillis() {
+        return lastUpdatedMillis;
+    }
+
+    public void setLastUpdatedMillis(long lastUpdatedMillis) {
+        this.lastUpdatedMillis = lastUpdatedMillis;
+    }
+
     // UI Getters
     public String getTitle() {
         return title;
@@ -0,0 +1,81 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Outcome and end-to-end throughput of one sync run. Failed records include
+ * the dead-lettered ones, which stop retrying. Skipped records were dropped
+ * locally (source record gone) or belong to tables that are not uploaded;
+ * deferred ones were not attempted and are still queued.
+ */
+public class SyncReport {
+    private final int synced;
+    private final int failed;
+    private final int deadLettered;
+    private final int skipped;
+    private final int deferred;
+    private final int requests;
+    private final int maxConcurrent;
+    private final long elapsedMillis;
+
+    public SyncReport(int synced, int failed, int deadLettered, int skipped, int deferred, int requests,
+            int maxConcurrent, long elapsedMillis) {
+        this.synced = synced;
+        this.failed = failed;
+        this.deadLettered = deadLettered;
+        this.skipped = skipped;
+        this.deferred = deferred;
+        this.requests = requests;
+        this.maxConcurrent = maxConcurrent;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public int getSynced() {
+        return synced;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getDeadLettered() {
+        return deadLettered;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public int getDeferred() {
+        return deferred;
+    }
+
+    /**
+     * HTTP requests made, batch and per-record
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Records the server answered for, per second of the whole run
+     */
+    public double getRecordsPerSecond() {
+        return (synced + failed) * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(java.util.Locale.US,
+                "%d synced, %d failed (%d dead-lettered), %d skipped, %d deferred in %d requests (%d concurrent), "
+                        + "%d ms (%.1f records/s)",
+                synced, failed, deadLettered, skipped, deferred, requests, maxConcurrent, elapsedMillis,
+                getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,57 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Snapshot of the app's sync: whether a pass is running, whether another is
+ * queued behind it, how many results the current pass has applied and the
+ * report of the last pass that ran
+ */
+public class SyncState {
+    public static final SyncState IDLE = new SyncState(false, false, 0, null, 0);
+
+    private final boolean running;
+    private final boolean followUpQueued;
+    private final int applied;
+    private final SyncReport lastReport;
+    private final long lastFinishedMillis;
+
+    public SyncState(boolean running, boolean followUpQueued, int applied, SyncReport lastReport,
+            long lastFinishedMillis) {
+        this.running = running;
+        this.followUpQueued = followUpQueued;
+        this.applied = applied;
+        this.lastReport = lastReport;
+        this.lastFinishedMillis = lastFinishedMillis;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * A sync was requested during the running pass; one more pass follows it
+     */
+    public boolean isFollowUpQueued() {
+        return followUpQueued;
+    }
+
+    /**
+     * Records whose results the current pass has committed so far
+     */
+    public int getApplied() {
+        return applied;
+    }
+
+    /**
+     * Report of the last pass that uploaded, or null if none has yet
+     */
+    public SyncReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * When the last pass ended (epoch millis), or 0
+     */
+    public long getLastFinishedMillis() {
+        return lastFinishedMillis;
+    }
+}
@@ -0,0 +1,93 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * One row of a patient's clinical timeline: an ANC visit, growth record,
+ * vaccination or general visit, in the shared shape read by
+ * DatabaseHelper.newPatientTimeline(). Fields a kind does not record are 0 or
+ * null.
+ */
+public class TimelineEntry {
+
+    public enum Kind {
+        ANC, GROWTH, VACCINATION, VISIT
+    }
+
+    private final Kind kind;
+    private final long localId;
+    private final String date;
+    private final String title;
+    private final String status;
+    private final float weight;
+    private final float height;
+    private final int bpSystolic;
+    private final int bpDiastolic;
+    private final int trimester;
+
+    public TimelineEntry(Kind kind, long localId, String date, String title, String status, float weight,
+            float height, int bpSystolic, int bpDiastolic, int trimester) {
+        this.kind = kind;
+        this.localId = localId;
+        this.date = date;
+        this.title = title;
+        this.status = status;
+        this.weight = weight;
+        this.height = height;
+        this.bpSystolic = bpSystolic;
+        this.bpDiastolic = bpDiastolic;
+        this.trimester = trimester;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public long getLocalId() {
+        return localId;
+    }
+
+    /**
+     * "yyyy-MM-dd" (or a full timestamp); for vaccinations the given date, else
+     * the due date
+     */
+    public String getDate() {
+        return date;
+    }
+
+    /**
+     * Visit type, vaccine name, or null for ANC and growth records
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Growth status or vaccination status
+     */
+    public String getStatus() {
+        return status;
+    }
+
+    public float getWeight() {
+        return weight;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+
+    public int getBpSystolic() {
+        return bpSystolic;
+    }
+
+    public int getBpDiastolic() {
+        return bpDiastolic;
+    }
+
+    public int getTrimester() {
+        return trimester;
+    }
+
+    public boolean hasHighBloodPressure() {
+        return bpSystolic >= 140 || bpDiastolic >= 90;
+    }
+}
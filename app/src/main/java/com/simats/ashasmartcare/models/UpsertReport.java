@@ -0,0 +1,56 @@
+package com.simats.ashasmartcare.models;
+
+/**
+ * Outcome and throughput of one bulk upsert of server records into a table.
+ * Skipped rows are local rows with edits still waiting to upload, and server
+ * records that cannot be stored (no server id, no visit date).
+ */
+public class UpsertReport {
+    private final String table;
+    private final int inserted;
+    private final int updated;
+    private final int skipped;
+    private final long elapsedMillis;
+
+    public UpsertReport(String table, int inserted, int updated, int skipped, long elapsedMillis) {
+        this.table = table;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.skipped = skipped;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public int getTotal() {
+        return inserted + updated + skipped;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return getTotal() * 1000.0 / Math.max(1, elapsedMillis);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(java.util.Locale.US, "%s: %d inserted, %d updated, %d skipped in %d ms (%.0f rows/s)",
+                table, inserted, updated, skipped, elapsedMillis, getRowsPerSecond());
+    }
+}
@@ -16,6 +16,9 @@ public class Visit {
     @SerializedName("patient_id")
     private long patientId;
 
+    @SerializedName("patient_server_id")
+    private int patientServerId;
+
     @SerializedName("visit_date")
     private String visitDate;
 
@@ -99,6 +102,14 @@ public class Visit {
         this.patientId = patientId;
     }
 
+    public int getPatientServerId() {
+        return patientServerId;
+    }
+
+    public void setPatientServerId(int patientServerId) {
+        this.patientServerId = patientServerId;
+    }
+
     public String getVisitDate() {
         return visitDate;
     }
@@ -47,6 +47,14 @@ public class ApiHelper {
         void onSuccess(JSONObject response);
 
         void onError(String errorMessage);
+
+        /**
+         * Error with the HTTP status code, 0 when the server did not answer.
+         * Only reported by makeRequest().
+         */
+        default void onError(String errorMessage, int statusCode) {
+            onError(errorMessage);
+        }
     }
 
     public static synchronized ApiHelper getInstance(Context context) {
@@ -447,6 +455,13 @@ public class ApiHelper {
         makePostRequest(url, params, callback);
     }
 
+    /**
+     * Upload a batch of queued records to sync.php in one request
+     */
+    public void uploadSyncBatch(JSONObject batch, ApiCallback callback) {
+        makeRequest(Request.Method.POST, getBaseUrl() + Constants.API_SYNC, batch, callback);
+    }
+
     /**
      * Generic request method with configurable HTTP method
      */
@@ -472,7 +487,8 @@ public class ApiHelper {
                     public void onErrorResponse(VolleyError error) {
                         String errorMessage = getErrorMessage(error);
                         Log.e(TAG, "Error: " + errorMessage);
-                        callback.onError(errorMessage);
+                        callback.onError(errorMessage,
+                                error.networkResponse != null ? error.networkResponse.statusCode : 0);
                     }
                 }) {
             @Override
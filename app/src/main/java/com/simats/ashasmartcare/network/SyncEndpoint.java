@@ -0,0 +1,23 @@
+package com.simats.ashasmartcare.network;
+
+import org.json.JSONObject;
+
+/**
+ * Server side of a batch upload (sync.php). The request carries many queued
+ * records:
+ *
+ * {"asha_id": 7, "records": [{"queue_id": 12, "table": "patients",
+ * "action": "INSERT", "endpoint": "patients.php", "data": {...}}, ...]}
+ *
+ * where data is exactly what the per-record endpoint would be sent. The
+ * response has one result per record:
+ *
+ * {"success": true, "results": [{"queue_id": 12, "success": true, "id": 345,
+ * "message": "..."}, ...]}
+ *
+ * A failed record is taken as rejected for good unless its result also has
+ * "retryable": true (e.g. the server's database was busy).
+ */
+public interface SyncEndpoint {
+    void upload(JSONObject batch, ApiHelper.ApiCallback callback);
+}
@@ -1,38 +0,0 @@
-package com.simats.ashasmartcare.receivers;
-
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
-import android.util.Log;
-
-import com.simats.ashasmartcare.services.SyncService;
-
-public class NetworkChangeReceiver extends BroadcastReceiver {
-
-    private static final String TAG = "NetworkChangeReceiver";
-
-    @Override
-    public void onReceive(Context context, Intent intent) {
-        if (ConnectivityManager.CONNECTIVITY_ACTION.equals(intent.getAction())) {
-            if (isNetworkAvailable(context)) {
-                Log.d(TAG, "Network became available - starting sync");
-                Intent syncIntent = new Intent(context, SyncService.class);
-                context.startService(syncIntent);
-            } else {
-                Log.d(TAG, "Network disconnected");
-            }
-        }
-    }
-
-    private boolean isNetworkAvailable(Context context) {
-        ConnectivityManager connectivityManager = 
-                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (connectivityManager != null) {
-            NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
-            return activeNetwork != null && activeNetwork.isConnected();
-        }
-        return false;
-    }
-}
@@ -0,0 +1,102 @@
+package com.simats.ashasmartcare.services;
+
+import android.util.Log;
+
+import com.simats.ashasmartcare.models.SyncItemResult;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.network.ApiHelper;
+import com.simats.ashasmartcare.network.SyncEndpoint;
+import com.simats.ashasmartcare.utils.Constants;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Sends up to Constants.SYNC_BATCH_SIZE records per request to the batch
+ * endpoint (sync.php) and maps its per-record answers back to the records
+ */
+public class SyncBatchTransport implements SyncPipeline.Transport {
+
+    private static final String TAG = "SyncBatchTransport";
+
+    private final SyncEndpoint endpoint;
+    private final long ashaId;
+
+    public SyncBatchTransport(SyncEndpoint endpoint, long ashaId) {
+        this.endpoint = endpoint;
+        this.ashaId = ashaId;
+    }
+
+    @Override
+    public int getMaxRecords() {
+        return Constants.SYNC_BATCH_SIZE;
+    }
+
+    @Override
+    public void send(List<SyncPayloadBuilder.Payload> uploads, Consumer<List<SyncItemResult>> done) {
+        Map<Long, SyncRecord> sent = new LinkedHashMap<>();
+        JSONObject batch = new JSONObject();
+        try {
+            JSONArray items = new JSONArray();
+            for (SyncPayloadBuilder.Payload payload : uploads) {
+                SyncRecord record = payload.getRecord();
+                JSONObject item = new JSONObject();
+                item.put("queue_id", record.getLocalId());
+                item.put("table", record.getTableName());
+                item.put("action", record.getAction());
+                item.put("endpoint", payload.getEndpoint());
+                item.put("data", payload.getParams());
+                items.put(item);
+                sent.put(record.getLocalId(), record);
+            }
+            batch.put("asha_id", ashaId);
+            batch.put("records", items);
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not build batch: " + e.getMessage());
+            done.accept(null);
+            return;
+        }
+
+        endpoint.upload(batch, new ApiHelper.ApiCallback() {
+            @Override
+            public void onSuccess(JSONObject response) {
+                JSONArray answers = response.optJSONArray("results");
+                if (!response.optBoolean("success", false) || answers == null) {
+                    Log.w(TAG, "Batch endpoint refused the upload: " + response.optString("message"));
+                    done.accept(null);
+                    return;
+                }
+
+                List<SyncItemResult> results = new ArrayList<>();
+                for (int i = 0; i < answers.length(); i++) {
+                    JSONObject answer = answers.optJSONObject(i);
+                    SyncRecord record = answer != null ? sent.remove(answer.optLong("queue_id", -1)) : null;
+                    if (record == null) {
+                        continue;
+                    }
+                    boolean success = answer.optBoolean("success", false);
+                    results.add(new SyncItemResult(record, success, SyncPayloadBuilder.serverIdOf(answer),
+                            success ? null : answer.optString("message", "Rejected by server"),
+                            answer.optBoolean("retryable", false)));
+                }
+                for (SyncRecord record : sent.values()) {
+                    results.add(new SyncItemResult(record, false, 0, "No result from server"));
+                }
+                done.accept(results);
+            }
+
+            @Override
+            public void onError(String errorMessage) {
+                Log.w(TAG, "Batch endpoint unavailable: " + errorMessage);
+                done.accept(null);
+            }
+        });
+    }
+}
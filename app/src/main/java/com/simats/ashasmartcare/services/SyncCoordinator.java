@@ -0,0 +1,227 @@
+package com.simats.ashasmartcare.services;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.models.SyncItemResult;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.SyncReport;
+import com.simats.ashasmartcare.models.SyncState;
+import com.simats.ashasmartcare.network.ApiHelper;
+import com.simats.ashasmartcare.utils.Constants;
+import com.simats.ashasmartcare.utils.NetworkUtils;
+import com.simats.ashasmartcare.utils.SessionManager;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the app's sync, one pass at a time for the whole process. A request
+ * that arrives while a pass is running does not start another alongside it;
+ * any number of them are merged into a single pass after the current one,
+ * which picks up whatever they queued and uploads as much of the queue as the
+ * widest of their policies allows. Every sync trigger goes through
+ * requestSync().
+ *
+ * Progress and outcome are published as a SyncState on the main thread, in
+ * order, so screens observe getState() instead of polling.
+ */
+public final class SyncCoordinator {
+
+    private static final String TAG = "SyncCoordinator";
+
+    /**
+     * One sync pass, run on the coordinator's thread
+     */
+    @VisibleForTesting
+    interface Pass {
+        /**
+         * @return the pass's report, or null if it did not run (e.g. offline)
+         */
+        SyncReport run(SyncPolicy policy, SyncPipeline.Listener listener) throws Exception;
+    }
+
+    private static SyncCoordinator instance;
+
+    private final Pass pass;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<SyncState> state = new MutableLiveData<>(SyncState.IDLE);
+
+    // Guarded by this
+    private boolean running;
+    private boolean followUp;
+    private SyncPolicy policy;
+    private int applied;
+    private SyncReport lastReport;
+    private long lastFinishedMillis;
+
+    public static synchronized SyncCoordinator getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncCoordinator(new UploadPass(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    @VisibleForTesting
+    SyncCoordinator(Pass pass) {
+        this.pass = pass;
+    }
+
+    public LiveData<SyncState> getState() {
+        return state;
+    }
+
+    /**
+     * Whether a pass is running or about to; unlike the published state, this
+     * is current on any thread
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Sync everything due; for syncs the worker asks for
+     */
+    public boolean requestSync() {
+        return requestSync(SyncPolicy.ALL);
+    }
+
+    /**
+     * Sync now, or once more after the pass in flight. Returns false when the
+     * request was merged into a pass still to come.
+     */
+    public synchronized boolean requestSync(SyncPolicy policy) {
+        if (running) {
+            // The pass in flight may already have read the queue
+            this.policy = followUp ? this.policy.merge(policy) : policy;
+            followUp = true;
+            publish();
+            return false;
+        }
+        running = true;
+        this.policy = policy;
+        applied = 0;
+        publish();
+        worker.execute(this::runPasses);
+        return true;
+    }
+
+    private void runPasses() {
+        while (true) {
+            SyncPolicy passPolicy;
+            synchronized (this) {
+                passPolicy = policy;
+            }
+            SyncReport report = null;
+            try {
+                report = pass.run(passPolicy, this::onResultsApplied);
+            } catch (Exception e) {
+                Log.e(TAG, "Sync error: " + e.getMessage());
+            }
+
+            synchronized (this) {
+                if (report != null) {
+                    lastReport = report;
+                }
+                lastFinishedMillis = System.currentTimeMillis();
+                applied = 0;
+                if (!followUp) {
+                    running = false;
+                    publish();
+                    return;
+                }
+                Log.d(TAG, "Running the sync requested during the last pass");
+                followUp = false;
+                publish();
+            }
+        }
+    }
+
+    private synchronized void onResultsApplied(List<SyncItemResult> results) {
+        applied += results.size();
+        publish();
+    }
+
+    /**
+     * Post the current state; called with the lock held, so snapshots reach
+     * the main thread in the order they were taken
+     */
+    private void publish() {
+        SyncState snapshot = new SyncState(running, followUp, applied, lastReport, lastFinishedMillis);
+        handler.post(() -> state.setValue(snapshot));
+    }
+
+    /**
+     * Uploads the due queue entries the policy takes through sync.php, falling
+     * back to one request per record, and toasts the outcome
+     */
+    private static final class UploadPass implements Pass {
+        private final Context context;
+        private final DatabaseHelper dbHelper;
+        private final SyncPayloadBuilder payloadBuilder;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        UploadPass(Context context) {
+            this.context = context;
+            dbHelper = DatabaseHelper.getInstance(context);
+            payloadBuilder = new SyncPayloadBuilder(context, dbHelper);
+        }
+
+        @Override
+        public SyncReport run(SyncPolicy policy, SyncPipeline.Listener listener) throws Exception {
+            if (!NetworkUtils.isNetworkAvailable(context)) {
+                Log.d(TAG, "Sync skipped - no network");
+                return null;
+            }
+
+            // Clean up old SYNCED records first (older than 5 minutes)
+            dbHelper.cleanupOldSyncedRecords();
+
+            List<SyncRecord> pendingRecords = policy.pendingRecords(dbHelper);
+            Log.d(TAG, "Found " + pendingRecords.size() + " pending records (" + policy + ")");
+            if (pendingRecords.isEmpty()) {
+                return null;
+            }
+
+            SessionManager session = SessionManager.getInstance(context);
+            ApiHelper apiHelper = ApiHelper.getInstance(context);
+            // Batches through sync.php; a server without it gets one request
+            // per record
+            SyncPipeline pipeline = new SyncPipeline(dbHelper, payloadBuilder,
+                    new SyncBatchTransport(apiHelper::uploadSyncBatch, session.getUserId()),
+                    new SyncRecordTransport(apiHelper, session.getApiBaseUrl()),
+                    Constants.SYNC_MAX_CONCURRENT_UPLOADS);
+            pipeline.setCanContinue(() -> NetworkUtils.isNetworkAvailable(context));
+
+            SyncReport report = pipeline.run(pendingRecords, listener);
+            Log.d(TAG, "Sync finished: " + report);
+            if (report.getDeferred() > 0) {
+                Log.d(TAG, report.getDeferred() + " records left queued for the next sync");
+            }
+            showSummary(report);
+            return report;
+        }
+
+        private void showSummary(SyncReport report) {
+            int synced = report.getSynced();
+            int failed = report.getFailed();
+            if (synced > 0 || failed > 0) {
+                final String message = synced > 0
+                        ? "✅ Synced " + synced + " records" + (failed > 0 ? " (" + failed + " failed)" : "")
+                        : "❌ Sync failed for " + failed + " records";
+
+                handler.post(() -> Toast.makeText(context, message, Toast.LENGTH_SHORT).show());
+            }
+        }
+    }
+}
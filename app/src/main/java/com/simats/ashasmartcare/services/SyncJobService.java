@@ -0,0 +1,79 @@
+package com.simats.ashasmartcare.services;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+
+import androidx.lifecycle.Observer;
+
+import com.simats.ashasmartcare.models.SyncState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the jobs SyncScheduler schedules. Each job asks SyncCoordinator for a
+ * pass with its policy and is finished once the coordinator is idle, follow-up
+ * passes included; the system keeps the process up until then.
+ */
+public class SyncJobService extends JobService {
+
+    private static final String TAG = "SyncJobService";
+    private SyncCoordinator coordinator;
+    private final List<JobParameters> runningJobs = new ArrayList<>();
+
+    // Published states can trail the coordinator, so ask it directly
+    private final Observer<SyncState> finishWhenIdle = state -> {
+        if (!coordinator.isRunning()) {
+            finishRunningJobs();
+        }
+    };
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        coordinator = SyncCoordinator.getInstance(this);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        SyncPolicy policy = SyncScheduler.policyFor(this, params.getJobId());
+        Log.d(TAG, "Sync job " + params.getJobId() + " started (" + policy + ")");
+        if (!coordinator.requestSync(policy)) {
+            Log.d(TAG, "Sync already running - merged into the next pass");
+        }
+        if (runningJobs.isEmpty()) {
+            // After the request, so the first state seen cannot finish us early
+            coordinator.getState().observeForever(finishWhenIdle);
+        }
+        runningJobs.add(params);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Constraints no longer hold; the pass stops starting uploads once the
+        // network is gone, and whatever it did not reach stays queued
+        Log.d(TAG, "Sync job " + params.getJobId() + " stopped");
+        runningJobs.remove(params);
+        if (runningJobs.isEmpty()) {
+            coordinator.getState().removeObserver(finishWhenIdle);
+        }
+        // Periodic jobs come round again anyway; a one-off one is retried
+        return params.getJobId() == SyncScheduler.JOB_HIGH_RISK;
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        coordinator.getState().removeObserver(finishWhenIdle);
+    }
+
+    private void finishRunningJobs() {
+        coordinator.getState().removeObserver(finishWhenIdle);
+        for (JobParameters params : runningJobs) {
+            jobFinished(params, false);
+        }
+        runningJobs.clear();
+    }
+}
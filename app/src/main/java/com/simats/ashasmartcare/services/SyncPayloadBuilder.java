@@ -0,0 +1,332 @@
+package com.simats.ashasmartcare.services;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.models.ChildGrowth;
+import com.simats.ashasmartcare.models.Patient;
+import com.simats.ashasmartcare.models.PregnancyVisit;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.Vaccination;
+import com.simats.ashasmartcare.models.Visit;
+import com.simats.ashasmartcare.utils.Constants;
+import com.simats.ashasmartcare.utils.SessionManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Builds the request for a queued change: the endpoint it goes to and its
+ * parameters, with the parent patient's server id filled in. Used for both the
+ * per-record upload and the batch upload through sync.php, so the two send the
+ * same thing.
+ */
+public class SyncPayloadBuilder {
+
+    private static final String TAG = "SyncPayloadBuilder";
+
+    /**
+     * What an upload should do with a queue entry
+     */
+    public enum Disposition {
+        UPLOAD,
+        // The local record is gone; drop the queue entry
+        DROP,
+        // The local record is already synced; only the queue entry is left
+        ALREADY_SYNCED,
+        // The parent patient has no server id yet
+        WAITING_FOR_PARENT,
+        // Not a table this app uploads
+        UNSUPPORTED
+    }
+
+    public static final class Payload {
+        private final SyncRecord record;
+        private final Disposition disposition;
+        private final long patientId;
+        private final String endpoint;
+        private final JSONObject params;
+
+        private Payload(SyncRecord record, Disposition disposition, long patientId, String endpoint,
+                JSONObject params) {
+            this.record = record;
+            this.disposition = disposition;
+            this.patientId = patientId;
+            this.endpoint = endpoint;
+            this.params = params;
+        }
+
+        public SyncRecord getRecord() {
+            return record;
+        }
+
+        public Disposition getDisposition() {
+            return disposition;
+        }
+
+        /**
+         * Local id of the patient the record belongs to (the patient itself for
+         * patient records), or 0 when not known
+         */
+        public long getPatientId() {
+            return patientId;
+        }
+
+        /**
+         * Endpoint relative to the API base url
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        public JSONObject getParams() {
+            return params;
+        }
+    }
+
+    private final Context context;
+    private final DatabaseHelper dbHelper;
+
+    public SyncPayloadBuilder(Context context, DatabaseHelper dbHelper) {
+        this.context = context.getApplicationContext();
+        this.dbHelper = dbHelper;
+    }
+
+    public Payload build(SyncRecord record) throws JSONException {
+        if (Constants.ACTION_DELETE.equalsIgnoreCase(record.getAction())) {
+            return buildPatientDeletion(record);
+        }
+
+        // A duplicate queue record or a manual update can leave the source SYNCED
+        String sourceStatus = dbHelper.getSourceSyncStatus(record.getTableName(), record.getRecordId());
+        if (Constants.SYNC_SYNCED.equalsIgnoreCase(sourceStatus)) {
+            return new Payload(record, Disposition.ALREADY_SYNCED, 0, null, null);
+        }
+
+        switch (record.getTableName()) {
+            case DatabaseHelper.TABLE_PATIENTS:
+                return buildPatient(record);
+            case DatabaseHelper.TABLE_PREGNANCY_VISITS:
+                return buildPregnancyVisit(record);
+            case DatabaseHelper.TABLE_CHILD_GROWTH:
+                return buildChildGrowth(record);
+            case DatabaseHelper.TABLE_VACCINATIONS:
+                return buildVaccination(record);
+            case DatabaseHelper.TABLE_VISITS:
+                return buildVisit(record);
+            default:
+                return new Payload(record, Disposition.UNSUPPORTED, 0, null, null);
+        }
+    }
+
+    /**
+     * Server id in an upload response, at the top level or under "data"; 0 if
+     * there is none
+     */
+    public static int serverIdOf(JSONObject response) {
+        if (response.has("id")) {
+            return response.optInt("id", 0);
+        }
+        JSONObject data = response.optJSONObject("data");
+        return data != null ? data.optInt("id", 0) : 0;
+    }
+
+    private Payload buildPatientDeletion(SyncRecord record) throws JSONException {
+        int serverId = 0;
+        try {
+            serverId = new JSONObject(record.getDataJson()).optInt("id", 0);
+        } catch (Exception e) {
+            Log.e(TAG, "Unreadable delete tombstone " + record.getLocalId() + ": " + e.getMessage());
+        }
+        if (serverId <= 0) {
+            // Never reached the server, so there is nothing to delete there
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+        JSONObject params = new JSONObject();
+        params.put("_method", "DELETE");
+        params.put("id", serverId);
+        return upload(record, 0, Constants.API_PATIENTS + "?id=" + serverId, params);
+    }
+
+    private Payload buildPatient(SyncRecord record) throws JSONException {
+        Patient patient = dbHelper.getPatientById(record.getRecordId());
+        if (patient == null) {
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+
+        JSONObject params = savedParams(record);
+        long ashaId = SessionManager.getInstance(context).getUserId();
+        if (params != null) {
+            // Ensure critical fields are present
+            if (!params.has("local_id")) {
+                params.put("local_id", patient.getLocalId());
+            }
+            if (!params.has("asha_id")) {
+                params.put("asha_id", ashaId);
+            }
+        } else {
+            params = new JSONObject();
+            params.put("local_id", patient.getLocalId());
+            params.put("asha_id", ashaId);
+            params.put("name", patient.getName());
+            params.put("age", patient.getAge());
+            params.put("dob", patient.getDob());
+            params.put("gender", patient.getGender());
+            params.put("phone", patient.getPhone());
+            params.put("address", patient.getAddress());
+            params.put("category", patient.getCategory());
+            params.put("blood_group", patient.getBloodGroup());
+            params.put("is_high_risk", patient.isHighRisk() ? 1 : 0);
+            params.put("high_risk_reason", patient.getHighRiskReason());
+            params.put("medical_notes", patient.getMedicalNotes());
+        }
+        return upload(record, record.getRecordId(), Constants.API_PATIENTS, params);
+    }
+
+    private Payload buildPregnancyVisit(SyncRecord record) throws JSONException {
+        PregnancyVisit visit = dbHelper.getPregnancyVisitById(record.getRecordId());
+        if (visit == null) {
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+        int patientServerId = parentServerId(visit.getPatientId());
+        if (patientServerId == 0) {
+            return new Payload(record, Disposition.WAITING_FOR_PARENT, visit.getPatientId(), null, null);
+        }
+
+        JSONObject params = savedParams(record);
+        if (params != null) {
+            params.put("patient_id", patientServerId);
+            if (!params.has("local_id")) {
+                params.put("local_id", visit.getLocalId());
+            }
+            // AddPatientActivity saves the first pregnancy record for
+            // pregnancy.php; follow-ups go to pregnancy_visits.php
+            String endpoint = params.has("lmp_date") ? "pregnancy.php" : Constants.API_PREGNANCY_VISITS;
+            return upload(record, visit.getPatientId(), endpoint, params);
+        }
+
+        params = new JSONObject();
+        params.put("local_id", visit.getLocalId());
+        params.put("patient_id", patientServerId);
+        params.put("visit_date", visit.getVisitDate());
+        params.put("gestational_weeks", visit.getGestationalWeeks());
+        params.put("weight", visit.getWeight());
+        params.put("blood_pressure", visit.getBloodPressure());
+        params.put("hemoglobin", visit.getHemoglobin());
+        params.put("fetal_heart_rate", visit.getFetalHeartRate());
+        params.put("urine_protein", visit.getUrineProtein());
+        params.put("urine_sugar", visit.getUrineSugar());
+        params.put("is_high_risk", visit.isHighRisk() ? 1 : 0);
+        params.put("high_risk_reason", visit.getHighRiskReason());
+        params.put("notes", visit.getNotes());
+        return upload(record, visit.getPatientId(), Constants.API_PREGNANCY_VISITS, params);
+    }
+
+    private Payload buildChildGrowth(SyncRecord record) throws JSONException {
+        ChildGrowth growth = dbHelper.getChildGrowthById(record.getRecordId());
+        if (growth == null) {
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+        int patientServerId = parentServerId(growth.getPatientId());
+        if (patientServerId == 0) {
+            return new Payload(record, Disposition.WAITING_FOR_PARENT, growth.getPatientId(), null, null);
+        }
+
+        JSONObject params = savedParams(record);
+        if (params != null) {
+            params.put("patient_id", patientServerId);
+            if (!params.has("local_id")) {
+                params.put("local_id", growth.getLocalId());
+            }
+        } else {
+            params = new JSONObject();
+            params.put("local_id", growth.getLocalId());
+            params.put("patient_id", patientServerId);
+            params.put("record_date", growth.getRecordDate());
+            params.put("age_months", growth.getAgeMonths());
+            params.put("weight", growth.getWeight());
+            params.put("height", growth.getHeight());
+            params.put("head_circumference", growth.getHeadCircumference());
+            params.put("muac", growth.getMuac());
+            params.put("growth_status", growth.getGrowthStatus());
+            params.put("notes", growth.getNotes());
+        }
+        return upload(record, growth.getPatientId(), Constants.API_CHILD_GROWTH, params);
+    }
+
+    private Payload buildVaccination(SyncRecord record) throws JSONException {
+        Vaccination vaccination = dbHelper.getVaccinationById(record.getRecordId());
+        if (vaccination == null) {
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+        int patientServerId = parentServerId(vaccination.getPatientId());
+        if (patientServerId == 0) {
+            return new Payload(record, Disposition.WAITING_FOR_PARENT, vaccination.getPatientId(), null, null);
+        }
+
+        JSONObject params = new JSONObject();
+        params.put("local_id", vaccination.getLocalId());
+        params.put("patient_id", patientServerId);
+        params.put("vaccine_name", vaccination.getVaccineName());
+        params.put("due_date", vaccination.getDueDate());
+        params.put("given_date", vaccination.getGivenDate());
+        params.put("status", vaccination.getStatus());
+        params.put("batch_number", vaccination.getBatchNumber());
+        params.put("notes", vaccination.getNotes());
+        return upload(record, vaccination.getPatientId(), Constants.API_VACCINATIONS, params);
+    }
+
+    private Payload buildVisit(SyncRecord record) throws JSONException {
+        Visit visit = dbHelper.getVisitById(record.getRecordId());
+        if (visit == null) {
+            return new Payload(record, Disposition.DROP, 0, null, null);
+        }
+        int patientServerId = parentServerId(visit.getPatientId());
+        if (patientServerId == 0) {
+            return new Payload(record, Disposition.WAITING_FOR_PARENT, visit.getPatientId(), null, null);
+        }
+
+        JSONObject params = savedParams(record);
+        if (params != null) {
+            params.put("patient_id", patientServerId);
+            if (!params.has("local_id")) {
+                params.put("local_id", visit.getLocalId());
+            }
+            // General adult screening goes to general_adult.php, other visits
+            // to visits.php
+            String endpoint = params.has("tobacco_use") ? "general_adult.php" : Constants.API_VISITS;
+            return upload(record, visit.getPatientId(), endpoint, params);
+        }
+
+        params = new JSONObject();
+        params.put("local_id", visit.getLocalId());
+        params.put("patient_id", patientServerId);
+        params.put("visit_type", visit.getVisitType());
+        params.put("visit_date", visit.getVisitDate());
+        params.put("purpose", visit.getPurpose());
+        params.put("findings", visit.getFindings());
+        params.put("recommendations", visit.getRecommendations());
+        params.put("next_visit_date", visit.getNextVisitDate());
+        params.put("notes", visit.getNotes());
+        return upload(record, visit.getPatientId(), Constants.API_VISITS, params);
+    }
+
+    /**
+     * The payload saved with the queue entry, or null to build one from the
+     * local record
+     */
+    private static JSONObject savedParams(SyncRecord record) throws JSONException {
+        String dataJson = record.getDataJson();
+        return dataJson != null && !dataJson.isEmpty() ? new JSONObject(dataJson) : null;
+    }
+
+    private int parentServerId(long patientId) {
+        Patient patient = dbHelper.getPatientById(patientId);
+        return patient != null ? patient.getServerId() : 0;
+    }
+
+    private static Payload upload(SyncRecord record, long patientId, String endpoint, JSONObject params) {
+        return new Payload(record, Disposition.UPLOAD, patientId, endpoint, params);
+    }
+}
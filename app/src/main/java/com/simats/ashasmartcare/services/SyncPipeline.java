@@ -0,0 +1,354 @@
+package com.simats.ashasmartcare.services;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.models.SyncItemResult;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.models.SyncReport;
+import com.simats.ashasmartcare.utils.Constants;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Uploads one run's queued records as a dependency graph. A patient's
+ * pregnancy, growth, vaccination and visit records wait until the patient
+ * itself has gone up and has a server id; everything else is ready at once.
+ * Ready records go out over up to maxConcurrent uploads at a time, each
+ * carrying as many records as the transport takes, and each upload's results
+ * are applied in one transaction as soon as it completes, releasing the
+ * records that were waiting on it.
+ *
+ * Records are leased while their upload is in flight, so a later run does not
+ * send them again. An upload that does not answer within UPLOAD_TIMEOUT_MS
+ * ends the run; its results are still applied if they come, and otherwise
+ * the lease runs out and a later run sends the records again.
+ *
+ * If the transport reports it cannot be used at all (a server without
+ * sync.php), its records go back to the ready set and the rest of the run uses
+ * the fallback transport. Blocks the calling thread; do not call it on the
+ * main thread.
+ */
+public class SyncPipeline {
+
+    private static final String TAG = "SyncPipeline";
+    private static final long UPLOAD_TIMEOUT_MS = 120_000;
+    private static final String PARENT_NOT_SYNCED = "Parent patient must be synced first";
+
+    /**
+     * Carries ready records to the server
+     */
+    public interface Transport {
+        /**
+         * Most records one upload can carry
+         */
+        int getMaxRecords();
+
+        /**
+         * Upload the records and report one result for each, on any thread.
+         * Report null if the transport could not be used at all, so the
+         * records can go another way.
+         */
+        void send(List<SyncPayloadBuilder.Payload> uploads, Consumer<List<SyncItemResult>> done);
+    }
+
+    /**
+     * Told about each set of results once it has committed
+     */
+    public interface Listener {
+        void onResultsApplied(List<SyncItemResult> results);
+    }
+
+    private static final class Completion {
+        final Transport transport;
+        final List<SyncPayloadBuilder.Payload> uploads;
+        final List<SyncItemResult> results;
+
+        Completion(Transport transport, List<SyncPayloadBuilder.Payload> uploads, List<SyncItemResult> results) {
+            this.transport = transport;
+            this.uploads = uploads;
+            this.results = results;
+        }
+    }
+
+    private final DatabaseHelper dbHelper;
+    private final SyncPayloadBuilder payloadBuilder;
+    private final Transport primary;
+    private final Transport fallback;
+    private final int maxConcurrent;
+    private BooleanSupplier canContinue = () -> true;
+
+    // State of the current run, only touched on the calling thread
+    private final ArrayDeque<SyncPayloadBuilder.Payload> ready = new ArrayDeque<>();
+    private final Map<Long, SyncRecord> patientRecords = new HashMap<>();
+    private final Map<Long, List<SyncRecord>> waitingOn = new HashMap<>();
+    private final List<SyncItemResult> settled = new ArrayList<>();
+    private final List<SyncRecord> released = new ArrayList<>();
+    private int synced;
+    private int failed;
+    private int deadLettered;
+    private int skipped;
+
+    /**
+     * @param fallback transport for records the primary one cannot carry, or
+     *                 null to leave them queued
+     */
+    public SyncPipeline(DatabaseHelper dbHelper, SyncPayloadBuilder payloadBuilder, Transport primary,
+            Transport fallback, int maxConcurrent) {
+        this.dbHelper = dbHelper;
+        this.payloadBuilder = payloadBuilder;
+        this.primary = primary;
+        this.fallback = fallback;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    /**
+     * Checked before each upload starts; once false, uploads in flight finish
+     * and the rest of the run stays queued (e.g. the network went away)
+     */
+    public void setCanContinue(BooleanSupplier canContinue) {
+        this.canContinue = canContinue;
+    }
+
+    public synchronized SyncReport run(List<SyncRecord> records, Listener listener) throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        ready.clear();
+        patientRecords.clear();
+        waitingOn.clear();
+        settled.clear();
+        released.clear();
+        synced = 0;
+        failed = 0;
+        deadLettered = 0;
+        skipped = 0;
+
+        for (SyncRecord record : records) {
+            if (DatabaseHelper.TABLE_PATIENTS.equals(record.getTableName())
+                    && !Constants.ACTION_DELETE.equalsIgnoreCase(record.getAction())) {
+                patientRecords.put(record.getRecordId(), record);
+            }
+        }
+        for (SyncRecord record : records) {
+            plan(record);
+        }
+        applySettled(listener);
+
+        LinkedBlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+        // Set once the run stops waiting; results after that are applied as
+        // they come. Checked and set under the completions lock.
+        AtomicBoolean stoppedWaiting = new AtomicBoolean();
+        Transport transport = primary;
+        int inFlight = 0;
+        int requests = 0;
+        while (true) {
+            while (inFlight < maxConcurrent && !ready.isEmpty() && canContinue.getAsBoolean()) {
+                List<SyncPayloadBuilder.Payload> uploads = new ArrayList<>();
+                while (uploads.size() < transport.getMaxRecords() && !ready.isEmpty()) {
+                    uploads.add(ready.poll());
+                }
+                lease(uploads, true);
+                Transport sending = transport;
+                sending.send(uploads, results -> {
+                    synchronized (completions) {
+                        if (!stoppedWaiting.get()) {
+                            completions.add(new Completion(sending, uploads, results));
+                            return;
+                        }
+                    }
+                    applyLate(uploads, results);
+                });
+                inFlight++;
+                requests++;
+            }
+            if (inFlight == 0) {
+                break;
+            }
+
+            Completion completion = completions.poll(UPLOAD_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (completion == null) {
+                Log.w(TAG, inFlight + " uploads did not answer in time; their results are applied if they come");
+                List<Completion> late = new ArrayList<>();
+                synchronized (completions) {
+                    stoppedWaiting.set(true);
+                    completions.drainTo(late);
+                }
+                for (Completion lateCompletion : late) {
+                    applyLate(lateCompletion.uploads, lateCompletion.results);
+                }
+                break;
+            }
+            inFlight--;
+
+            if (completion.results == null) {
+                lease(completion.uploads, false);
+                if (completion.transport == primary && fallback != null) {
+                    transport = fallback;
+                    for (int i = completion.uploads.size() - 1; i >= 0; i--) {
+                        ready.addFirst(completion.uploads.get(i));
+                    }
+                }
+                continue;
+            }
+            settled.addAll(completion.results);
+            applySettled(listener);
+        }
+
+        int deferred = records.size() - synced - failed - skipped;
+        SyncReport report = new SyncReport(synced, failed, deadLettered, skipped, deferred, requests,
+                maxConcurrent, SystemClock.elapsedRealtime() - start);
+        Log.d(TAG, "Sync run: " + report);
+        return report;
+    }
+
+    /**
+     * Take or give back the queue leases of an upload's records
+     */
+    private void lease(List<SyncPayloadBuilder.Payload> uploads, boolean take) throws Exception {
+        List<SyncRecord> records = recordsOf(uploads);
+        dbHelper.getWriteExecutor().submit(db -> {
+            if (take) {
+                db.leaseSyncRecords(records);
+            } else {
+                db.releaseSyncRecords(records);
+            }
+            return null;
+        }).get();
+    }
+
+    /**
+     * Commit results that came after the run stopped waiting, or give back the
+     * leases of an upload that was not sent. Records waiting on them stay
+     * queued for the next run.
+     */
+    private void applyLate(List<SyncPayloadBuilder.Payload> uploads, List<SyncItemResult> results) {
+        if (results == null) {
+            List<SyncRecord> records = recordsOf(uploads);
+            dbHelper.getWriteExecutor().submit(db -> {
+                db.releaseSyncRecords(records);
+                return null;
+            }, null);
+            return;
+        }
+        dbHelper.getWriteExecutor().submit(db -> db.applySyncResults(results), null);
+    }
+
+    private static List<SyncRecord> recordsOf(List<SyncPayloadBuilder.Payload> uploads) {
+        List<SyncRecord> records = new ArrayList<>(uploads.size());
+        for (SyncPayloadBuilder.Payload upload : uploads) {
+            records.add(upload.getRecord());
+        }
+        return records;
+    }
+
+    /**
+     * Decide what to do with a record whose dependencies are done
+     */
+    private void plan(SyncRecord record) throws Exception {
+        SyncPayloadBuilder.Payload payload;
+        try {
+            payload = payloadBuilder.build(record);
+        } catch (Exception e) {
+            // Unreadable saved payload; sending it again cannot go better
+            settled.add(new SyncItemResult(record, false, 0, e.getMessage(), false));
+            return;
+        }
+
+        switch (payload.getDisposition()) {
+            case UPLOAD:
+                ready.add(payload);
+                break;
+            case ALREADY_SYNCED:
+                settled.add(new SyncItemResult(record, true, 0, null));
+                break;
+            case DROP:
+                dbHelper.getWriteExecutor().submit(db -> {
+                    db.deleteSyncRecord(record.getLocalId());
+                    return null;
+                }).get();
+                skipped++;
+                break;
+            case WAITING_FOR_PARENT:
+                SyncRecord parent = patientRecords.get(payload.getPatientId());
+                if (parent != null) {
+                    List<SyncRecord> children = waitingOn.get(parent.getLocalId());
+                    if (children == null) {
+                        children = new ArrayList<>();
+                        waitingOn.put(parent.getLocalId(), children);
+                    }
+                    children.add(record);
+                } else {
+                    settled.add(new SyncItemResult(record, false, 0, PARENT_NOT_SYNCED));
+                }
+                break;
+            default:
+                skipped++;
+                break;
+        }
+    }
+
+    /**
+     * Start or fail the records that were waiting on this one
+     */
+    private void release(SyncItemResult result) {
+        SyncRecord parent = result.getRecord();
+        List<SyncRecord> children = waitingOn.remove(parent.getLocalId());
+        if (children == null) {
+            return;
+        }
+        // Planned again once the parent's server id has committed; a parent
+        // that went up without one fails them
+        patientRecords.remove(parent.getRecordId());
+        for (SyncRecord child : children) {
+            if (result.isSuccess()) {
+                released.add(child);
+            } else {
+                settled.add(new SyncItemResult(child, false, 0, PARENT_NOT_SYNCED));
+            }
+        }
+    }
+
+    /**
+     * Commit the settled results, then plan the records they released, until
+     * nothing more settles locally
+     */
+    private void applySettled(Listener listener) throws Exception {
+        while (!settled.isEmpty()) {
+            List<SyncItemResult> results = new ArrayList<>(settled);
+            settled.clear();
+            dbHelper.getWriteExecutor().submit(db -> db.applySyncResults(results)).get();
+            for (SyncItemResult result : results) {
+                SyncRecord record = result.getRecord();
+                record.setErrorMessage(result.getMessage());
+                if (result.isSuccess()) {
+                    record.setSyncStatus(Constants.SYNC_SYNCED);
+                    synced++;
+                } else {
+                    failed++;
+                    if (Constants.SYNC_DEAD_LETTER.equals(record.getSyncStatus())) {
+                        deadLettered++;
+                    }
+                }
+                release(result);
+            }
+            if (listener != null) {
+                listener.onResultsApplied(results);
+            }
+
+            List<SyncRecord> planned = new ArrayList<>(released);
+            released.clear();
+            for (SyncRecord child : planned) {
+                plan(child);
+            }
+        }
+    }
+}
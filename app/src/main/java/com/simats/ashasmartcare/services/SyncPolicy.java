@@ -0,0 +1,60 @@
+package com.simats.ashasmartcare.services;
+
+import android.content.Context;
+import android.os.BatteryManager;
+
+import com.simats.ashasmartcare.database.DatabaseHelper;
+import com.simats.ashasmartcare.models.SyncRecord;
+import com.simats.ashasmartcare.utils.Constants;
+import com.simats.ashasmartcare.utils.NetworkUtils;
+
+import java.util.List;
+
+/**
+ * How much of the queue a sync pass uploads, narrowest first. A sync the
+ * worker asked for uploads everything; background syncs leave the historical
+ * backlog for an unmetered network or charging, so a long offline stretch is
+ * not pushed over mobile data on battery in one go. High-risk patients' changes
+ * are always taken.
+ */
+public enum SyncPolicy {
+    // High-risk patients' changes only
+    HIGH_RISK,
+    // Those, plus changes queued within SYNC_RECENT_WINDOW_MS
+    RECENT,
+    // Everything due
+    ALL;
+
+    /**
+     * Scope for a sync nobody asked for, given the current network and power
+     */
+    public static SyncPolicy forBackground(Context context) {
+        return NetworkUtils.isUnmeteredNetwork(context) || isCharging(context) ? ALL : RECENT;
+    }
+
+    /**
+     * The wider of the two, for requests merged into one pass
+     */
+    public SyncPolicy merge(SyncPolicy other) {
+        return other.ordinal() > ordinal() ? other : this;
+    }
+
+    /**
+     * Queue entries due now that this policy uploads
+     */
+    List<SyncRecord> pendingRecords(DatabaseHelper dbHelper) {
+        switch (this) {
+            case HIGH_RISK:
+                return dbHelper.getPendingSyncRecords(Long.MAX_VALUE);
+            case RECENT:
+                return dbHelper.getPendingSyncRecords(System.currentTimeMillis() - Constants.SYNC_RECENT_WINDOW_MS);
+            default:
+                return dbHelper.getPendingSyncRecords();
+        }
+    }
+
+    private static boolean isCharging(Context context) {
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        return batteryManager != null && batteryManager.isCharging();
+    }
+}
@@ -0,0 +1,69 @@
+package com.simats.ashasmartcare.services;
+
+import com.android.volley.Request;
+import com.simats.ashasmartcare.models.SyncItemResult;
+import com.simats.ashasmartcare.network.ApiHelper;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Sends one record per request to its own endpoint (patients.php,
+ * pregnancy_visits.php, ...), for servers without the batch endpoint. A record
+ * the server answered with success false, or with a client error about the
+ * request itself, is rejected for good; anything else is worth retrying.
+ */
+public class SyncRecordTransport implements SyncPipeline.Transport {
+
+    private final ApiHelper apiHelper;
+    private final String baseUrl;
+
+    public SyncRecordTransport(ApiHelper apiHelper, String baseUrl) {
+        this.apiHelper = apiHelper;
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public int getMaxRecords() {
+        return 1;
+    }
+
+    @Override
+    public void send(List<SyncPayloadBuilder.Payload> uploads, Consumer<List<SyncItemResult>> done) {
+        SyncPayloadBuilder.Payload payload = uploads.get(0);
+        apiHelper.makeRequest(Request.Method.POST, baseUrl + payload.getEndpoint(), payload.getParams(),
+                new ApiHelper.ApiCallback() {
+                    @Override
+                    public void onSuccess(JSONObject response) {
+                        boolean success = response.optBoolean("success", false);
+                        done.accept(Collections.singletonList(new SyncItemResult(payload.getRecord(), success,
+                                SyncPayloadBuilder.serverIdOf(response),
+                                success ? null : response.optString("message", "Invalid response from server"),
+                                response.optBoolean("retryable", false))));
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        onError(errorMessage, 0);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage, int statusCode) {
+                        done.accept(Collections.singletonList(new SyncItemResult(payload.getRecord(), false, 0,
+                                errorMessage, isRetryable(statusCode))));
+                    }
+                });
+    }
+
+    /**
+     * No answer, server errors, and 4xx codes about the session or the rate
+     * rather than the record
+     */
+    private static boolean isRetryable(int statusCode) {
+        return statusCode < 400 || statusCode >= 500 || statusCode == 401 || statusCode == 403
+                || statusCode == 408 || statusCode == 429;
+    }
+}
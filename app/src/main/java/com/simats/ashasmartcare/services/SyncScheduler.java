@@ -0,0 +1,120 @@
+package com.simats.ashasmartcare.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import com.simats.ashasmartcare.utils.Constants;
+import com.simats.ashasmartcare.utils.NetworkUtils;
+
+/**
+ * Schedules background sync as JobScheduler jobs, which the system runs when
+ * their network, battery and charging constraints hold and keeps across
+ * reboots, whether or not the app is open:
+ *
+ * - periodic: any network, battery not low; recent and high-risk changes,
+ *   or everything when on an unmetered network or charging
+ * - unmetered and charging: the windows the historical backlog waits for
+ * - high risk: one-off, as soon as there is a network, for a high-risk
+ *   patient's change saved offline
+ *
+ * Every job runs its sync through SyncJobService and SyncCoordinator.
+ */
+public final class SyncScheduler {
+
+    private static final String TAG = "SyncScheduler";
+
+    static final int JOB_PERIODIC = 1001;
+    static final int JOB_UNMETERED = 1002;
+    static final int JOB_CHARGING = 1003;
+    static final int JOB_HIGH_RISK = 1004;
+
+    private SyncScheduler() {
+    }
+
+    /**
+     * Schedule the periodic jobs not scheduled yet; called on every app start,
+     * without resetting the ones already waiting
+     */
+    public static void schedulePeriodic(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduleIfAbsent(scheduler, periodic(context, JOB_PERIODIC, Constants.SYNC_PERIODIC_INTERVAL_MS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY));
+        scheduleIfAbsent(scheduler, periodic(context, JOB_UNMETERED, Constants.SYNC_BULK_INTERVAL_MS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED));
+        scheduleIfAbsent(scheduler, periodic(context, JOB_CHARGING, Constants.SYNC_BULK_INTERVAL_MS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setRequiresCharging(true));
+    }
+
+    /**
+     * Upload high-risk patients' changes now if online, otherwise as soon as a
+     * network is back, ahead of the periodic sync
+     */
+    public static void requestHighRiskSync(Context context) {
+        if (NetworkUtils.isNetworkAvailable(context)) {
+            SyncCoordinator.getInstance(context).requestSync(SyncPolicy.HIGH_RISK);
+            return;
+        }
+
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) {
+            return;
+        }
+        JobInfo.Builder builder = new JobInfo.Builder(JOB_HIGH_RISK, service(context))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            builder.setExpedited(true);
+        }
+        if (scheduler.schedule(builder.build()) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "High-risk sync job was not scheduled");
+        }
+    }
+
+    /**
+     * What a job's pass uploads
+     */
+    static SyncPolicy policyFor(Context context, int jobId) {
+        switch (jobId) {
+            case JOB_HIGH_RISK:
+                return SyncPolicy.HIGH_RISK;
+            case JOB_UNMETERED:
+            case JOB_CHARGING:
+                return SyncPolicy.ALL;
+            default:
+                return SyncPolicy.forBackground(context);
+        }
+    }
+
+    private static JobInfo.Builder periodic(Context context, int jobId, long intervalMillis) {
+        JobInfo.Builder builder = new JobInfo.Builder(jobId, service(context))
+                .setPeriodic(intervalMillis)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        }
+        return builder;
+    }
+
+    private static void scheduleIfAbsent(JobScheduler scheduler, JobInfo.Builder builder) {
+        JobInfo job = builder.build();
+        if (scheduler.getPendingJob(job.getId()) != null) {
+            return;
+        }
+        if (scheduler.schedule(job) != JobScheduler.RESULT_SUCCESS) {
+            Log.w(TAG, "Sync job " + job.getId() + " was not scheduled");
+        }
+    }
+
+    private static ComponentName service(Context context) {
+        return new ComponentName(context, SyncJobService.class);
+    }
+}
@@ -38,22 +38,108 @@ public class Constants {
                         "General"
         };
 
+        // Stored patients.category_code: 1-based position in PATIENT_CATEGORIES,
+        // 0 when the text matches no category
+        public static final int CATEGORY_CODE_UNKNOWN = 0;
+        public static final int CATEGORY_CODE_PREGNANT = 1;
+        public static final int CATEGORY_CODE_CHILD = 2;
+        public static final int CATEGORY_CODE_LACTATING = 3;
+        public static final int CATEGORY_CODE_ADOLESCENT = 4;
+        public static final int CATEGORY_CODE_GENERAL = 5;
+
+        // Other spellings of PATIENT_CATEGORIES found in saved and server data,
+        // in the same order
+        private static final String[][] PATIENT_CATEGORY_ALIASES = {
+                        { "Pregnant" },
+                        { "Child (0-5 years)", "Child (0-5 yrs)" },
+                        {},
+                        {},
+                        { "General Adult" }
+        };
+
+        /**
+         * Category code for a stored or entered category, ignoring case and
+         * surrounding spaces
+         */
+        public static int categoryCode(String category) {
+                if (category == null) {
+                        return CATEGORY_CODE_UNKNOWN;
+                }
+                String text = category.trim();
+                for (int i = 0; i < PATIENT_CATEGORIES.length; i++) {
+                        if (PATIENT_CATEGORIES[i].equalsIgnoreCase(text)) {
+                                return i + 1;
+                        }
+                        for (String alias : PATIENT_CATEGORY_ALIASES[i]) {
+                                if (alias.equalsIgnoreCase(text)) {
+                                        return i + 1;
+                                }
+                        }
+                }
+                return CATEGORY_CODE_UNKNOWN;
+        }
+
+        /**
+         * Canonical category name for a code, or null for CATEGORY_CODE_UNKNOWN
+         */
+        public static String categoryName(int code) {
+                return code > 0 && code <= PATIENT_CATEGORIES.length ? PATIENT_CATEGORIES[code - 1] : null;
+        }
+
         // Vaccination Status
         public static final String VACCINATION_DUE = "DUE";
         public static final String VACCINATION_UPCOMING = "UPCOMING";
         public static final String VACCINATION_OVERDUE = "OVERDUE";
         public static final String VACCINATION_COMPLETED = "COMPLETED";
 
+        // Stored observations.obs_code values. Measurements keep value_num, the
+        // rest value_text (one row per medicine or danger sign); dates are yyyy-MM-dd
+        public static final int OBS_BP_SYSTOLIC = 1;
+        public static final int OBS_BP_DIASTOLIC = 2;
+        public static final int OBS_WEIGHT = 3;
+        public static final int OBS_HEIGHT = 4;
+        public static final int OBS_MUAC = 5;
+        public static final int OBS_HEMOGLOBIN = 6;
+        public static final int OBS_TEMPERATURE = 7;
+        public static final int OBS_BLOOD_SUGAR = 8;
+        public static final int OBS_MEDICINE = 9;
+        public static final int OBS_DANGER_SIGN = 10;
+        public static final int OBS_VACCINE_GIVEN = 11;
+        public static final int OBS_NEXT_VACCINE_DATE = 12;
+        public static final int OBS_NEXT_VISIT_DATE = 13;
+
         // Sync Status
         public static final String SYNC_PENDING = "PENDING";
         public static final String SYNC_SYNCED = "SYNCED";
         public static final String SYNC_FAILED = "FAILED";
+        // Gave up retrying; uploaded again only after an edit or a manual retry
+        public static final String SYNC_DEAD_LETTER = "DEAD_LETTER";
 
         // Sync Actions
         public static final String ACTION_INSERT = "INSERT";
         public static final String ACTION_UPDATE = "UPDATE";
         public static final String ACTION_DELETE = "DELETE";
 
+        // Queued records sent per request to API_SYNC
+        public static final int SYNC_BATCH_SIZE = 50;
+        // Uploads in flight at once during a sync; Volley runs 4 network threads
+        public static final int SYNC_MAX_CONCURRENT_UPLOADS = 4;
+        // Wait before retrying a failed record, doubling per failure up to the max
+        public static final long SYNC_RETRY_BASE_DELAY_MS = 60_000;
+        public static final long SYNC_RETRY_MAX_DELAY_MS = 6 * 60 * 60 * 1000L;
+        // How long a sent upload keeps its records from being sent again;
+        // longer than a sync pass waits for an answer (SyncPipeline)
+        public static final long SYNC_UPLOAD_LEASE_MS = 10 * 60 * 1000L;
+        // Failed attempts after which a retryable error is dead-lettered too
+        public static final int SYNC_MAX_RETRIES = 10;
+        // Background sync interval, and the longer one for the runs that wait
+        // for an unmetered network or charging
+        public static final long SYNC_PERIODIC_INTERVAL_MS = 60 * 60 * 1000L;
+        public static final long SYNC_BULK_INTERVAL_MS = 6 * 60 * 60 * 1000L;
+        // Changes queued within this window go up on any network; older ones
+        // wait for an unmetered network or charging, unless high risk
+        public static final long SYNC_RECENT_WINDOW_MS = 24 * 60 * 60 * 1000L;
+
         // Growth Status
         public static final String GROWTH_NORMAL = "Normal";
         public static final String GROWTH_UNDERWEIGHT = "Underweight";
@@ -0,0 +1,98 @@
+package com.simats.ashasmartcare.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Shared date/time formatting and day-boundary math.
+ *
+ * The database stores times as epoch millis and compares them as integers;
+ * these formatters only turn them into (and back from) the text the server and
+ * the UI use. SimpleDateFormat is not thread-safe, so each thread gets its own
+ * instance, created once. Locale.US keeps the digits ASCII whatever the device
+ * language is.
+ */
+public final class DateTimeUtils {
+
+    public static final String TIMESTAMP_PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final String DATE_PATTERN = "yyyy-MM-dd";
+
+    private static final ThreadLocal<SimpleDateFormat> TIMESTAMP_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat(TIMESTAMP_PATTERN, Locale.US));
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat(DATE_PATTERN, Locale.US));
+
+    private DateTimeUtils() {
+    }
+
+    /**
+     * "yyyy-MM-dd HH:mm:ss" in the device time zone
+     */
+    public static String formatTimestamp(long millis) {
+        return TIMESTAMP_FORMAT.get().format(new Date(millis));
+    }
+
+    /**
+     * "yyyy-MM-dd" in the device time zone
+     */
+    public static String formatDate(long millis) {
+        return DATE_FORMAT.get().format(new Date(millis));
+    }
+
+    /**
+     * Parse "yyyy-MM-dd HH:mm:ss" or "yyyy-MM-dd". Returns -1 for null or
+     * unparseable text.
+     */
+    public static long parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return -1;
+        }
+        try {
+            SimpleDateFormat format = text.length() > DATE_PATTERN.length() ? TIMESTAMP_FORMAT.get()
+                    : DATE_FORMAT.get();
+            return format.parse(text).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Local midnight at the start of the day containing millis
+     */
+    public static long startOfDay(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Local midnight at the start of the next day
+     */
+    public static long startOfNextDay(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startOfDay(millis));
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Local midnight on the first day of the week (per the device locale)
+     * containing millis
+     */
+    public static long startOfWeek(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(startOfDay(millis));
+        calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
+        if (calendar.getTimeInMillis() > millis) {
+            calendar.add(Calendar.WEEK_OF_YEAR, -1);
+        }
+        return calendar.getTimeInMillis();
+    }
+}
@@ -97,6 +97,18 @@ public class NetworkUtils {
         }
     }
 
+    /**
+     * Check if connected to a network that is not metered (e.g. WiFi without
+     * a data cap)
+     */
+    public static boolean isUnmeteredNetwork(Context context) {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+
+        return connectivityManager != null && isNetworkAvailable(context)
+                && !connectivityManager.isActiveNetworkMetered();
+    }
+
     /**
      * Check if connected to Mobile Data
      */